@@ -0,0 +1,397 @@
+// Copyright 2000-2022 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.google.common.hash.Hashing;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.EmptyRunnable;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.util.ThrowableRunnable;
+import com.intellij.util.concurrency.SequentialTaskExecutor;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.PersistentHashMap;
+import org.dartlang.analysis.server.protocol.AnalysisError;
+import org.dartlang.analysis.server.protocol.Outline;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the last errors and outline received from the Analysis Server for each file on disk, so that they can be shown right after
+ * IDE restart, before the server finishes initial analysis. Entries are keyed by file path and are valid only while the file content
+ * hash is the same as at the moment the results were computed. Entries of deleted, moved and renamed files are removed, and the least
+ * recently updated entries are removed when there are more than {@link #MAX_ENTRIES} of them.
+ * <p>
+ * All writes are done in a background sequential executor, reads are done synchronously in the calling thread. File contents are
+ * hashed outside the storage lock.
+ */
+final class DartAnalysisResultsCache implements Disposable {
+  private static final Logger LOG = Logger.getInstance(DartAnalysisResultsCache.class);
+
+  // increase when the stored format changes or when stored results may become incompatible with the current plugin version
+  private static final int VERSION = 2;
+  private static final int MAX_ENTRIES = 5000;
+
+  private final @NotNull File myStorageFile;
+  private final @NotNull ExecutorService myWriteExecutor =
+    SequentialTaskExecutor.createSequentialApplicationPoolExecutor("Dart Analysis Results Cache");
+
+  private @Nullable PersistentHashMap<String, CachedResults> myMap;
+  private int myEntryCount;
+  private boolean myOpenFailed;
+  private boolean myDisposed;
+
+  DartAnalysisResultsCache(@NotNull Project project) {
+    this(project, new File(PathManager.getSystemPath(), "dart-analysis-cache/" + project.getLocationHash() + "/results.v" + VERSION));
+  }
+
+  DartAnalysisResultsCache(@NotNull Project project, @NotNull File storageFile) {
+    myStorageFile = storageFile;
+    project.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void after(@NotNull List<? extends @NotNull VFileEvent> events) {
+        final List<String> removedPaths = new ArrayList<>();
+        for (VFileEvent event : events) {
+          if (event instanceof VFileDeleteEvent) {
+            removedPaths.add(event.getPath());
+          }
+          else if (event instanceof VFileMoveEvent) {
+            removedPaths.add(((VFileMoveEvent)event).getOldPath());
+          }
+          else if (event instanceof VFilePropertyChangeEvent && ((VFilePropertyChangeEvent)event).isRename()) {
+            removedPaths.add(((VFilePropertyChangeEvent)event).getOldPath());
+          }
+        }
+        if (!removedPaths.isEmpty()) {
+          removeWithChildren(removedPaths);
+        }
+      }
+    });
+  }
+
+  static boolean isEnabled() {
+    // light test projects share location, so results of one test would leak into another one
+    return !ApplicationManager.getApplication().isUnitTestMode();
+  }
+
+  /**
+   * @return cached errors and outline for the given file if they were computed for exactly the same file content as the current one
+   */
+  @Nullable
+  CachedResults get(@NotNull VirtualFile file) {
+    final CharSequence text = getText(file);
+    if (text == null) return null;
+
+    final CachedResults results;
+    synchronized (this) {
+      final PersistentHashMap<String, CachedResults> map = getMap();
+      if (map == null) return null;
+
+      try {
+        results = map.get(file.getPath());
+      }
+      catch (IOException e) {
+        onStorageError(e);
+        return null;
+      }
+    }
+
+    return results != null && results.myContentHash == computeHash(text) ? results : null;
+  }
+
+  void putErrors(@NotNull VirtualFile file, @NotNull List<? extends AnalysisError> errors) {
+    update(file, () -> {
+      final JsonArray errorsJson = new JsonArray();
+      for (AnalysisError error : errors) {
+        errorsJson.add(error.toJson());
+      }
+      return errorsJson.toString();
+    }, null);
+  }
+
+  void putOutline(@NotNull VirtualFile file, @NotNull Outline outline) {
+    update(file, null, () -> outlineToJson(outline).toString());
+  }
+
+  void remove(@NotNull String filePath) {
+    submit(() -> {
+      synchronized (this) {
+        final PersistentHashMap<String, CachedResults> map = getMap();
+        if (map != null && map.containsMapping(filePath)) {
+          map.remove(filePath);
+          myEntryCount--;
+        }
+      }
+    });
+  }
+
+  /**
+   * Removes the entries of the given files and of all files under the given directories, the paths may belong to already deleted files.
+   */
+  private void removeWithChildren(@NotNull List<String> paths) {
+    submit(() -> {
+      synchronized (this) {
+        final PersistentHashMap<String, CachedResults> map = getMap();
+        if (map == null) return;
+
+        final List<String> toRemove = new ArrayList<>();
+        map.processKeysWithExistingMapping(key -> {
+          for (String path : paths) {
+            if (FileUtil.startsWith(key, path)) {
+              toRemove.add(key);
+              break;
+            }
+          }
+          return true;
+        });
+        for (String key : toRemove) {
+          map.remove(key);
+        }
+        myEntryCount -= toRemove.size();
+      }
+    });
+  }
+
+  private void update(@NotNull VirtualFile file,
+                      @Nullable Supplier<String> errorsJsonSupplier,
+                      @Nullable Supplier<String> outlineJsonSupplier) {
+    // take the text now, it's the text for which the server has computed the results
+    final Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+    final CharSequence documentText = document != null ? document.getImmutableCharSequence() : null;
+
+    submit(() -> {
+      final CharSequence text = documentText != null ? documentText : getText(file);
+      if (text == null) return;
+
+      final long hash = computeHash(text);
+      final String errorsJson = errorsJsonSupplier != null ? errorsJsonSupplier.get() : null;
+      final String outlineJson = outlineJsonSupplier != null ? outlineJsonSupplier.get() : null;
+
+      synchronized (this) {
+        final PersistentHashMap<String, CachedResults> map = getMap();
+        if (map == null) return;
+
+        final CachedResults old = map.get(file.getPath());
+        final boolean keepOld = old != null && old.myContentHash == hash;
+        map.put(file.getPath(), new CachedResults(hash,
+                                                  System.currentTimeMillis(),
+                                                  errorsJson != null ? errorsJson : keepOld ? old.myErrorsJson : null,
+                                                  outlineJson != null ? outlineJson : keepOld ? old.myOutlineJson : null));
+        if (old == null && ++myEntryCount > MAX_ENTRIES) {
+          evictLeastRecentlyUpdated(map);
+        }
+      }
+    });
+  }
+
+  /**
+   * Removes the least recently updated entries, so that there's room for new ones before the next eviction.
+   */
+  private void evictLeastRecentlyUpdated(@NotNull PersistentHashMap<String, CachedResults> map) throws IOException {
+    final Map<String, Long> timestamps = new HashMap<>();
+    for (String key : map.getAllKeysWithExistingMapping()) {
+      final CachedResults results = map.get(key);
+      if (results != null) {
+        timestamps.put(key, results.myTimestamp);
+      }
+    }
+
+    final List<String> keys = new ArrayList<>(timestamps.keySet());
+    keys.sort(Comparator.comparing(timestamps::get));
+    final int toRemove = keys.size() - MAX_ENTRIES * 3 / 4;
+    for (int i = 0; i < toRemove; i++) {
+      map.remove(keys.get(i));
+    }
+    myEntryCount = keys.size() - Math.max(toRemove, 0);
+  }
+
+  private void submit(@NotNull ThrowableRunnable<IOException> runnable) {
+    myWriteExecutor.execute(() -> {
+      try {
+        runnable.run();
+      }
+      catch (IOException e) {
+        synchronized (this) {
+          onStorageError(e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Waits until all the writes submitted so far are done.
+   */
+  @TestOnly
+  void waitForWrites() throws Exception {
+    myWriteExecutor.submit(EmptyRunnable.getInstance()).get();
+  }
+
+  @Nullable
+  private PersistentHashMap<String, CachedResults> getMap() {
+    if (myMap == null && !myOpenFailed && !myDisposed) {
+      try {
+        myMap = openMap();
+      }
+      catch (IOException e) {
+        LOG.info("Failed to open Dart analysis results cache, it will be recreated: " + e.getMessage());
+        closeMap();
+        PersistentHashMap.deleteFilesStartingWith(myStorageFile);
+        try {
+          myMap = openMap();
+        }
+        catch (IOException e2) {
+          LOG.warn("Dart analysis results cache is disabled", e2);
+          closeMap();
+          myOpenFailed = true;
+        }
+      }
+    }
+    return myMap;
+  }
+
+  @NotNull
+  private PersistentHashMap<String, CachedResults> openMap() throws IOException {
+    myMap = new PersistentHashMap<>(myStorageFile.toPath(), EnumeratorStringDescriptor.INSTANCE, new CachedResultsExternalizer());
+    myEntryCount = myMap.getAllKeysWithExistingMapping().size();
+    return myMap;
+  }
+
+  private void onStorageError(@NotNull IOException e) {
+    LOG.info("Dart analysis results cache is corrupted, it will be recreated: " + e.getMessage());
+    closeMap();
+    PersistentHashMap.deleteFilesStartingWith(myStorageFile);
+  }
+
+  private void closeMap() {
+    if (myMap != null) {
+      try {
+        myMap.close();
+      }
+      catch (IOException e) {
+        LOG.info(e);
+      }
+      myMap = null;
+    }
+  }
+
+  @Override
+  public void dispose() {
+    myWriteExecutor.execute(() -> {
+      synchronized (this) {
+        myDisposed = true;
+        closeMap();
+      }
+    });
+  }
+
+  @Nullable
+  private static CharSequence getText(@NotNull VirtualFile file) {
+    if (!file.isValid()) return null;
+    final Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+    return document != null ? document.getImmutableCharSequence() : LoadTextUtil.loadText(file);
+  }
+
+  private static long computeHash(@NotNull CharSequence text) {
+    return Hashing.murmur3_128().hashUnencodedChars(text).asLong() ^ text.length();
+  }
+
+  @NotNull
+  private static JsonObject outlineToJson(@NotNull Outline outline) {
+    final JsonObject json = new JsonObject();
+    json.add("element", outline.getElement().toJson());
+    json.addProperty("offset", outline.getOffset());
+    json.addProperty("length", outline.getLength());
+    json.addProperty("codeOffset", outline.getCodeOffset());
+    json.addProperty("codeLength", outline.getCodeLength());
+    final List<Outline> children = outline.getChildren();
+    if (children != null && !children.isEmpty()) {
+      final JsonArray childrenJson = new JsonArray();
+      for (Outline child : children) {
+        childrenJson.add(outlineToJson(child));
+      }
+      json.add("children", childrenJson);
+    }
+    return json;
+  }
+
+  static final class CachedResults {
+    private final long myContentHash;
+    private final long myTimestamp;
+    private final @Nullable String myErrorsJson;
+    private final @Nullable String myOutlineJson;
+
+    private CachedResults(long contentHash, long timestamp, @Nullable String errorsJson, @Nullable String outlineJson) {
+      myContentHash = contentHash;
+      myTimestamp = timestamp;
+      myErrorsJson = errorsJson;
+      myOutlineJson = outlineJson;
+    }
+
+    @Nullable
+    List<AnalysisError> getErrors() {
+      return myErrorsJson == null ? null : AnalysisError.fromJsonArray(JsonParser.parseString(myErrorsJson).getAsJsonArray());
+    }
+
+    @Nullable
+    Outline getOutline() {
+      return myOutlineJson == null ? null : Outline.fromJson(null, JsonParser.parseString(myOutlineJson).getAsJsonObject());
+    }
+  }
+
+  private static final class CachedResultsExternalizer implements DataExternalizer<CachedResults> {
+    @Override
+    public void save(@NotNull DataOutput out, CachedResults value) throws IOException {
+      out.writeLong(value.myContentHash);
+      out.writeLong(value.myTimestamp);
+      writeNullableString(out, value.myErrorsJson);
+      writeNullableString(out, value.myOutlineJson);
+    }
+
+    @Override
+    public CachedResults read(@NotNull DataInput in) throws IOException {
+      final long hash = in.readLong();
+      final long timestamp = in.readLong();
+      final String errorsJson = readNullableString(in);
+      final String outlineJson = readNullableString(in);
+      return new CachedResults(hash, timestamp, errorsJson, outlineJson);
+    }
+
+    private static void writeNullableString(@NotNull DataOutput out, @Nullable String value) throws IOException {
+      out.writeBoolean(value != null);
+      if (value != null) {
+        IOUtil.writeUTF(out, value);
+      }
+    }
+
+    @Nullable
+    private static String readNullableString(@NotNull DataInput in) throws IOException {
+      return in.readBoolean() ? IOUtil.readUTF(in) : null;
+    }
+  }
+}
@@ -92,6 +92,8 @@ public final class DartAnalysisServerService implements Disposable {
   public static final String MIN_DART_LANG_SERVER_SDK_VERSION = "2.16.0";
 
   private static final long UPDATE_FILES_TIMEOUT = 300;
+  // each N-th update of a file overlay sends the full document text instead of edits, so that the server copy is resynced from time to time
+  private static final int OVERLAY_FULL_CONTENT_CHECKPOINT = 50;
 
   private static final long CHECK_CANCELLED_PERIOD = 10;
   private static final long SEND_REQUEST_TIMEOUT = TimeUnit.SECONDS.toMillis(1);
@@ -141,12 +143,18 @@ public final class DartAnalysisServerService implements Disposable {
   private final Map<String, Long> myFilePathWithOverlaidContentToTimestamp = Collections.synchronizedMap(new HashMap<>());
   private final List<String> myVisibleFiles = new ArrayList<>();
   private final Set<Document> myChangedDocuments = new HashSet<>();
+  // edits made to the documents since their overlays were last sent to the server; guarded by myLock
+  private final Map<String, OverlayDelta> myFilePathToOverlayDelta = new HashMap<>();
   private final Alarm myUpdateFilesAlarm;
 
+  private volatile long myLastOverlayUpdateChars;
+  private volatile long myTotalOverlayUpdateChars;
+
   @NotNull private final Queue<CompletionInfo> myCompletionInfos = new LinkedList<>();
   @NotNull private final Queue<SearchResultsSet> mySearchResultSets = new LinkedList<>();
 
   @NotNull private final DartServerData myServerData;
+  @NotNull private final DartServerRequestCache myRequestCache = new DartServerRequestCache();
 
   private volatile boolean myAnalysisInProgress;
   private volatile boolean myPubListInProgress;
@@ -228,6 +236,9 @@ public final class DartAnalysisServerService implements Disposable {
       // do nothing if errors are the same as were already handled previously
       if (oldHash == newHash && !myServerData.isErrorInfoInaccurate(filePathSI)) return;
 
+      // hover, navigation, fixes and assists may depend on any analyzed file
+      myRequestCache.invalidate();
+
       final boolean visible = myVisibleFiles.contains(filePathSD);
       if (myServerData.computedErrors(filePathSI, errorsWithoutTodo, visible)) {
         onErrorsUpdated(filePathSI, errorsWithoutTodo, hasSevereProblems, newHash);
@@ -273,6 +284,7 @@ public final class DartAnalysisServerService implements Disposable {
         filePaths.add(FileUtil.toSystemIndependentName(path));
       }
 
+      myRequestCache.invalidate();
       myServerData.onFlushedResults(filePaths);
 
       for (String filePath : filePaths) {
@@ -727,6 +739,7 @@ public final class DartAnalysisServerService implements Disposable {
       public void beforeDocumentChange(@NotNull DocumentEvent e) {
         if (myServer == null) return;
 
+        myRequestCache.invalidate();
         myServerData.onDocumentChanged(e);
 
         final VirtualFile file = FileDocumentManager.getInstance().getFile(e.getDocument());
@@ -744,6 +757,21 @@ public final class DartAnalysisServerService implements Disposable {
         myUpdateFilesAlarm.cancelAllRequests();
         myUpdateFilesAlarm.addRequest(DartAnalysisServerService.this::updateFilesContent, UPDATE_FILES_TIMEOUT);
       }
+
+      @Override
+      public void documentChanged(@NotNull DocumentEvent e) {
+        if (myServer == null) return;
+
+        final VirtualFile file = FileDocumentManager.getInstance().getFile(e.getDocument());
+        if (file == null) return;
+
+        synchronized (myLock) {
+          final OverlayDelta delta = myFilePathToOverlayDelta.get(file.getPath());
+          if (delta != null) {
+            delta.addEdit(e);
+          }
+        }
+      }
     };
 
     EditorFactory.getInstance().getEventMulticaster().addDocumentListener(documentListener, this);
@@ -788,11 +816,21 @@ public final class DartAnalysisServerService implements Disposable {
     return myServerData.getAvailableSuggestionSet(id);
   }
 
+  @Nullable
+  public DartServerData.AvailableSuggestions getAvailableSuggestions(int id) {
+    return myServerData.getAvailableSuggestions(id);
+  }
+
   @Nullable
   public Map<String, Map<String, Set<String>>> getExistingImports(@Nullable String filePathSD) {
     return myServerData.getExistingImports(filePathSD);
   }
 
+  @Nullable
+  public DartServerData.ExistingImports getExistingImportsIndex(@Nullable String filePathSD) {
+    return myServerData.getExistingImportsIndex(filePathSD);
+  }
+
   @NotNull
   public List<DartServerData.DartError> getErrors(@NotNull final VirtualFile file) {
     return myServerData.getErrors(file);
@@ -905,8 +943,6 @@ public final class DartAnalysisServerService implements Disposable {
   }
 
   private void doUpdateFilesContent() {
-    // may be use DocumentListener to collect deltas instead of sending the whole Document.getText() each time?
-
     AnalysisServer server = myServer;
     if (server == null) {
       return;
@@ -916,6 +952,7 @@ public final class DartAnalysisServerService implements Disposable {
 
     final Map<String, Object> filesToUpdate = new HashMap<>();
     final Set<String> filesToRemoveContentOverlay;
+    long updateChars = 0;
 
     ApplicationManager.getApplication().assertReadAccessAllowed();
 
@@ -937,7 +974,21 @@ public final class DartAnalysisServerService implements Disposable {
 
           final Long oldTimestamp = myFilePathWithOverlaidContentToTimestamp.get(file.getPath());
           if (oldTimestamp == null || document.getModificationStamp() != oldTimestamp) {
-            filesToUpdate.put(FileUtil.toSystemDependentName(file.getPath()), new AddContentOverlay(document.getText()));
+            final OverlayDelta delta = myFilePathToOverlayDelta.get(file.getPath());
+            final Object overlay;
+            if (oldTimestamp != null && delta != null && delta.canBeSentAsChange(document, oldTimestamp)) {
+              overlay = new ChangeContentOverlay(new ArrayList<>(delta.myEdits));
+              updateChars += delta.myEditedChars;
+              delta.reset(document.getModificationStamp(), delta.myChangesSinceCheckpoint + 1);
+            }
+            else {
+              final String text = document.getText();
+              overlay = new AddContentOverlay(text);
+              updateChars += text.length();
+              myFilePathToOverlayDelta.put(file.getPath(), new OverlayDelta(document.getModificationStamp()));
+            }
+
+            filesToUpdate.put(FileUtil.toSystemDependentName(file.getPath()), overlay);
             myFilePathWithOverlaidContentToTimestamp.put(file.getPath(), document.getModificationStamp());
           }
         }
@@ -949,6 +1000,8 @@ public final class DartAnalysisServerService implements Disposable {
         if (myFilePathWithOverlaidContentToTimestamp.get(oldPath) != null) {
           filesToUpdate.put(FileUtil.toSystemDependentName(oldPath), new RemoveContentOverlay());
         }
+        // edits made after this point must not be sent as ChangeContentOverlay because the server will have no overlay for this file
+        myFilePathToOverlayDelta.remove(oldPath);
       }
 
       if (LOG.isDebugEnabled()) {
@@ -963,6 +1016,15 @@ public final class DartAnalysisServerService implements Disposable {
         if (!filesToRemoveContentOverlay.isEmpty()) {
           LOG.debug("Removing overlaid content: " + StringUtil.join(filesToRemoveContentOverlay, ",\n"));
         }
+
+        if (!filesToUpdate.isEmpty()) {
+          LOG.debug("Overlaid content update size: " + updateChars + " chars");
+        }
+      }
+
+      if (!filesToUpdate.isEmpty()) {
+        myLastOverlayUpdateChars = updateChars;
+        myTotalOverlayUpdateChars += updateChars;
       }
     }
 
@@ -976,6 +1038,28 @@ public final class DartAnalysisServerService implements Disposable {
     }
   }
 
+  /**
+   * @return number of characters of document text and edits sent to the server by the last {@code analysis.updateContent} request
+   */
+  public long getLastOverlayUpdateChars() {
+    return myLastOverlayUpdateChars;
+  }
+
+  /**
+   * @return number of characters of document text and edits sent to the server by all {@code analysis.updateContent} requests
+   */
+  public long getTotalOverlayUpdateChars() {
+    return myTotalOverlayUpdateChars;
+  }
+
+  /**
+   * @return hit/miss counters and response latency histograms of hover, navigation, assists and fixes requests, for diagnostics
+   */
+  @NotNull
+  public String getRequestCacheStatistics() {
+    return myRequestCache.getStatistics();
+  }
+
   public void ensureAnalysisRootsUpToDate() {
     myRootsHandler.scheduleDartRootsUpdate(null);
   }
@@ -1058,30 +1142,32 @@ public final class DartAnalysisServerService implements Disposable {
     }
 
     final String filePath = FileUtil.toSystemDependentName(file.getPath());
-    final List<HoverInformation> result = new ArrayList<>();
 
-    final CountDownLatch latch = new CountDownLatch(1);
-    final int offset = getOriginalOffset(file, _offset);
-    server.analysis_getHover(filePath, offset, new GetHoverConsumer() {
-      @Override
-      public void computedHovers(HoverInformation[] hovers) {
-        Collections.addAll(result, hovers);
-        latch.countDown();
-      }
+    final DartServerRequestCache.Request<List<HoverInformation>> request =
+      myRequestCache.getOrSend(DartServerRequestCache.Kind.HOVER, file, _offset, 0, r -> {
+        final int offset = getOriginalOffset(file, _offset);
+        server.analysis_getHover(filePath, offset, new GetHoverConsumer() {
+          @Override
+          public void computedHovers(HoverInformation[] hovers) {
+            r.complete(List.of(hovers));
+          }
 
-      @Override
-      public void onError(RequestError error) {
-        logError("analysis_getHover()", filePath, error);
-        latch.countDown();
-      }
-    });
+          @Override
+          public void onError(RequestError error) {
+            logError("analysis_getHover()", filePath, error);
+            r.fail();
+          }
+        });
+      });
 
-    awaitForLatchCheckingCanceled(server, latch, GET_HOVER_TIMEOUT);
+    awaitForLatchCheckingCanceled(server, request.getLatch(), GET_HOVER_TIMEOUT);
 
-    if (latch.getCount() > 0) {
+    if (!request.isDone()) {
       logTookTooLongMessage("analysis_getHover", GET_HOVER_TIMEOUT, filePath);
     }
-    return result;
+
+    final List<HoverInformation> result = request.getResult();
+    return result != null ? result : HoverInformation.EMPTY_LIST;
   }
 
   @Nullable
@@ -1094,46 +1180,46 @@ public final class DartAnalysisServerService implements Disposable {
     }
 
     final String filePath = FileUtil.toSystemDependentName(file.getPath());
-    final Ref<List<DartServerData.DartNavigationRegion>> resultRef = Ref.create();
 
-    final CountDownLatch latch = new CountDownLatch(1);
-    LOG.debug("analysis_getNavigation(" + filePath + ")");
+    final DartServerRequestCache.Request<List<DartServerData.DartNavigationRegion>> request =
+      myRequestCache.getOrSend(DartServerRequestCache.Kind.NAVIGATION, file, _offset, length, r -> {
+        LOG.debug("analysis_getNavigation(" + filePath + ")");
+
+        final int offset = getOriginalOffset(file, _offset);
+        server.analysis_getNavigation(filePath, offset, length, new GetNavigationConsumer() {
+          @Override
+          public void computedNavigation(final List<NavigationRegion> regions) {
+            final List<DartServerData.DartNavigationRegion> dartRegions = new ArrayList<>(regions.size());
+            for (NavigationRegion region : regions) {
+              if (region.getLength() > 0) {
+                dartRegions.add(DartServerData.createDartNavigationRegion(DartAnalysisServerService.this, file, region));
+              }
+            }
 
-    final int offset = getOriginalOffset(file, _offset);
-    server.analysis_getNavigation(filePath, offset, length, new GetNavigationConsumer() {
-      @Override
-      public void computedNavigation(final List<NavigationRegion> regions) {
-        final List<DartServerData.DartNavigationRegion> dartRegions = new ArrayList<>(regions.size());
-        for (NavigationRegion region : regions) {
-          if (region.getLength() > 0) {
-            dartRegions.add(DartServerData.createDartNavigationRegion(DartAnalysisServerService.this, file, region));
+            r.complete(Collections.unmodifiableList(dartRegions));
           }
-        }
 
-        resultRef.set(dartRegions);
-        latch.countDown();
-      }
-
-      @Override
-      public void onError(final RequestError error) {
-        if (RequestErrorCode.GET_NAVIGATION_INVALID_FILE.equals(error.getCode())) {
-          LOG.info(getShortErrorMessage("analysis_getNavigation()", filePath, error));
-        }
-        else {
-          logError("analysis_getNavigation()", filePath, error);
-        }
+          @Override
+          public void onError(final RequestError error) {
+            if (RequestErrorCode.GET_NAVIGATION_INVALID_FILE.equals(error.getCode())) {
+              LOG.info(getShortErrorMessage("analysis_getNavigation()", filePath, error));
+            }
+            else {
+              logError("analysis_getNavigation()", filePath, error);
+            }
 
-        latch.countDown();
-      }
-    });
+            r.fail();
+          }
+        });
+      });
 
-    awaitForLatchCheckingCanceled(server, latch, GET_NAVIGATION_TIMEOUT);
+    awaitForLatchCheckingCanceled(server, request.getLatch(), GET_NAVIGATION_TIMEOUT);
 
-    if (latch.getCount() > 0) {
+    if (!request.isDone()) {
       logTookTooLongMessage("analysis_getNavigation", GET_NAVIGATION_TIMEOUT, filePath);
     }
 
-    return resultRef.get();
+    return request.getResult();
   }
 
   @NotNull
@@ -1144,32 +1230,35 @@ public final class DartAnalysisServerService implements Disposable {
     }
 
     final String filePath = FileUtil.toSystemDependentName(file.getPath());
-    final List<SourceChange> results = new ArrayList<>();
-    final CountDownLatch latch = new CountDownLatch(1);
-    final int offset = getOriginalOffset(file, _offset);
-    final int length = getOriginalOffset(file, _offset + _length) - offset;
-    server.edit_getAssists(filePath, offset, length, new GetAssistsConsumer() {
-      @Override
-      public void computedSourceChanges(List<SourceChange> sourceChanges) {
-        results.addAll(sourceChanges);
-        latch.countDown();
-      }
 
-      @Override
-      public void onError(final RequestError error) {
-        logError("edit_getAssists()", filePath, error);
-        latch.countDown();
-      }
-    });
+    final DartServerRequestCache.Request<List<SourceChange>> request =
+      myRequestCache.getOrSend(DartServerRequestCache.Kind.ASSISTS, file, _offset, _length, r -> {
+        final int offset = getOriginalOffset(file, _offset);
+        final int length = getOriginalOffset(file, _offset + _length) - offset;
+        server.edit_getAssists(filePath, offset, length, new GetAssistsConsumer() {
+          @Override
+          public void computedSourceChanges(List<SourceChange> sourceChanges) {
+            r.complete(Collections.unmodifiableList(sourceChanges));
+          }
+
+          @Override
+          public void onError(final RequestError error) {
+            logError("edit_getAssists()", filePath, error);
+            r.fail();
+          }
+        });
+      });
 
     final long timeout = ApplicationManager.getApplication().isDispatchThread() ? GET_ASSISTS_TIMEOUT_EDT : GET_ASSISTS_TIMEOUT;
 
-    awaitForLatchCheckingCanceled(server, latch, timeout);
+    awaitForLatchCheckingCanceled(server, request.getLatch(), timeout);
 
-    if (latch.getCount() > 0) {
+    if (!request.isDone()) {
       logTookTooLongMessage("edit_getAssists", timeout, filePath);
     }
-    return results;
+
+    final List<SourceChange> results = request.getResult();
+    return results != null ? results : Collections.emptyList();
   }
 
   public boolean edit_isPostfixCompletionApplicable(VirtualFile file, int _offset, String key) {
@@ -1325,27 +1414,30 @@ public final class DartAnalysisServerService implements Disposable {
     }
 
     final String filePath = FileUtil.toSystemDependentName(file.getPath());
-    final CountDownLatch latch = new CountDownLatch(1);
-    final int offset = getOriginalOffset(file, _offset);
-    server.edit_getFixes(filePath, offset, new GetFixesConsumer() {
-      @Override
-      public void computedFixes(final List<AnalysisErrorFixes> fixes) {
-        consumer.consume(fixes);
-        latch.countDown();
-      }
 
-      @Override
-      public void onError(final RequestError error) {
-        logError("edit_getFixes()", filePath, error);
-        latch.countDown();
-      }
-    });
+    final DartServerRequestCache.Request<List<AnalysisErrorFixes>> request =
+      myRequestCache.getOrSend(DartServerRequestCache.Kind.FIXES, file, _offset, 0, r -> {
+        final int offset = getOriginalOffset(file, _offset);
+        server.edit_getFixes(filePath, offset, new GetFixesConsumer() {
+          @Override
+          public void computedFixes(final List<AnalysisErrorFixes> fixes) {
+            r.complete(Collections.unmodifiableList(fixes));
+          }
+
+          @Override
+          public void onError(final RequestError error) {
+            logError("edit_getFixes()", filePath, error);
+            r.fail();
+          }
+        });
+      });
+    request.whenCompleted(consumer::consume);
 
     final long timeout = ApplicationManager.getApplication().isDispatchThread() ? GET_FIXES_TIMEOUT_EDT : GET_FIXES_TIMEOUT;
 
-    awaitForLatchCheckingCanceled(server, latch, timeout);
+    awaitForLatchCheckingCanceled(server, request.getLatch(), timeout);
 
-    if (latch.getCount() > 0) {
+    if (!request.isDone()) {
       logTookTooLongMessage("edit_getFixes", timeout, filePath);
     }
   }
@@ -2274,6 +2366,8 @@ public final class DartAnalysisServerService implements Disposable {
       myFilePathWithOverlaidContentToTimestamp.clear();
       myVisibleFiles.clear();
       myChangedDocuments.clear();
+      myFilePathToOverlayDelta.clear();
+      myRequestCache.invalidate();
       myServerData.clearData();
       myRootsHandler.onServerStopped();
 
@@ -2477,6 +2571,59 @@ public final class DartAnalysisServerService implements Disposable {
     }
   }
 
+  /**
+   * Document edits made since the file overlay was last sent to the server. If the edits form an unbroken chain starting at the
+   * overlaid content then they are sent as {@link ChangeContentOverlay}, otherwise the whole document text is sent again.
+   */
+  private static class OverlayDelta {
+    @NotNull final List<SourceEdit> myEdits = new ArrayList<>();
+    // modification stamp of the document content that is currently overlaid on the server
+    long myBaseStamp;
+    // modification stamp of the document after the last collected edit
+    long myModificationStamp;
+    long myEditedChars;
+    int myChangesSinceCheckpoint;
+    boolean myBroken;
+
+    OverlayDelta(long modificationStamp) {
+      reset(modificationStamp, 0);
+    }
+
+    void reset(long modificationStamp, int changesSinceCheckpoint) {
+      myEdits.clear();
+      myBaseStamp = modificationStamp;
+      myModificationStamp = modificationStamp;
+      myEditedChars = 0;
+      myChangesSinceCheckpoint = changesSinceCheckpoint;
+      myBroken = false;
+    }
+
+    void addEdit(@NotNull DocumentEvent e) {
+      if (myBroken) return;
+
+      if (e.getOldTimeStamp() != myModificationStamp) {
+        // some change has been missed, full document text will be sent
+        myBroken = true;
+        myEdits.clear();
+        return;
+      }
+
+      final String replacement = e.getNewFragment().toString();
+      myEdits.add(new SourceEdit(e.getOffset(), e.getOldLength(), replacement, null));
+      myEditedChars += replacement.length();
+      myModificationStamp = e.getDocument().getModificationStamp();
+    }
+
+    boolean canBeSentAsChange(@NotNull Document document, long overlaidStamp) {
+      return !myBroken &&
+             !myEdits.isEmpty() &&
+             myBaseStamp == overlaidStamp &&
+             myModificationStamp == document.getModificationStamp() &&
+             myChangesSinceCheckpoint < OVERLAY_FULL_CONTENT_CHECKPOINT &&
+             myEditedChars < document.getTextLength();
+    }
+  }
+
   public void addOutlineListener(@NotNull final DartServerData.OutlineListener listener) {
     myServerData.addOutlineListener(listener);
   }
@@ -0,0 +1,263 @@
+// Copyright 2000-2022 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.openapi.editor.event.DocumentEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+
+/**
+ * Regions of one file packed into a single {@code int} array instead of an object per region. Each region takes {@code stride} ints:
+ * offset, length and then kind-specific values (for example highlight type id). Optional per-region objects are kept in a parallel array.
+ * <p>
+ * A table is never changed after it's built: document changes produce an updated copy that replaces the table in
+ * {@link DartServerData}, so readers don't need any lock and the lists returned by {@link #asList} stay consistent.
+ */
+final class DartRegionTable {
+  private final int myStride;
+  private final int @NotNull [] myValues;
+  private final Object @Nullable [] myObjects;
+  // changed only in a copy that hasn't been returned yet
+  private int mySize;
+
+  private DartRegionTable(int stride, int @NotNull [] values, Object @Nullable [] objects, int size) {
+    myStride = stride;
+    myValues = values;
+    myObjects = objects;
+    mySize = size;
+  }
+
+  int size() {
+    return mySize;
+  }
+
+  int getOffset(int index) {
+    return myValues[index * myStride];
+  }
+
+  int getLength(int index) {
+    return myValues[index * myStride + 1];
+  }
+
+  /**
+   * @param valueIndex index of the kind-specific value, starting from 0
+   */
+  int getValue(int index, int valueIndex) {
+    return myValues[index * myStride + 2 + valueIndex];
+  }
+
+  @Nullable
+  Object getObject(int index) {
+    return myObjects == null ? null : myObjects[index];
+  }
+
+  /**
+   * @return list view of this table that creates region objects on request
+   */
+  @NotNull
+  <T> List<T> asList(@NotNull IntFunction<? extends T> regionFactory) {
+    return new RegionList<>(regionFactory);
+  }
+
+  boolean sameRegions(@Nullable DartRegionTable other) {
+    if (other == null || other.myStride != myStride || other.mySize != mySize) return false;
+    return Arrays.equals(myValues, 0, mySize * myStride, other.myValues, 0, mySize * myStride);
+  }
+
+  /**
+   * Shifts regions after the changed text, deletes regions touched by the change.
+   *
+   * @return updated copy of this table, or this table if no region has been updated or deleted
+   */
+  @NotNull
+  DartRegionTable updateDeletingTouched(@NotNull DocumentEvent e) {
+    if (e.getNewLength() == e.getOldLength()) return this;
+    final DartRegionTable copy = copy();
+    return copy.doUpdateDeletingTouched(e) ? copy : this;
+  }
+
+  /**
+   * Shifts regions after the changed text, updates length of regions touched by the change and deletes regions which can't be updated.
+   *
+   * @return updated copy of this table, or this table if the change doesn't change the text length
+   */
+  @NotNull
+  DartRegionTable updateUpdatingTouched(@NotNull DocumentEvent e) {
+    if (e.getNewLength() == e.getOldLength()) return this;
+    final DartRegionTable copy = copy();
+    copy.doUpdateUpdatingTouched(e);
+    return copy;
+  }
+
+  @NotNull
+  private DartRegionTable copy() {
+    return new DartRegionTable(myStride,
+                               Arrays.copyOf(myValues, mySize * myStride),
+                               myObjects == null ? null : Arrays.copyOf(myObjects, mySize),
+                               mySize);
+  }
+
+  private boolean doUpdateDeletingTouched(@NotNull DocumentEvent e) {
+    final int eventOffset = e.getOffset();
+    final int deltaLength = e.getNewLength() - e.getOldLength();
+
+    final int eventRightOffset = deltaLength > 0 ? eventOffset : eventOffset - deltaLength;
+    boolean regionUpdated = false;
+    int newSize = 0;
+
+    for (int i = 0; i < mySize; i++) {
+      final int base = i * myStride;
+      final int offset = myValues[base];
+      final int length = myValues[base + 1];
+
+      if (eventRightOffset <= offset) {
+        myValues[base] = offset + deltaLength;
+        regionUpdated = true;
+      }
+      else if (eventOffset < offset + length) {
+        regionUpdated = true;
+        continue; // delete touched
+      }
+
+      moveRegion(i, newSize++);
+    }
+
+    truncate(newSize);
+    return regionUpdated;
+  }
+
+  private void doUpdateUpdatingTouched(@NotNull DocumentEvent e) {
+    final int eventOffset = e.getOffset();
+    final int deltaLength = e.getNewLength() - e.getOldLength();
+
+    int newSize = 0;
+
+    for (int i = 0; i < mySize; i++) {
+      final int base = i * myStride;
+      final int offset = myValues[base];
+      final int length = myValues[base + 1];
+
+      if (deltaLength > 0) {
+        // Something was typed. Shift untouched regions, update touched.
+        if (eventOffset <= offset) {
+          myValues[base] = offset + deltaLength;
+        }
+        else if (eventOffset < offset + length) {
+          myValues[base + 1] = length + deltaLength;
+        }
+      }
+      else {
+        // Some text was deleted. Shift untouched regions, delete or update touched.
+        final int eventRightOffset = eventOffset - deltaLength;
+        final int regionRightOffset = offset + length;
+
+        if (eventRightOffset <= offset) {
+          myValues[base] = offset + deltaLength;
+        }
+        else if (offset <= eventOffset && eventRightOffset <= regionRightOffset && length != -deltaLength) {
+          myValues[base + 1] = length + deltaLength;
+        }
+        else if (eventOffset < regionRightOffset) {
+          continue; // delete touched
+        }
+      }
+
+      moveRegion(i, newSize++);
+    }
+
+    truncate(newSize);
+  }
+
+  private void moveRegion(int from, int to) {
+    if (from == to) return;
+    System.arraycopy(myValues, from * myStride, myValues, to * myStride, myStride);
+    if (myObjects != null) {
+      myObjects[to] = myObjects[from];
+    }
+  }
+
+  private void truncate(int newSize) {
+    if (myObjects != null) {
+      Arrays.fill(myObjects, newSize, mySize, null);
+    }
+    mySize = newSize;
+  }
+
+  private final class RegionList<T> extends AbstractList<T> implements RandomAccess {
+    private final IntFunction<? extends T> myRegionFactory;
+
+    private RegionList(@NotNull IntFunction<? extends T> regionFactory) {
+      myRegionFactory = regionFactory;
+    }
+
+    @Override
+    public T get(int index) {
+      if (index < 0 || index >= mySize) throw new IndexOutOfBoundsException("Index: " + index + ", size: " + mySize);
+      return myRegionFactory.apply(index);
+    }
+
+    @Override
+    public int size() {
+      return mySize;
+    }
+  }
+
+  static final class Builder {
+    private final int myStride;
+    private int[] myValues;
+    private Object @Nullable [] myObjects;
+    private int mySize;
+
+    /**
+     * @param valueCount number of kind-specific values per region, in addition to offset and length
+     */
+    Builder(int valueCount, boolean withObjects, int expectedSize) {
+      myStride = 2 + valueCount;
+      myValues = new int[Math.max(expectedSize, 1) * myStride];
+      myObjects = withObjects ? new Object[Math.max(expectedSize, 1)] : null;
+    }
+
+    /**
+     * Adds a region; its kind-specific values are set by {@link #setValue(int, int)} after this call.
+     */
+    @NotNull
+    Builder add(int offset, int length, @Nullable Object object) {
+      if ((mySize + 1) * myStride > myValues.length) {
+        myValues = Arrays.copyOf(myValues, myValues.length * 2);
+        if (myObjects != null) {
+          myObjects = Arrays.copyOf(myObjects, myObjects.length * 2);
+        }
+      }
+
+      final int base = mySize * myStride;
+      myValues[base] = offset;
+      myValues[base + 1] = length;
+      if (myObjects != null) {
+        myObjects[mySize] = object;
+      }
+      mySize++;
+      return this;
+    }
+
+    /**
+     * Sets a kind-specific value of the last added region.
+     */
+    @NotNull
+    Builder setValue(int valueIndex, int value) {
+      myValues[(mySize - 1) * myStride + 2 + valueIndex] = value;
+      return this;
+    }
+
+    @NotNull
+    DartRegionTable build() {
+      final int[] values = myValues.length == mySize * myStride ? myValues : Arrays.copyOf(myValues, mySize * myStride);
+      final Object[] objects = myObjects == null || myObjects.length == mySize ? myObjects : Arrays.copyOf(myObjects, mySize);
+      return new DartRegionTable(myStride, values, objects, mySize);
+    }
+  }
+}
@@ -11,42 +11,64 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.NlsSafe;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.search.SearchScope;
+import com.intellij.util.ArrayUtil;
 import com.intellij.util.EventDispatcher;
 import com.intellij.util.SmartList;
+import com.intellij.util.containers.SmartHashSet;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import org.dartlang.analysis.server.protocol.*;
 import org.jetbrains.annotations.*;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class DartServerData {
   public interface OutlineListener extends EventListener {
     void outlineUpdated(@NotNull final String filePath);
   }
 
+  // highlight region types are stored as ids in DartRegionTable
+  private static final Map<String, Integer> ourHighlightTypeToId = new ConcurrentHashMap<>();
+  private static volatile String[] ourHighlightTypes = ArrayUtil.EMPTY_STRING_ARRAY;
+
   private final DartAnalysisServerService myService;
 
   private final EventDispatcher<OutlineListener> myEventDispatcher = EventDispatcher.create(OutlineListener.class);
 
-  private final Map<String, List<DartError>> myErrorData = Collections.synchronizedMap(new HashMap<>());
-  private final Map<String, List<DartHighlightRegion>> myHighlightData = Collections.synchronizedMap(new HashMap<>());
-  private final Map<String, List<DartNavigationRegion>> myNavigationData = Collections.synchronizedMap(new HashMap<>());
-  private final Map<String, List<DartOverrideMember>> myOverrideData = Collections.synchronizedMap(new HashMap<>());
-  private final Map<String, List<DartRegion>> myImplementedClassData = Collections.synchronizedMap(new HashMap<>());
-  private final Map<String, List<DartRegion>> myImplementedMemberData = Collections.synchronizedMap(new HashMap<>());
-  private final Map<String, Outline> myOutlineData = Collections.synchronizedMap(new HashMap<>());
-  private final Map<Integer, AvailableSuggestionSet> myAvailableSuggestionSetMap = Collections.synchronizedMap(new HashMap<>());
-  private final Map<String, Map<String, Map<String, Set<String>>>> myExistingImports = Collections.synchronizedMap(new HashMap<>());
+  // Region data is kept in compact per-file tables that are never changed: new data from the server and document changes
+  // replace a table as a whole, so readers don't need any lock.
+  private final Map<String, List<DartError>> myErrorData = new ConcurrentHashMap<>();
+  private final Map<String, DartRegionTable> myHighlightData = new ConcurrentHashMap<>();
+  private final Map<String, NavigationData> myNavigationData = new ConcurrentHashMap<>();
+  private final Map<String, DartRegionTable> myOverrideData = new ConcurrentHashMap<>();
+  private final Map<String, DartRegionTable> myImplementedClassData = new ConcurrentHashMap<>();
+  private final Map<String, DartRegionTable> myImplementedMemberData = new ConcurrentHashMap<>();
+  private final Map<String, Outline> myOutlineData = new ConcurrentHashMap<>();
+  private final Map<Integer, AvailableSuggestions> myAvailableSuggestionSetMap = Collections.synchronizedMap(new HashMap<>());
+  private final Map<String, ExistingImports> myExistingImports = Collections.synchronizedMap(new HashMap<>());
 
   private final Set<String> myFilePathsWithUnsentChanges = Sets.newConcurrentHashSet();
 
-  // keeps track of files in which error regions have been updated by DocumentListener
+  // keeps track of files in which error regions have been updated by DocumentListener or taken from myResultsCache
   private final Set<String> myFilePathsWithInaccurateErrorInfo = Sets.newConcurrentHashSet();
 
+  // results of the previous IDE session, used for files which haven't got any data from the server yet
+  private final @Nullable DartAnalysisResultsCache myResultsCache;
+  private final Set<String> myFilePathsCheckedInResultsCache = Sets.newConcurrentHashSet();
+
   DartServerData(@NotNull final DartAnalysisServerService service) {
     myService = service;
+    if (DartAnalysisResultsCache.isEnabled()) {
+      myResultsCache = new DartAnalysisResultsCache(service.getProject());
+      Disposer.register(service, myResultsCache);
+    }
+    else {
+      myResultsCache = null;
+    }
   }
 
   boolean isErrorInfoInaccurate(@NotNull final String filePath) {
@@ -60,17 +82,14 @@ public final class DartServerData {
   boolean computedErrors(@NotNull String filePath, @NotNull List<? extends AnalysisError> errors, boolean restartHighlighting) {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return false;
 
-    final List<DartError> newErrors = new ArrayList<>(errors.size());
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
 
-    for (AnalysisError error : errors) {
-      final int offset = myService.getConvertedOffset(file, error.getLocation().getOffset());
-      final int length = myService.getConvertedOffset(file, error.getLocation().getOffset() + error.getLocation().getLength()) - offset;
-      newErrors.add(new DartError(error, offset, length));
-    }
-
     myFilePathsWithInaccurateErrorInfo.remove(filePath);
-    myErrorData.put(filePath, newErrors);
+    myErrorData.put(filePath, convertErrors(file, errors));
+
+    if (file != null && myResultsCache != null) {
+      myResultsCache.putErrors(file, errors);
+    }
 
     if (restartHighlighting) {
       forceFileAnnotation(file, false);
@@ -79,6 +98,17 @@ public final class DartServerData {
     return true;
   }
 
+  @NotNull
+  private List<DartError> convertErrors(@Nullable VirtualFile file, @NotNull List<? extends AnalysisError> errors) {
+    final List<DartError> newErrors = new ArrayList<>(errors.size());
+    for (AnalysisError error : errors) {
+      final int offset = myService.getConvertedOffset(file, error.getLocation().getOffset());
+      final int length = myService.getConvertedOffset(file, error.getLocation().getOffset() + error.getLocation().getLength()) - offset;
+      newErrors.add(new DartError(error, offset, length));
+    }
+    return newErrors;
+  }
+
   void computedClosingLabels(@NotNull final String filePath, @NotNull final List<ClosingLabel> labels) {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return;
 
@@ -88,35 +118,48 @@ public final class DartServerData {
   void computedHighlights(@NotNull final String filePath, final @NotNull List<? extends HighlightRegion> regions) {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return;
 
-    final List<DartHighlightRegion> newRegions = new ArrayList<>(regions.size());
+    final DartRegionTable.Builder newRegions = new DartRegionTable.Builder(1, false, regions.size());
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
 
     for (HighlightRegion region : regions) {
       if (region.getLength() > 0) {
         final int offset = myService.getConvertedOffset(file, region.getOffset());
         final int length = myService.getConvertedOffset(file, region.getOffset() + region.getLength()) - offset;
-        newRegions.add(new DartHighlightRegion(offset, length, region.getType()));
+        newRegions.add(offset, length, null).setValue(0, getHighlightTypeId(region.getType()));
       }
     }
 
-    myHighlightData.put(filePath, newRegions);
+    myHighlightData.put(filePath, newRegions.build());
     forceFileAnnotation(file, false);
   }
 
   void computedNavigation(@NotNull final String filePath, final @NotNull List<? extends NavigationRegion> regions) {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return;
 
-    final List<DartNavigationRegion> newRegions = new ArrayList<>(regions.size());
+    final DartRegionTable.Builder newRegions = new DartRegionTable.Builder(2, false, regions.size());
+    // the server shares targets between regions, so do DartNavigationTargets
+    final Map<NavigationTarget, Integer> targetToIndex = new IdentityHashMap<>();
+    final List<DartNavigationTarget> targets = new ArrayList<>();
+    final IntArrayList targetIndexes = new IntArrayList(regions.size());
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
 
     for (NavigationRegion region : regions) {
       if (region.getLength() > 0) {
-        final DartNavigationRegion dartNavigationRegion = createDartNavigationRegion(myService, file, region);
-        newRegions.add(dartNavigationRegion);
+        final int offset = myService.getConvertedOffset(file, region.getOffset());
+        final int length = myService.getConvertedOffset(file, region.getOffset() + region.getLength()) - offset;
+        final List<NavigationTarget> regionTargets = region.getTargetObjects();
+        newRegions.add(offset, length, null).setValue(0, targetIndexes.size()).setValue(1, regionTargets.size());
+        for (NavigationTarget target : regionTargets) {
+          targetIndexes.add(targetToIndex.computeIfAbsent(target, t -> {
+            targets.add(new DartNavigationTarget(t));
+            return targets.size() - 1;
+          }));
+        }
       }
     }
 
-    myNavigationData.put(filePath, newRegions);
+    myNavigationData.put(filePath, new NavigationData(newRegions.build(), targetIndexes.toIntArray(),
+                                                      targets.toArray(new DartNavigationTarget[0])));
     forceFileAnnotation(file, true);
   }
 
@@ -124,6 +167,14 @@ public final class DartServerData {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return;
 
     myOutlineData.put(filePath, outline);
+
+    if (myResultsCache != null) {
+      final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
+      if (file != null) {
+        myResultsCache.putOutline(file, outline);
+      }
+    }
+
     ApplicationManager.getApplication().invokeLater(() -> myEventDispatcher.getMulticaster().outlineUpdated(filePath),
                                                     ModalityState.nonModal(),
                                                     myService.getDisposedCondition());
@@ -134,7 +185,7 @@ public final class DartServerData {
       myAvailableSuggestionSetMap.remove(id);
     }
     for (AvailableSuggestionSet suggestionSet : changed) {
-      myAvailableSuggestionSetMap.put(suggestionSet.getId(), suggestionSet);
+      myAvailableSuggestionSetMap.put(suggestionSet.getId(), new AvailableSuggestions(suggestionSet));
     }
   }
 
@@ -144,7 +195,7 @@ public final class DartServerData {
       return;
     }
 
-    myExistingImports.put(filePathSD, existingImports);
+    myExistingImports.put(filePathSD, new ExistingImports(existingImports));
   }
 
   @NotNull
@@ -163,18 +214,18 @@ public final class DartServerData {
   void computedOverrides(@NotNull final String filePath, final @NotNull List<? extends OverrideMember> overrides) {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return;
 
-    final List<DartOverrideMember> newOverrides = new ArrayList<>(overrides.size());
+    final DartRegionTable.Builder newOverrides = new DartRegionTable.Builder(0, true, overrides.size());
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
 
     for (OverrideMember override : overrides) {
       if (override.getLength() > 0) {
         final int offset = myService.getConvertedOffset(file, override.getOffset());
         final int length = myService.getConvertedOffset(file, override.getOffset() + override.getLength()) - offset;
-        newOverrides.add(new DartOverrideMember(offset, length, override.getSuperclassMember(), override.getInterfaceMembers()));
+        newOverrides.add(offset, length, override);
       }
     }
 
-    myOverrideData.put(filePath, newOverrides);
+    myOverrideData.put(filePath, newOverrides.build());
     forceFileAnnotation(file, false);
   }
 
@@ -185,29 +236,31 @@ public final class DartServerData {
 
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
 
-    final List<DartRegion> newImplementedClasses = new ArrayList<>(implementedClasses.size());
+    final DartRegionTable.Builder classesBuilder = new DartRegionTable.Builder(0, false, implementedClasses.size());
     for (ImplementedClass implementedClass : implementedClasses) {
       final int offset = myService.getConvertedOffset(file, implementedClass.getOffset());
       final int length = myService.getConvertedOffset(file, implementedClass.getOffset() + implementedClass.getLength()) - offset;
-      newImplementedClasses.add(new DartRegion(offset, length));
+      classesBuilder.add(offset, length, null);
     }
+    final DartRegionTable newImplementedClasses = classesBuilder.build();
 
-    final List<DartRegion> newImplementedMembers = new ArrayList<>(implementedMembers.size());
+    final DartRegionTable.Builder membersBuilder = new DartRegionTable.Builder(0, false, implementedMembers.size());
     for (ImplementedMember implementedMember : implementedMembers) {
       final int offset = myService.getConvertedOffset(file, implementedMember.getOffset());
       final int length = myService.getConvertedOffset(file, implementedMember.getOffset() + implementedMember.getLength()) - offset;
-      newImplementedMembers.add(new DartRegion(offset, length));
+      membersBuilder.add(offset, length, null);
     }
+    final DartRegionTable newImplementedMembers = membersBuilder.build();
 
     boolean hasChanges = false;
-    final List<DartRegion> oldClasses = myImplementedClassData.get(filePath);
-    if (oldClasses == null || !oldClasses.equals(newImplementedClasses)) {
+    final DartRegionTable oldClasses = myImplementedClassData.get(filePath);
+    if (!newImplementedClasses.sameRegions(oldClasses)) {
       hasChanges = true;
       myImplementedClassData.put(filePath, newImplementedClasses);
     }
 
-    final List<DartRegion> oldMembers = myImplementedMemberData.get(filePath);
-    if (oldMembers == null || !oldMembers.equals(newImplementedMembers)) {
+    final DartRegionTable oldMembers = myImplementedMemberData.get(filePath);
+    if (!newImplementedMembers.sameRegions(oldMembers)) {
       hasChanges = true;
       myImplementedMemberData.put(filePath, newImplementedMembers);
     }
@@ -221,12 +274,10 @@ public final class DartServerData {
   List<DartError> getErrors(@NotNull final SearchScope scope) {
     final List<DartError> errors = new ArrayList<>();
 
-    synchronized (myErrorData) {
-      for (Map.Entry<String, List<DartError>> entry : myErrorData.entrySet()) {
-        final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(entry.getKey());
-        if (file != null && scope.contains(file)) {
-          errors.addAll(entry.getValue());
-        }
+    for (Map.Entry<String, List<DartError>> entry : myErrorData.entrySet()) {
+      final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(entry.getKey());
+      if (file != null && scope.contains(file)) {
+        errors.addAll(entry.getValue());
       }
     }
 
@@ -235,43 +286,92 @@ public final class DartServerData {
 
   @NotNull
   List<DartError> getErrors(@NotNull final VirtualFile file) {
-    final List<DartError> errors = myErrorData.get(file.getPath());
+    List<DartError> errors = myErrorData.get(file.getPath());
+    if (errors == null && loadFromResultsCache(file)) {
+      errors = myErrorData.get(file.getPath());
+    }
     return errors != null ? errors : Collections.emptyList();
   }
 
   @NotNull
   List<DartHighlightRegion> getHighlight(@NotNull final VirtualFile file) {
-    final List<DartHighlightRegion> regions = myHighlightData.get(file.getPath());
-    return regions != null ? regions : Collections.emptyList();
+    final DartRegionTable regions = myHighlightData.get(file.getPath());
+    if (regions == null) return Collections.emptyList();
+    return regions.asList(i -> new DartHighlightRegion(regions.getOffset(i), regions.getLength(i), getHighlightType(regions.getValue(i, 0))));
   }
 
   @NotNull
   List<DartNavigationRegion> getNavigation(@NotNull final VirtualFile file) {
-    final List<DartNavigationRegion> regions = myNavigationData.get(file.getPath());
-    return regions != null ? regions : Collections.emptyList();
+    final NavigationData data = myNavigationData.get(file.getPath());
+    return data != null ? data.asList() : Collections.emptyList();
   }
 
   @NotNull
   List<DartOverrideMember> getOverrideMembers(@NotNull final VirtualFile file) {
-    final List<DartOverrideMember> regions = myOverrideData.get(file.getPath());
-    return regions != null ? regions : Collections.emptyList();
+    final DartRegionTable regions = myOverrideData.get(file.getPath());
+    if (regions == null) return Collections.emptyList();
+    return regions.asList(i -> {
+      final OverrideMember override = (OverrideMember)regions.getObject(i);
+      assert override != null;
+      return new DartOverrideMember(regions.getOffset(i), regions.getLength(i), override.getSuperclassMember(),
+                                    override.getInterfaceMembers());
+    });
   }
 
   @NotNull
   List<DartRegion> getImplementedClasses(@NotNull final VirtualFile file) {
-    final List<DartRegion> classes = myImplementedClassData.get(file.getPath());
-    return classes != null ? classes : Collections.emptyList();
+    return getPlainRegions(myImplementedClassData.get(file.getPath()));
   }
 
   @NotNull
   List<DartRegion> getImplementedMembers(@NotNull final VirtualFile file) {
-    final List<DartRegion> classes = myImplementedMemberData.get(file.getPath());
-    return classes != null ? classes : Collections.emptyList();
+    return getPlainRegions(myImplementedMemberData.get(file.getPath()));
+  }
+
+  @NotNull
+  private static List<DartRegion> getPlainRegions(@Nullable final DartRegionTable regions) {
+    if (regions == null) return Collections.emptyList();
+    return regions.asList(i -> new DartRegion(regions.getOffset(i), regions.getLength(i)));
   }
 
   @Nullable
   Outline getOutline(@NotNull final VirtualFile file) {
-    return myOutlineData.get(file.getPath());
+    final Outline outline = myOutlineData.get(file.getPath());
+    if (outline == null && loadFromResultsCache(file)) {
+      return myOutlineData.get(file.getPath());
+    }
+    return outline;
+  }
+
+  /**
+   * Makes results of the previous IDE session available for the file until the server sends fresh ones. Each file is looked up in the
+   * cache only once.
+   *
+   * @return {@code true} if anything has been taken from the cache
+   */
+  private boolean loadFromResultsCache(@NotNull final VirtualFile file) {
+    final String filePath = file.getPath();
+    if (myResultsCache == null || !myFilePathsCheckedInResultsCache.add(filePath)) return false;
+    if (myFilePathsWithUnsentChanges.contains(filePath)) return false;
+
+    final DartAnalysisResultsCache.CachedResults results = myResultsCache.get(file);
+    if (results == null) return false;
+
+    boolean loaded = false;
+
+    final List<AnalysisError> errors = results.getErrors();
+    if (errors != null && myErrorData.putIfAbsent(filePath, convertErrors(file, errors)) == null) {
+      // make sure that server data replaces cached errors even if it's equal to the errors known in this session
+      myFilePathsWithInaccurateErrorInfo.add(filePath);
+      loaded = true;
+    }
+
+    final Outline outline = results.getOutline();
+    if (outline != null && myOutlineData.putIfAbsent(filePath, outline) == null) {
+      loaded = true;
+    }
+
+    return loaded;
   }
 
   void addOutlineListener(@NotNull final OutlineListener listener) {
@@ -284,6 +384,12 @@ public final class DartServerData {
 
   @Nullable
   AvailableSuggestionSet getAvailableSuggestionSet(int id) {
+    final AvailableSuggestions suggestions = myAvailableSuggestionSetMap.get(id);
+    return suggestions != null ? suggestions.getSuggestionSet() : null;
+  }
+
+  @Nullable
+  AvailableSuggestions getAvailableSuggestions(int id) {
     return myAvailableSuggestionSetMap.get(id);
   }
 
@@ -300,6 +406,12 @@ public final class DartServerData {
 
   @Nullable
   Map<String, Map<String, Set<String>>> getExistingImports(@Nullable String filePathSD) {
+    final ExistingImports existingImports = getExistingImportsIndex(filePathSD);
+    return existingImports != null ? existingImports.myImports : null;
+  }
+
+  @Nullable
+  ExistingImports getExistingImportsIndex(@Nullable String filePathSD) {
     if (filePathSD == null) return null;
     return myExistingImports.get(filePathSD);
   }
@@ -338,6 +450,12 @@ public final class DartServerData {
   }
 
   void onFlushedResults(@NotNull final List<String> filePaths) {
+    if (myResultsCache != null) {
+      for (String filePath : filePaths) {
+        myResultsCache.remove(filePath);
+      }
+    }
+
     removeAllFromMap(myErrorData, filePaths);
     removeAllFromMap(myHighlightData, filePaths);
     removeAllFromMap(myNavigationData, filePaths);
@@ -364,6 +482,7 @@ public final class DartServerData {
     myImplementedMemberData.clear();
     myOutlineData.clear();
     myAvailableSuggestionSetMap.clear();
+    myFilePathsCheckedInResultsCache.clear();
   }
 
   void onDocumentChanged(@NotNull final DocumentEvent e) {
@@ -371,25 +490,34 @@ public final class DartServerData {
     if (!DartAnalysisServerService.isLocalAnalyzableFile(file)) return;
 
     final String filePath = file.getPath();
-    myFilePathsWithUnsentChanges.add(filePath);
+    if (myFilePathsWithUnsentChanges.add(filePath) && myResultsCache != null) {
+      myResultsCache.remove(filePath);
+    }
 
-    boolean regionsUpdated = updateRegionsDeletingTouched(filePath, myErrorData.get(filePath), e);
+    boolean regionsUpdated = updateRegionsDeletingTouched(myErrorData.get(filePath), e);
     if (regionsUpdated) {
       myFilePathsWithInaccurateErrorInfo.add(filePath);
     }
-    updateRegionsUpdatingTouched(myHighlightData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myNavigationData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myOverrideData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myImplementedClassData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myImplementedMemberData.get(filePath), e);
+
+    myHighlightData.computeIfPresent(filePath, (path, highlights) -> highlights.updateUpdatingTouched(e));
+    myNavigationData.computeIfPresent(filePath, (path, navigation) -> navigation.onDocumentChanged(filePath, e));
+
+    updateRegionsDeletingTouched(myOverrideData, filePath, e);
+    updateRegionsDeletingTouched(myImplementedClassData, filePath, e);
+    updateRegionsDeletingTouched(myImplementedMemberData, filePath, e);
     // A bit outdated outline data is not a big problem, updated data will come shortly
   }
 
+  private static void updateRegionsDeletingTouched(@NotNull final Map<String, DartRegionTable> data,
+                                                   @NotNull final String filePath,
+                                                   @NotNull final DocumentEvent e) {
+    data.computeIfPresent(filePath, (path, regions) -> regions.updateDeletingTouched(e));
+  }
+
   /**
    * @return {@code true} if at least one region has been updated or deleted, {@code false} if nothing done at all
    */
-  private static boolean updateRegionsDeletingTouched(@NotNull final String filePath,
-                                                      @Nullable final List<? extends DartRegion> regions,
+  private static boolean updateRegionsDeletingTouched(@Nullable final List<? extends DartRegion> regions,
                                                       @NotNull final DocumentEvent e) {
     if (regions == null) return false;
 
@@ -403,15 +531,6 @@ public final class DartServerData {
     while (iterator.hasNext()) {
       final DartRegion region = iterator.next();
 
-      if (region instanceof DartNavigationRegion) {
-        // may be we'd better delete target touched by editing?
-        for (DartNavigationTarget target : ((DartNavigationRegion)region).getTargets()) {
-          if (target.myFile.equals(filePath) && target.myConvertedOffset >= eventOffset) {
-            target.myConvertedOffset += deltaLength;
-          }
-        }
-      }
-
       if (deltaLength > 0) {
         // Something was typed. Shift untouched regions, delete touched.
         if (eventOffset <= region.myOffset) {
@@ -441,42 +560,135 @@ public final class DartServerData {
     return regionUpdated;
   }
 
-  private static void updateRegionsUpdatingTouched(@Nullable final List<? extends DartRegion> regions,
-                                                   @NotNull final DocumentEvent e) {
-    if (regions == null) return;
+  private static int getHighlightTypeId(@NotNull final String type) {
+    final Integer id = ourHighlightTypeToId.get(type);
+    if (id != null) return id;
 
-    final int eventOffset = e.getOffset();
-    final int deltaLength = e.getNewLength() - e.getOldLength();
+    synchronized (ourHighlightTypeToId) {
+      final Integer existingId = ourHighlightTypeToId.get(type);
+      if (existingId != null) return existingId;
 
-    final Iterator<? extends DartRegion> iterator = regions.iterator();
-    while (iterator.hasNext()) {
-      final DartRegion region = iterator.next();
+      final String[] types = ArrayUtil.append(ourHighlightTypes, type.intern());
+      ourHighlightTypes = types;
+      ourHighlightTypeToId.put(type, types.length - 1);
+      return types.length - 1;
+    }
+  }
 
-      if (deltaLength > 0) {
-        // Something was typed. Shift untouched regions, update touched.
-        if (eventOffset <= region.myOffset) {
-          region.myOffset += deltaLength;
+  @NotNull
+  private static String getHighlightType(final int id) {
+    return ourHighlightTypes[id];
+  }
+
+  /**
+   * Navigation regions of a file. Targets are shared between regions the same way as in the server notification,
+   * each region refers to a range in {@link #myTargetIndexes}.
+   */
+  private static final class NavigationData {
+    // region values: offset, length, start in myTargetIndexes, number of targets
+    @NotNull private final DartRegionTable myRegions;
+    private final int @NotNull [] myTargetIndexes;
+    private final DartNavigationTarget @NotNull [] myTargets;
+
+    private NavigationData(@NotNull DartRegionTable regions,
+                           int @NotNull [] targetIndexes,
+                           DartNavigationTarget @NotNull [] targets) {
+      myRegions = regions;
+      myTargetIndexes = targetIndexes;
+      myTargets = targets;
+    }
+
+    @NotNull
+    private List<DartNavigationRegion> asList() {
+      return myRegions.asList(i -> {
+        final int start = myRegions.getValue(i, 0);
+        final int count = myRegions.getValue(i, 1);
+        final List<DartNavigationTarget> targets = new SmartList<>();
+        for (int j = start; j < start + count; j++) {
+          targets.add(myTargets[myTargetIndexes[j]]);
         }
-        else if (eventOffset < region.myOffset + region.myLength) {
-          region.myLength += deltaLength;
+        return new DartNavigationRegion(myRegions.getOffset(i), myRegions.getLength(i), targets);
+      });
+    }
+
+    /**
+     * @return updated copy of this data, the targets that are shifted by the change are copied as well
+     */
+    @NotNull
+    private NavigationData onDocumentChanged(@NotNull final String filePath, @NotNull final DocumentEvent e) {
+      final int eventOffset = e.getOffset();
+      final int deltaLength = e.getNewLength() - e.getOldLength();
+      if (deltaLength == 0) return this;
+
+      // may be we'd better delete target touched by editing?
+      final DartNavigationTarget[] targets = myTargets.clone();
+      for (int i = 0; i < targets.length; i++) {
+        final DartNavigationTarget target = targets[i];
+        if (target.myFile.equals(filePath) && target.myConvertedOffset >= eventOffset) {
+          targets[i] = new DartNavigationTarget(target, target.myConvertedOffset + deltaLength);
         }
       }
-      else if (deltaLength < 0) {
-        // Some text was deleted. Shift untouched regions, delete or update touched.
-        final int eventRightOffset = eventOffset - deltaLength;
-        final int regionRightOffset = region.myOffset + region.myLength;
 
-        if (eventRightOffset <= region.myOffset) {
-          region.myOffset += deltaLength;
-        }
-        else if (region.myOffset <= eventOffset && eventRightOffset <= regionRightOffset && region.myLength != -deltaLength) {
-          region.myLength += deltaLength;
-        }
-        else if (eventOffset < regionRightOffset) {
-          iterator.remove();
+      return new NavigationData(myRegions.updateDeletingTouched(e), myTargetIndexes, targets);
+    }
+  }
+
+  /**
+   * An {@link AvailableSuggestionSet} with its items partitioned by element kind, done once when the set comes from the server,
+   * so that completion looks only at the suggestions of the requested kinds.
+   */
+  public static final class AvailableSuggestions {
+    @NotNull private final AvailableSuggestionSet mySuggestionSet;
+    @NotNull private final Map<String, List<AvailableSuggestion>> myItemsByKind = new HashMap<>();
+
+    private AvailableSuggestions(@NotNull AvailableSuggestionSet suggestionSet) {
+      mySuggestionSet = suggestionSet;
+      for (AvailableSuggestion suggestion : suggestionSet.getItems()) {
+        myItemsByKind.computeIfAbsent(suggestion.getElement().getKind(), kind -> new ArrayList<>()).add(suggestion);
+      }
+    }
+
+    @NotNull
+    public AvailableSuggestionSet getSuggestionSet() {
+      return mySuggestionSet;
+    }
+
+    @NotNull
+    public List<AvailableSuggestion> getItems(@NotNull String kind) {
+      return myItemsByKind.getOrDefault(kind, Collections.emptyList());
+    }
+  }
+
+  /**
+   * Existing imports of a library as sent by the server (imported library URI -> declaring library URI -> names), together with
+   * the inverted index (declaring library URI -> name -> imported library URIs) that completion needs for each suggestion.
+   */
+  public static final class ExistingImports {
+    @NotNull private final Map<String, Map<String, Set<String>>> myImports;
+    @NotNull private final Map<String, Map<String, Set<String>>> myImportingLibraries = new HashMap<>();
+
+    private ExistingImports(@NotNull Map<String, Map<String, Set<String>>> imports) {
+      myImports = imports;
+      for (Map.Entry<String, Map<String, Set<String>>> importEntry : imports.entrySet()) {
+        final String importedLibraryUri = importEntry.getKey();
+        for (Map.Entry<String, Set<String>> declaringEntry : importEntry.getValue().entrySet()) {
+          final Map<String, Set<String>> byName = myImportingLibraries.computeIfAbsent(declaringEntry.getKey(), uri -> new HashMap<>());
+          for (String name : declaringEntry.getValue()) {
+            byName.computeIfAbsent(name, n -> new SmartHashSet<>()).add(importedLibraryUri);
+          }
         }
       }
     }
+
+    /**
+     * @return URIs of the imported libraries that expose the name declared in the given library
+     */
+    @NotNull
+    public Set<String> getImportingLibraries(@NotNull String declaringLibraryUri, @NotNull String name) {
+      final Map<String, Set<String>> byName = myImportingLibraries.get(declaringLibraryUri);
+      final Set<String> result = byName != null ? byName.get(name) : null;
+      return result != null ? result : Collections.emptySet();
+    }
   }
 
   public static class DartRegion {
@@ -512,7 +724,7 @@ public final class DartServerData {
 
     private DartHighlightRegion(final int offset, final int length, @NotNull final String type) {
       super(offset, length);
-      this.type = type.intern();
+      this.type = type;
     }
 
     public String getType() {
@@ -622,6 +834,13 @@ public final class DartServerData {
       myKind = target.getKind().intern();
     }
 
+    private DartNavigationTarget(@NotNull final DartNavigationTarget target, final int convertedOffset) {
+      myFile = target.myFile;
+      myOriginalOffset = target.myOriginalOffset;
+      myKind = target.myKind;
+      myConvertedOffset = convertedOffset;
+    }
+
     public String getFile() {
       return myFile;
     }
@@ -0,0 +1,243 @@
+// Copyright 2000-2022 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Shares Analysis Server requests that are made for the same file, offset and document modification stamp. While a request is in
+ * flight, all callers wait for the same response; when it's received, it's kept until anything that may affect it changes.
+ * <p>
+ * Responses depend not only on the file itself, so the whole cache is invalidated on any document change and whenever the server
+ * reports new analysis results.
+ */
+final class DartServerRequestCache {
+  enum Kind {
+    HOVER("analysis.getHover"),
+    NAVIGATION("analysis.getNavigation"),
+    ASSISTS("edit.getAssists"),
+    FIXES("edit.getFixes");
+
+    private final @NonNls String myMethodName;
+
+    Kind(@NonNls @NotNull String methodName) {
+      myMethodName = methodName;
+    }
+  }
+
+  private static final int MAX_ENTRIES_PER_KIND = 16;
+  // a request that hasn't got a response during this time is not shared anymore, the next caller sends a new one
+  private static final long IN_FLIGHT_REQUEST_EXPIRATION_NANOS = TimeUnit.SECONDS.toNanos(5);
+  // upper bounds of latency histogram buckets, in ms; the last bucket is for all longer requests
+  private static final long[] LATENCY_BUCKETS = {10, 50, 100, 250, 500, 1000};
+
+  private final Object myLock = new Object();
+  private final Map<Kind, LinkedHashMap<Key, Request<?>>> myRequests = new EnumMap<>(Kind.class);
+  private final Map<Kind, Statistics> myStatistics = new EnumMap<>(Kind.class);
+
+  DartServerRequestCache() {
+    for (Kind kind : Kind.values()) {
+      myRequests.put(kind, new LinkedHashMap<>(MAX_ENTRIES_PER_KIND, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Request<?>> eldest) {
+          return size() > MAX_ENTRIES_PER_KIND;
+        }
+      });
+      myStatistics.put(kind, new Statistics());
+    }
+  }
+
+  /**
+   * Returns a request that is already done or in flight for the same arguments, or registers a new one and passes it to
+   * {@code sender}, which is expected to send it to the server and call {@link Request#complete} or {@link Request#fail} later.
+   */
+  @NotNull
+  <T> Request<T> getOrSend(@NotNull Kind kind,
+                           @NotNull VirtualFile file,
+                           int offset,
+                           int length,
+                           @NotNull Consumer<? super Request<T>> sender) {
+    final Key key = new Key(file.getPath(), offset, length, getModificationStamp(file));
+    final Statistics statistics = myStatistics.get(kind);
+    final Request<T> request;
+
+    synchronized (myLock) {
+      final LinkedHashMap<Key, Request<?>> requests = myRequests.get(kind);
+      //noinspection unchecked
+      final Request<T> existing = (Request<T>)requests.get(key);
+      if (existing != null && (existing.isDone() || !existing.isExpired())) {
+        statistics.myCounters.incrementAndGet(existing.isDone() ? Statistics.HITS : Statistics.SHARED);
+        return existing;
+      }
+
+      request = new Request<>(this, kind, key);
+      requests.put(key, request);
+    }
+
+    statistics.myCounters.incrementAndGet(Statistics.MISSES);
+    sender.accept(request);
+    return request;
+  }
+
+  void invalidate() {
+    synchronized (myLock) {
+      for (LinkedHashMap<Key, Request<?>> requests : myRequests.values()) {
+        requests.clear();
+      }
+    }
+  }
+
+  private void onRequestFailed(@NotNull Request<?> request) {
+    // errors are not cached, next call will ask the server again
+    synchronized (myLock) {
+      myRequests.get(request.myKind).remove(request.myKey, request);
+    }
+  }
+
+  @NotNull
+  String getStatistics() {
+    final StringBuilder builder = new StringBuilder();
+    for (Kind kind : Kind.values()) {
+      final AtomicLongArray counters = myStatistics.get(kind).myCounters;
+      builder.append(kind.myMethodName)
+        .append(": hits=").append(counters.get(Statistics.HITS))
+        .append(", shared=").append(counters.get(Statistics.SHARED))
+        .append(", misses=").append(counters.get(Statistics.MISSES))
+        .append(", latency ms [");
+      for (int i = 0; i <= LATENCY_BUCKETS.length; i++) {
+        if (i > 0) builder.append(", ");
+        builder.append(i < LATENCY_BUCKETS.length ? "<" + LATENCY_BUCKETS[i] : ">=" + LATENCY_BUCKETS[i - 1])
+          .append(": ").append(counters.get(Statistics.LATENCY_BUCKETS_START + i));
+      }
+      builder.append("]\n");
+    }
+    return builder.toString();
+  }
+
+  private static long getModificationStamp(@NotNull VirtualFile file) {
+    final Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+    return document != null ? document.getModificationStamp() : file.getModificationStamp();
+  }
+
+  static final class Request<T> {
+    private final @NotNull DartServerRequestCache myCache;
+    private final @NotNull Kind myKind;
+    private final @NotNull Key myKey;
+    private final long myStartTime = System.nanoTime();
+    private final CountDownLatch myLatch = new CountDownLatch(1);
+    private final CompletableFuture<T> myFuture = new CompletableFuture<>();
+
+    private Request(@NotNull DartServerRequestCache cache, @NotNull Kind kind, @NotNull Key key) {
+      myCache = cache;
+      myKind = kind;
+      myKey = key;
+    }
+
+    /**
+     * Counted down when the response or an error is received.
+     */
+    @NotNull
+    CountDownLatch getLatch() {
+      return myLatch;
+    }
+
+    boolean isDone() {
+      return myLatch.getCount() == 0;
+    }
+
+    private boolean isExpired() {
+      return System.nanoTime() - myStartTime > IN_FLIGHT_REQUEST_EXPIRATION_NANOS;
+    }
+
+    /**
+     * @return the response, or {@code null} if the server hasn't responded yet or responded with an error
+     */
+    @Nullable
+    T getResult() {
+      return myFuture.getNow(null);
+    }
+
+    /**
+     * Calls {@code consumer} when the response is received, right now if it's already there. Not called on errors.
+     */
+    void whenCompleted(@NotNull Consumer<? super T> consumer) {
+      myFuture.thenAccept(result -> {
+        if (result != null) consumer.accept(result);
+      });
+    }
+
+    void complete(@NotNull T result) {
+      myCache.myStatistics.get(myKind).recordLatency(System.nanoTime() - myStartTime);
+      myFuture.complete(result);
+      myLatch.countDown();
+    }
+
+    void fail() {
+      myCache.onRequestFailed(this);
+      myFuture.complete(null);
+      myLatch.countDown();
+    }
+  }
+
+  private static final class Statistics {
+    private static final int HITS = 0;
+    private static final int SHARED = 1;
+    private static final int MISSES = 2;
+    private static final int LATENCY_BUCKETS_START = 3;
+
+    private final AtomicLongArray myCounters = new AtomicLongArray(LATENCY_BUCKETS_START + LATENCY_BUCKETS.length + 1);
+
+    private void recordLatency(long nanos) {
+      final long millis = nanos / 1_000_000;
+      int bucket = 0;
+      while (bucket < LATENCY_BUCKETS.length && millis >= LATENCY_BUCKETS[bucket]) {
+        bucket++;
+      }
+      myCounters.incrementAndGet(LATENCY_BUCKETS_START + bucket);
+    }
+  }
+
+  private static final class Key {
+    private final @NotNull String myFilePath;
+    private final int myOffset;
+    private final int myLength;
+    private final long myModificationStamp;
+
+    private Key(@NotNull String filePath, int offset, int length, long modificationStamp) {
+      myFilePath = filePath;
+      myOffset = offset;
+      myLength = length;
+      myModificationStamp = modificationStamp;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      final Key key = (Key)o;
+      return myOffset == key.myOffset &&
+             myLength == key.myLength &&
+             myModificationStamp == key.myModificationStamp &&
+             myFilePath.equals(key.myFilePath);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myFilePath, myOffset, myLength, myModificationStamp);
+    }
+  }
+}
@@ -1,74 +1,127 @@
 // Copyright 2000-2019 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package com.jetbrains.lang.dart.coverage;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.intellij.openapi.progress.ProgressManager;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.*;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
-public class DartCoverageData {
-  @Nullable private List<DartFileCoverageData> coverage;
+/**
+ * Line hits from a coverage JSON file written by {@code package:coverage}, merged across isolates. The file is read as a stream and
+ * the hits of each entry go straight into an array indexed by line number, so neither the JSON tree nor boxed maps are built.
+ */
+public final class DartCoverageData {
+  private final Map<String, FileHits> myFiles = new HashMap<>();
 
-  @Nullable
-  public List<DartFileCoverageData> getCoverage() {
-    return coverage;
-  }
-
-  public void setCoverage(@Nullable List<DartFileCoverageData> coverage) {
-    this.coverage = coverage;
+  private DartCoverageData() {
   }
 
   @NotNull
-  public Map<String, SortedMap<Integer, Integer>> getMergedDartFileCoverageData() {
-    Map<String, SortedMap<Integer, Integer>> mergedCoverageData = new HashMap<>();
-    List<DartFileCoverageData> coverageData = getCoverage();
-    if (coverageData != null) {
-      for (DartFileCoverageData item : coverageData) {
-        String source = item.getSource();
-        if (source == null) {
-          continue;
-        }
-        SortedMap<Integer, Integer> fileData = mergedCoverageData.computeIfAbsent(source, k -> new TreeMap<>());
-        List<Integer> hits = item.getHits();
-        if (hits == null) {
-          continue;
-        }
-        for (int i = 0; i < hits.size(); i += 2) {
-          Integer lineNumber = hits.get(i);
-          Integer hitCount = hits.get(i + 1);
-          if (!fileData.containsKey(lineNumber)) {
-            fileData.put(lineNumber, 0);
+  public static DartCoverageData read(@NotNull Reader reader) throws IOException {
+    DartCoverageData data = new DartCoverageData();
+    try (JsonReader json = new JsonReader(reader)) {
+      json.beginObject();
+      while (json.hasNext()) {
+        if (json.nextName().equals("coverage") && json.peek() == JsonToken.BEGIN_ARRAY) {
+          json.beginArray();
+          while (json.hasNext()) {
+            ProgressManager.checkCanceled();
+            data.readFileCoverage(json);
           }
-
-          fileData.put(lineNumber, fileData.get(lineNumber) + hitCount);
+          json.endArray();
+        }
+        else {
+          json.skipValue();
         }
       }
+      json.endObject();
     }
-
-    return mergedCoverageData;
+    return data;
   }
-}
 
+  private void readFileCoverage(@NotNull JsonReader json) throws IOException {
+    String source = null;
+    // [line, count, line, count, ...], buffered only if "hits" comes before "source"
+    FileHits hits = null;
 
-class DartFileCoverageData {
-  @Nullable private String source;
-  @Nullable private List<Integer> hits;
+    json.beginObject();
+    while (json.hasNext()) {
+      String name = json.nextName();
+      if (name.equals("source") && json.peek() == JsonToken.STRING) {
+        source = json.nextString();
+      }
+      else if (name.equals("hits") && json.peek() == JsonToken.BEGIN_ARRAY) {
+        hits = source != null ? myFiles.computeIfAbsent(source, s -> new FileHits()) : new FileHits();
+        json.beginArray();
+        while (json.hasNext()) {
+          int line = json.nextInt();
+          if (!json.hasNext()) break;
+          hits.add(line, json.nextInt());
+        }
+        json.endArray();
+      }
+      else {
+        json.skipValue();
+      }
+    }
+    json.endObject();
 
-  @Nullable
-  public String getSource() {
-    return source;
+    if (source == null) return;
+    FileHits fileHits = myFiles.computeIfAbsent(source, s -> new FileHits());
+    if (hits != null && hits != fileHits) {
+      fileHits.addAll(hits);
+    }
   }
 
-  public void setSource(@Nullable String source) {
-    this.source = source;
+  /**
+   * @return URIs of the covered files
+   */
+  @NotNull
+  public Iterable<String> getSources() {
+    return myFiles.keySet();
   }
 
-  @Nullable
-  public List<Integer> getHits() {
-    return hits;
+  /**
+   * @return hit counts indexed by line number, {@link FileHits#NO_DATA} for lines without coverage data; the last element is the
+   * last line with data
+   */
+  public int @Nullable [] getLineHits(@NotNull String source) {
+    FileHits fileHits = myFiles.get(source);
+    return fileHits == null ? null : fileHits.toArray();
   }
 
-  public void setHits(@Nullable List<Integer> hits) {
-    this.hits = hits;
+  static final class FileHits {
+    static final int NO_DATA = -1;
+
+    private int[] myHits = new int[0];
+    private int myLastLine = -1;
+
+    void add(int line, int count) {
+      if (line < 0) return;
+      if (line >= myHits.length) {
+        int oldLength = myHits.length;
+        myHits = Arrays.copyOf(myHits, Math.max(line + 1, oldLength * 2));
+        Arrays.fill(myHits, oldLength, myHits.length, NO_DATA);
+      }
+      myHits[line] = Math.max(myHits[line], 0) + count;
+      myLastLine = Math.max(myLastLine, line);
+    }
+
+    void addAll(@NotNull FileHits other) {
+      for (int line = 0; line <= other.myLastLine; line++) {
+        if (other.myHits[line] != NO_DATA) add(line, other.myHits[line]);
+      }
+    }
+
+    int @NotNull [] toArray() {
+      return Arrays.copyOf(myHits, myLastLine + 1);
+    }
   }
-}
\ No newline at end of file
+}
@@ -38,6 +38,7 @@ import com.intellij.util.ProcessingContext;
 import com.jetbrains.lang.dart.DartBundle;
 import com.jetbrains.lang.dart.DartLanguage;
 import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
+import com.jetbrains.lang.dart.analyzer.DartServerData;
 import com.jetbrains.lang.dart.assists.AssistUtils;
 import com.jetbrains.lang.dart.assists.DartSourceEditException;
 import com.jetbrains.lang.dart.ide.codeInsight.DartCodeInsightSettings;
@@ -136,43 +137,33 @@ public final class DartServerCompletionContributor extends CompletionContributor
                    return;
                  }
 
-                 final AvailableSuggestionSet suggestionSet = das.getAvailableSuggestionSet(includedSet.getId());
-                 if (suggestionSet == null) {
+                 final DartServerData.AvailableSuggestions suggestions = das.getAvailableSuggestions(includedSet.getId());
+                 if (suggestions == null) {
                    return;
                  }
 
-                 Map<String, Map<String, Set<String>>> existingImports = das.getExistingImports(libraryFilePathSD);
-                 for (AvailableSuggestion suggestion : suggestionSet.getItems()) {
-                   final String kind = suggestion.getElement().getKind();
-                   if (!includedKinds.contains(kind)) {
-                     continue;
-                   }
-
-                   Set<String> importedLibraries = new HashSet<>();
-                   if (existingImports != null) {
-                     for (Map.Entry<String, Map<String, Set<String>>> entry : existingImports.entrySet()) {
-                       String importedLibraryUri = entry.getKey();
-                       Map<String, Set<String>> importedLibrary = entry.getValue();
-                       Set<String> names = importedLibrary.get(suggestion.getDeclaringLibraryUri());
-                       if (names != null && names.contains(suggestion.getLabel())) {
-                         importedLibraries.add(importedLibraryUri);
+                 final AvailableSuggestionSet suggestionSet = suggestions.getSuggestionSet();
+                 final DartServerData.ExistingImports existingImports = das.getExistingImportsIndex(libraryFilePathSD);
+                 for (String kind : includedKinds) {
+                   for (AvailableSuggestion suggestion : suggestions.getItems(kind)) {
+                     if (existingImports != null) {
+                       Set<String> importedLibraries =
+                         existingImports.getImportingLibraries(suggestion.getDeclaringLibraryUri(), suggestion.getLabel());
+                       if (!importedLibraries.isEmpty() && !importedLibraries.contains(suggestionSet.getUri())) {
+                         // If some library exports this label but the current suggestion set does not, we should filter.
+                         continue;
                        }
                      }
-                   }
 
-                   if (!importedLibraries.isEmpty() && !importedLibraries.contains(suggestionSet.getUri())) {
-                     // If some library exports this label but the current suggestion set does not, we should filter.
-                     continue;
-                   }
-
-                   CompletionSuggestion completionSuggestion =
-                     createCompletionSuggestionFromAvailableSuggestion(suggestion, includedSet.getRelevance(), includedRelevanceTags);
-                   String displayUri = includedSet.getDisplayUri() != null ? includedSet.getDisplayUri() : suggestionSet.getUri();
-                   SuggestionDetailsInsertHandlerBase insertHandler =
-                     new SuggestionDetailsInsertHandler(project, targetFile, completionSuggestion, startOffsetInHostFile,
-                                                        suggestionSet.getId());
+                     CompletionSuggestion completionSuggestion =
+                       createCompletionSuggestionFromAvailableSuggestion(suggestion, includedSet.getRelevance(), includedRelevanceTags);
+                     String displayUri = includedSet.getDisplayUri() != null ? includedSet.getDisplayUri() : suggestionSet.getUri();
+                     SuggestionDetailsInsertHandlerBase insertHandler =
+                       new SuggestionDetailsInsertHandler(project, targetFile, completionSuggestion, startOffsetInHostFile,
+                                                          suggestionSet.getId());
 
-                   resultSet.addElement(createLookupElementAskingExtensions(project, completionSuggestion, displayUri, insertHandler));
+                     resultSet.addElement(createLookupElementAskingExtensions(project, completionSuggestion, displayUri, insertHandler));
+                   }
                  }
                });
              }
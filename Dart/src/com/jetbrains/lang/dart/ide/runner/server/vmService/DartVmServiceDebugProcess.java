@@ -305,6 +305,11 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
       public void logInformation(final String message, final Throwable exception) {
         LOG.debug(message, exception);
       }
+
+      @Override
+      public boolean isInformationEnabled() {
+        return LOG.isDebugEnabled();
+      }
     });
   }
 
@@ -54,8 +54,13 @@ public class DartVmServiceListener implements VmServiceListener {
         None, Logging, IsolateUpdate, IsolateStart, IsolateRunnable, IsolateReload, Inspect, GC, Extension -> {
       }
       case BreakpointResolved -> myBreakpointHandler.breakpointResolved(Objects.requireNonNull(event.getBreakpoint()));
-      case IsolateExit -> myDebugProcess.isolateExit(Objects.requireNonNull(event.getIsolate()));
+      case IsolateExit -> {
+        myDebugProcess.getVmServiceWrapper().handleIsolateExit(Objects.requireNonNull(event.getIsolate()).getId());
+        myDebugProcess.isolateExit(Objects.requireNonNull(event.getIsolate()));
+      }
       case PauseBreakpoint, PauseException, PauseInterrupted -> {
+        // objects requested while the isolate was running may have changed
+        myDebugProcess.getVmServiceWrapper().clearObjectCache(Objects.requireNonNull(event.getIsolate()).getId());
         myDebugProcess.isolateSuspended(Objects.requireNonNull(event.getIsolate()));
         ApplicationManager.getApplication().executeOnPooledThread(() -> {
           final ElementList<Breakpoint> breakpoints = event.getKind() == EventKind.PauseBreakpoint ? event.getPauseBreakpoints() : null;
@@ -70,13 +75,22 @@ public class DartVmServiceListener implements VmServiceListener {
                                                                           () -> myDebugProcess.getVmServiceWrapper()
                                                                             .resumeIsolate(event.getIsolate().getId(), null));
       case PauseStart -> myDebugProcess.getVmServiceWrapper().handleIsolate(Objects.requireNonNull(event.getIsolate()), true);
-      case Resume -> myDebugProcess.isolateResumed(Objects.requireNonNull(event.getIsolate()));
+      case Resume -> {
+        // the isolate may be resumed not only by VmServiceWrapper.resumeIsolate(), for example by another debugger client
+        myDebugProcess.getVmServiceWrapper().clearObjectCache(Objects.requireNonNull(event.getIsolate()).getId());
+        myDebugProcess.isolateResumed(Objects.requireNonNull(event.getIsolate()));
+      }
       case WriteEvent -> myDebugProcess.handleWriteEvent(event.getBytes());
     }
   }
 
   @Override
   public void connectionClosed() {
+    final VmServiceWrapper vmServiceWrapper = myDebugProcess.getVmServiceWrapper();
+    // may be null if the connection is closed before the debug process is initialized
+    if (vmServiceWrapper != null) {
+      vmServiceWrapper.handleConnectionClosed();
+    }
     if (myDebugProcess.isRemoteDebug()) {
       myDebugProcess.getSession().stop();
     }
@@ -0,0 +1,115 @@
+// Copyright 2000-2022 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.runner.server.vmService;
+
+import com.intellij.util.SmartList;
+import org.dartlang.vm.service.consumer.GetObjectConsumer;
+import org.dartlang.vm.service.element.Obj;
+import org.dartlang.vm.service.element.RPCError;
+import org.dartlang.vm.service.element.Sentinel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Objects received by {@code getObject} requests while an isolate is paused. The same class, field or instance is often needed by
+ * several frames and values, so it's requested only once per pause: later requests are answered from the cache, and requests made
+ * while the first one is in flight wait for its response. The cache of an isolate is cleared when it's resumed.
+ */
+final class VmServiceObjectCache {
+  private final Object myLock = new Object();
+  private final Map<String, IsolateObjects> myIsolateToObjects = new HashMap<>();
+
+  /**
+   * @param objectKey object id, plus offset and count for collection pages
+   * @param sender    called with the consumer that must receive the response if there's no cached or pending result for the key
+   */
+  void getObject(@NotNull String isolateId,
+                 @NotNull String objectKey,
+                 @NotNull GetObjectConsumer consumer,
+                 @NotNull Consumer<? super GetObjectConsumer> sender) {
+    final Obj cached;
+    final IsolateObjects objects;
+    synchronized (myLock) {
+      objects = myIsolateToObjects.computeIfAbsent(isolateId, id -> new IsolateObjects());
+      cached = objects.myObjects.get(objectKey);
+      if (cached == null) {
+        final List<GetObjectConsumer> pending = objects.myPendingConsumers.get(objectKey);
+        if (pending != null) {
+          pending.add(consumer);
+          return;
+        }
+        objects.myPendingConsumers.put(objectKey, new SmartList<>(consumer));
+      }
+    }
+
+    if (cached != null) {
+      consumer.received(cached);
+    }
+    else {
+      sender.accept(new ResponseConsumer(isolateId, objects, objectKey));
+    }
+  }
+
+  void clear(@NotNull String isolateId) {
+    synchronized (myLock) {
+      final IsolateObjects objects = myIsolateToObjects.remove(isolateId);
+      if (objects != null) {
+        // responses to the requests that are in flight are still delivered to their consumers, but not cached
+        objects.myObjects.clear();
+      }
+    }
+  }
+
+  private final class ResponseConsumer implements GetObjectConsumer {
+    private final @NotNull String myIsolateId;
+    private final @NotNull IsolateObjects myObjects;
+    private final @NotNull String myObjectKey;
+
+    private ResponseConsumer(@NotNull String isolateId, @NotNull IsolateObjects objects, @NotNull String objectKey) {
+      myIsolateId = isolateId;
+      myObjects = objects;
+      myObjectKey = objectKey;
+    }
+
+    @Override
+    public void received(Obj response) {
+      for (GetObjectConsumer consumer : takePendingConsumers(response)) {
+        consumer.received(response);
+      }
+    }
+
+    @Override
+    public void received(Sentinel response) {
+      for (GetObjectConsumer consumer : takePendingConsumers(null)) {
+        consumer.received(response);
+      }
+    }
+
+    @Override
+    public void onError(RPCError error) {
+      for (GetObjectConsumer consumer : takePendingConsumers(null)) {
+        consumer.onError(error);
+      }
+    }
+
+    private @NotNull List<GetObjectConsumer> takePendingConsumers(@Nullable Obj objectToCache) {
+      synchronized (myLock) {
+        // don't cache the response if the isolate has been resumed since the request was sent
+        if (objectToCache != null && myIsolateToObjects.get(myIsolateId) == myObjects) {
+          myObjects.myObjects.put(myObjectKey, objectToCache);
+        }
+        final List<GetObjectConsumer> consumers = myObjects.myPendingConsumers.remove(myObjectKey);
+        return consumers != null ? consumers : List.of();
+      }
+    }
+  }
+
+  private static final class IsolateObjects {
+    private final Map<String, Obj> myObjects = new HashMap<>();
+    private final Map<String, List<GetObjectConsumer>> myPendingConsumers = new HashMap<>();
+  }
+}
@@ -0,0 +1,205 @@
+// Copyright 2000-2022 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.runner.server.vmService;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.SequentialTaskExecutor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends requests to the VM service in priority order. Control requests (resume, pause, breakpoints) overtake stack requests, and
+ * those overtake inspection requests made by the Variables view and evaluators. The number of inspection requests waiting for a
+ * response is limited, so that a large collection being expanded doesn't delay everything else in the VM service queue. Requests that
+ * will never get a response, because their isolate has exited or the connection is closed, are released by
+ * {@link #releaseInspectionRequests(String)}.
+ */
+final class VmServiceRequestScheduler implements Disposable {
+  private static final Logger LOG = Logger.getInstance(VmServiceRequestScheduler.class);
+
+  static final int MAX_INSPECTION_REQUESTS_IN_FLIGHT = 16;
+
+  enum Priority {CONTROL, STACK, INSPECTION}
+
+  interface Sender {
+    /**
+     * Sends the request; {@code onDone} must be run when the response or an error is received.
+     */
+    void send(@NotNull Runnable onDone);
+  }
+
+  private final Object myLock = new Object();
+  private final PriorityQueue<Request> myQueue = new PriorityQueue<>(
+    Comparator.<Request, Priority>comparing(request -> request.myPriority).thenComparingLong(request -> request.mySequence));
+  private final ExecutorService myExecutor = SequentialTaskExecutor.createSequentialApplicationPoolExecutor("Dart VM Service Requests");
+  private final Set<InFlightRequest> myInspectionRequestsInFlight = new HashSet<>();
+
+  private long myNextSequence;
+  private boolean mySendingScheduled;
+  private boolean myDisposed;
+
+  @Override
+  public void dispose() {
+    synchronized (myLock) {
+      myDisposed = true;
+      myQueue.clear();
+    }
+  }
+
+  void addRequest(@NotNull Priority priority, @NotNull Runnable sender) {
+    assert priority != Priority.INSPECTION : "use addInspectionRequest()";
+    addRequest(new Request(priority, null, onDone -> sender.run(), null));
+  }
+
+  /**
+   * @param onCancel called instead of {@code sender} if the request is cancelled by {@link #cancelInspectionRequests(String)}
+   */
+  void addInspectionRequest(@NotNull String isolateId, @NotNull Sender sender, @NotNull Runnable onCancel) {
+    addRequest(new Request(Priority.INSPECTION, isolateId, sender, onCancel));
+  }
+
+  /**
+   * Drops inspection requests for the isolate that haven't been sent yet, their results would be out of date anyway.
+   *
+   * @param isolateId {@code null} for all isolates
+   */
+  void cancelInspectionRequests(@Nullable String isolateId) {
+    final List<Request> cancelled = new ArrayList<>();
+    synchronized (myLock) {
+      for (Iterator<Request> iterator = myQueue.iterator(); iterator.hasNext(); ) {
+        final Request request = iterator.next();
+        if (request.myPriority == Priority.INSPECTION && (isolateId == null || isolateId.equals(request.myIsolateId))) {
+          iterator.remove();
+          cancelled.add(request);
+        }
+      }
+    }
+
+    for (Request request : cancelled) {
+      assert request.myOnCancel != null;
+      request.myOnCancel.run();
+    }
+  }
+
+  /**
+   * Cancels inspection requests for the isolate that haven't been sent yet and frees the slots of the ones waiting for a response,
+   * the response will never come after the isolate has exited.
+   *
+   * @param isolateId {@code null} for all isolates, e.g. when the connection to the VM is closed
+   */
+  void releaseInspectionRequests(@Nullable String isolateId) {
+    cancelInspectionRequests(isolateId);
+
+    final List<InFlightRequest> released = new ArrayList<>();
+    synchronized (myLock) {
+      for (InFlightRequest request : myInspectionRequestsInFlight) {
+        if (isolateId == null || isolateId.equals(request.myIsolateId)) {
+          released.add(request);
+        }
+      }
+    }
+
+    for (InFlightRequest request : released) {
+      request.run();
+    }
+  }
+
+  private void addRequest(@NotNull Request request) {
+    synchronized (myLock) {
+      if (myDisposed) return;
+
+      request.mySequence = myNextSequence++;
+      myQueue.add(request);
+    }
+
+    scheduleSending();
+  }
+
+  private void scheduleSending() {
+    synchronized (myLock) {
+      if (mySendingScheduled || myDisposed) return;
+      mySendingScheduled = true;
+    }
+
+    myExecutor.execute(this::sendRequests);
+  }
+
+  private void sendRequests() {
+    while (true) {
+      final Request request;
+      final Runnable onDone;
+      synchronized (myLock) {
+        final Request next = myQueue.peek();
+        if (next == null ||
+            myDisposed ||
+            next.myPriority == Priority.INSPECTION && myInspectionRequestsInFlight.size() >= MAX_INSPECTION_REQUESTS_IN_FLIGHT) {
+          // if requests are blocked by the limit, sending is scheduled again when one of the inspection requests is done
+          mySendingScheduled = false;
+          return;
+        }
+
+        request = myQueue.poll();
+        if (request.myPriority == Priority.INSPECTION) {
+          final InFlightRequest inFlightRequest = new InFlightRequest(request.myIsolateId);
+          myInspectionRequestsInFlight.add(inFlightRequest);
+          onDone = inFlightRequest;
+        }
+        else {
+          onDone = () -> {};
+        }
+      }
+
+      try {
+        request.mySender.send(onDone);
+      }
+      catch (Throwable t) {
+        LOG.error(t);
+        onDone.run();
+      }
+    }
+  }
+
+  /**
+   * Frees the slot of an inspection request when run for the first time.
+   */
+  private final class InFlightRequest implements Runnable {
+    private final @Nullable String myIsolateId;
+    private final AtomicBoolean myDone = new AtomicBoolean();
+
+    private InFlightRequest(@Nullable String isolateId) {
+      myIsolateId = isolateId;
+    }
+
+    @Override
+    public void run() {
+      if (myDone.compareAndSet(false, true)) {
+        synchronized (myLock) {
+          myInspectionRequestsInFlight.remove(this);
+        }
+        scheduleSending();
+      }
+    }
+  }
+
+  private static final class Request {
+    private final @NotNull Priority myPriority;
+    private final @Nullable String myIsolateId;
+    private final @NotNull Sender mySender;
+    private final @Nullable Runnable myOnCancel;
+    private long mySequence;
+
+    private Request(@NotNull Priority priority,
+                    @Nullable String isolateId,
+                    @NotNull Sender sender,
+                    @Nullable Runnable onCancel) {
+      myPriority = priority;
+      myIsolateId = isolateId;
+      mySender = sender;
+      myOnCancel = onCancel;
+    }
+  }
+}
@@ -9,11 +9,12 @@ import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileTypes.FileTypeRegistry;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.NlsSafe;
 import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.util.Alarm;
 import com.intellij.util.concurrency.Semaphore;
 import com.intellij.xdebugger.XDebugSession;
 import com.intellij.xdebugger.XSourcePosition;
@@ -37,6 +38,8 @@ import org.jetbrains.annotations.Nullable;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 public class VmServiceWrapper implements Disposable {
 
@@ -48,7 +51,8 @@ public class VmServiceWrapper implements Disposable {
   private final DartVmServiceListener myVmServiceListener;
   private final IsolatesInfo myIsolatesInfo;
   private final DartVmServiceBreakpointHandler myBreakpointHandler;
-  private final Alarm myRequestsScheduler;
+  private final VmServiceRequestScheduler myRequestsScheduler;
+  private final VmServiceObjectCache myObjectCache = new VmServiceObjectCache();
 
   private long myVmServiceReceiverThreadId;
 
@@ -64,17 +68,41 @@ public class VmServiceWrapper implements Disposable {
     myVmServiceListener = vmServiceListener;
     myIsolatesInfo = isolatesInfo;
     myBreakpointHandler = breakpointHandler;
-    myRequestsScheduler = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, this);
+    myRequestsScheduler = new VmServiceRequestScheduler();
+    Disposer.register(this, myRequestsScheduler);
   }
 
   @Override
   public void dispose() {
   }
 
+  /**
+   * Adds a control request: it's sent before all stack and inspection requests that are waiting in the queue.
+   */
   private void addRequest(@NotNull Runnable runnable) {
-    if (!myRequestsScheduler.isDisposed()) {
-      myRequestsScheduler.addRequest(runnable, 0);
-    }
+    myRequestsScheduler.addRequest(VmServiceRequestScheduler.Priority.CONTROL, runnable);
+  }
+
+  private void addStackRequest(@NotNull Runnable runnable) {
+    myRequestsScheduler.addRequest(VmServiceRequestScheduler.Priority.STACK, runnable);
+  }
+
+  /**
+   * Inspection requests are sent after control and stack requests, and only a limited number of them may wait for response at a time.
+   * The ones that are still in the queue when the isolate is resumed are cancelled, {@code consumer} gets an error in this case.
+   */
+  private void addInspectionRequest(@NotNull String isolateId,
+                                    @NotNull Consumer consumer,
+                                    @NotNull VmServiceRequestScheduler.Sender sender) {
+    myRequestsScheduler.addInspectionRequest(isolateId, sender, () -> consumer.onError(createCancelledError()));
+  }
+
+  @NotNull
+  private static RPCError createCancelledError() {
+    final JsonObject json = new JsonObject();
+    json.addProperty("code", RPCError.UNEXPECTED_RESPONSE);
+    json.addProperty("message", "Request cancelled because the isolate has been resumed");
+    return new RPCError(json);
   }
 
   public @Nullable StepOption getLatestStep() {
@@ -528,6 +556,8 @@ public class VmServiceWrapper implements Disposable {
   }
 
   public void resumeIsolate(@NotNull String isolateId, @Nullable StepOption stepOption) {
+    clearObjectCache(isolateId);
+    myRequestsScheduler.cancelInspectionRequests(isolateId);
     addRequest(() -> {
       myLatestStep = stepOption;
       myVmService.resume(isolateId, stepOption, null, new VmServiceConsumers.EmptyResumeConsumer() {
@@ -572,6 +602,8 @@ public class VmServiceWrapper implements Disposable {
    * function, so frameIndex must be at least 1.
    */
   public void dropFrame(@NotNull String isolateId, int frameIndex) {
+    clearObjectCache(isolateId);
+    myRequestsScheduler.cancelInspectionRequests(isolateId);
     addRequest(() -> {
       myLatestStep = StepOption.Rewind;
       myVmService.resume(isolateId, StepOption.Rewind, frameIndex, new VmServiceConsumers.EmptyResumeConsumer() {
@@ -604,7 +636,7 @@ public class VmServiceWrapper implements Disposable {
                                  int firstFrameIndex,
                                  @NotNull XExecutionStack.XStackFrameContainer container,
                                  @Nullable InstanceRef exception) {
-    addRequest(() -> myVmService.getStack(isolateId, new GetStackConsumer() {
+    addStackRequest(() -> myVmService.getStack(isolateId, new GetStackConsumer() {
       @Override
       public void received(final Stack vmStack) {
         ApplicationManager.getApplication().executeOnPooledThread(() -> {
@@ -663,7 +695,7 @@ public class VmServiceWrapper implements Disposable {
 
     final Ref<Script> resultRef = Ref.create();
 
-    addRequest(() -> myVmService.getObject(isolateId, scriptId, new GetObjectConsumer() {
+    addStackRequest(() -> myVmService.getObject(isolateId, scriptId, new GetObjectConsumer() {
       @Override
       public void received(Obj script) {
         resultRef.set((Script)script);
@@ -685,8 +717,86 @@ public class VmServiceWrapper implements Disposable {
     return resultRef.get();
   }
 
+  /**
+   * Objects are cached until the isolate is resumed, so repeated requests for the same object while the isolate is paused don't go to
+   * the VM.
+   */
   public void getObject(@NotNull String isolateId, @NotNull String objectId, @NotNull GetObjectConsumer consumer) {
-    addRequest(() -> myVmService.getObject(isolateId, objectId, consumer));
+    myObjectCache.getObject(isolateId, objectId, consumer, responseConsumer -> addInspectionRequest(
+      isolateId, responseConsumer, onDone -> myVmService.getObject(isolateId, objectId, withOnDone(responseConsumer, onDone))));
+  }
+
+  /**
+   * Requests all objects at once and notifies {@code consumer} when all of them are received. The list passed to the consumer
+   * has the same order as {@code objectIds}. If some of the objects fail to load, {@code errorConsumer} is notified with the message
+   * of the first received sentinel or error instead.
+   */
+  public void getObjects(@NotNull String isolateId,
+                         @NotNull List<String> objectIds,
+                         @NotNull Consumer<? super List<Obj>> consumer,
+                         @NotNull Consumer<? super String> errorConsumer) {
+    if (objectIds.isEmpty()) {
+      consumer.accept(Collections.emptyList());
+      return;
+    }
+
+    final Obj[] result = new Obj[objectIds.size()];
+    final AtomicInteger counter = new AtomicInteger(objectIds.size());
+    final AtomicReference<String> error = new AtomicReference<>();
+
+    for (int i = 0; i < objectIds.size(); i++) {
+      final int index = i;
+      getObject(isolateId, objectIds.get(i), new GetObjectConsumer() {
+        @Override
+        public void received(Obj response) {
+          result[index] = response;
+          checkDone();
+        }
+
+        @Override
+        public void received(Sentinel response) {
+          failed(response.getValueAsString());
+        }
+
+        @Override
+        public void onError(RPCError rpcError) {
+          failed(rpcError.getMessage());
+        }
+
+        private void failed(@Nullable String message) {
+          error.compareAndSet(null, StringUtil.notNullize(message));
+          checkDone();
+        }
+
+        private void checkDone() {
+          if (counter.decrementAndGet() == 0) {
+            final String errorMessage = error.get();
+            if (errorMessage != null) {
+              errorConsumer.accept(errorMessage);
+            }
+            else {
+              consumer.accept(Arrays.asList(result));
+            }
+          }
+        }
+      });
+    }
+  }
+
+  public void clearObjectCache(@NotNull String isolateId) {
+    myObjectCache.clear(isolateId);
+  }
+
+  /**
+   * Inspection requests for the exited isolate will never get a response, so their slots in the request queue are freed.
+   */
+  public void handleIsolateExit(@NotNull String isolateId) {
+    clearObjectCache(isolateId);
+    myRequestsScheduler.releaseInspectionRequests(isolateId);
+  }
+
+  public void handleConnectionClosed() {
+    myRequestsScheduler.releaseInspectionRequests(null);
   }
 
   public void getCollectionObject(@NotNull String isolateId,
@@ -694,14 +804,20 @@ public class VmServiceWrapper implements Disposable {
                                   int offset,
                                   int count,
                                   @NotNull GetObjectConsumer consumer) {
-    addRequest(() -> myVmService.getObject(isolateId, objectId, offset, count, consumer));
+    final String objectKey = objectId + "[" + offset + ":" + count + "]";
+    myObjectCache.getObject(isolateId, objectKey, consumer, responseConsumer -> addInspectionRequest(
+      isolateId, responseConsumer,
+      onDone -> myVmService.getObject(isolateId, objectId, offset, count, withOnDone(responseConsumer, onDone))));
   }
 
   public void evaluateInFrame(@NotNull String isolateId,
                               @NotNull Frame vmFrame,
                               @NotNull String expression,
                               @NotNull XDebuggerEvaluator.XEvaluationCallback callback) {
-    addRequest(() -> myVmService.evaluateInFrame(isolateId, vmFrame.getIndex(), expression, new EvaluateInFrameConsumer() {
+    // evaluated expression may change any object
+    clearObjectCache(isolateId);
+
+    final EvaluateInFrameConsumer consumer = new EvaluateInFrameConsumer() {
       @Override
       public void received(InstanceRef instanceRef) {
         callback.evaluated(new DartVmServiceValue(myDebugProcess, isolateId, "result", instanceRef, null, null, false));
@@ -723,7 +839,10 @@ public class VmServiceWrapper implements Disposable {
         @NlsSafe String message = error.getMessage();
         callback.errorOccurred(message);
       }
-    }));
+    };
+
+    addInspectionRequest(isolateId, consumer, onDone -> myVmService.evaluateInFrame(isolateId, vmFrame.getIndex(), expression,
+                                                                                    withOnDone(consumer, onDone)));
   }
 
   @SuppressWarnings("SameParameterValue")
@@ -731,13 +850,17 @@ public class VmServiceWrapper implements Disposable {
                                       @NotNull String targetId,
                                       @NotNull String expression,
                                       @NotNull EvaluateConsumer consumer) {
-    addRequest(() -> myVmService.evaluate(isolateId, targetId, expression, consumer));
+    addInspectionRequest(isolateId, consumer,
+                         onDone -> myVmService.evaluate(isolateId, targetId, expression, withOnDone(consumer, onDone)));
   }
 
   public void evaluateInTargetContext(@NotNull String isolateId,
                                       @NotNull String targetId,
                                       @NotNull String expression,
                                       @NotNull XDebuggerEvaluator.XEvaluationCallback callback) {
+    // evaluated expression may change any object
+    clearObjectCache(isolateId);
+
     evaluateInTargetContext(isolateId, targetId, expression, new EvaluateConsumer() {
       @Override
       public void received(InstanceRef instanceRef) {
@@ -777,7 +900,8 @@ public class VmServiceWrapper implements Disposable {
                                   @NotNull InvokeConsumer callback) {
     // For 3.11 and after we use "invoke"; before that, we use "eval";
     if (supportsInvoke()) {
-      addRequest(() -> myVmService.invoke(isolateId, targetId, methodName, Collections.emptyList(), true, callback));
+      addInspectionRequest(isolateId, callback, onDone -> myVmService.invoke(isolateId, targetId, methodName, Collections.emptyList(), true,
+                                                                             withOnDone(callback, onDone)));
     }
     else {
       myDebugProcess.getVmServiceWrapper()
@@ -805,6 +929,176 @@ public class VmServiceWrapper implements Disposable {
     }
   }
 
+  @NotNull
+  private static GetObjectConsumer withOnDone(@NotNull GetObjectConsumer consumer, @NotNull Runnable onDone) {
+    return new GetObjectConsumer() {
+      @Override
+      public void received(Obj response) {
+        try {
+          consumer.received(response);
+        }
+        finally {
+          onDone.run();
+        }
+      }
+
+      @Override
+      public void received(Sentinel response) {
+        try {
+          consumer.received(response);
+        }
+        finally {
+          onDone.run();
+        }
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        try {
+          consumer.onError(error);
+        }
+        finally {
+          onDone.run();
+        }
+      }
+    };
+  }
+
+  @NotNull
+  private static EvaluateConsumer withOnDone(@NotNull EvaluateConsumer consumer, @NotNull Runnable onDone) {
+    return new EvaluateConsumer() {
+      @Override
+      public void received(ErrorRef response) {
+        try {
+          consumer.received(response);
+        }
+        finally {
+          onDone.run();
+        }
+      }
+
+      @Override
+      public void received(InstanceRef response) {
+        try {
+          consumer.received(response);
+        }
+        finally {
+          onDone.run();
+        }
+      }
+
+      @Override
+      public void received(Sentinel response) {
+        try {
+          consumer.received(response);
+        }
+        finally {
+          onDone.run();
+        }
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        try {
+          consumer.onError(error);
+        }
+        finally {
+          onDone.run();
+        }
+      }
+    };
+  }
+
+  @NotNull
+  private static EvaluateInFrameConsumer withOnDone(@NotNull EvaluateInFrameConsumer consumer, @NotNull Runnable onDone) {
+    return new EvaluateInFrameConsumer() {
+      @Override
+      public void received(ErrorRef response) {
+        try {
+          consumer.received(response);
+        }
+        finally {
+          onDone.run();
+        }
+      }
+
+      @Override
+      public void received(InstanceRef response) {
+        try {
+          consumer.received(response);
+        }
+        finally {
+          onDone.run();
+        }
+      }
+
+      @Override
+      public void received(Sentinel response) {
+        try {
+          consumer.received(response);
+        }
+        finally {
+          onDone.run();
+        }
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        try {
+          consumer.onError(error);
+        }
+        finally {
+          onDone.run();
+        }
+      }
+    };
+  }
+
+  @NotNull
+  private static InvokeConsumer withOnDone(@NotNull InvokeConsumer consumer, @NotNull Runnable onDone) {
+    return new InvokeConsumer() {
+      @Override
+      public void received(ErrorRef response) {
+        try {
+          consumer.received(response);
+        }
+        finally {
+          onDone.run();
+        }
+      }
+
+      @Override
+      public void received(InstanceRef response) {
+        try {
+          consumer.received(response);
+        }
+        finally {
+          onDone.run();
+        }
+      }
+
+      @Override
+      public void received(Sentinel response) {
+        try {
+          consumer.received(response);
+        }
+        finally {
+          onDone.run();
+        }
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        try {
+          consumer.onError(error);
+        }
+        finally {
+          onDone.run();
+        }
+      }
+    };
+  }
+
   /**
    * Return whether the "invoke" call is supported by this connection.
    */
@@ -4,14 +4,14 @@ package com.jetbrains.lang.dart.ide.runner.server.vmService.frame;
 import com.google.gson.JsonElement;
 import com.intellij.icons.AllIcons;
 import com.intellij.util.SmartList;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.xdebugger.frame.*;
 import com.jetbrains.lang.dart.ide.runner.server.vmService.DartVmServiceDebugProcess;
-import org.dartlang.vm.service.consumer.GetObjectConsumer;
 import org.dartlang.vm.service.element.*;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.List;
 
 // similar to com.intellij.debugger.engine.JavaStaticGroup
 class DartStaticFieldsGroup extends XValueGroup {
@@ -49,56 +49,45 @@ class DartStaticFieldsGroup extends XValueGroup {
 
   @Override
   public void computeChildren(@NotNull final XCompositeNode node) {
-    final AtomicInteger counter = new AtomicInteger(myFieldRefs.size());
-    final XValueChildrenList list = new XValueChildrenList(myFieldRefs.size());
+    final List<String> fieldIds = ContainerUtil.map(myFieldRefs, FieldRef::getId);
 
-    for (final FieldRef fieldRef : myFieldRefs) {
-      myDebugProcess.getVmServiceWrapper().getObject(myIsolateId, fieldRef.getId(), new GetObjectConsumer() {
-        @Override
-        public void received(Obj field) {
-          final InstanceRef instanceRef = ((Field)field).getStaticValue();
-          // static field may be not initialized yet, in this case this instanceRef is in fact a Sentinel
-          if (instanceRef != null) {
-            if ("@Instance".equals(instanceRef.getType())) {
-              list.add(new DartVmServiceValue(myDebugProcess, myIsolateId, ((Field)field).getName(), instanceRef, null, fieldRef, false));
-            }
-            else if ("Sentinel".equals(instanceRef.getType())) {
-              list.add(new XNamedValue(((Field)field).getName()) {
-                @Override
-                public void computeSourcePosition(@NotNull XNavigatable navigatable) {
-                  DartVmServiceValue.doComputeSourcePosition(myDebugProcess, navigatable, myIsolateId, fieldRef);
-                }
+    // all fields are requested at once and added to the node in the declaration order when all responses are received
+    myDebugProcess.getVmServiceWrapper().getObjects(myIsolateId, fieldIds, fields -> {
+      final XValueChildrenList list = new XValueChildrenList(myFieldRefs.size());
 
-                @Override
-                public void computePresentation(@NotNull XValueNode node, @NotNull XValuePlace place) {
-                  final JsonElement valueAsString = instanceRef.getJson().get("valueAsString");
-                  final String value = valueAsString == null ? "not initialized" : valueAsString.getAsString();
-                  node.setPresentation(AllIcons.Nodes.Field, null, value, false);
-                }
-              });
-            }
+      for (int i = 0; i < fields.size(); i++) {
+        final Obj field = fields.get(i);
+        final FieldRef fieldRef = myFieldRefs.get(i);
+        final InstanceRef instanceRef = ((Field)field).getStaticValue();
+        // static field may be not initialized yet, in this case this instanceRef is in fact a Sentinel
+        if (instanceRef != null) {
+          if ("@Instance".equals(instanceRef.getType())) {
+            list.add(new DartVmServiceValue(myDebugProcess, myIsolateId, ((Field)field).getName(), instanceRef, null, fieldRef, false));
           }
+          else if ("Sentinel".equals(instanceRef.getType())) {
+            list.add(new XNamedValue(((Field)field).getName()) {
+              @Override
+              public void computeSourcePosition(@NotNull XNavigatable navigatable) {
+                DartVmServiceValue.doComputeSourcePosition(myDebugProcess, navigatable, myIsolateId, fieldRef);
+              }
 
-          if (counter.decrementAndGet() == 0) {
-            if (list.size() == 0) {
-              node.setErrorMessage("Static fields not initialized yet");
-            }
-            else {
-              node.addChildren(list, true);
-            }
+              @Override
+              public void computePresentation(@NotNull XValueNode node, @NotNull XValuePlace place) {
+                final JsonElement valueAsString = instanceRef.getJson().get("valueAsString");
+                final String value = valueAsString == null ? "not initialized" : valueAsString.getAsString();
+                node.setPresentation(AllIcons.Nodes.Field, null, value, false);
+              }
+            });
           }
         }
+      }
 
-        @Override
-        public void received(Sentinel sentinel) {
-          node.setErrorMessage(sentinel.getValueAsString());
-        }
-
-        @Override
-        public void onError(RPCError error) {
-          node.setErrorMessage(error.getMessage());
-        }
-      });
-    }
+      if (list.size() == 0) {
+        node.setErrorMessage("Static fields not initialized yet");
+      }
+      else {
+        node.addChildren(list, true);
+      }
+    }, node::setErrorMessage);
   }
 }
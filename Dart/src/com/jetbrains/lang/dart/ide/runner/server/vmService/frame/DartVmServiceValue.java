@@ -352,6 +352,9 @@ public final class DartVmServiceValue extends XNamedValue {
       computeCollectionChildren(myInstanceRef, 0, node);
     }
     else {
+      // All fields come with one request, answered from the per-pause object cache if the instance has been expanded before.
+      // Children that need toString() for their presentation still invoke it one by one: the VM service can't invoke several
+      // methods in one request, and invocation results aren't cached because toString() may have side effects.
       myDebugProcess.getVmServiceWrapper().getObject(myIsolateId, myInstanceRef.getId(), new GetObjectConsumer() {
         @Override
         public void received(Obj instance) {
@@ -0,0 +1,129 @@
+// Copyright 2000-2022 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.google.dart.server.internal.remote;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class NotificationDispatcherTest extends TestCase {
+  private NotificationDispatcher myDispatcher;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDispatcher = new NotificationDispatcher(2);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myDispatcher.shutdown();
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testNotificationsAboutFileAreHandledInOrder() throws Exception {
+    List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      final int index = i;
+      myDispatcher.dispatchForFile(i % 2 == 0 ? "analysis.errors" : "analysis.highlights", "/a.dart", () -> handled.add(index));
+      expected.add(i);
+    }
+    awaitQueued();
+    assertEquals(expected, handled);
+  }
+
+  public void testDifferentFilesAreHandledInParallel() throws Exception {
+    String file1 = "/a.dart";
+    String file2 = findFileInOtherStripe(file1);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch handled = new CountDownLatch(1);
+    myDispatcher.dispatchForFile("analysis.errors", file1, release::await);
+    myDispatcher.dispatchForFile("analysis.errors", file2, handled::countDown);
+
+    assertTrue(handled.await(10, TimeUnit.SECONDS));
+    release.countDown();
+  }
+
+  public void testOtherNotificationsWaitForFileNotifications() throws Exception {
+    String file1 = "/a.dart";
+    String file2 = findFileInOtherStripe(file1);
+    List<String> handled = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch release = new CountDownLatch(1);
+    myDispatcher.dispatchForFile("analysis.errors", file1, () -> {
+      release.await();
+      handled.add("errors");
+    });
+    myDispatcher.dispatch("analysis.flushResults", () -> handled.add("flush"));
+    myDispatcher.dispatchForFile("analysis.highlights", file2, () -> handled.add("highlights"));
+
+    // returned while the first handler is blocked, the others wait for it
+    assertEquals(1, myDispatcher.getStatistics().get("analysis.flushResults").getQueueDepth());
+    release.countDown();
+    awaitQueued();
+    assertEquals(List.of("errors", "flush", "highlights"), handled);
+    assertEquals(0, myDispatcher.getStatistics().get("analysis.flushResults").getQueueDepth());
+  }
+
+  public void testFastLaneDoesNotWaitForRunningHandler() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    myDispatcher.dispatchForFile("analysis.errors", "/a.dart", () -> {
+      started.countDown();
+      release.await();
+    });
+    myDispatcher.dispatch("server.status", () -> {});
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+
+    AtomicBoolean handled = new AtomicBoolean();
+    myDispatcher.dispatchNow("completion.results", () -> handled.set(true));
+    assertTrue(handled.get());
+    release.countDown();
+  }
+
+  public void testHandlerErrorDoesNotStopDispatching() throws Exception {
+    myDispatcher.dispatchForFile("analysis.errors", "/a.dart", () -> {
+      throw new IllegalStateException("test");
+    });
+    myDispatcher.dispatch("server.status", () -> {
+      throw new IllegalStateException("test");
+    });
+    AtomicBoolean handled = new AtomicBoolean();
+    myDispatcher.dispatchForFile("analysis.errors", "/a.dart", () -> handled.set(true));
+    awaitQueued();
+
+    assertTrue(handled.get());
+    assertEquals(2, myDispatcher.getStatistics().get("analysis.errors").getCount());
+  }
+
+  public void testNotificationsAfterShutdownAreHandledOnCallingThread() {
+    myDispatcher.shutdown();
+    AtomicReference<Thread> handlerThread = new AtomicReference<>();
+    myDispatcher.dispatchForFile("analysis.errors", "/a.dart", () -> handlerThread.set(Thread.currentThread()));
+    assertSame(Thread.currentThread(), handlerThread.get());
+  }
+
+  private static String findFileInOtherStripe(String file) {
+    for (int i = 0; ; i++) {
+      String other = "/b" + i + ".dart";
+      if (Math.floorMod(other.hashCode(), 2) != Math.floorMod(file.hashCode(), 2)) {
+        return other;
+      }
+    }
+  }
+
+  private void awaitQueued() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+    myDispatcher.dispatch("test", latch::countDown);
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,110 @@
+// Copyright 2000-2022 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import org.dartlang.analysis.server.protocol.AnalysisError;
+import org.dartlang.analysis.server.protocol.Location;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.List;
+
+public class DartAnalysisResultsCacheTest extends BasePlatformTestCase {
+  private File myStorageDir;
+  private DartAnalysisResultsCache myCache;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myStorageDir = FileUtil.createTempDirectory("dart-analysis-cache", null);
+    myCache = createCache();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      closeCache();
+      FileUtil.delete(myStorageDir);
+    }
+    catch (Throwable e) {
+      addSuppressedException(e);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testResultsAreKeptBetweenSessions() throws Exception {
+    final VirtualFile file = myFixture.addFileToProject("foo.dart", "main() {}").getVirtualFile();
+    myCache.putErrors(file, List.of(createError(file)));
+    closeCache();
+
+    myCache = createCache();
+    final DartAnalysisResultsCache.CachedResults results = myCache.get(file);
+    assertNotNull(results);
+    assertNull(results.getOutline());
+    final List<AnalysisError> errors = results.getErrors();
+    assertNotNull(errors);
+    assertEquals(1, errors.size());
+    assertEquals("Test error", errors.get(0).getMessage());
+  }
+
+  public void testResultsForChangedContentAreIgnored() throws Exception {
+    final VirtualFile file = myFixture.addFileToProject("foo.dart", "main() {}").getVirtualFile();
+    myCache.putErrors(file, List.of(createError(file)));
+    myCache.waitForWrites();
+    assertNotNull(myCache.get(file));
+
+    WriteAction.run(() -> VfsUtil.saveText(file, "main() { }"));
+    assertNull(myCache.get(file));
+  }
+
+  public void testResultsOfDeletedFileAreRemoved() throws Exception {
+    final VirtualFile file = myFixture.addFileToProject("foo.dart", "main() {}").getVirtualFile();
+    myCache.putErrors(file, List.of(createError(file)));
+    myCache.waitForWrites();
+
+    WriteAction.run(() -> file.delete(this));
+    myCache.waitForWrites();
+
+    final VirtualFile newFile = myFixture.addFileToProject("foo.dart", "main() {}").getVirtualFile();
+    assertNull(myCache.get(newFile));
+  }
+
+  public void testResultsUnderRenamedDirectoryAreRemoved() throws Exception {
+    final VirtualFile file = myFixture.addFileToProject("dir/foo.dart", "main() {}").getVirtualFile();
+    final VirtualFile otherFile = myFixture.addFileToProject("other/foo.dart", "main() {}").getVirtualFile();
+    myCache.putErrors(file, List.of(createError(file)));
+    myCache.putErrors(otherFile, List.of(createError(otherFile)));
+    myCache.waitForWrites();
+
+    final VirtualFile dir = file.getParent();
+    WriteAction.run(() -> dir.rename(this, "dir2"));
+    WriteAction.run(() -> dir.rename(this, "dir"));
+    myCache.waitForWrites();
+
+    assertNull(myCache.get(file));
+    assertNotNull(myCache.get(otherFile));
+  }
+
+  @NotNull
+  private DartAnalysisResultsCache createCache() {
+    return new DartAnalysisResultsCache(getProject(), new File(myStorageDir, "results"));
+  }
+
+  private void closeCache() throws Exception {
+    Disposer.dispose(myCache);
+    myCache.waitForWrites();
+  }
+
+  @NotNull
+  private static AnalysisError createError(@NotNull VirtualFile file) {
+    final Location location = new Location(file.getPath(), 0, 4, 1, 1, 1, 5);
+    return new AnalysisError("ERROR", "SYNTACTIC_ERROR", location, "Test error", null, "test_error", null, null, null);
+  }
+}
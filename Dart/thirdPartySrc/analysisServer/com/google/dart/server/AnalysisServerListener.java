@@ -26,6 +26,10 @@ import java.util.Set;
 /**
  * The interface {@code AnalysisServerListener} defines the behavior of objects that listen for
  * results from an analysis server.
+ * <p>
+ * Notifications about the same file are reported in the order they are received, but
+ * notifications about different files may be reported on different threads at the same time, as
+ * may completion and search results.
  *
  * @coverage dart.server
  */
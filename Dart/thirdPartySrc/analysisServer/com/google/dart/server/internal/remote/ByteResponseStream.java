@@ -16,6 +16,7 @@ package com.google.dart.server.internal.remote;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
@@ -25,6 +26,10 @@ import java.util.concurrent.LinkedBlockingQueue;
 /**
  * An {@link InputStream} based implementation of {@link ResponseStream}. Each line must contain
  * exactly one complete JSON object.
+ * <p>
+ * Lines are read into a reused character buffer and decoded on the reader thread, so only the
+ * decoded messages are queued. If a {@link StreamingResponseDecoder} is set, it is used to decode
+ * the messages, otherwise each message is decoded into a {@link JsonObject}.
  *
  * @coverage dart.server.remote
  */
@@ -38,15 +43,15 @@ public class ByteResponseStream implements ResponseStream {
     @Override
     public void run() {
       while (true) {
-        String line;
+        boolean hasLine;
         try {
-          line = reader.readLine();
+          hasLine = readLine();
         } catch (IOException e) {
-          line = null;
+          hasLine = false;
         }
         // check for EOF
-        if (line == null) {
-          lineQueue.add(EOF_LINE);
+        if (!hasLine) {
+          responseQueue.add(EOF_LINE);
 
           if (onStreamEndRunnable != null) {
             onStreamEndRunnable.run();
@@ -56,24 +61,44 @@ public class ByteResponseStream implements ResponseStream {
         }
         // debug output
         if (debugStream != null) {
-          debugStream.println(System.currentTimeMillis() + " <= " + line);
+          debugStream.println(System.currentTimeMillis() + " <= " + new String(lineBuffer, 0, lineLength));
         }
         // ignore non-JSON (debug) lines
-        if (!line.startsWith("{")) {
+        if (lineLength == 0 || lineBuffer[0] != '{') {
           continue;
         }
-        // add a JSON line
-        lineQueue.add(line);
+        // add a decoded JSON line
+        responseQueue.add(decodeLine());
       }
     }
   }
 
   public static final String EOF_LINE = "EOF line";
 
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * The line buffer grown above this size for a huge message is not kept for the next messages.
+   */
+  private static final int MAX_RETAINED_LINE_BUFFER_SIZE = 1024 * 1024;
+
+  /**
+   * The {@link Reader} to read JSON strings from.
+   */
+  private final Reader reader;
+
+  /**
+   * The buffer of characters read from {@link #reader} but not consumed yet.
+   */
+  private final char[] readBuffer = new char[BUFFER_SIZE];
+  private int readPosition;
+  private int readLimit;
+
   /**
-   * The {@link BufferedReader} to read JSON strings from.
+   * The buffer with the current line, reused for all lines.
    */
-  private final BufferedReader reader;
+  private char[] lineBuffer = new char[BUFFER_SIZE];
+  private int lineLength;
 
   /**
    * The {@link DebugPrintStream} to print all lines to.
@@ -81,10 +106,12 @@ public class ByteResponseStream implements ResponseStream {
   private final DebugPrintStream debugStream;
   private final Runnable onStreamEndRunnable;
 
+  private volatile StreamingResponseDecoder decoder;
+
   /**
-   * The queue of lines.
+   * The queue of decoded responses, parse errors and {@link #EOF_LINE}.
    */
-  private final BlockingQueue<String> lineQueue = new LinkedBlockingQueue<String>();
+  private final BlockingQueue<Object> responseQueue = new LinkedBlockingQueue<Object>();
 
   /**
    * Initializes a newly created response stream.
@@ -93,7 +120,7 @@ public class ByteResponseStream implements ResponseStream {
    * @param debugStream the {@link PrintStream} to print all lines to, may be {@code null}
    */
   public ByteResponseStream(InputStream stream, DebugPrintStream debugStream, Runnable onStreamEndRunnable) {
-    reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+    reader = new InputStreamReader(stream, StandardCharsets.UTF_8);
     this.debugStream = debugStream;
     this.onStreamEndRunnable = onStreamEndRunnable;
     new LinesReaderThread().start();
@@ -103,18 +130,92 @@ public class ByteResponseStream implements ResponseStream {
   public void lastRequestProcessed() {
   }
 
+  @Override
+  public void setDecoder(StreamingResponseDecoder decoder) {
+    this.decoder = decoder;
+  }
+
   @Override
   public JsonObject take() throws Exception {
-    String line = lineQueue.take();
-    if (line == EOF_LINE) {
-      lineQueue.add(line);
+    Object response = takeDecoded();
+    if (response != null && !(response instanceof JsonObject)) {
+      throw new IllegalStateException("take() can't be used together with a StreamingResponseDecoder");
+    }
+    return (JsonObject) response;
+  }
+
+  @Override
+  public Object takeDecoded() throws Exception {
+    Object response = responseQueue.take();
+    if (response == EOF_LINE) {
+      responseQueue.add(response);
       return null;
     }
+    if (response instanceof JsonSyntaxException) {
+      throw (JsonSyntaxException) response;
+    }
+    return response;
+  }
+
+  private Object decodeLine() {
     try {
-      return (JsonObject) new JsonParser().parse(line);
-    } catch (JsonSyntaxException e) {
+      StreamingResponseDecoder decoder = this.decoder;
+      if (decoder != null) {
+        return decoder.decode(lineBuffer, lineLength);
+      }
+      return JsonParser.parseReader(new JsonReader(new CharArrayReader(lineBuffer, 0, lineLength))).getAsJsonObject();
+    } catch (Exception e) {
       // Include the line in the message so that we can better diagnose the problem
-      throw new JsonSyntaxException("Parse server message failed: " + line, e);
+      return new JsonSyntaxException("Parse server message failed: " + new String(lineBuffer, 0, lineLength), e);
+    }
+  }
+
+  /**
+   * Reads the next line into {@link #lineBuffer} without the line terminator.
+   *
+   * @return {@code false} if the end of the stream is reached and there are no more lines
+   */
+  private boolean readLine() throws IOException {
+    lineLength = 0;
+    if (lineBuffer.length > MAX_RETAINED_LINE_BUFFER_SIZE) {
+      lineBuffer = new char[BUFFER_SIZE];
+    }
+    boolean hasChars = false;
+    while (true) {
+      if (readPosition == readLimit) {
+        int count = reader.read(readBuffer, 0, readBuffer.length);
+        if (count <= 0) {
+          readPosition = readLimit = 0;
+          return hasChars;
+        }
+        readPosition = 0;
+        readLimit = count;
+      }
+      hasChars = true;
+      int start = readPosition;
+      while (readPosition < readLimit) {
+        if (readBuffer[readPosition] == '\n') {
+          appendToLine(start, readPosition);
+          readPosition++;
+          if (lineLength > 0 && lineBuffer[lineLength - 1] == '\r') {
+            lineLength--;
+          }
+          return true;
+        }
+        readPosition++;
+      }
+      appendToLine(start, readLimit);
+    }
+  }
+
+  private void appendToLine(int start, int end) {
+    int count = end - start;
+    if (lineLength + count > lineBuffer.length) {
+      char[] newBuffer = new char[Math.max(lineBuffer.length * 2, lineLength + count)];
+      System.arraycopy(lineBuffer, 0, newBuffer, 0, lineLength);
+      lineBuffer = newBuffer;
     }
+    System.arraycopy(readBuffer, start, lineBuffer, lineLength, count);
+    lineLength += count;
   }
 }
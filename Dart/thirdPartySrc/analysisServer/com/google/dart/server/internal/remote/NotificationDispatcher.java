@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2022, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.server.internal.remote;
+
+import com.google.dart.server.utilities.logging.Logging;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dispatches server notifications to the listeners.
+ * <p>
+ * There are three lanes:
+ * <ul>
+ * <li>Notifications about a single file are queued to one of several single-threaded stripes
+ * chosen by the file path, so notifications about the same file keep their order, while
+ * notifications about different files are handled in parallel.</li>
+ * <li>All other queued notifications are handled after all notifications dispatched before them,
+ * and before all notifications dispatched after them.</li>
+ * <li>Results of requests are handled on the calling thread (the fast lane), without waiting for
+ * the queued notifications and without waiting for the handler that is running at the moment.</li>
+ * </ul>
+ * So the thread reading the server output never waits for the queued handlers, and the listeners
+ * must tolerate calls for different files, and calls from the fast lane, on different threads at
+ * the same time.
+ *
+ * @coverage dart.server.remote
+ */
+public class NotificationDispatcher {
+  /**
+   * A notification handler.
+   */
+  public interface Handler {
+    void handle() throws Exception;
+  }
+
+  private static final class EventCounters {
+    final AtomicLong count = new AtomicLong();
+    final AtomicInteger queueDepth = new AtomicInteger();
+    final AtomicInteger maxQueueDepth = new AtomicInteger();
+    final AtomicLong totalLatencyNanos = new AtomicLong();
+    final AtomicLong maxLatencyNanos = new AtomicLong();
+    final AtomicLong totalProcessingNanos = new AtomicLong();
+  }
+
+  private static final long STRIPE_KEEP_ALIVE_SECONDS = 60;
+
+  private final ThreadPoolExecutor[] stripes;
+
+  /**
+   * Run tasks in the corresponding stripe, or on the calling thread once the stripe is shut down.
+   */
+  private final Executor[] stripeExecutors;
+
+  /**
+   * Guards {@link #stripeTails} and {@link #barrierTail}.
+   */
+  private final Object lock = new Object();
+
+  /**
+   * The last handler queued to each stripe.
+   */
+  private final CompletableFuture<?>[] stripeTails;
+
+  /**
+   * The last handler queued after all previously dispatched notifications.
+   */
+  private CompletableFuture<?> barrierTail = CompletableFuture.completedFuture(null);
+
+  private final Map<String, EventCounters> eventToCounters = new ConcurrentHashMap<>();
+
+  /**
+   * @param stripeCount the number of threads handling notifications about single files
+   */
+  public NotificationDispatcher(int stripeCount) {
+    if (stripeCount < 1) {
+      throw new IllegalArgumentException("stripeCount: " + stripeCount);
+    }
+    stripes = new ThreadPoolExecutor[stripeCount];
+    stripeExecutors = new Executor[stripeCount];
+    stripeTails = new CompletableFuture<?>[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      final String threadName = "Dart analysis server notifications " + i;
+      stripes[i] = new ThreadPoolExecutor(1, 1, STRIPE_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                          new LinkedBlockingQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, threadName);
+        thread.setDaemon(true);
+        return thread;
+      });
+      stripes[i].allowCoreThreadTimeOut(true);
+      final ThreadPoolExecutor stripe = stripes[i];
+      stripeExecutors[i] = runnable -> execute(stripe, runnable);
+      stripeTails[i] = barrierTail;
+    }
+  }
+
+  /**
+   * Handle the notification on the calling thread without waiting for the queued notifications.
+   */
+  public void dispatchNow(String event, Handler handler) throws Exception {
+    EventCounters counters = getCounters(event);
+    long startTime = System.nanoTime();
+    try {
+      handler.handle();
+    }
+    finally {
+      recordHandled(counters, startTime, startTime);
+    }
+  }
+
+  /**
+   * Handle the notification about the given file in the stripe of this file, after the
+   * notifications about this file and the notifications dispatched by {@link #dispatch} before it.
+   * Errors thrown by the handler are logged.
+   */
+  public void dispatchForFile(String event, String file, Handler handler) {
+    int stripe = Math.floorMod(file.hashCode(), stripes.length);
+    Runnable task = newQueuedTask(event, handler);
+    synchronized (lock) {
+      CompletableFuture<?> previous = barrierTail.isDone()
+                                      ? stripeTails[stripe]
+                                      : CompletableFuture.allOf(stripeTails[stripe], barrierTail);
+      stripeTails[stripe] = previous.thenRunAsync(task, stripeExecutors[stripe]);
+    }
+  }
+
+  /**
+   * Handle the notification after all notifications dispatched before it, and before all
+   * notifications dispatched after it. Errors thrown by the handler are logged.
+   */
+  public void dispatch(String event, Handler handler) {
+    Runnable task = newQueuedTask(event, handler);
+    synchronized (lock) {
+      CompletableFuture<?>[] previous = Arrays.copyOf(stripeTails, stripeTails.length + 1);
+      previous[stripeTails.length] = barrierTail;
+      barrierTail = CompletableFuture.allOf(previous).thenRunAsync(task, stripeExecutors[0]);
+    }
+  }
+
+  /**
+   * Stop the stripe threads once the queued notifications are handled. Notifications dispatched
+   * after this call are handled on the calling thread.
+   */
+  public void shutdown() {
+    for (ThreadPoolExecutor stripe : stripes) {
+      stripe.shutdown();
+    }
+  }
+
+  /**
+   * Return the dispatch statistics by notification kind.
+   */
+  public Map<String, NotificationStatistics> getStatistics() {
+    Map<String, NotificationStatistics> result = new TreeMap<>();
+    eventToCounters.forEach((event, counters) -> result.put(event, new NotificationStatistics(
+      event,
+      counters.count.get(),
+      counters.queueDepth.get(),
+      counters.maxQueueDepth.get(),
+      counters.totalLatencyNanos.get(),
+      counters.maxLatencyNanos.get(),
+      counters.totalProcessingNanos.get())));
+    return result;
+  }
+
+  private EventCounters getCounters(String event) {
+    return eventToCounters.computeIfAbsent(event, e -> new EventCounters());
+  }
+
+  private Runnable newQueuedTask(String event, Handler handler) {
+    final EventCounters counters = getCounters(event);
+    final long receiveTime = System.nanoTime();
+    int queueDepth = counters.queueDepth.incrementAndGet();
+    counters.maxQueueDepth.accumulateAndGet(queueDepth, Math::max);
+    return () -> {
+      counters.queueDepth.decrementAndGet();
+      long startTime = System.nanoTime();
+      try {
+        handler.handle();
+      }
+      catch (Throwable e) {
+        // the task must complete normally, otherwise the handlers queued after it would be skipped
+        Logging.getLogger().logError(e.getMessage(), e);
+      }
+      recordHandled(counters, receiveTime, startTime);
+    };
+  }
+
+  private static void execute(ThreadPoolExecutor stripe, Runnable runnable) {
+    try {
+      stripe.execute(runnable);
+    }
+    catch (RejectedExecutionException e) {
+      runnable.run();
+    }
+  }
+
+  private static void recordHandled(EventCounters counters, long receiveTime, long startTime) {
+    long endTime = System.nanoTime();
+    long latency = endTime - receiveTime;
+    counters.count.incrementAndGet();
+    counters.totalLatencyNanos.addAndGet(latency);
+    counters.maxLatencyNanos.accumulateAndGet(latency, Math::max);
+    counters.totalProcessingNanos.addAndGet(endTime - startTime);
+  }
+}
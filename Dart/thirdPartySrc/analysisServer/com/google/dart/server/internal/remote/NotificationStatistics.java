@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2022, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.server.internal.remote;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of the dispatch statistics of one notification kind, see
+ * {@link NotificationDispatcher#getStatistics()}.
+ *
+ * @coverage dart.server.remote
+ */
+public final class NotificationStatistics {
+  private final String event;
+  private final long count;
+  private final int queueDepth;
+  private final int maxQueueDepth;
+  private final long totalLatencyNanos;
+  private final long maxLatencyNanos;
+  private final long totalProcessingNanos;
+
+  NotificationStatistics(String event,
+                         long count,
+                         int queueDepth,
+                         int maxQueueDepth,
+                         long totalLatencyNanos,
+                         long maxLatencyNanos,
+                         long totalProcessingNanos) {
+    this.event = event;
+    this.count = count;
+    this.queueDepth = queueDepth;
+    this.maxQueueDepth = maxQueueDepth;
+    this.totalLatencyNanos = totalLatencyNanos;
+    this.maxLatencyNanos = maxLatencyNanos;
+    this.totalProcessingNanos = totalProcessingNanos;
+  }
+
+  /**
+   * The notification kind, such as "analysis.errors".
+   */
+  public String getEvent() {
+    return event;
+  }
+
+  /**
+   * The number of handled notifications.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * The number of notifications that are received but not handled yet.
+   */
+  public int getQueueDepth() {
+    return queueDepth;
+  }
+
+  public int getMaxQueueDepth() {
+    return maxQueueDepth;
+  }
+
+  /**
+   * The average time between receiving a notification and the end of its handling.
+   */
+  public long getAverageLatencyMillis() {
+    return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos / count);
+  }
+
+  public long getMaxLatencyMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos);
+  }
+
+  /**
+   * The average time spent in the listeners, without waiting in the queue.
+   */
+  public long getAverageProcessingMillis() {
+    return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalProcessingNanos / count);
+  }
+
+  @Override
+  public String toString() {
+    return event + ": count=" + count + ", queueDepth=" + queueDepth + ", maxQueueDepth=" + maxQueueDepth +
+           ", avgLatency=" + getAverageLatencyMillis() + "ms, maxLatency=" + getMaxLatencyMillis() + "ms, avgProcessing=" +
+           getAverageProcessingMillis() + "ms";
+  }
+}
@@ -15,6 +15,7 @@ package com.google.dart.server.internal.remote;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.dart.server.*;
 import com.google.dart.server.generated.AnalysisServer;
@@ -37,6 +38,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -85,6 +87,39 @@ public abstract class RemoteAnalysisServerImpl implements AnalysisServer {
 
   // Execution domain
   private static final String LAUNCH_DATA_NOTIFICATION_RESULTS = "execution.launchData";
+
+  // Dispatch statistics keys of the responses to requests
+  private static final String RESPONSE_EVENT = "response";
+  private static final String ANALYSIS_UPDATE_CONTENT_RESPONSE = "analysis.updateContent response";
+
+  /**
+   * Notifications about a single file, which are handled in parallel with notifications about
+   * other files.
+   */
+  private static final Set<String> PER_FILE_NOTIFICATIONS = ImmutableSet.of(
+    ANALYSIS_NOTIFICATION_ERRORS,
+    ANALYSIS_NOTIFICATION_HIGHTLIGHTS,
+    ANALYSIS_NOTIFICATION_IMPLEMENTED,
+    ANALYSIS_NOTIFICATION_NAVIGATION,
+    ANALYSIS_NOTIFICATION_OCCURRENCES,
+    ANALYSIS_NOTIFICATION_OUTLINE,
+    ANALYSIS_NOTIFICATION_OVERRIDES,
+    ANALYSIS_NOTIFICATION_CLOSING_LABELS);
+
+  /**
+   * Notifications that carry results of requests, which are handled immediately, like responses to
+   * requests, without waiting for the queued notifications received before them. The completion
+   * results refer to the available suggestion sets and existing imports, so these are handled in
+   * the same lane and therefore in the order they are received.
+   */
+  private static final Set<String> FAST_LANE_NOTIFICATIONS = ImmutableSet.of(
+    COMPLETION_AVAILABLE_SUGGESTIONS,
+    COMPLETION_EXISTING_IMPORTS,
+    COMPLETION_NOTIFICATION_RESULTS,
+    SEARCH_NOTIFICATION_RESULTS);
+
+  private static final int NOTIFICATION_DISPATCH_STRIPES = Math.min(4, Runtime.getRuntime().availableProcessors());
+
   private final AnalysisServerSocket socket;
   private final Object requestSinkLock = new Object();
   private RequestSink requestSink;
@@ -98,6 +133,13 @@ public abstract class RemoteAnalysisServerImpl implements AnalysisServer {
    */
   private final BroadcastAnalysisServerListener listener = new BroadcastAnalysisServerListener();
 
+  /**
+   * The decoder of the large notifications, which are decoded directly from the token stream.
+   */
+  private final StreamingResponseDecoder responseDecoder = new StreamingResponseDecoder();
+
+  private final NotificationDispatcher notificationDispatcher = new NotificationDispatcher(NOTIFICATION_DISPATCH_STRIPES);
+
   private final List<RequestListener> requestListenerList = new ArrayList<>();
 
   private final List<ResponseListener> responseListenerList = new ArrayList<>();
@@ -153,6 +195,8 @@ public abstract class RemoteAnalysisServerImpl implements AnalysisServer {
   public RemoteAnalysisServerImpl(AnalysisServerSocket socket, boolean checkServerVersion) {
     this.socket = socket;
     this.checkServerVersion = checkServerVersion;
+    responseDecoder.registerProcessor(ANALYSIS_NOTIFICATION_HIGHTLIGHTS, new NotificationAnalysisHighlightsProcessor(listener));
+    responseDecoder.registerProcessor(ANALYSIS_NOTIFICATION_NAVIGATION, new NotificationAnalysisNavigationProcessor(listener));
   }
 
   @Override
@@ -175,6 +219,7 @@ public abstract class RemoteAnalysisServerImpl implements AnalysisServer {
       if (!responseListenerList.contains(listener)) {
         responseListenerList.add(listener);
       }
+      responseDecoder.setJsonTextRequired(true);
     }
   }
 
@@ -524,6 +569,7 @@ public abstract class RemoteAnalysisServerImpl implements AnalysisServer {
   public void removeResponseListener(ResponseListener listener) {
     synchronized (responseListenerList) {
       responseListenerList.remove(listener);
+      responseDecoder.setJsonTextRequired(!responseListenerList.isEmpty());
     }
   }
 
@@ -592,6 +638,7 @@ public abstract class RemoteAnalysisServerImpl implements AnalysisServer {
   public void server_shutdown() {
     shutdownRequested = true;
     stopWatcher();
+    notificationDispatcher.shutdown();
     String id = generateUniqueId();
     sendRequestToServer(id, RequestUtilities.generateServerShutdown(id), new BasicConsumer() {
       @Override
@@ -772,12 +819,69 @@ public abstract class RemoteAnalysisServerImpl implements AnalysisServer {
     return true;
   }
 
+  /**
+   * Handles the notification which has been decoded directly from the token stream.
+   */
+  private void processDecodedNotification(StreamingResponseDecoder.DecodedNotification notification) throws Exception {
+    String jsonText = notification.getJsonText();
+    if (jsonText != null) {
+      notifyResponseListeners(jsonText);
+    }
+    String event = notification.getEvent();
+    String file = PER_FILE_NOTIFICATIONS.contains(event) ? notification.getFile() : null;
+    dispatchNotification(event, file, notification::dispatch);
+  }
+
+  /**
+   * Handles the notification in the lane chosen by its kind: notifications with request results
+   * immediately, notifications about a single file in the stripe of this file, and all other
+   * notifications after the notifications received before them.
+   */
+  private void dispatchNotification(String event, String file, NotificationDispatcher.Handler handler) throws Exception {
+    if (FAST_LANE_NOTIFICATIONS.contains(event)) {
+      notificationDispatcher.dispatchNow(event, handler);
+    }
+    else if (file != null) {
+      notificationDispatcher.dispatchForFile(event, file, handler);
+    }
+    else {
+      notificationDispatcher.dispatch(event, handler);
+    }
+  }
+
+  private static String getNotificationFile(String event, JsonObject response) {
+    if (!PER_FILE_NOTIFICATIONS.contains(event)) {
+      return null;
+    }
+    JsonElement paramsElement = response.get("params");
+    if (paramsElement == null || !paramsElement.isJsonObject()) {
+      return null;
+    }
+    JsonElement fileElement = paramsElement.getAsJsonObject().get("file");
+    return fileElement != null && fileElement.isJsonPrimitive() ? fileElement.getAsString() : null;
+  }
+
+  /**
+   * Return the dispatch statistics of the server notifications by notification kind.
+   */
+  public Map<String, NotificationStatistics> getNotificationStatistics() {
+    return notificationDispatcher.getStatistics();
+  }
+
   private void processResponse(JsonObject response) throws Exception {
     notifyResponseListeners(response);
     // handle notification
-    if (processNotification(response)) {
+    JsonElement eventElement = response.get("event");
+    if (eventElement != null && eventElement.isJsonPrimitive()) {
+      String event = eventElement.getAsString();
+      dispatchNotification(event, getNotificationFile(event, response), () -> processNotification(response));
       return;
     }
+    // responses are handled immediately too
+    notificationDispatcher.dispatchNow(RESPONSE_EVENT, () -> processRequestResponse(response));
+  }
+
+  private void processRequestResponse(JsonObject response) throws Exception {
     // prepare ID
     JsonPrimitive idJsonPrimitive = (JsonPrimitive)response.get("id");
     if (idJsonPrimitive == null) {
@@ -809,7 +913,8 @@ public abstract class RemoteAnalysisServerImpl implements AnalysisServer {
     // Analysis Domain
     //
     if (consumer instanceof UpdateContentConsumer) {
-      ((UpdateContentConsumer)consumer).onResponse();
+      // notifications about the previous file content must be handled before the new content is reported as sent
+      notificationDispatcher.dispatch(ANALYSIS_UPDATE_CONTENT_RESPONSE, ((UpdateContentConsumer)consumer)::onResponse);
     }
     //
     // Completion Domain
@@ -952,6 +1057,14 @@ public abstract class RemoteAnalysisServerImpl implements AnalysisServer {
       }
     }
   }
+  private void notifyResponseListeners(String jsonString) {
+    synchronized (responseListenerList) {
+      List<ResponseListener> listeners = ImmutableList.copyOf(responseListenerList);
+      for (ResponseListener listener : listeners) {
+        listener.onResponse(jsonString);
+      }
+    }
+  }
 
   /**
    * Sends the request, and associates the request with a {@link LocalConsumer}, a simple consumer
@@ -993,6 +1106,7 @@ public abstract class RemoteAnalysisServerImpl implements AnalysisServer {
     consumerMap.clear();
     requestSink = socket.getRequestSink();
     responseStream = socket.getResponseStream();
+    responseStream.setDecoder(responseDecoder);
     errorStream = socket.getErrorStream();
     new ServerResponseReaderThread(responseStream).start();
     if (errorStream != null) {
@@ -1207,13 +1321,18 @@ public abstract class RemoteAnalysisServerImpl implements AnalysisServer {
     public void run() {
       while (true) {
         try {
-          JsonObject response = stream.take();
+          Object response = stream.takeDecoded();
           if (response == null) {
             return;
           }
           lastResponseTime.set(System.currentTimeMillis());
           try {
-            processResponse(response);
+            if (response instanceof StreamingResponseDecoder.DecodedNotification) {
+              processDecodedNotification((StreamingResponseDecoder.DecodedNotification)response);
+            }
+            else {
+              processResponse((JsonObject)response);
+            }
           }
           finally {
             stream.lastRequestProcessed();
@@ -30,4 +30,20 @@ public interface ResponseStream {
    * Takes the the next response from the stream. Blocks if no response available.
    */
   JsonObject take() throws Exception;
+
+  /**
+   * Sets the {@link StreamingResponseDecoder} to decode the responses with. After that the
+   * responses must be taken with {@link #takeDecoded()}.
+   */
+  default void setDecoder(StreamingResponseDecoder decoder) {
+  }
+
+  /**
+   * Takes the next response from the stream, either as a {@link JsonObject} or as a
+   * {@link StreamingResponseDecoder.DecodedNotification}. Returns {@code null} at the end of the
+   * stream. Blocks if no response available.
+   */
+  default Object takeDecoded() throws Exception {
+    return take();
+  }
 }
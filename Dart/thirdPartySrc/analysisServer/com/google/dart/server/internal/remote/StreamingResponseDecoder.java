@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2022, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.server.internal.remote;
+
+import com.google.dart.server.internal.remote.processor.StreamingNotificationProcessor;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decodes server messages directly from the characters read by a {@link ResponseStream}.
+ * <p>
+ * Notifications which have a registered {@link StreamingNotificationProcessor} are decoded from
+ * the token stream into a {@link DecodedNotification}, so that neither the message text as a
+ * {@link String} nor its {@link JsonObject} tree is created. All other messages,
+ * including responses to requests, are decoded into a {@link JsonObject}. The routing is done by
+ * the "event" member, so it must precede "params" in the message, which is always true for the
+ * messages sent by the analysis server.
+ *
+ * @coverage dart.server.remote
+ */
+public class StreamingResponseDecoder {
+  /**
+   * A notification decoded by a {@link StreamingNotificationProcessor} directly from the token
+   * stream.
+   */
+  public static final class DecodedNotification {
+    private final String event;
+    private final StreamingNotificationProcessor.DecodedParams params;
+    private final String jsonText;
+
+    private DecodedNotification(String event,
+                                StreamingNotificationProcessor.DecodedParams params,
+                                String jsonText) {
+      this.event = event;
+      this.params = params;
+      this.jsonText = jsonText;
+    }
+
+    public String getEvent() {
+      return event;
+    }
+
+    /**
+     * Return the file the notification is about, or {@code null} if it is not about a single file.
+     */
+    public String getFile() {
+      return params.getFile();
+    }
+
+    /**
+     * Return the text of the message, or {@code null} if it has not been requested by
+     * {@link #setJsonTextRequired(boolean)} at the time the message was decoded.
+     */
+    public String getJsonText() {
+      return jsonText;
+    }
+
+    /**
+     * Notify the listener of the {@link StreamingNotificationProcessor} about the decoded
+     * notification.
+     */
+    public void dispatch() {
+      params.notifyListener();
+    }
+  }
+
+  private final Map<String, StreamingNotificationProcessor> eventToProcessor =
+      new ConcurrentHashMap<>();
+
+  private volatile boolean jsonTextRequired;
+
+  /**
+   * Use the given {@link StreamingNotificationProcessor} to decode the notifications of the given
+   * kind.
+   */
+  public void registerProcessor(String event, StreamingNotificationProcessor processor) {
+    eventToProcessor.put(event, processor);
+  }
+
+  /**
+   * Sets whether the message text should be kept for the {@link DecodedNotification}s, for example
+   * because there are listeners that need it.
+   */
+  public void setJsonTextRequired(boolean jsonTextRequired) {
+    this.jsonTextRequired = jsonTextRequired;
+  }
+
+  /**
+   * Decode a single message which occupies the first {@code length} characters of the given
+   * buffer. The buffer is not referenced after this method returns, so it may be reused.
+   *
+   * @return either a {@link DecodedNotification} or a {@link JsonObject}
+   */
+  public Object decode(char[] chars, int length) throws IOException {
+    JsonReader reader = new JsonReader(new CharArrayReader(chars, 0, length));
+    JsonObject response = new JsonObject();
+    String event = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ("event".equals(name) && reader.peek() == JsonToken.STRING) {
+        event = reader.nextString();
+        response.addProperty(name, event);
+        continue;
+      }
+      StreamingNotificationProcessor processor =
+          "params".equals(name) && event != null ? eventToProcessor.get(event) : null;
+      if (processor != null) {
+        StreamingNotificationProcessor.DecodedParams params = processor.decodeParams(reader);
+        while (reader.hasNext()) {
+          reader.nextName();
+          reader.skipValue();
+        }
+        reader.endObject();
+        String jsonText = jsonTextRequired ? new String(chars, 0, length) : null;
+        return new DecodedNotification(event, params, jsonText);
+      }
+      // not a streamed notification, e.g. a response to a request, its processor needs a JsonObject
+      response.add(name, JsonParser.parseReader(reader));
+    }
+    reader.endObject();
+    return response;
+  }
+}
@@ -17,7 +17,10 @@ import com.google.dart.server.utilities.general.StringUtilities;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -148,4 +151,57 @@ public abstract class JsonProcessor {
       return jsonElement.getAsString();
     }
   }
+
+  /**
+   * Read a JSON array of {@code int} primitives from the given {@link JsonReader}. A JSON
+   * {@code null} is read as an empty array.
+   *
+   * @param reader the {@link JsonReader} positioned at the array
+   * @return the {@code int[]}
+   */
+  protected static int[] readIntArray(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return new int[] {};
+    }
+    int size = 0;
+    int[] ints = new int[8];
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (size == ints.length) {
+        int[] newInts = new int[size * 2];
+        System.arraycopy(ints, 0, newInts, 0, size);
+        ints = newInts;
+      }
+      ints[size++] = reader.nextInt();
+    }
+    reader.endArray();
+    if (size == ints.length) {
+      return ints;
+    }
+    int[] result = new int[size];
+    System.arraycopy(ints, 0, result, 0, size);
+    return result;
+  }
+
+  /**
+   * Read a JSON array of string primitives from the given {@link JsonReader}. A JSON {@code null}
+   * is read as an empty list.
+   *
+   * @param reader the {@link JsonReader} positioned at the array
+   * @return the {@link List} of {@link String}s
+   */
+  protected static List<String> readStringList(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return new ArrayList<>();
+    }
+    List<String> strings = new ArrayList<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      strings.add(reader.nextString());
+    }
+    reader.endArray();
+    return strings;
+  }
 }
@@ -16,8 +16,11 @@ package com.google.dart.server.internal.remote.processor;
 import com.google.dart.server.AnalysisServerListener;
 import com.google.gson.JsonObject;
 
+import com.google.gson.stream.JsonReader;
 import org.dartlang.analysis.server.protocol.HighlightRegion;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -25,7 +28,7 @@ import java.util.List;
  * 
  * @coverage dart.server.remote
  */
-public class NotificationAnalysisHighlightsProcessor extends NotificationProcessor {
+public class NotificationAnalysisHighlightsProcessor extends StreamingNotificationProcessor {
 
   public NotificationAnalysisHighlightsProcessor(AnalysisServerListener listener) {
     super(listener);
@@ -42,4 +45,58 @@ public class NotificationAnalysisHighlightsProcessor extends NotificationProcess
     // notify listener
     getListener().computedHighlights(file, regions);
   }
+
+  @Override
+  public DecodedParams decodeParams(JsonReader reader) throws IOException {
+    String file = null;
+    List<HighlightRegion> regions = new ArrayList<>();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "file":
+          file = reader.nextString();
+          break;
+        case "regions":
+          regions = readRegions(reader);
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+    // notify listener
+    final String finalFile = file;
+    final List<HighlightRegion> finalRegions = regions;
+    return new DecodedParams(finalFile, () -> getListener().computedHighlights(finalFile, finalRegions));
+  }
+
+  private static List<HighlightRegion> readRegions(JsonReader reader) throws IOException {
+    List<HighlightRegion> regions = new ArrayList<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      String type = null;
+      int offset = 0;
+      int length = 0;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        switch (reader.nextName()) {
+          case "type":
+            type = reader.nextString();
+            break;
+          case "offset":
+            offset = reader.nextInt();
+            break;
+          case "length":
+            length = reader.nextInt();
+            break;
+          default:
+            reader.skipValue();
+        }
+      }
+      reader.endObject();
+      regions.add(new HighlightRegion(type, offset, length));
+    }
+    reader.endArray();
+    return regions;
+  }
 }
@@ -16,10 +16,13 @@ package com.google.dart.server.internal.remote.processor;
 import com.google.dart.server.AnalysisServerListener;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 
 import org.dartlang.analysis.server.protocol.NavigationRegion;
 import org.dartlang.analysis.server.protocol.NavigationTarget;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -27,7 +30,7 @@ import java.util.List;
  * 
  * @coverage dart.server.remote
  */
-public class NotificationAnalysisNavigationProcessor extends NotificationProcessor {
+public class NotificationAnalysisNavigationProcessor extends StreamingNotificationProcessor {
   public NotificationAnalysisNavigationProcessor(AnalysisServerListener listener) {
     super(listener);
   }
@@ -54,4 +57,123 @@ public class NotificationAnalysisNavigationProcessor extends NotificationProcess
     // notify listener
     getListener().computedNavigation(file, regions);
   }
+
+  @Override
+  public DecodedParams decodeParams(JsonReader reader) throws IOException {
+    String file = null;
+    String[] targetFiles = new String[0];
+    List<NavigationTarget> targets = new ArrayList<>();
+    List<NavigationRegion> regions = new ArrayList<>();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "file":
+          file = reader.nextString();
+          break;
+        case "files":
+          targetFiles = readStringList(reader).toArray(targetFiles);
+          break;
+        case "targets":
+          targets = readTargets(reader);
+          break;
+        case "regions":
+          regions = readRegions(reader);
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+    // files, targets and regions may come in any order, link them when all of them are read
+    for (NavigationTarget target : targets) {
+      target.lookupFile(targetFiles);
+    }
+    for (NavigationRegion region : regions) {
+      region.lookupTargets(targets);
+    }
+    // notify listener
+    final String finalFile = file;
+    final List<NavigationRegion> finalRegions = regions;
+    return new DecodedParams(finalFile, () -> getListener().computedNavigation(finalFile, finalRegions));
+  }
+
+  private static List<NavigationTarget> readTargets(JsonReader reader) throws IOException {
+    List<NavigationTarget> targets = new ArrayList<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      String kind = null;
+      int fileIndex = 0;
+      int offset = 0;
+      int length = 0;
+      int startLine = 0;
+      int startColumn = 0;
+      Integer codeOffset = null;
+      Integer codeLength = null;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        switch (reader.nextName()) {
+          case "kind":
+            kind = reader.nextString();
+            break;
+          case "fileIndex":
+            fileIndex = reader.nextInt();
+            break;
+          case "offset":
+            offset = reader.nextInt();
+            break;
+          case "length":
+            length = reader.nextInt();
+            break;
+          case "startLine":
+            startLine = reader.nextInt();
+            break;
+          case "startColumn":
+            startColumn = reader.nextInt();
+            break;
+          case "codeOffset":
+            codeOffset = reader.nextInt();
+            break;
+          case "codeLength":
+            codeLength = reader.nextInt();
+            break;
+          default:
+            reader.skipValue();
+        }
+      }
+      reader.endObject();
+      targets.add(new NavigationTarget(kind, fileIndex, offset, length, startLine, startColumn, codeOffset, codeLength));
+    }
+    reader.endArray();
+    return targets;
+  }
+
+  private static List<NavigationRegion> readRegions(JsonReader reader) throws IOException {
+    List<NavigationRegion> regions = new ArrayList<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      int offset = 0;
+      int length = 0;
+      int[] targets = new int[0];
+      reader.beginObject();
+      while (reader.hasNext()) {
+        switch (reader.nextName()) {
+          case "offset":
+            offset = reader.nextInt();
+            break;
+          case "length":
+            length = reader.nextInt();
+            break;
+          case "targets":
+            targets = readIntArray(reader);
+            break;
+          default:
+            reader.skipValue();
+        }
+      }
+      reader.endObject();
+      regions.add(new NavigationRegion(offset, length, targets));
+    }
+    reader.endArray();
+    return regions;
+  }
 }
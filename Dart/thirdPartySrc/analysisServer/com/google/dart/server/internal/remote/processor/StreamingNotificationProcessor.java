@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2022, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.server.internal.remote.processor;
+
+import com.google.dart.server.AnalysisServerListener;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+
+/**
+ * Abstract processor class for notifications which can also be decoded directly from the token
+ * stream, without building a {@link JsonObject} tree first.
+ * 
+ * @coverage dart.server.remote
+ */
+public abstract class StreamingNotificationProcessor extends NotificationProcessor {
+  /**
+   * The notification data decoded by {@link #decodeParams(JsonReader)}.
+   */
+  public static final class DecodedParams {
+    private final String file;
+    private final Runnable notifier;
+
+    public DecodedParams(String file, Runnable notifier) {
+      this.file = file;
+      this.notifier = notifier;
+    }
+
+    /**
+     * Return the file the notification is about, or {@code null} if it is not about a single file.
+     */
+    public String getFile() {
+      return file;
+    }
+
+    /**
+     * Notify the listener about the decoded data.
+     */
+    public void notifyListener() {
+      notifier.run();
+    }
+  }
+
+  public StreamingNotificationProcessor(AnalysisServerListener listener) {
+    super(listener);
+  }
+
+  /**
+   * Decode the "params" object of the notification directly from the given {@link JsonReader}.
+   * The returned {@link DecodedParams} notify the listener about the decoded data.
+   */
+  public abstract DecodedParams decodeParams(JsonReader reader) throws IOException;
+}
@@ -17,6 +17,8 @@ import com.google.common.collect.Maps;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import de.roderick.weberknecht.WebSocket;
 import de.roderick.weberknecht.WebSocketEventHandler;
 import de.roderick.weberknecht.WebSocketException;
@@ -29,6 +31,7 @@ import org.dartlang.vm.service.internal.WebSocketRequestSink;
 import org.dartlang.vm.service.logging.Logging;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
@@ -81,9 +84,13 @@ abstract class VmServiceBase implements VmServiceConst {
 
       @Override
       public void onMessage(WebSocketMessage message) {
-        Logging.getLogger().logInformation("VM message: " + message.getText());
+        // getText() decodes the whole message each time it's called, and messages may be several megabytes long
+        final String text = message.getText();
+        if (Logging.getLogger().isInformationEnabled()) {
+          Logging.getLogger().logInformation("VM message: " + text);
+        }
         try {
-          vmService.processMessage(message.getText());
+          vmService.processMessage(text);
         } catch (Exception e) {
           Logging.getLogger().logError(e.getMessage(), e);
         }
@@ -394,11 +401,14 @@ abstract class VmServiceBase implements VmServiceConst {
     // Decode the JSON
     JsonObject json;
     try {
-      json = (JsonObject) new JsonParser().parse(jsonText);
+      json = decodeMessage(jsonText);
     } catch (Exception e) {
       Logging.getLogger().logError("Parse message failed: " + jsonText, e);
       return;
     }
+    if (json == null) {
+      return;
+    }
 
     if (json.has("method")) {
       if (!json.has(PARAMS)) {
@@ -425,6 +435,53 @@ abstract class VmServiceBase implements VmServiceConst {
     }
   }
 
+  /**
+   * Reads the top-level members of the message with a streaming reader, building the tree only for the members that are used.
+   * The result of a response is skipped without building a tree if its id comes first and nobody waits for it.
+   * <p>
+   * The result of a response that is waited for is still built as a whole tree, because the generated element wrappers
+   * (e.g. {@link org.dartlang.vm.service.element.Instance}) and the consumers read it through a {@link JsonObject}; so a large
+   * result, like a long list or string fetched with {@code getObject}, is held in memory as the text and the tree at once.
+   * Streaming it would need element classes that read from a {@link JsonReader}.
+   *
+   * @return the message, or {@code null} if it doesn't need any processing
+   */
+  private JsonObject decodeMessage(String jsonText) throws IOException {
+    final JsonReader reader = new JsonReader(new StringReader(jsonText));
+    reader.setLenient(true);
+
+    final JsonObject json = new JsonObject();
+    String id = null;
+    boolean resultSkipped = false;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      final String name = reader.nextName();
+      if (ID.equals(name) && reader.peek() != JsonToken.NULL) {
+        id = reader.nextString();
+        json.addProperty(ID, id);
+      } else if (RESULT.equals(name) && id != null && !json.has(METHOD) && !hasConsumer(id)) {
+        reader.skipValue();
+        resultSkipped = true;
+      } else {
+        json.add(name, JsonParser.parseReader(reader));
+      }
+    }
+    reader.endObject();
+
+    if (resultSkipped) {
+      Logging.getLogger().logError("No consumer associated with " + ID + ": " + id);
+      return null;
+    }
+    return json;
+  }
+
+  private boolean hasConsumer(String id) {
+    synchronized (consumerMapLock) {
+      return consumerMap.containsKey(id);
+    }
+  }
+
   void processRequest(JsonObject json) {
     final JsonObject response = new JsonObject();
     response.addProperty(JSONRPC, JSONRPC_VERSION);
@@ -0,0 +1,37 @@
+package org.jetbrains.idea.perforce.actions;
+
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileTypes.PlainTextFileType;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.testFramework.LightVirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.idea.perforce.util.tracer.P4CommandMetrics;
+
+/**
+ * Shows the {@link P4CommandMetrics} report in an editor tab, so the counters can be looked at without turning on the tracer.
+ */
+public class ShowCommandMetricsAction extends DumbAwareAction {
+  @Override
+  public @NotNull ActionUpdateThread getActionUpdateThread() {
+    return ActionUpdateThread.BGT;
+  }
+
+  @Override
+  public void update(@NotNull AnActionEvent e) {
+    e.getPresentation().setEnabledAndVisible(e.getProject() != null);
+  }
+
+  @Override
+  public void actionPerformed(@NotNull AnActionEvent e) {
+    Project project = e.getProject();
+    if (project == null) return;
+
+    LightVirtualFile file = new LightVirtualFile("p4-command-metrics.txt", PlainTextFileType.INSTANCE,
+                                                 P4CommandMetrics.getInstance().getReport());
+    file.setWritable(false);
+    FileEditorManager.getInstance(project).openFile(file, true);
+  }
+}
@@ -3,6 +3,7 @@ package org.jetbrains.idea.perforce.application;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.idea.perforce.perforce.PerforceRunner;
 import org.jetbrains.idea.perforce.perforce.View;
 
@@ -38,6 +39,12 @@ class ClientData {
     return myOptions;
   }
 
+  @Nullable
+  String getLineEnd() {
+    List<String> list = myData.getOrDefault(PerforceRunner.CLIENT_LINE_END, Collections.emptyList());
+    return list.isEmpty() ? null : list.get(0);
+  }
+
   @NotNull
   List<View> getViews() {
     if (myViews == null) {
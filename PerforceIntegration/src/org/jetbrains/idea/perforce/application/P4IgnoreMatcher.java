@@ -0,0 +1,133 @@
+package org.jetbrains.idea.perforce.application;
+
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.idea.perforce.perforce.PerforceSettings;
+import org.jetbrains.idea.perforce.perforce.connections.AbstractP4Connection;
+import org.jetbrains.idea.perforce.perforce.connections.P4ConfigFields;
+import org.jetbrains.idea.perforce.perforce.connections.P4EnvHelper;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers whether p4 would ignore a file by evaluating the P4IGNORE files in its directory and all parent directories locally, so
+ * an unversioned refresh doesn't need {@code p4 ignores} for every file. The compiled rules are cached per directory and dropped by
+ * {@link org.jetbrains.idea.perforce.perforce.connections.PerforceP4ConfigVirtualFileListener} when an ignore file changes or
+ * a directory is moved or deleted.
+ * <p>
+ * When the ignore file name isn't known or a rule isn't understood, the answer is {@code null} and the caller asks p4.
+ */
+@Service(Service.Level.PROJECT)
+public final class P4IgnoreMatcher {
+  private static final Logger LOG = Logger.getInstance(P4IgnoreMatcher.class);
+  private static final DirectoryRules NONE = new DirectoryRules(null, null, null);
+
+  // nearest directory with an ignore file for each directory looked at, NONE if there is none up to the file system root
+  private final Map<VirtualFile, DirectoryRules> myDirectories = new ConcurrentHashMap<>();
+
+  private final Project myProject;
+  private volatile String myIgnoreFileName;
+
+  public P4IgnoreMatcher(Project project) {
+    myProject = project;
+  }
+
+  public static P4IgnoreMatcher getInstance(Project project) {
+    return project.getService(P4IgnoreMatcher.class);
+  }
+
+  /**
+   * @return whether the file is ignored by P4IGNORE rules, or {@code null} if it can't be decided without p4
+   */
+  @Nullable
+  public Boolean isIgnored(@NotNull VirtualFile file) {
+    if (!Registry.is("p4.ignore.local.matcher")) return null;
+
+    String ignoreFileName = getIgnoreFileName();
+    if (ignoreFileName == null) return null;
+
+    if (!ignoreFileName.equals(myIgnoreFileName)) {
+      clear();
+      myIgnoreFileName = ignoreFileName;
+    }
+
+    VirtualFile parent = file.getParent();
+    if (parent == null) return false;
+
+    for (DirectoryRules directory = getRules(parent, ignoreFileName); directory != NONE; directory = directory.parent) {
+      if (!directory.rules.isSupported()) return null;
+
+      String relativePath = VfsUtilCore.getRelativePath(file, directory.dir, '/');
+      if (relativePath == null) return null;
+
+      P4IgnoreRules.Rule rule = directory.rules.match(relativePath, file.isDirectory());
+      if (rule != null) return !rule.negated;
+    }
+    return false;
+  }
+
+  public void clear() {
+    myDirectories.clear();
+  }
+
+  /**
+   * @return the ignore file name p4 is started with, or {@code null} if it's a list, a path, or comes from somewhere p4 reads it itself
+   */
+  @Nullable
+  private String getIgnoreFileName() {
+    String name = AbstractP4Connection.getTestEnvironment().get(P4ConfigFields.P4IGNORE.getName());
+    if (name == null) name = PerforceSettings.getSettings(myProject).getPathToIgnore();
+    if (name == null) name = P4EnvHelper.getConfigHelper(myProject).getP4Ignore();
+    if (StringUtil.isEmptyOrSpaces(name) || StringUtil.containsAnyChar(name, "/\\;,:")) return null;
+    return name;
+  }
+
+  @NotNull
+  private DirectoryRules getRules(@NotNull VirtualFile dir, @NotNull String ignoreFileName) {
+    DirectoryRules cached = myDirectories.get(dir);
+    if (cached != null) return cached;
+
+    VirtualFile parentDir = dir.getParent();
+    DirectoryRules parent = parentDir == null ? NONE : getRules(parentDir, ignoreFileName);
+    VirtualFile ignoreFile = dir.findChild(ignoreFileName);
+    DirectoryRules result = parent;
+    if (ignoreFile != null && !ignoreFile.isDirectory()) {
+      result = new DirectoryRules(dir, parse(ignoreFile), parent);
+    }
+    myDirectories.put(dir, result);
+    return result;
+  }
+
+  @NotNull
+  private static P4IgnoreRules parse(@NotNull VirtualFile ignoreFile) {
+    try {
+      return P4IgnoreRules.parse(VfsUtilCore.loadText(ignoreFile), ignoreFile.getFileSystem().isCaseSensitive());
+    }
+    catch (IOException e) {
+      LOG.debug(e);
+      return P4IgnoreRules.UNSUPPORTED;
+    }
+  }
+
+  private static final class DirectoryRules {
+    final VirtualFile dir;
+    final P4IgnoreRules rules;
+    // the nearest parent directory with an ignore file
+    final DirectoryRules parent;
+
+    DirectoryRules(VirtualFile dir, P4IgnoreRules rules, DirectoryRules parent) {
+      this.dir = dir;
+      this.rules = rules;
+      this.parent = parent;
+    }
+  }
+}
@@ -0,0 +1,215 @@
+package org.jetbrains.idea.perforce.application;
+
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Rules of one P4IGNORE file compiled into a trie over path segments. Literal segments are looked up in a map, segments with
+ * {@code *} are matched by a {@link GlobSegment}, and {@code ...}/{@code **} is a node that stays active for any number of segments,
+ * so a path is matched against all rules of the file in a single pass over its segments.
+ * <p>
+ * Like {@code p4 ignores}, a rule matching a directory applies to everything under it, and the last matching rule wins. Rules whose
+ * meaning isn't certain without asking p4 (character classes, escapes, {@code ...} inside a segment, a non-leading slash) make the
+ * whole file {@link #isSupported() unsupported}.
+ */
+final class P4IgnoreRules {
+  private static final String ANY_DEPTH = "...";
+
+  static final P4IgnoreRules UNSUPPORTED = new P4IgnoreRules(true, false);
+
+  private final Node myRoot = new Node();
+  private final boolean myCaseSensitive;
+  private boolean mySupported;
+
+  private P4IgnoreRules(boolean caseSensitive, boolean supported) {
+    myCaseSensitive = caseSensitive;
+    mySupported = supported;
+  }
+
+  @NotNull
+  static P4IgnoreRules parse(@NotNull CharSequence text, boolean caseSensitive) {
+    P4IgnoreRules rules = new P4IgnoreRules(caseSensitive, true);
+    int index = 0;
+    for (String line : StringUtil.splitByLines(text.toString())) {
+      String pattern = line.trim();
+      if (pattern.isEmpty() || pattern.startsWith("#")) continue;
+      if (!rules.addRule(pattern, index++)) {
+        rules.mySupported = false;
+        break;
+      }
+    }
+    return rules;
+  }
+
+  boolean isSupported() {
+    return mySupported;
+  }
+
+  private boolean addRule(@NotNull String pattern, int index) {
+    boolean negated = pattern.startsWith("!");
+    if (negated) pattern = pattern.substring(1);
+    boolean directoryOnly = pattern.endsWith("/");
+    pattern = StringUtil.trimEnd(pattern, "/");
+    boolean anchored = pattern.startsWith("/");
+    pattern = StringUtil.trimStart(pattern, "/");
+
+    List<String> segments = new ArrayList<>();
+    for (String segment : StringUtil.split(pattern, "/")) {
+      if (segment.equals("**")) segment = ANY_DEPTH;
+      if (!segment.equals(ANY_DEPTH) && (segment.contains(ANY_DEPTH) || StringUtil.containsAnyChar(segment, "?[]\\%"))) return false;
+      segments.add(myCaseSensitive ? segment : StringUtil.toLowerCase(segment));
+    }
+    if (segments.isEmpty()) return false;
+    if (segments.size() > 1 && segments.get(segments.size() - 1).equals(ANY_DEPTH)) {
+      // "dir/..." is everything under the directory
+      segments.remove(segments.size() - 1);
+      directoryOnly = true;
+    }
+    if (!anchored) {
+      // p4 applies a file name to all subdirectories, but it's not obvious how a relative path with a slash is resolved
+      if (segments.size() > 1 && !segments.get(0).equals(ANY_DEPTH)) return false;
+      if (!segments.get(0).equals(ANY_DEPTH)) segments.add(0, ANY_DEPTH);
+    }
+
+    Node node = myRoot;
+    for (String segment : segments) {
+      node = node.getOrCreateChild(segment);
+    }
+    Rule rule = new Rule(index, negated);
+    if (directoryOnly) {
+      node.directoryRule = rule;
+    }
+    else {
+      node.rule = rule;
+    }
+    return true;
+  }
+
+  /**
+   * @param relativePath path relative to the directory of the ignore file, separated by {@code /}
+   * @return the last rule matching the path or one of its parent directories, or {@code null} if none does
+   */
+  @Nullable
+  Rule match(@NotNull String relativePath, boolean isDirectory) {
+    List<String> segments = StringUtil.split(myCaseSensitive ? relativePath : StringUtil.toLowerCase(relativePath), "/");
+    Rule result = null;
+    List<Node> active = new ArrayList<>();
+    addWithAnyDepth(myRoot, active);
+    for (int i = 0; i < segments.size() && !active.isEmpty(); i++) {
+      String segment = segments.get(i);
+      boolean last = i == segments.size() - 1;
+      List<Node> next = new ArrayList<>();
+      for (Node node : active) {
+        if (node.anyDepthLoop) {
+          addWithAnyDepth(node, next);
+        }
+        if (node.literals != null) {
+          Node child = node.literals.get(segment);
+          if (child != null) addWithAnyDepth(child, next);
+        }
+        if (node.globs != null) {
+          for (GlobSegment glob : node.globs.keySet()) {
+            if (glob.matches(segment)) addWithAnyDepth(node.globs.get(glob), next);
+          }
+        }
+      }
+      for (Node node : next) {
+        result = later(result, node.rule);
+        if (!last || isDirectory) result = later(result, node.directoryRule);
+      }
+      active = next;
+    }
+    return result;
+  }
+
+  private static void addWithAnyDepth(@NotNull Node node, @NotNull List<Node> nodes) {
+    for (Node n = node; n != null; n = n.anyDepth) {
+      if (!nodes.contains(n)) nodes.add(n);
+    }
+  }
+
+  @Nullable
+  private static Rule later(@Nullable Rule current, @Nullable Rule candidate) {
+    return candidate != null && (current == null || candidate.index > current.index) ? candidate : current;
+  }
+
+  static final class Rule {
+    final int index;
+    final boolean negated;
+
+    Rule(int index, boolean negated) {
+      this.index = index;
+      this.negated = negated;
+    }
+  }
+
+  private static final class Node {
+    Map<String, Node> literals;
+    Map<GlobSegment, Node> globs;
+    Node anyDepth;
+    boolean anyDepthLoop;
+    Rule rule;
+    Rule directoryRule;
+
+    @NotNull
+    Node getOrCreateChild(@NotNull String segment) {
+      if (segment.equals(ANY_DEPTH)) {
+        if (anyDepth == null) {
+          anyDepth = new Node();
+          anyDepth.anyDepthLoop = true;
+        }
+        return anyDepth;
+      }
+      if (segment.indexOf('*') >= 0) {
+        if (globs == null) globs = new LinkedHashMap<>();
+        return globs.computeIfAbsent(new GlobSegment(segment), s -> new Node());
+      }
+      if (literals == null) literals = new HashMap<>();
+      return literals.computeIfAbsent(segment, s -> new Node());
+    }
+  }
+
+  /**
+   * A path segment pattern with {@code *} wildcards: the literal parts between them must occur in order, the first one at the start
+   * and the last one at the end.
+   */
+  private static final class GlobSegment {
+    private final String myPattern;
+    private final String[] myParts;
+
+    GlobSegment(@NotNull String pattern) {
+      myPattern = pattern;
+      myParts = pattern.split("\\*", -1);
+    }
+
+    boolean matches(@NotNull String segment) {
+      String first = myParts[0];
+      String last = myParts[myParts.length - 1];
+      if (segment.length() < first.length() + last.length() || !segment.startsWith(first) || !segment.endsWith(last)) return false;
+
+      int from = first.length();
+      int to = segment.length() - last.length();
+      for (int i = 1; i < myParts.length - 1; i++) {
+        String part = myParts[i];
+        if (part.isEmpty()) continue;
+        int found = segment.indexOf(part, from);
+        if (found < 0 || found + part.length() > to) return false;
+        from = found + part.length();
+      }
+      return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof GlobSegment && myPattern.equals(((GlobSegment)o).myPattern);
+    }
+
+    @Override
+    public int hashCode() {
+      return myPattern.hashCode();
+    }
+  }
+}
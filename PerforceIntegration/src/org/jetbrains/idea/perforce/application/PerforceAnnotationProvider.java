@@ -72,10 +72,18 @@ public class PerforceAnnotationProvider implements AnnotationProviderEx {
     String pathAtRevision = p4Revision == null ? path : p4Revision.getDepotPath();
     long revision = p4Revision == null ? -1 : p4Revision.getRevisionNumber();
 
-    final AnnotationInfo annotationInfo = myRunner.annotate(connection, pathAtRevision, revision);
+    // without a revision 'p4 annotate' annotates the head revision, which is the first one in the file log
+    P4Revision target = p4Revision != null ? p4Revision : fileLog.length > 0 && !fileLog[0].isBranched() ? fileLog[0] : null;
+    final AnnotationInfo annotationInfo = target != null && !isDeleted(target)
+                                          ? myRunner.annotate(connection, target, fileLog)
+                                          : myRunner.annotate(connection, pathAtRevision, revision);
     return new AnnotationPrecursor(annotationInfo, fileLog, revision, p4Revision, connection);
   }
 
+  private static boolean isDeleted(@NotNull P4Revision revision) {
+    return revision.getAction() != null && revision.getAction().contains("delete");
+  }
+
   private class AnnotationPrecursor {
     final AnnotationInfo info;
     final P4Revision[] fileLog;
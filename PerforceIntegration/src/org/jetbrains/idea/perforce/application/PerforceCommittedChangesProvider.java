@@ -36,6 +36,7 @@ import com.intellij.openapi.vcs.versionBrowser.ChangesBrowserSettingsEditor;
 import com.intellij.openapi.vcs.versionBrowser.CommittedChangeList;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.AsynchConsumer;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.vcsUtil.VcsUtil;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
@@ -143,13 +144,10 @@ public class PerforceCommittedChangesProvider implements CachingCommittedChanges
 
       final String client = settings.getClientFilter();
       final String user = settings.getUserFilter();
-      // todo make asynchronous later; Perforce is fast, maybe it's not worth doing
-      final List<PerforceChangeList> changeListList = myRunner
-        .getSubmittedChangeLists(client, user, P4File.create(new File(url)), settings, maxCount, p4Settings.SHOW_INTEGRATED_IN_COMMITTED_CHANGES);
       settings.filterChanges(changeLists);
-      for (PerforceChangeList changeList : changeListList) {
-        consumer.consume(changeList);
-      }
+      // older changelists are loaded page by page while the browser consumes them
+      myRunner.loadSubmittedChangeLists(client, user, P4File.create(new File(url)), settings, maxCount,
+                                        p4Settings.SHOW_INTEGRATED_IN_COMMITTED_CHANGES, consumer::consume);
     }
     finally {
       consumer.finished();
@@ -168,12 +166,18 @@ public class PerforceCommittedChangesProvider implements CachingCommittedChanges
 
     final String client = settings.getClientFilter();
     final String user = settings.getUserFilter();
-    List<PerforceChangeList> changeLists =
-      new ArrayList<>(myRunner.getSubmittedChangeLists(client, user, P4File.create(new File(url)), settings, maxCount,
-                                                       p4Settings.SHOW_INTEGRATED_IN_COMMITTED_CHANGES));
+    final P4File root = P4File.create(new File(url));
+    List<PerforceChangeList> changeLists = new ArrayList<>();
+    myRunner.loadSubmittedChangeLists(client, user, root, settings, maxCount, p4Settings.SHOW_INTEGRATED_IN_COMMITTED_CHANGES,
+                                      changeLists::add);
     LOG.debug("Changelists from Perforce: " + changeLists.size());
     settings.filterChanges(changeLists);
     LOG.debug("Changelists after filtering: " + changeLists.size());
+    // the committed changes cache stores the files of all the loaded changelists, describe them in batches rather than one by one
+    P4Connection connection = PerforceConnectionManager.getInstance(myProject).getConnectionForFile(root);
+    if (connection != null) {
+      myRunner.prefetchSubmittedChanges(connection, ContainerUtil.map(changeLists, PerforceChangeList::getNumber));
+    }
     return changeLists;
   }
 
@@ -0,0 +1,549 @@
+package org.jetbrains.idea.perforce.application;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.util.ArrayUtilRt;
+import com.intellij.util.SystemProperties;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.PersistentHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local copy of the client have-table (client file path to have revision), one persistent storage per {@link ConnectionKey}.
+ * <p>
+ * A directory becomes an indexed root after a complete recursive {@code p4 have} over it has been recorded. The root is stored with its
+ * have watermark at that time (see {@link org.jetbrains.idea.perforce.perforce.PerforceRunner#getHaveWatermark}), and the have records
+ * under it are stored per directory, together with the names of the subdirectories that have records, so that a narrow scope loads only
+ * the directories it covers.
+ * <p>
+ * The watermark of a root is compared with the server once, and then again only after {@link #invalidateWatermarks()}, which is called
+ * when the IDE loses focus (e.g. to sync in another tool) and on a forced refresh. Commands run by the IDE that change the have-table
+ * ({@code sync}, {@code submit}, {@code revert}, ...) drop the overlapping roots right away.
+ * <p>
+ * Each connection has its own storage and lock.
+ */
+@Service
+public final class PerforceHaveIndex implements Disposable {
+  private static final Logger LOG = Logger.getInstance(PerforceHaveIndex.class);
+
+  // increase when the stored format changes
+  private static final int VERSION = 3;
+  private static final Set<String> HAVE_CHANGING_COMMANDS = Set.of("sync", "flush", "submit", "revert", "move", "clean");
+
+  private final Path myStorageDir;
+  private final Map<ConnectionKey, ClientIndex> myIndices = new ConcurrentHashMap<>();
+  private final Set<ConnectionKey> myBrokenKeys = ConcurrentHashMap.newKeySet();
+  private volatile boolean myDisposed;
+
+  public PerforceHaveIndex() {
+    this(Path.of(PathManager.getSystemPath(), "perforce-have"));
+  }
+
+  @TestOnly
+  PerforceHaveIndex(@NotNull Path storageDir) {
+    myStorageDir = storageDir;
+  }
+
+  public static PerforceHaveIndex getInstance() {
+    return ApplicationManager.getApplication().getService(PerforceHaveIndex.class);
+  }
+
+  public static boolean isEnabled() {
+    // test servers are recreated for each test while the client names stay the same
+    return !ApplicationManager.getApplication().isUnitTestMode() && SystemProperties.getBooleanProperty("p4.have.index.enabled", true);
+  }
+
+  public interface HaveConsumer {
+    void consumeRevision(String path, long revision);
+  }
+
+  /**
+   * @return indexed roots that contain the scope paths and whose watermarks have to be {@link #validateRoots validated} before
+   * {@link #processHaveRecords} can answer, {@code null} if some of the paths are not under an indexed root
+   */
+  @Nullable
+  public Set<String> getRootsToValidate(@NotNull ConnectionKey key, @NotNull Collection<FilePath> scope) {
+    ClientIndex index = getIndex(key);
+    if (index == null) return null;
+
+    Set<String> result = new LinkedHashSet<>();
+    for (FilePath path : scope) {
+      String root = index.findRoot(path.getPath());
+      if (root == null) return null;
+      if (!index.myValidatedRoots.contains(root)) {
+        result.add(root);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Compares the stored watermarks of the roots with the current ones: matching roots are trusted until the next
+   * {@link #invalidateWatermarks()}, outdated roots are dropped.
+   *
+   * @param watermarks current have watermarks as reported by the server, roots without a watermark stay as they are
+   */
+  public void validateRoots(@NotNull ConnectionKey key, @NotNull Map<String, String> watermarks) {
+    ClientIndex index = getIndex(key);
+    if (index == null) return;
+
+    try {
+      synchronized (index) {
+        for (Map.Entry<String, String> entry : watermarks.entrySet()) {
+          String root = entry.getKey();
+          String stored = index.myRoots.get(root);
+          if (stored == null) continue;
+          if (stored.equals(entry.getValue())) {
+            index.myValidatedRoots.add(root);
+          }
+          else {
+            // e.g. synced outside the IDE
+            index.removeRoot(root);
+          }
+        }
+      }
+    }
+    catch (IOException e) {
+      onStorageError(key, e);
+    }
+  }
+
+  /**
+   * Makes all roots be validated against the server again before they are used.
+   */
+  public void invalidateWatermarks() {
+    for (ClientIndex index : myIndices.values()) {
+      index.myValidatedRoots.clear();
+    }
+  }
+
+  /**
+   * Passes the indexed have records under {@code scope} to the consumer if all of the scope is under validated roots.
+   *
+   * @return {@code false} if the index can't answer and {@code p4 have} is needed, nothing is passed to the consumer in that case
+   */
+  public boolean processHaveRecords(@NotNull ConnectionKey key, @NotNull Collection<FilePath> scope, @NotNull HaveConsumer consumer) {
+    ClientIndex index = getIndex(key);
+    if (index == null) return false;
+
+    Map<String, Long> records = new LinkedHashMap<>();
+    try {
+      synchronized (index) {
+        for (FilePath path : scope) {
+          String root = index.findRoot(path.getPath());
+          if (root == null || !index.myValidatedRoots.contains(root)) return false;
+
+          if (path.isDirectory()) {
+            index.collectRecursively(path.getPath(), records);
+          }
+          else {
+            index.collectFile(path.getPath(), records);
+          }
+        }
+      }
+    }
+    catch (IOException e) {
+      onStorageError(key, e);
+      return false;
+    }
+
+    records.forEach((path, revision) -> consumer.consumeRevision(FileUtil.toSystemDependentName(path), revision));
+    return true;
+  }
+
+  /**
+   * @param watermarks have watermarks of the scope directories, taken before running {@code p4 have}; directories without a watermark
+   *                   are not indexed
+   * @return recorder that collects the output of {@code p4 have} for the given scope and stores it on {@link Recorder#commit()}
+   */
+  @NotNull
+  public Recorder startRecording(@NotNull ConnectionKey key, @NotNull Map<String, String> watermarks, @NotNull Collection<FilePath> scope) {
+    return new Recorder(key, new HashMap<>(watermarks), new ArrayList<>(scope));
+  }
+
+  public static boolean isHaveChangingCommand(@NotNull List<String> p4args) {
+    return !p4args.isEmpty() && HAVE_CHANGING_COMMANDS.contains(p4args.get(0)) && !p4args.contains("-n");
+  }
+
+  /**
+   * Called after a command for which {@link #isHaveChangingCommand} is {@code true} has been run; drops indexed roots that the
+   * command may have affected.
+   *
+   * @param p4args command name, options and file arguments
+   */
+  public void commandExecuted(@NotNull ConnectionKey key, @NotNull List<String> p4args) {
+    ClientIndex index = getIndex(key);
+    if (index == null || index.myRoots.isEmpty()) return;
+
+    List<String> localPaths = new ArrayList<>();
+    for (String arg : p4args.subList(1, p4args.size())) {
+      String path = toLocalPath(arg);
+      if (path != null) {
+        localPaths.add(path);
+      }
+    }
+
+    // without local paths (e.g. "submit -c 123") anything may have changed
+    List<String> toRemove = ContainerUtil.filter(index.myRoots.keySet(), root -> localPaths.isEmpty() || ContainerUtil.exists(
+      localPaths, p -> FileUtil.isAncestor(root, p, false) || FileUtil.isAncestor(p, root, false)));
+    if (toRemove.isEmpty()) return;
+
+    try {
+      synchronized (index) {
+        for (String root : toRemove) {
+          index.removeRoot(root);
+        }
+      }
+    }
+    catch (IOException e) {
+      onStorageError(key, e);
+    }
+  }
+
+  @Nullable
+  private static String toLocalPath(@NotNull String fileSpec) {
+    String path = fileSpec;
+    int revisionStart = indexOfRevisionSpecifier(path);
+    if (revisionStart >= 0) {
+      path = path.substring(0, revisionStart);
+    }
+    path = FileUtil.toSystemIndependentName(path);
+    if (path.endsWith("/...") || path.endsWith("/*")) {
+      path = path.substring(0, path.lastIndexOf('/'));
+    }
+    return !path.startsWith("//") && new File(path).isAbsolute() ? path : null;
+  }
+
+  private static int indexOfRevisionSpecifier(@NotNull String fileSpec) {
+    int at = fileSpec.indexOf('@');
+    int hash = fileSpec.indexOf('#');
+    return at < 0 ? hash : hash < 0 ? at : Math.min(at, hash);
+  }
+
+  @Nullable
+  private ClientIndex getIndex(@NotNull ConnectionKey key) {
+    ClientIndex index = myIndices.get(key);
+    if (index != null || myDisposed || myBrokenKeys.contains(key)) return index;
+
+    synchronized (myIndices) {
+      index = myIndices.get(key);
+      if (index != null || myDisposed) return index;
+
+      File file = getStorageFile(key);
+      try {
+        index = new ClientIndex(file);
+      }
+      catch (IOException e) {
+        LOG.info("Failed to open Perforce have index, it will be recreated: " + e.getMessage());
+        PersistentHashMap.deleteFilesStartingWith(file);
+        try {
+          index = new ClientIndex(file);
+        }
+        catch (IOException e2) {
+          LOG.warn("Perforce have index is disabled for " + key, e2);
+          myBrokenKeys.add(key);
+          return null;
+        }
+      }
+      myIndices.put(key, index);
+      return index;
+    }
+  }
+
+  @NotNull
+  private File getStorageFile(@NotNull ConnectionKey key) {
+    String name = FileUtil.sanitizeFileName(key.getClient()) + "." + Integer.toHexString(key.hashCode());
+    return myStorageDir.resolve(name).resolve("have.v" + VERSION).toFile();
+  }
+
+  private void onStorageError(@NotNull ConnectionKey key, @NotNull IOException e) {
+    LOG.info("Perforce have index is corrupted, it will be recreated: " + e.getMessage());
+    synchronized (myIndices) {
+      ClientIndex index = myIndices.remove(key);
+      if (index != null) {
+        index.close();
+      }
+      PersistentHashMap.deleteFilesStartingWith(getStorageFile(key));
+    }
+  }
+
+  @Override
+  public void dispose() {
+    synchronized (myIndices) {
+      myDisposed = true;
+      for (ClientIndex index : myIndices.values()) {
+        index.close();
+      }
+      myIndices.clear();
+    }
+  }
+
+  public final class Recorder implements HaveConsumer {
+    private final ConnectionKey myKey;
+    private final Map<String, String> myWatermarks;
+    private final List<FilePath> myScope;
+    private final Map<String, Long> myRecords = new HashMap<>();
+    private volatile boolean myIncomplete;
+
+    private Recorder(@NotNull ConnectionKey key, @NotNull Map<String, String> watermarks, @NotNull List<FilePath> scope) {
+      myKey = key;
+      myWatermarks = watermarks;
+      myScope = scope;
+    }
+
+    @Override
+    public void consumeRevision(String path, long revision) {
+      myRecords.put(FileUtil.toSystemIndependentName(path), revision);
+    }
+
+    /**
+     * Called when {@code p4 have} skipped some of the scope paths; nothing is stored then.
+     */
+    public void markIncomplete() {
+      myIncomplete = true;
+    }
+
+    /**
+     * Replaces the indexed roots overlapping the scope with the recorded scope directories.
+     * Must be called only after {@code p4 have} has completed for all of the scope.
+     */
+    public void commit() {
+      if (myIncomplete) return;
+
+      List<String> roots = new ArrayList<>();
+      for (FilePath path : myScope) {
+        if (path.isDirectory() && myWatermarks.containsKey(path.getPath())) {
+          roots.add(path.getPath());
+        }
+      }
+      // nested scope directories are stored as a part of the outer one
+      roots.removeIf(root -> ContainerUtil.exists(roots, other -> !other.equals(root) && FileUtil.isAncestor(other, root, false)));
+      if (roots.isEmpty()) return;
+
+      Map<String, DirectoryBuilder> directories = new HashMap<>();
+      for (String root : roots) {
+        directories.put(root, new DirectoryBuilder());
+      }
+      for (Map.Entry<String, Long> entry : myRecords.entrySet()) {
+        String path = entry.getKey();
+        String root = ContainerUtil.find(roots, r -> FileUtil.isAncestor(r, path, true));
+        if (root == null) continue;
+
+        int slash = path.lastIndexOf('/');
+        String dir = path.substring(0, slash);
+        directories.computeIfAbsent(dir, d -> new DirectoryBuilder()).files.put(path.substring(slash + 1), entry.getValue());
+        // link the directory to its parents up to the root
+        while (!dir.equals(root)) {
+          slash = dir.lastIndexOf('/');
+          String parent = dir.substring(0, slash);
+          if (!directories.computeIfAbsent(parent, p -> new DirectoryBuilder()).subdirectories.add(dir.substring(slash + 1))) break;
+          dir = parent;
+        }
+      }
+
+      ClientIndex index = getIndex(myKey);
+      if (index == null) return;
+      try {
+        synchronized (index) {
+          for (String indexed : new ArrayList<>(index.myRoots.keySet())) {
+            if (ContainerUtil.exists(roots, root -> FileUtil.isAncestor(root, indexed, false) || FileUtil.isAncestor(indexed, root, false))) {
+              index.removeRoot(indexed);
+            }
+          }
+          for (Map.Entry<String, DirectoryBuilder> entry : directories.entrySet()) {
+            index.myDirectories.put(entry.getKey(), entry.getValue().build());
+          }
+          for (String root : roots) {
+            // the watermark has just been taken
+            index.putRoot(root, myWatermarks.get(root));
+          }
+          index.myDirectories.force();
+          index.myRootStorage.force();
+        }
+      }
+      catch (IOException e) {
+        onStorageError(myKey, e);
+      }
+    }
+  }
+
+  private static final class ClientIndex {
+    private final PersistentHashMap<String, String> myRootStorage;
+    // contents of myRootStorage, kept in memory to find the root of a path without going through the storage
+    private final Map<String, String> myRoots = new ConcurrentHashMap<>();
+    private final Set<String> myValidatedRoots = ConcurrentHashMap.newKeySet();
+    private final PersistentHashMap<String, DirectoryRecords> myDirectories;
+
+    private ClientIndex(@NotNull File file) throws IOException {
+      myRootStorage = new PersistentHashMap<>(file.toPath(), EnumeratorStringDescriptor.INSTANCE, EnumeratorStringDescriptor.INSTANCE);
+      PersistentHashMap<String, DirectoryRecords> directories = null;
+      try {
+        directories = new PersistentHashMap<>(new File(file.getPath() + ".dirs").toPath(), EnumeratorStringDescriptor.INSTANCE,
+                                              new DirectoryRecordsExternalizer());
+        for (String root : myRootStorage.getAllKeysWithExistingMapping()) {
+          String watermark = myRootStorage.get(root);
+          if (watermark != null) {
+            myRoots.put(root, watermark);
+          }
+        }
+      }
+      catch (IOException e) {
+        close(myRootStorage);
+        if (directories != null) close(directories);
+        throw e;
+      }
+      myDirectories = directories;
+    }
+
+    @Nullable
+    private String findRoot(@NotNull String path) {
+      String current = path;
+      while (true) {
+        if (myRoots.containsKey(current)) return current;
+        int slash = current.lastIndexOf('/');
+        if (slash <= 0) return null;
+        current = current.substring(0, slash);
+      }
+    }
+
+    private void collectRecursively(@NotNull String dir, @NotNull Map<String, Long> result) throws IOException {
+      DirectoryRecords records = myDirectories.get(dir);
+      if (records == null) return;
+
+      for (int i = 0; i < records.files.length; i++) {
+        result.put(dir + "/" + records.files[i], records.revisions[i]);
+      }
+      for (String subdirectory : records.subdirectories) {
+        collectRecursively(dir + "/" + subdirectory, result);
+      }
+    }
+
+    private void collectFile(@NotNull String path, @NotNull Map<String, Long> result) throws IOException {
+      int slash = path.lastIndexOf('/');
+      DirectoryRecords records = myDirectories.get(path.substring(0, slash));
+      if (records == null) return;
+
+      int i = Arrays.binarySearch(records.files, path.substring(slash + 1));
+      if (i >= 0) {
+        result.put(path, records.revisions[i]);
+      }
+    }
+
+    private void putRoot(@NotNull String root, @NotNull String watermark) throws IOException {
+      myRootStorage.put(root, watermark);
+      myRoots.put(root, watermark);
+      myValidatedRoots.add(root);
+    }
+
+    private void removeRoot(@NotNull String root) throws IOException {
+      myRoots.remove(root);
+      myValidatedRoots.remove(root);
+      myRootStorage.remove(root);
+      removeRecursively(root);
+    }
+
+    private void removeRecursively(@NotNull String dir) throws IOException {
+      DirectoryRecords records = myDirectories.get(dir);
+      if (records == null) return;
+
+      myDirectories.remove(dir);
+      for (String subdirectory : records.subdirectories) {
+        removeRecursively(dir + "/" + subdirectory);
+      }
+    }
+
+    private void close() {
+      close(myRootStorage);
+      close(myDirectories);
+    }
+
+    private static void close(@NotNull PersistentHashMap<?, ?> map) {
+      try {
+        map.close();
+      }
+      catch (IOException e) {
+        LOG.info(e);
+      }
+    }
+  }
+
+  private static final class DirectoryBuilder {
+    final Set<String> subdirectories = new HashSet<>();
+    // sorted for the binary search in ClientIndex.collectFile
+    final SortedMap<String, Long> files = new TreeMap<>();
+
+    @NotNull
+    DirectoryRecords build() {
+      long[] revisions = new long[files.size()];
+      int i = 0;
+      for (Long revision : files.values()) {
+        revisions[i++] = revision;
+      }
+      return new DirectoryRecords(ArrayUtilRt.toStringArray(subdirectories), ArrayUtilRt.toStringArray(files.keySet()), revisions);
+    }
+  }
+
+  private static final class DirectoryRecords {
+    // names of the subdirectories that have records
+    final String[] subdirectories;
+    // names of the files directly in the directory, sorted
+    final String[] files;
+    final long[] revisions;
+
+    private DirectoryRecords(String @NotNull [] subdirectories, String @NotNull [] files, long @NotNull [] revisions) {
+      this.subdirectories = subdirectories;
+      this.files = files;
+      this.revisions = revisions;
+    }
+  }
+
+  private static final class DirectoryRecordsExternalizer implements DataExternalizer<DirectoryRecords> {
+    @Override
+    public void save(@NotNull DataOutput out, DirectoryRecords value) throws IOException {
+      DataInputOutputUtil.writeINT(out, value.subdirectories.length);
+      for (String subdirectory : value.subdirectories) {
+        IOUtil.writeUTF(out, subdirectory);
+      }
+      DataInputOutputUtil.writeINT(out, value.files.length);
+      for (int i = 0; i < value.files.length; i++) {
+        IOUtil.writeUTF(out, value.files[i]);
+        DataInputOutputUtil.writeLONG(out, value.revisions[i]);
+      }
+    }
+
+    @Override
+    public DirectoryRecords read(@NotNull DataInput in) throws IOException {
+      String[] subdirectories = new String[DataInputOutputUtil.readINT(in)];
+      for (int i = 0; i < subdirectories.length; i++) {
+        subdirectories[i] = IOUtil.readUTF(in);
+      }
+      int size = DataInputOutputUtil.readINT(in);
+      String[] files = new String[size];
+      long[] revisions = new long[size];
+      for (int i = 0; i < size; i++) {
+        files[i] = IOUtil.readUTF(in);
+        revisions[i] = DataInputOutputUtil.readLONG(in);
+      }
+      return new DirectoryRecords(subdirectories, files, revisions);
+    }
+  }
+}
@@ -205,6 +205,35 @@ public final class PerforceManager  {
     return myPerforceBaseInfoWorker.getCachedInfo(connection);
   }
 
+  /**
+   * @return the "Server address" from the cached {@code p4 info} output, never runs a command
+   */
+  @Nullable
+  public String getCachedServerAddress(@NotNull P4Connection connection) {
+    try {
+      Map<String, List<String>> info = getInfoOnlyCached(connection);
+      List<String> addresses = info == null ? null : info.get(PerforceRunner.SERVER_ADDRESS);
+      return addresses == null || addresses.isEmpty() ? null : addresses.get(0);
+    }
+    catch (VcsException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return the "LineEnd" of the cached client spec, never runs a command
+   */
+  @Nullable
+  public String getCachedLineEnd(@NotNull P4Connection connection) {
+    try {
+      ClientData client = getClientOnlyCached(connection);
+      return client == null ? null : client.getLineEnd();
+    }
+    catch (VcsException e) {
+      return null;
+    }
+  }
+
   @Nullable ClientData getClientOnlyCached(final P4Connection connection) throws VcsException {
     return myPerforceBaseInfoWorker.getCachedClient(connection);
   }
@@ -149,12 +149,21 @@ public final class PerforceReadOnlyFileStateManager {
 
   public void processFocusLost() {
     myHasLostFocus = true;
+    // the have-table may be changed by a sync in another tool
+    invalidateHaveIndex();
   }
 
   public void discardUnversioned() {
+    invalidateHaveIndex();
     myDirtyFilesHandler.scheduleTotalRescan();
   }
 
+  private static void invalidateHaveIndex() {
+    if (PerforceHaveIndex.isEnabled()) {
+      PerforceHaveIndex.getInstance().invalidateWatermarks();
+    }
+  }
+
   private class MyVfsListener implements VirtualFileListener {
 
     @Override
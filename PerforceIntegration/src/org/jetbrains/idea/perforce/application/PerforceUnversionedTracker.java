@@ -30,6 +30,7 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.idea.perforce.PerforceBundle;
 import org.jetbrains.idea.perforce.ServerVersion;
 import org.jetbrains.idea.perforce.perforce.ExecResult;
+import org.jetbrains.idea.perforce.perforce.PerforceParallelExecutor;
 import org.jetbrains.idea.perforce.perforce.PerforceRunner;
 import org.jetbrains.idea.perforce.perforce.PerforceSettings;
 import org.jetbrains.idea.perforce.perforce.View;
@@ -37,6 +38,7 @@ import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
 
 import java.io.File;
 import java.util.*;
+import java.util.function.Function;
 
 public class PerforceUnversionedTracker {
   private static final Logger LOG = Logger.getInstance(PerforceUnversionedTracker.class);
@@ -140,9 +142,9 @@ public class PerforceUnversionedTracker {
     map = FileGrouper.distributeFilesByConnection(dirtyFiles, myProject);
     Set<VirtualFile> ignoredSet = new HashSet<>();
     try {
-      for (P4Connection connection : map.keySet()) {
-        ignoredSet.addAll(getFilesOutsideClientSpec(myProject, connection, map.get(connection)));
-      }
+      PerforceParallelExecutor.run(new ArrayList<>(map.keySet()), Function.identity(),
+                                   connection -> getFilesOutsideClientSpec(myProject, connection, map.get(connection)),
+                                   ignoredSet::addAll, null);
     }
     catch (VcsException e) {
       LOG.warn("Failed to get ignored files", e);
@@ -229,17 +231,50 @@ public class PerforceUnversionedTracker {
     ServerVersion serverVersion = PerforceManager.getInstance(project).getServerVersion(connection);
 
     if (serverVersion != null && serverVersion.supportsIgnoresCommand()) {
+      Set<VirtualFile> ignored = new LinkedHashSet<>();
+      List<VirtualFile> undecided = getIgnoredLocally(project, toCheckIgnored, ignored);
+      if (undecided.isEmpty()) {
+        return ignored;
+      }
+
       PerforceSettings settings = PerforceSettings.getSettings(project);
       if (settings.USE_PATTERN_MATCHING_IGNORE) {
-        return getIgnoredByPatterns(project, connection, toCheckIgnored);
+        ignored.addAll(getIgnoredByPatterns(project, connection, undecided));
       }
-
-      return getIgnoredFilesByIgnores(project, connection, toCheckIgnored);
+      else {
+        ignored.addAll(getIgnoredFilesByIgnores(project, connection, undecided));
+      }
+      return ignored;
     }
 
     return getIgnoredFilesByPreviewAdd(project, connection, toCheckIgnored);
   }
 
+  /**
+   * Adds the files ignored according to the local P4IGNORE files to {@code ignored}.
+   *
+   * @return the files that p4 has to be asked about
+   */
+  private static List<VirtualFile> getIgnoredLocally(Project project, List<VirtualFile> toCheckIgnored, Set<VirtualFile> ignored) {
+    Stopwatch sw = Stopwatch.createStarted();
+    P4IgnoreMatcher matcher = P4IgnoreMatcher.getInstance(project);
+    List<VirtualFile> undecided = new ArrayList<>();
+    for (VirtualFile file : toCheckIgnored) {
+      Boolean isIgnored = matcher.isIgnored(file);
+      if (isIgnored == null) {
+        undecided.add(file);
+      }
+      else if (isIgnored) {
+        ignored.add(file);
+      }
+    }
+
+    sw.stop();
+    LOG.debug("checking %d ignored files locally took %d ms, %d left for p4".formatted(toCheckIgnored.size(), sw.elapsed().toMillis(),
+                                                                                      undecided.size()));
+    return undecided;
+  }
+
   private static Set<VirtualFile> getIgnoredByPatterns(Project project, P4Connection connection, List<VirtualFile> toCheckIgnored) {
     Stopwatch sw = Stopwatch.createStarted();
     P4IgnoresMappingsHelper mappingsHelper = P4IgnoresMappingsHelper.create(project, connection);
@@ -12,18 +12,26 @@ import com.intellij.openapi.vcs.changes.VcsDirtyScopeImpl;
 import com.intellij.openapi.vcs.changes.VcsIgnoreManager;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.MultiMap;
 import com.intellij.vcsUtil.VcsUtil;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.idea.perforce.perforce.P4HaveParser;
 import org.jetbrains.idea.perforce.perforce.PathsHelper;
+import org.jetbrains.idea.perforce.perforce.PerforceParallelExecutor;
 import org.jetbrains.idea.perforce.perforce.PerforceRunner;
 import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
 
 import java.io.File;
 import java.util.*;
+import java.util.function.Function;
 
 public abstract class UnversionedScopeScanner {
   private static final Logger LOG = Logger.getInstance(UnversionedScopeScanner.class);
+  // each have watermark query is two p4 commands, for larger scopes "p4 have" is run without the index
+  private static final int MAX_WATERMARK_QUERIES = 10;
+  // a single "p4 have" over a few files is cheaper than validating the have index roots they are under
+  private static final int SMALL_SCOPE_SIZE = 50;
   private final Project myProject;
   private final PerforceRunner myRunner;
 
@@ -43,62 +51,128 @@ public abstract class UnversionedScopeScanner {
       LOG.debug("scope=" + dirtyFiles);
     }
     MultiMap<P4Connection,FilePath> map = FileGrouper.distributePathsByConnection(dirtyFiles, myProject);
-    for (P4Connection connection : map.keySet()) {
-      Collection<FilePath> files = map.get(connection);
+    PerforceParallelExecutor.run(new ArrayList<>(map.keySet()), Function.identity(),
+                                 connection -> scanConnection(connection, map.get(connection)),
+                                 scan -> addConnectionScan(scan, result, force), null);
+    return result;
+  }
 
-      final Set<VirtualFile> localFiles = enumerateLocalFiles(files);
-      result.allLocalFiles.addAll(localFiles);
-      checkCanceled();
+  private ConnectionScan scanConnection(P4Connection connection, Collection<FilePath> files) throws VcsException {
+    final ConnectionScan scan = new ConnectionScan();
+    scan.localFiles.addAll(enumerateLocalFiles(files));
+    scan.allLocalFiles.addAll(scan.localFiles);
+    checkCanceled();
 
-      final LocalFileSystem fs = LocalFileSystem.getInstance();
-      myRunner.haveMultiple(collectPaths(files), connection, new P4HaveParser(PerforceManager.getInstance(myProject)) {
-        @Override
-        public void consumeRevision(String path, long revision) {
-          checkCanceled();
+    final LocalFileSystem fs = LocalFileSystem.getInstance();
+    final P4HaveParser parser = new P4HaveParser(PerforceManager.getInstance(myProject)) {
+      @Override
+      public void consumeRevision(String path, long revision) {
+        checkCanceled();
 
-          VirtualFile vFile = findVirtualFile(path);
-          if (vFile != null) {
-            localFiles.remove(vFile);
-          }
-          else {
-            if (LOG.isDebugEnabled()) {
-              LOG.debug("locally missing file reported: " + path);
-            }
-            result.missingFiles.add(path);
+        VirtualFile vFile = findVirtualFile(path);
+        if (vFile != null) {
+          scan.localFiles.remove(vFile);
+        }
+        else {
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("locally missing file reported: " + path);
           }
+          scan.missingFiles.add(path);
         }
+      }
 
-        private VirtualFile findVirtualFile(String path) {
-          VirtualFile vFile = fs.findFileByPathIfCached(FileUtil.toSystemIndependentName(path));
-          if (vFile != null) {
-            return vFile;
-          }
+      private VirtualFile findVirtualFile(String path) {
+        VirtualFile vFile = fs.findFileByPathIfCached(FileUtil.toSystemIndependentName(path));
+        if (vFile != null) {
+          return vFile;
+        }
 
-          // see https://youtrack.jetbrains.com/issue/IDEA-39796
-          File ioFile = new File(path);
-          String appleForkPath = FileUtil.toSystemIndependentName(ioFile.getParent()) + "/%" + ioFile.getName();
-          return fs.findFileByPathIfCached(FileUtil.toSystemIndependentName(appleForkPath));
+        // see https://youtrack.jetbrains.com/issue/IDEA-39796
+        File ioFile = new File(path);
+        String appleForkPath = FileUtil.toSystemIndependentName(ioFile.getParent()) + "/%" + ioFile.getName();
+        return fs.findFileByPathIfCached(FileUtil.toSystemIndependentName(appleForkPath));
+      }
+    };
+
+    PerforceHaveIndex.Recorder recorder = null;
+    ConnectionKey key = PerforceHaveIndex.isEnabled() ? getConnectionKey(connection) : null;
+    if (key != null) {
+      PerforceHaveIndex index = PerforceHaveIndex.getInstance();
+      List<String> scopeDirs = ContainerUtil.mapNotNull(files, path -> path.isDirectory() ? path.getPath() : null);
+      boolean smallScope = scopeDirs.isEmpty() && files.size() <= SMALL_SCOPE_SIZE;
+      Set<String> rootsToValidate = index.getRootsToValidate(key, files);
+      if (rootsToValidate != null && (rootsToValidate.isEmpty() || !smallScope && rootsToValidate.size() <= MAX_WATERMARK_QUERIES)) {
+        if (!rootsToValidate.isEmpty()) {
+          Map<String, String> watermarks = new HashMap<>();
+          collectHaveWatermarks(connection, rootsToValidate, watermarks);
+          index.validateRoots(key, watermarks);
         }
-      });
-      checkCanceled();
+        if (index.processHaveRecords(key, files, parser::consumeRevision)) {
+          checkCanceled();
+          return scan;
+        }
+      }
 
-      if (force) {
-        result.localOnly.addAll(localFiles);
+      if (!scopeDirs.isEmpty() && scopeDirs.size() <= MAX_WATERMARK_QUERIES) {
+        // taken before "p4 have", so that a sync made in between makes the recorded watermarks outdated rather than the records
+        Map<String, String> watermarks = new HashMap<>();
+        collectHaveWatermarks(connection, scopeDirs, watermarks);
+        recorder = index.startRecording(key, watermarks, files);
       }
-      else {
-        ChangeListManager clm = ChangeListManager.getInstance(myProject);
-        for (VirtualFile file : localFiles) {
-          boolean ignored = clm.isIgnoredFile(file);
-          if (LOG.isDebugEnabled()) {
-            LOG.debug("localOnly reported: " + file + (ignored ? ", ignored" : ""));
-          }
-          if (!ignored) {
-            result.localOnly.add(file);
-          }
+    }
+
+    myRunner.haveMultiple(collectPaths(files), connection, recorder == null ? parser : new RecordingHaveParser(parser, recorder));
+    checkCanceled();
+    if (recorder != null) {
+      recorder.commit();
+    }
+    return scan;
+  }
+
+  @Nullable
+  private static ConnectionKey getConnectionKey(P4Connection connection) {
+    try {
+      return connection.getConnectionKey();
+    }
+    catch (UnsupportedOperationException e) {
+      return null;
+    }
+  }
+
+  private void collectHaveWatermarks(P4Connection connection, Collection<String> dirs, Map<String, String> watermarks) {
+    for (String dir : dirs) {
+      checkCanceled();
+      try {
+        String watermark = myRunner.getHaveWatermark(connection, VcsUtil.getFilePath(dir, true));
+        if (watermark != null) {
+          watermarks.put(dir, watermark);
+        }
+      }
+      catch (VcsException e) {
+        LOG.debug(e);
+      }
+    }
+  }
+
+  private void addConnectionScan(ConnectionScan scan, ScanResult result, boolean force) {
+    result.allLocalFiles.addAll(scan.allLocalFiles);
+    result.missingFiles.addAll(scan.missingFiles);
+
+    if (force) {
+      result.localOnly.addAll(scan.localFiles);
+    }
+    else {
+      ChangeListManager clm = ChangeListManager.getInstance(myProject);
+      for (VirtualFile file : scan.localFiles) {
+        boolean ignored = clm.isIgnoredFile(file);
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("localOnly reported: " + file + (ignored ? ", ignored" : ""));
+        }
+        if (!ignored) {
+          result.localOnly.add(file);
         }
       }
     }
-    return result;
   }
 
   private PathsHelper collectPaths(Collection<FilePath> value) {
@@ -130,6 +204,35 @@ public abstract class UnversionedScopeScanner {
     final Set<VirtualFile> allLocalFiles = new HashSet<>();
   }
 
+  private final class RecordingHaveParser extends P4HaveParser {
+    private final P4HaveParser myDelegate;
+    private final PerforceHaveIndex.Recorder myRecorder;
+
+    private RecordingHaveParser(P4HaveParser delegate, PerforceHaveIndex.Recorder recorder) {
+      super(PerforceManager.getInstance(myProject));
+      myDelegate = delegate;
+      myRecorder = recorder;
+    }
+
+    @Override
+    public void consumeRevision(String path, long revision) {
+      myRecorder.consumeRevision(path, revision);
+      myDelegate.consumeRevision(path, revision);
+    }
+
+    @Override
+    public void outputIncomplete() {
+      myRecorder.markIncomplete();
+      myDelegate.outputIncomplete();
+    }
+  }
+
+  private static final class ConnectionScan {
+    final Set<String> missingFiles = new HashSet<>();
+    final Set<VirtualFile> localFiles = new HashSet<>();
+    final Set<VirtualFile> allLocalFiles = new HashSet<>();
+  }
+
   private Set<VirtualFile> enumerateLocalFiles(Collection<FilePath> roots) {
     final VcsDirtyScopeImpl scope = new VcsDirtyScopeImpl(PerforceVcs.getInstance(myProject));
     for (final FilePath root : roots) {
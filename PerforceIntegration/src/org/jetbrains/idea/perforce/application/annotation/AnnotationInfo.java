@@ -17,12 +17,16 @@ package org.jetbrains.idea.perforce.application.annotation;
 
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.vcs.VcsException;
+import com.intellij.util.ArrayUtilRt;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.IOUtil;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.idea.perforce.PerforceBundle;
 
-import java.io.IOException;
-import java.io.LineNumberReader;
-import java.io.StringReader;
+import java.io.*;
 
 public final class AnnotationInfo {
   private final String myContent;
@@ -57,6 +61,99 @@ public final class AnnotationInfo {
     myRevisions = revisions.toLongArray();
   }
 
+  public AnnotationInfo(@NotNull String content, long @NotNull [] revisions, boolean useChangelistNumbers) {
+    myContent = content;
+    myRevisions = revisions;
+    myUseChangelistNumbers = useChangelistNumbers;
+  }
+
+  public byte @NotNull [] toBytes() {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeBoolean(myUseChangelistNumbers);
+      IOUtil.writeUTF(out, myContent);
+      DataInputOutputUtil.writeINT(out, myRevisions.length);
+      for (long revision : myRevisions) {
+        DataInputOutputUtil.writeLONG(out, revision);
+      }
+      out.flush();
+      return bytes.toByteArray();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @NotNull
+  public static AnnotationInfo fromBytes(byte @NotNull [] bytes) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    boolean useChangelistNumbers = in.readBoolean();
+    String content = IOUtil.readUTF(in);
+    long[] revisions = new long[DataInputOutputUtil.readINT(in)];
+    for (int i = 0; i < revisions.length; i++) {
+      revisions[i] = DataInputOutputUtil.readLONG(in);
+    }
+    return new AnnotationInfo(content, revisions, useChangelistNumbers);
+  }
+
+  /**
+   * Combines the annotation of an older revision with the annotation of the range from that revision to a newer one
+   * ({@code p4 annotate file#old,#new}). Lines that the range annotation attributes to the start of the range haven't changed since
+   * then, they are matched with the lines of the older annotation by their exact content, in order, and take their revisions from it.
+   *
+   * @return annotation of the newer revision, or {@code null} if the annotations can't be combined unambiguously, e.g. because a line
+   * matches several lines of the older annotation that have different revisions, or the lines differ in whitespace only
+   */
+  @Nullable
+  public static AnnotationInfo rebase(@NotNull AnnotationInfo base, @NotNull AnnotationInfo range, long rangeStart) {
+    if (base.myUseChangelistNumbers || range.myUseChangelistNumbers) return null;
+
+    String[] rangeLines = splitLines(range.myContent);
+    String[] baseLines = splitLines(base.myContent);
+    if (rangeLines.length != range.myRevisions.length || baseLines.length != base.myRevisions.length) return null;
+
+    IntArrayList unchanged = new IntArrayList();
+    for (int i = 0; i < range.myRevisions.length; i++) {
+      if (range.myRevisions[i] == rangeStart) {
+        unchanged.add(i);
+      }
+    }
+
+    // unchanged lines are a subsequence of the older content; the earliest and the latest positions where each of them can be
+    // matched bound all possible matchings
+    int[] earliest = new int[unchanged.size()];
+    int baseIndex = 0;
+    for (int i = 0; i < earliest.length; i++) {
+      String line = rangeLines[unchanged.getInt(i)];
+      while (baseIndex < baseLines.length && !baseLines[baseIndex].equals(line)) baseIndex++;
+      if (baseIndex == baseLines.length) return null;
+      earliest[i] = baseIndex++;
+    }
+    int[] latest = new int[unchanged.size()];
+    baseIndex = baseLines.length - 1;
+    for (int i = latest.length - 1; i >= 0; i--) {
+      String line = rangeLines[unchanged.getInt(i)];
+      while (!baseLines[baseIndex].equals(line)) baseIndex--;
+      latest[i] = baseIndex--;
+    }
+
+    long[] revisions = range.myRevisions.clone();
+    for (int i = 0; i < earliest.length; i++) {
+      long revision = base.myRevisions[earliest[i]];
+      for (int j = earliest[i] + 1; j <= latest[i]; j++) {
+        if (base.myRevisions[j] != revision && baseLines[j].equals(baseLines[earliest[i]])) return null;
+      }
+      revisions[unchanged.getInt(i)] = revision;
+    }
+    return new AnnotationInfo(range.myContent, revisions, false);
+  }
+
+  private static String @NotNull [] splitLines(@NotNull String content) {
+    // the content is built by the parser above: each line ends with '\n'
+    return content.isEmpty() ? ArrayUtilRt.EMPTY_STRING_ARRAY : content.substring(0, content.length() - 1).split("\n", -1);
+  }
+
   public String getContent() {
     return myContent;
   }
@@ -1,5 +1,6 @@
 package org.jetbrains.idea.perforce.operations;
 
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.VcsException;
@@ -8,14 +9,21 @@ import com.intellij.openapi.vcs.changes.ChangeListManagerGate;
 import com.intellij.openapi.vcs.changes.CurrentContentRevision;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.ProcessingContext;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.containers.MultiMap;
 import org.jetbrains.idea.perforce.application.PerforceChangeProvider;
 import org.jetbrains.idea.perforce.application.PerforceVcs;
 import org.jetbrains.idea.perforce.perforce.FStat;
 import org.jetbrains.idea.perforce.perforce.P4File;
 import org.jetbrains.idea.perforce.perforce.PerforceRunner;
+import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
+
+import java.util.*;
 
 
 public class P4AddOperation extends VcsOperationOnPath {
+  private static final Logger LOG = Logger.getInstance(P4AddOperation.class);
+
   @SuppressWarnings("unused") // used by deserialization reflection
   public P4AddOperation() {
   }
@@ -39,11 +47,7 @@ public class P4AddOperation extends VcsOperationOnPath {
       return;
     }
     // already being added or edited or something
-    if (p4FStat.local == FStat.LOCAL_ADDING ||
-        p4FStat.local == FStat.LOCAL_BRANCHING ||
-        p4FStat.local == FStat.LOCAL_CHECKED_OUT ||
-        p4FStat.local == FStat.LOCAL_INTEGRATING ||
-        p4FStat.local == FStat.LOCAL_MOVE_ADDING) {
+    if (isOpened(p4FStat)) {
       return;
     }
 
@@ -56,6 +60,72 @@ public class P4AddOperation extends VcsOperationOnPath {
       runner.add(p4File, changeListNumber);
     }
 
+    addCompleted(project, p4File);
+  }
+
+  /**
+   * Adds the files of several queued operations under one connection with a single {@code p4 fstat} and one {@code p4 add}
+   * per changelist. Files being deleted need a revert first and go through {@link #execute} one by one, as do the files of a failed
+   * command, so their errors are reported as before.
+   */
+  static void executeAll(Project project, P4Connection connection, List<P4AddOperation> operations, ProcessingContext context)
+    throws VcsException {
+    PerforceRunner runner = PerforceRunner.getInstance(project);
+    Map<P4AddOperation, P4File> files = new LinkedHashMap<>();
+    for (P4AddOperation operation : operations) {
+      files.put(operation, P4File.createInefficientFromLocalPath(operation.myPath));
+    }
+    Map<P4File, FStat> fstats = runner.fstatBulk(new ArrayList<>(files.values()));
+
+    List<P4AddOperation> oneByOne = new ArrayList<>();
+    MultiMap<Long, P4AddOperation> byChangeList = new MultiMap<>(new LinkedHashMap<>());
+    for (P4AddOperation operation : operations) {
+      P4File p4File = files.get(operation);
+      FStat fstat = fstats.get(p4File);
+      if (fstat == null || fstat.local == FStat.Local.DELETING || fstat.local == FStat.Local.MOVE_DELETING) {
+        oneByOne.add(operation);
+      }
+      else if (fstat.status != FStat.STATUS_NOT_IN_CLIENTSPEC && fstat.status != FStat.STATUS_UNKNOWN && !isOpened(fstat)) {
+        byChangeList.putValue(operation.getPerforceChangeList(project, p4File, context), operation);
+      }
+    }
+
+    for (Map.Entry<Long, Collection<P4AddOperation>> entry : byChangeList.entrySet()) {
+      Collection<P4AddOperation> group = entry.getValue();
+      List<P4File> groupFiles = ContainerUtil.map(group, files::get);
+      try {
+        runner.addAll(groupFiles, entry.getKey(), connection);
+      }
+      catch (VcsException e) {
+        // some files of the group may have been added anyway, the others get their own error
+        LOG.debug(e);
+        Map<P4File, FStat> after = runner.fstatBulk(groupFiles);
+        Set<P4AddOperation> failed = new HashSet<>(ContainerUtil.filter(group, operation -> {
+          FStat fstat = after.get(files.get(operation));
+          return fstat == null || fstat.local != FStat.LOCAL_ADDING;
+        }));
+        oneByOne.addAll(failed);
+        group = ContainerUtil.filter(group, operation -> !failed.contains(operation));
+      }
+      for (P4AddOperation operation : group) {
+        operation.addCompleted(project, files.get(operation));
+      }
+    }
+
+    for (P4AddOperation operation : oneByOne) {
+      operation.execute(project, context);
+    }
+  }
+
+  private static boolean isOpened(FStat fstat) {
+    return fstat.local == FStat.LOCAL_ADDING ||
+           fstat.local == FStat.LOCAL_BRANCHING ||
+           fstat.local == FStat.LOCAL_CHECKED_OUT ||
+           fstat.local == FStat.LOCAL_INTEGRATING ||
+           fstat.local == FStat.LOCAL_MOVE_ADDING;
+  }
+
+  private void addCompleted(Project project, P4File p4File) {
     FilePath path = getFilePath();
     ((PerforceChangeProvider) PerforceVcs.getInstance(project).getChangeProvider()).clearUnversionedStatus(path);
 
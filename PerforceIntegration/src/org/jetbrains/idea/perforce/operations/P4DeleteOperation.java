@@ -1,5 +1,6 @@
 package org.jetbrains.idea.perforce.operations;
 
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vcs.FilePath;
@@ -9,15 +10,22 @@ import com.intellij.openapi.vcs.changes.Change;
 import com.intellij.openapi.vcs.changes.ChangeListManagerGate;
 import com.intellij.openapi.vcs.changes.ContentRevision;
 import com.intellij.util.ProcessingContext;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.containers.MultiMap;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.idea.perforce.perforce.FStat;
 import org.jetbrains.idea.perforce.perforce.P4File;
 import org.jetbrains.idea.perforce.perforce.PerforceCachingContentRevision;
 import org.jetbrains.idea.perforce.perforce.PerforceRunner;
+import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
 
 import java.io.File;
+import java.util.*;
 
 
 public class P4DeleteOperation extends VcsOperationOnPath {
+  private static final Logger LOG = Logger.getInstance(P4DeleteOperation.class);
+
   @SuppressWarnings("unused") // used by deserialization reflection
   public P4DeleteOperation() {
   }
@@ -34,6 +42,52 @@ public class P4DeleteOperation extends VcsOperationOnPath {
     markFileAsDirty(project, myPath);
   }
 
+  /**
+   * Deletes the files of several queued operations under one connection with a single {@code p4 fstat} and one {@code p4 delete}
+   * per changelist. Opened files need a revert first and go through {@link #execute} one by one, as do the files of a failed command.
+   */
+  static void executeAll(Project project, P4Connection connection, List<P4DeleteOperation> operations, ProcessingContext context)
+    throws VcsException {
+    PerforceRunner runner = PerforceRunner.getInstance(project);
+    Map<P4DeleteOperation, P4File> files = new LinkedHashMap<>();
+    for (P4DeleteOperation operation : operations) {
+      files.put(operation, P4File.createInefficientFromLocalPath(operation.myPath));
+    }
+    Map<P4File, FStat> fstats = runner.fstatBulk(new ArrayList<>(files.values()));
+
+    List<P4DeleteOperation> oneByOne = new ArrayList<>();
+    MultiMap<Long, P4DeleteOperation> byChangeList = new MultiMap<>(new LinkedHashMap<>());
+    for (P4DeleteOperation operation : operations) {
+      P4File p4File = files.get(operation);
+      FStat fstat = fstats.get(p4File);
+      if (fstat != null && fstat.local == FStat.LOCAL_CHECKED_IN && fstat.status != FStat.STATUS_NOT_ADDED &&
+          fstat.status != FStat.STATUS_NOT_IN_CLIENTSPEC) {
+        byChangeList.putValue(operation.getPerforceChangeList(project, p4File, context), operation);
+      }
+      else {
+        oneByOne.add(operation);
+      }
+    }
+
+    for (Map.Entry<Long, Collection<P4DeleteOperation>> entry : byChangeList.entrySet()) {
+      try {
+        runner.deleteAll(ContainerUtil.map(entry.getValue(), files::get), entry.getKey(), connection);
+        for (P4DeleteOperation operation : entry.getValue()) {
+          markFileAsDirty(project, operation.myPath);
+        }
+      }
+      catch (VcsException e) {
+        // files already opened for delete are fine for assureDel, the others get their own error
+        LOG.debug(e);
+        oneByOne.addAll(entry.getValue());
+      }
+    }
+
+    for (P4DeleteOperation operation : oneByOne) {
+      operation.execute(project, context);
+    }
+  }
+
   @Override
   public Change getChange(final Project project, ChangeListManagerGate addGate) {
     FilePath path = VcsContextFactory.getInstance().createFilePathOn(new File(myPath));
@@ -1,6 +1,7 @@
 package org.jetbrains.idea.perforce.operations;
 
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Ref;
@@ -11,6 +12,8 @@ import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.changes.*;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.ProcessingContext;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.containers.MultiMap;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.idea.perforce.PerforceBundle;
 import org.jetbrains.idea.perforce.application.PerforceBaseInfoWorker;
@@ -19,6 +22,9 @@ import org.jetbrains.idea.perforce.perforce.FStat;
 import org.jetbrains.idea.perforce.perforce.P4File;
 import org.jetbrains.idea.perforce.perforce.PerforceCachingContentRevision;
 import org.jetbrains.idea.perforce.perforce.PerforceRunner;
+import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
+
+import java.util.*;
 
 
 public class P4EditOperation extends VcsOperationOnPath {
@@ -100,12 +106,82 @@ public class P4EditOperation extends VcsOperationOnPath {
         }
       }
     } finally {
-      VirtualFile vFile = getFilePath().getVirtualFile();
-      if (vFile != null) {
-        vFile.refresh(true, false);
-        vcs.asyncEditCompleted(vFile);
+      editCompleted(vcs);
+    }
+    markDirty(project);
+  }
+
+  /**
+   * Edits the files of several queued operations under one connection with a single {@code p4 fstat} and one {@code p4 edit}
+   * per changelist. Files in an unexpected state go through {@link #execute} one by one, so their errors are reported as before.
+   */
+  static void executeAll(final Project project, P4Connection connection, List<P4EditOperation> operations, ProcessingContext context)
+    throws VcsException {
+    PerforceVcs vcs = ReadAction.compute(() -> project.isDisposed() ? null : PerforceVcs.getInstance(project));
+    if (vcs == null) return;
+    PerforceRunner runner = PerforceRunner.getInstance(project);
+
+    Map<P4EditOperation, P4File> files = new LinkedHashMap<>();
+    for (P4EditOperation operation : operations) {
+      files.put(operation, P4File.createInefficientFromLocalPath(operation.myPath));
+    }
+    Map<P4File, FStat> fstats = runner.fstatBulk(new ArrayList<>(files.values()));
+
+    List<P4EditOperation> oneByOne = new ArrayList<>();
+    MultiMap<Long, P4EditOperation> byChangeList = new MultiMap<>(new LinkedHashMap<>());
+    for (P4EditOperation operation : operations) {
+      P4File p4File = files.get(operation);
+      FStat fstat = fstats.get(p4File);
+      if (fstat != null && fstat.local == FStat.LOCAL_MOVE_DELETING) {
+        operation.editCompleted(vcs);
+        operation.markDirty(project);
+      }
+      else if (fstat != null && fstat.status != FStat.STATUS_NOT_ADDED && fstat.status != FStat.STATUS_ONLY_LOCAL &&
+               fstat.status != FStat.STATUS_DELETED && (fstat.local == FStat.LOCAL_CHECKED_IN || fstat.local == FStat.LOCAL_INTEGRATING)) {
+        byChangeList.putValue(operation.getPerforceChangeList(project, p4File, context), operation);
+      }
+      else {
+        oneByOne.add(operation);
       }
     }
+
+    for (Map.Entry<Long, Collection<P4EditOperation>> entry : byChangeList.entrySet()) {
+      Collection<P4EditOperation> group = entry.getValue();
+      List<P4File> groupFiles = ContainerUtil.map(group, files::get);
+      try {
+        runner.editAll(groupFiles, entry.getKey(), false, connection);
+      }
+      catch (VcsException e) {
+        // some files of the group may have been opened anyway, the others get their own error
+        LOG.debug(e);
+        Map<P4File, FStat> after = runner.fstatBulk(groupFiles);
+        Set<P4EditOperation> failed = new HashSet<>(ContainerUtil.filter(group, operation -> {
+          FStat fstat = after.get(files.get(operation));
+          return fstat == null || fstat.local != FStat.LOCAL_CHECKED_OUT;
+        }));
+        oneByOne.addAll(failed);
+        group = ContainerUtil.filter(group, operation -> !failed.contains(operation));
+      }
+      for (P4EditOperation operation : group) {
+        operation.editCompleted(vcs);
+        operation.markDirty(project);
+      }
+    }
+
+    for (P4EditOperation operation : oneByOne) {
+      operation.execute(project, context);
+    }
+  }
+
+  private void editCompleted(PerforceVcs vcs) {
+    VirtualFile vFile = getFilePath().getVirtualFile();
+    if (vFile != null) {
+      vFile.refresh(true, false);
+      vcs.asyncEditCompleted(vFile);
+    }
+  }
+
+  private void markDirty(final Project project) {
     final FilePath filePath = getFilePath();
     ApplicationManager.getApplication().runReadAction(() -> {
       if (!project.isDisposed()) {
@@ -1,5 +1,6 @@
 package org.jetbrains.idea.perforce.operations;
 
+import com.google.common.collect.Lists;
 import com.intellij.openapi.application.AccessToken;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.PersistentStateComponent;
@@ -14,6 +15,7 @@ import com.intellij.openapi.vcs.AbstractVcsHelper;
 import com.intellij.openapi.vcs.VcsConnectionProblem;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.util.ProcessingContext;
+import com.intellij.util.ThrowableConsumer;
 import com.intellij.util.ThrowableRunnable;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.FileCollectionFactory;
@@ -35,6 +37,8 @@ import java.util.*;
 @State(name = "VcsOperationLog", storages = @Storage(StoragePathMacros.WORKSPACE_FILE), reportStatistic = false)
 public final class VcsOperationLog implements PersistentStateComponent<VcsOperationLog.OperationList>{
   private static final Logger LOG = Logger.getInstance(VcsOperationLog.class);
+  private static final int MERGE_CHUNK_SIZE = 500;
+
   public static class OperationList {
     private final MultiMap<String, VcsOperation> myOperationsByOutputPath = new MultiMap<>(FileCollectionFactory.createCanonicalFilePathLinkedMap());
     @AbstractCollection(
@@ -171,7 +175,16 @@ public final class VcsOperationLog implements PersistentStateComponent<VcsOperat
       if (!myOperations.myOperationsByOutputPath.isEmpty()) {
         Collection<? extends VcsOperation> allOperations = myOperations.myOperationsByOutputPath.values();
         VcsOperation firstOp = allOperations.iterator().next();
-        List<VcsOperation> mergeable = ContainerUtil.filter(allOperations, op -> op.getClass() == firstOp.getClass());
+        List<VcsOperation> mergeable = new ArrayList<>();
+        for (VcsOperation op : allOperations) {
+          if (op.getClass() == firstOp.getClass()) {
+            mergeable.add(op);
+          }
+          else if (isOrderingBarrier(op) || isOrderingBarrier(firstOp)) {
+            // a move or copy may create or remove the paths of later operations, they can't be moved over it
+            break;
+          }
+        }
         mergeable.forEach(myOperations::removeOperation);
         return mergeable;
       }
@@ -179,6 +192,10 @@ public final class VcsOperationLog implements PersistentStateComponent<VcsOperat
     }
   }
 
+  private static boolean isOrderingBarrier(VcsOperation op) {
+    return op instanceof P4MoveRenameOperation || op instanceof P4CopyOperation;
+  }
+
   public List<VcsOperation> getPendingOperations() {
     synchronized (lock) {
       return myOperations.getOperations();
@@ -236,11 +253,31 @@ public final class VcsOperationLog implements PersistentStateComponent<VcsOperat
         }
       }
 
-      if (myRemaining.iterator().next() instanceof P4RevertOperation) {
+      VcsOperation first = myRemaining.iterator().next();
+      if (first instanceof P4RevertOperation) {
         for (final P4Connection connection : byConnection.keySet()) {
           mergeRevert(result, connection, byConnection.get(connection));
         }
-      } else {
+      }
+      else if (first instanceof P4EditOperation) {
+        for (P4Connection connection : byConnection.keySet()) {
+          mergeOnPath(result, byConnection.get(connection), P4EditOperation.class,
+                      operations -> P4EditOperation.executeAll(myProject, connection, operations, myContext));
+        }
+      }
+      else if (first instanceof P4AddOperation) {
+        for (P4Connection connection : byConnection.keySet()) {
+          mergeOnPath(result, byConnection.get(connection), P4AddOperation.class,
+                      operations -> P4AddOperation.executeAll(myProject, connection, operations, myContext));
+        }
+      }
+      else if (first instanceof P4DeleteOperation) {
+        for (P4Connection connection : byConnection.keySet()) {
+          mergeOnPath(result, byConnection.get(connection), P4DeleteOperation.class,
+                      operations -> P4DeleteOperation.executeAll(myProject, connection, operations, myContext));
+        }
+      }
+      else {
         for (VcsOperation operation : byConnection.values()) {
           handleNonMergeableOperation(result, operation);
         }
@@ -268,6 +305,22 @@ public final class VcsOperationLog implements PersistentStateComponent<VcsOperat
       }, operations);
     }
 
+    private <T extends VcsOperationOnPath> void mergeOnPath(LinkedHashMap<ThrowableRunnable<VcsException>, Collection<VcsOperation>> result,
+                                                            Collection<VcsOperation> operations,
+                                                            Class<T> operationClass,
+                                                            ThrowableConsumer<List<T>, VcsException> executor) {
+      if (operations.size() == 1) {
+        handleNonMergeableOperation(result, operations.iterator().next());
+        return;
+      }
+
+      // a connection problem pushes the operations of the running command back to the log, a chunk bounds the work redone after it
+      for (List<VcsOperation> chunk : Lists.partition(new ArrayList<>(operations), MERGE_CHUNK_SIZE)) {
+        List<T> typed = ContainerUtil.map(chunk, operationClass::cast);
+        result.put(() -> executor.consume(typed), chunk);
+      }
+    }
+
     private void handleNonMergeableOperation(LinkedHashMap<ThrowableRunnable<VcsException>, Collection<VcsOperation>> result,
                                              final VcsOperation operation) {
       result.put(() -> operation.execute(myProject, myContext), Collections.singletonList(operation));
@@ -26,6 +26,7 @@ public enum P4Command {
   resolved("resolved"),
   resolve("resolve"),
   move("move"),
+  sizes("sizes"),
   unknown("unknown");
 
   private final String myName;
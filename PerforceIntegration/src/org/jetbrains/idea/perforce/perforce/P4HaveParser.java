@@ -38,6 +38,12 @@ public abstract class P4HaveParser {
 
   public abstract void consumeRevision(String path, long revision);
 
+  /**
+   * Called when {@code p4 have} has skipped some of the requested paths, e.g. ones that are not on the client.
+   */
+  public void outputIncomplete() {
+  }
+
   void readHaveOutput(InputStream inputStream) throws IOException, VcsException {
     @SuppressWarnings("IOResourceOpenedButNotSafelyClosed")
     final BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
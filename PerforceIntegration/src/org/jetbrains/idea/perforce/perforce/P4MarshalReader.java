@@ -0,0 +1,60 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the output of {@code p4 -G}: a sequence of dictionaries in Python marshal format. Unlike the plain text output it has explicit
+ * lengths, so file contents printed by one command can be told apart without guessing where the next file header starts.
+ */
+final class P4MarshalReader {
+  private final DataInputStream myStream;
+
+  P4MarshalReader(@NotNull InputStream stream) {
+    myStream = new DataInputStream(new BufferedInputStream(stream));
+  }
+
+  /**
+   * @return next dictionary with {@code Integer} and {@code byte[]} values, or {@code null} at the end of the output
+   */
+  @Nullable
+  Map<String, Object> readDictionary() throws IOException {
+    int type = myStream.read();
+    if (type == -1) return null;
+    if (type != '{') throw new IOException("Unexpected marshal type: " + (char)type);
+
+    Map<String, Object> result = new HashMap<>();
+    while (true) {
+      int keyType = myStream.readUnsignedByte();
+      if (keyType == '0') return result;
+
+      String key = new String(readString(keyType), StandardCharsets.UTF_8);
+      int valueType = myStream.readUnsignedByte();
+      result.put(key, valueType == 'i' ? (Object)readInt() : readString(valueType));
+    }
+  }
+
+  private byte @NotNull [] readString(int type) throws IOException {
+    if (type != 's' && type != 'u' && type != 't') throw new IOException("Unexpected marshal type: " + (char)type);
+    int length = readInt();
+    if (length < 0) throw new IOException("Invalid string length: " + length);
+    byte[] bytes = new byte[length];
+    myStream.readFully(bytes);
+    return bytes;
+  }
+
+  private int readInt() throws IOException {
+    return Integer.reverseBytes(myStream.readInt());
+  }
+
+  @Nullable
+  static String getString(@NotNull Map<String, Object> dictionary, @NotNull String key) {
+    Object value = dictionary.get(key);
+    return value instanceof byte[] ? new String((byte[])value, StandardCharsets.UTF_8) : value != null ? value.toString() : null;
+  }
+}
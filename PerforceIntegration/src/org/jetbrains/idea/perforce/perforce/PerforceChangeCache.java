@@ -22,17 +22,27 @@ public class PerforceChangeCache {
   private final PerforceRunner myRunner;
   private final PerforceManager myPerforceManager;
   private final Map<Pair<Long, ConnectionKey>, List<PerforceChange>> myCache = new ConcurrentHashMap<>();
+  private final boolean mySubmitted;
 
   public PerforceChangeCache(Project project) {
+    this(project, false);
+  }
+
+  /**
+   * @param submitted whether the cache is used only for submitted changelists, their changes can be taken from
+   *                  {@link PerforceCommittedChangesStore}
+   */
+  public PerforceChangeCache(Project project, boolean submitted) {
     myRunner = PerforceRunner.getInstance(project);
     myPerforceManager = PerforceManager.getInstance(project);
+    mySubmitted = submitted;
   }
 
   public List<PerforceChange> getChanges(P4Connection connection, final long changeListNumber, @Nullable final VirtualFile vcsRoot) {
     List<PerforceChange> all = myCache.get(createKey(connection, changeListNumber));
     if (all == null) {
       try {
-        all = myRunner.getChanges(connection, changeListNumber);
+        all = mySubmitted ? myRunner.getSubmittedChanges(connection, changeListNumber) : myRunner.getChanges(connection, changeListNumber);
       }
       catch (VcsException e) {
         all = Collections.emptyList();
@@ -23,6 +23,7 @@ import com.intellij.openapi.vcs.AbstractVcs;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.actions.VcsContextFactory;
+import com.intellij.openapi.vcs.changes.BinaryContentRevision;
 import com.intellij.openapi.vcs.changes.Change;
 import com.intellij.openapi.vcs.versionBrowser.CommittedChangeList;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -113,23 +114,28 @@ public class PerforceChangeList implements CommittedChangeList {
 
   public List<Change> getChangesUnder(@Nullable final VirtualFile root) {
     List<Change> ideaChanges = new ArrayList<>();
+    PerforcePrintBatch printBatch = new PerforcePrintBatch(myConnection);
     for(PerforceChange path: myChangeCache.getChanges(myConnection, myNumber, root)) {
       final int type = path.getType();
       PerforceContentRevision beforeRevision = ((type == PerforceAbstractChange.ADD) || (type == PerforceAbstractChange.MOVE_ADD))
                                                ? null
-                                               : createRevision(path.getDepotPath(), path.getRevision() - 1);
+                                               : createRevision(path.getDepotPath(), path.getRevision() - 1, printBatch);
 
       PerforceContentRevision afterRevision = ((type == PerforceAbstractChange.DELETE) || (type == PerforceAbstractChange.MOVE_DELETE))
                                               ? null
-                                              : createRevision(path.getDepotPath(), path.getRevision());
+                                              : createRevision(path.getDepotPath(), path.getRevision(), printBatch);
 
       ideaChanges.add(new Change(beforeRevision, afterRevision));
     }
     return ideaChanges;
   }
 
-  private PerforceContentRevision createRevision(final String depotPath, final long revision) {
-    return PerforceContentRevision.create(myProject, myConnection, depotPath, revision, -1);
+  private PerforceContentRevision createRevision(final String depotPath, final long revision, PerforcePrintBatch printBatch) {
+    PerforceContentRevision contentRevision = PerforceContentRevision.create(myProject, myConnection, depotPath, revision, -1);
+    if (!(contentRevision instanceof BinaryContentRevision)) {
+      contentRevision.setPrintBatch(printBatch);
+    }
+    return contentRevision;
   }
 
   @Override
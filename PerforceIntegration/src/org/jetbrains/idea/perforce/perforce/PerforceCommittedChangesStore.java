@@ -0,0 +1,485 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.SystemProperties;
+import com.intellij.util.io.*;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+import org.jetbrains.idea.perforce.ChangeListData;
+import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Submitted changelists kept on disk between IDE sessions: their headers from {@code p4 changes}, the file lists from {@code p4 describe},
+ * and for each location of the committed changes view the numbers of the changelists known to affect it. A location record covers
+ * all changes in a range up to the newest known one, so a refresh only needs to ask the server for the changes after that range,
+ * and older ones are requested page by page when they're needed.
+ * <p>
+ * Submitted changelists are treated as immutable: descriptions edited with {@code p4 change -f} and obliterated changes stay as they
+ * were when they were first loaded.
+ * <p>
+ * When the store is opened, locations and servers that haven't been used for {@code p4.changes.store.max.age.days} are removed
+ * together with their changelists, and if more than {@link #MAX_CHANGELISTS} changelists remain, the oldest ones that no location
+ * refers to are removed.
+ */
+@Service
+public final class PerforceCommittedChangesStore implements Disposable {
+  private static final Logger LOG = Logger.getInstance(PerforceCommittedChangesStore.class);
+
+  // increase when the stored format changes
+  private static final int VERSION = 2;
+  private static final long MAX_AGE = TimeUnit.DAYS.toMillis(SystemProperties.getIntProperty("p4.changes.store.max.age.days", 30));
+  static final int MAX_CHANGELISTS = 200_000;
+  private static volatile boolean ourEnabledInTests;
+
+  private final Path myDir;
+  private PersistentHashMap<String, Location> myLocations;
+  private PersistentHashMap<String, ChangeListData> myChangeLists;
+  private PersistentHashMap<String, List<StoredFileChange>> myFiles;
+  // server key to the time it was last used
+  private PersistentHashMap<String, Long> myServers;
+  private final Set<String> myServersUsedInSession = new HashSet<>();
+  private boolean myEvicted;
+  private boolean myBroken;
+  private boolean myDisposed;
+
+  public PerforceCommittedChangesStore() {
+    this(PathManager.getSystemDir().resolve("perforce-changes").resolve("v" + VERSION));
+  }
+
+  @TestOnly
+  PerforceCommittedChangesStore(@NotNull Path dir) {
+    myDir = dir;
+  }
+
+  public static PerforceCommittedChangesStore getInstance() {
+    return ApplicationManager.getApplication().getService(PerforceCommittedChangesStore.class);
+  }
+
+  /**
+   * Lets the test servers use the store until {@code parentDisposable} is disposed; the stored data is removed before and after that.
+   */
+  @TestOnly
+  public static void enableInTests(@NotNull Disposable parentDisposable) {
+    getInstance().clear();
+    ourEnabledInTests = true;
+    Disposer.register(parentDisposable, () -> {
+      ourEnabledInTests = false;
+      getInstance().clear();
+    });
+  }
+
+  /**
+   * @return the server part of the storage keys for the connection, or {@code null} if changelists of the connection can't be stored
+   */
+  @Nullable
+  public static String getServerKey(@NotNull P4Connection connection) {
+    // test servers are recreated for each test while their addresses stay the same
+    if (ApplicationManager.getApplication().isUnitTestMode() && !ourEnabledInTests) return null;
+    try {
+      String server = connection.getConnectionKey().getServer();
+      // with an empty server the default one from the environment is used, and it may be different for different connections
+      return server.isEmpty() ? null : server;
+    }
+    catch (UnsupportedOperationException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @param parts everything that affects which changelists are shown for the location: connection, root path, filters, client view
+   */
+  @NotNull
+  public static String getLocationKey(@NotNull String serverKey, @NotNull List<String> parts) {
+    // the server stays readable, its changelists are evicted together with it
+    return serverKey + '#' + Hashing.sha256().hashString(String.join("\n", parts), StandardCharsets.UTF_8);
+  }
+
+  @Nullable
+  synchronized Location getLocation(@NotNull String locationKey) {
+    if (!open()) return null;
+    try {
+      return myLocations.get(locationKey);
+    }
+    catch (IOException e) {
+      onStorageError(e);
+      return null;
+    }
+  }
+
+  synchronized void putLocation(@NotNull String locationKey, @NotNull Location location) {
+    if (!open()) return;
+    try {
+      markServerUsed(StringUtil.substringBeforeLast(locationKey, "#"));
+      location.lastUsed = System.currentTimeMillis();
+      myLocations.put(locationKey, location);
+    }
+    catch (IOException e) {
+      onStorageError(e);
+    }
+  }
+
+  synchronized void removeLocation(@NotNull String locationKey) {
+    if (!open()) return;
+    try {
+      myLocations.remove(locationKey);
+    }
+    catch (IOException e) {
+      onStorageError(e);
+    }
+  }
+
+  @Nullable
+  synchronized ChangeListData getChangeList(@NotNull String serverKey, long number) {
+    if (!open()) return null;
+    try {
+      markServerUsed(serverKey);
+      return myChangeLists.get(getChangeKey(serverKey, number));
+    }
+    catch (IOException e) {
+      onStorageError(e);
+      return null;
+    }
+  }
+
+  synchronized void putChangeLists(@NotNull String serverKey, @NotNull List<ChangeListData> changeLists) {
+    if (!open()) return;
+    try {
+      markServerUsed(serverKey);
+      for (ChangeListData data : changeLists) {
+        myChangeLists.put(getChangeKey(serverKey, data.NUMBER), data);
+      }
+    }
+    catch (IOException e) {
+      onStorageError(e);
+    }
+  }
+
+  @Nullable
+  synchronized List<StoredFileChange> getFiles(@NotNull String serverKey, long number) {
+    if (!open()) return null;
+    try {
+      markServerUsed(serverKey);
+      return myFiles.get(getChangeKey(serverKey, number));
+    }
+    catch (IOException e) {
+      onStorageError(e);
+      return null;
+    }
+  }
+
+  synchronized void putFiles(@NotNull String serverKey, long number, @NotNull List<StoredFileChange> files) {
+    if (!open()) return;
+    try {
+      markServerUsed(serverKey);
+      myFiles.put(getChangeKey(serverKey, number), files);
+    }
+    catch (IOException e) {
+      onStorageError(e);
+    }
+  }
+
+  @NotNull
+  private static String getChangeKey(@NotNull String serverKey, long number) {
+    return serverKey + '@' + number;
+  }
+
+  private void markServerUsed(@NotNull String serverKey) throws IOException {
+    // once per session is enough to tell the servers that are still used from the stale ones
+    if (myServersUsedInSession.add(serverKey)) {
+      myServers.put(serverKey, System.currentTimeMillis());
+    }
+  }
+
+  /**
+   * Removes the locations and servers not used since {@code staleBefore} and the changelists of such servers, then the oldest
+   * changelists no location refers to while there are more than {@code maxChangeLists} of them.
+   */
+  synchronized void evict(long staleBefore, int maxChangeLists) {
+    if (!open()) return;
+    try {
+      Set<String> liveServers = new HashSet<>();
+      List<String> staleServers = new ArrayList<>();
+      for (String server : myServers.getAllKeysWithExistingMapping()) {
+        Long lastUsed = myServers.get(server);
+        if (lastUsed == null || lastUsed < staleBefore) {
+          staleServers.add(server);
+        }
+        else {
+          liveServers.add(server);
+        }
+      }
+      for (String server : staleServers) {
+        myServers.remove(server);
+      }
+
+      Set<String> referenced = new HashSet<>();
+      for (String locationKey : myLocations.getAllKeysWithExistingMapping()) {
+        Location location = myLocations.get(locationKey);
+        String server = StringUtil.substringBeforeLast(locationKey, "#");
+        if (location == null || location.lastUsed < staleBefore || !liveServers.contains(server)) {
+          myLocations.remove(locationKey);
+          continue;
+        }
+        for (int i = 0; i < location.numbers.size(); i++) {
+          referenced.add(getChangeKey(server, location.numbers.getLong(i)));
+        }
+      }
+
+      List<String> unreferenced = new ArrayList<>();
+      int count = 0;
+      for (String changeKey : myChangeLists.getAllKeysWithExistingMapping()) {
+        if (!liveServers.contains(StringUtil.substringBeforeLast(changeKey, "@"))) {
+          removeChangeList(changeKey);
+          continue;
+        }
+        count++;
+        if (!referenced.contains(changeKey)) {
+          unreferenced.add(changeKey);
+        }
+      }
+      for (String changeKey : myFiles.getAllKeysWithExistingMapping()) {
+        if (!myChangeLists.containsMapping(changeKey)) {
+          myFiles.remove(changeKey);
+        }
+      }
+
+      unreferenced.sort(Comparator.comparingLong(key -> Long.parseLong(StringUtil.substringAfterLast(key, "@"))));
+      for (int i = 0; i < unreferenced.size() && count > maxChangeLists; i++, count--) {
+        removeChangeList(unreferenced.get(i));
+      }
+    }
+    catch (IOException e) {
+      onStorageError(e);
+    }
+  }
+
+  private void removeChangeList(@NotNull String changeKey) throws IOException {
+    myChangeLists.remove(changeKey);
+    myFiles.remove(changeKey);
+  }
+
+  private boolean open() {
+    if (myDisposed || myBroken) return false;
+    if (myLocations != null) return true;
+
+    try {
+      createMaps();
+    }
+    catch (IOException e) {
+      LOG.info("Failed to open Perforce changes store, it will be recreated: " + e.getMessage());
+      closeMaps();
+      deleteMaps();
+      try {
+        createMaps();
+      }
+      catch (IOException e2) {
+        LOG.warn("Perforce changes store is disabled", e2);
+        closeMaps();
+        myBroken = true;
+        return false;
+      }
+    }
+    if (!myEvicted) {
+      myEvicted = true;
+      evict(System.currentTimeMillis() - MAX_AGE, MAX_CHANGELISTS);
+      return myLocations != null;
+    }
+    return true;
+  }
+
+  private void createMaps() throws IOException {
+    myLocations = new PersistentHashMap<>(myDir.resolve("locations"), EnumeratorStringDescriptor.INSTANCE, new LocationExternalizer());
+    myChangeLists = new PersistentHashMap<>(myDir.resolve("changes"), EnumeratorStringDescriptor.INSTANCE, new ChangeListExternalizer());
+    myFiles = new PersistentHashMap<>(myDir.resolve("files"), EnumeratorStringDescriptor.INSTANCE, new FilesExternalizer());
+    myServers = new PersistentHashMap<>(myDir.resolve("servers"), EnumeratorStringDescriptor.INSTANCE, new TimestampExternalizer());
+  }
+
+  private void deleteMaps() {
+    for (String name : List.of("locations", "changes", "files", "servers")) {
+      PersistentHashMap.deleteFilesStartingWith(myDir.resolve(name).toFile());
+    }
+  }
+
+  private void closeMaps() {
+    for (PersistentHashMap<?, ?> map : new PersistentHashMap<?, ?>[]{myLocations, myChangeLists, myFiles, myServers}) {
+      if (map != null) {
+        try {
+          map.close();
+        }
+        catch (IOException e) {
+          LOG.info(e);
+        }
+      }
+    }
+    myLocations = null;
+    myChangeLists = null;
+    myFiles = null;
+    myServers = null;
+    myServersUsedInSession.clear();
+  }
+
+  private synchronized void clear() {
+    closeMaps();
+    deleteMaps();
+  }
+
+  private void onStorageError(@NotNull IOException e) {
+    LOG.info("Perforce changes store is corrupted, it will be recreated: " + e.getMessage());
+    closeMaps();
+    deleteMaps();
+  }
+
+  @Override
+  public synchronized void dispose() {
+    myDisposed = true;
+    closeMaps();
+  }
+
+  /**
+   * Numbers of the changelists affecting a location, newest first. All changes in {@code (coveredFrom, coveredTo]} are known;
+   * {@code coveredFrom == 0} means the numbers go back to the beginning of the history.
+   */
+  static final class Location {
+    long coveredFrom;
+    long coveredTo;
+    final LongArrayList numbers;
+    // set when the location is stored
+    long lastUsed;
+
+    Location(long coveredFrom, long coveredTo, @NotNull LongArrayList numbers) {
+      this.coveredFrom = coveredFrom;
+      this.coveredTo = coveredTo;
+      this.numbers = numbers;
+    }
+  }
+
+  static final class StoredFileChange {
+    final int type;
+    final long revision;
+    final String depotPath;
+
+    StoredFileChange(int type, long revision, @NotNull String depotPath) {
+      this.type = type;
+      this.revision = revision;
+      this.depotPath = depotPath;
+    }
+  }
+
+  private static final class LocationExternalizer implements DataExternalizer<Location> {
+    @Override
+    public void save(@NotNull DataOutput out, Location value) throws IOException {
+      DataInputOutputUtil.writeLONG(out, value.coveredFrom);
+      DataInputOutputUtil.writeLONG(out, value.coveredTo);
+      DataInputOutputUtil.writeTIME(out, value.lastUsed);
+      DataInputOutputUtil.writeINT(out, value.numbers.size());
+      // newest first, so the deltas are small positive numbers
+      long previous = value.coveredTo;
+      for (int i = 0; i < value.numbers.size(); i++) {
+        long number = value.numbers.getLong(i);
+        DataInputOutputUtil.writeLONG(out, previous - number);
+        previous = number;
+      }
+    }
+
+    @Override
+    public Location read(@NotNull DataInput in) throws IOException {
+      long coveredFrom = DataInputOutputUtil.readLONG(in);
+      long coveredTo = DataInputOutputUtil.readLONG(in);
+      long lastUsed = DataInputOutputUtil.readTIME(in);
+      int size = DataInputOutputUtil.readINT(in);
+      LongArrayList numbers = new LongArrayList(size);
+      long previous = coveredTo;
+      for (int i = 0; i < size; i++) {
+        previous -= DataInputOutputUtil.readLONG(in);
+        numbers.add(previous);
+      }
+      Location location = new Location(coveredFrom, coveredTo, numbers);
+      location.lastUsed = lastUsed;
+      return location;
+    }
+  }
+
+  private static final class TimestampExternalizer implements DataExternalizer<Long> {
+    @Override
+    public void save(@NotNull DataOutput out, Long value) throws IOException {
+      DataInputOutputUtil.writeTIME(out, value);
+    }
+
+    @Override
+    public Long read(@NotNull DataInput in) throws IOException {
+      return DataInputOutputUtil.readTIME(in);
+    }
+  }
+
+  private static final class ChangeListExternalizer implements DataExternalizer<ChangeListData> {
+    @Override
+    public void save(@NotNull DataOutput out, ChangeListData value) throws IOException {
+      DataInputOutputUtil.writeLONG(out, value.NUMBER);
+      IOUtil.writeUTF(out, StringUtil.notNullize(value.DATE));
+      IOUtil.writeUTF(out, StringUtil.notNullize(value.USER));
+      IOUtil.writeUTF(out, StringUtil.notNullize(value.CLIENT));
+      IOUtil.writeUTF(out, StringUtil.notNullize(value.DESCRIPTION));
+    }
+
+    @Override
+    public ChangeListData read(@NotNull DataInput in) throws IOException {
+      ChangeListData data = new ChangeListData();
+      data.NUMBER = DataInputOutputUtil.readLONG(in);
+      data.DATE = IOUtil.readUTF(in);
+      data.USER = IOUtil.readUTF(in);
+      data.CLIENT = IOUtil.readUTF(in);
+      data.DESCRIPTION = IOUtil.readUTF(in);
+      return data;
+    }
+  }
+
+  private static final class FilesExternalizer implements DataExternalizer<List<StoredFileChange>> {
+    @Override
+    public void save(@NotNull DataOutput out, List<StoredFileChange> value) throws IOException {
+      DataInputOutputUtil.writeINT(out, value.size());
+      String previousPath = "";
+      for (StoredFileChange change : value) {
+        // files of a changelist usually share long depot path prefixes, only the part after the common prefix is written
+        int prefix = StringUtil.commonPrefixLength(previousPath, change.depotPath);
+        DataInputOutputUtil.writeINT(out, change.type + 1);
+        DataInputOutputUtil.writeLONG(out, change.revision);
+        DataInputOutputUtil.writeINT(out, prefix);
+        IOUtil.writeUTF(out, change.depotPath.substring(prefix));
+        previousPath = change.depotPath;
+      }
+    }
+
+    @Override
+    public List<StoredFileChange> read(@NotNull DataInput in) throws IOException {
+      int size = DataInputOutputUtil.readINT(in);
+      List<StoredFileChange> result = new ArrayList<>(size);
+      String previousPath = "";
+      for (int i = 0; i < size; i++) {
+        int type = DataInputOutputUtil.readINT(in) - 1;
+        long revision = DataInputOutputUtil.readLONG(in);
+        int prefix = DataInputOutputUtil.readINT(in);
+        String depotPath = previousPath.substring(0, prefix) + IOUtil.readUTF(in);
+        result.add(new StoredFileChange(type, revision, depotPath));
+        previousPath = depotPath;
+      }
+      return result;
+    }
+  }
+}
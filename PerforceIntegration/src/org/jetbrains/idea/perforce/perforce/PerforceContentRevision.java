@@ -41,6 +41,7 @@ public class PerforceContentRevision implements ByteBackedContentRevision {
   protected final long myRevision;
   protected final String myStringRevision;
   protected FilePath myFilePath;
+  @Nullable private PerforcePrintBatch myPrintBatch;
 
   public PerforceContentRevision(final Project project, final FilePath path, final long revision) {
     this(project, null, null, path, revision, "#" + revision);
@@ -83,11 +84,23 @@ public class PerforceContentRevision implements ByteBackedContentRevision {
   protected byte @NotNull [] loadContent() throws VcsException {
     PerforceRunner runner = PerforceRunner.getInstance(myProject);
     if (myDepotPath != null && myConnection != null) {
+      if (myPrintBatch != null) {
+        myPrintBatch.prefetch(myProject, myDepotPath, myStringRevision);
+        byte[] content = runner.getPrefetchedContent(myDepotPath, myStringRevision, myConnection);
+        if (content != null) return content;
+      }
       return runner.getByteContent(myDepotPath, myStringRevision, myConnection);
     }
     return runner.getContent(getFile(), myStringRevision);
   }
 
+  void setPrintBatch(@NotNull PerforcePrintBatch batch) {
+    if (myDepotPath != null) {
+      myPrintBatch = batch;
+      batch.add(myDepotPath, myStringRevision);
+    }
+  }
+
   @Override
   @NotNull
   public FilePath getFile() {
@@ -0,0 +1,228 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.SystemProperties;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.idea.perforce.application.PerforceManager;
+import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
+import org.jetbrains.idea.perforce.perforce.connections.P4EnvHelper;
+import org.jetbrains.idea.perforce.perforce.connections.P4ParametersConnection;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Contents of submitted file revisions and data derived from them, like annotations, kept on disk between IDE sessions. A submitted
+ * revision never changes, so entries are keyed by server, depot path and revision number and never need invalidation; the least
+ * recently used ones are deleted when the store grows over {@code p4.content.store.max.size.mb}.
+ * <p>
+ * Shelved revisions ({@code @=change}), {@code #have}/{@code #head} and local paths are not stored, their content may change.
+ * <p>
+ * The same revision printed in different ways may have different bytes: {@code print -o} converts text to the client line endings
+ * and charset, while {@code -G print} returns it as the server sends it. Such contents are stored under different variants, see
+ * {@link #MARSHALLED_CONTENT}. The client {@code LineEnd} and the charset are part of every key, so changing them doesn't return
+ * contents converted the old way; nothing is stored until the client spec is loaded.
+ */
+@Service
+public final class PerforceContentStore {
+  private static final Logger LOG = Logger.getInstance(PerforceContentStore.class);
+
+  // increase when the stored format changes
+  private static final int VERSION = 3;
+  /**
+   * Variant of the content printed by {@code -G print}, the default one is printed by {@code print -o}
+   */
+  @NonNls public static final String MARSHALLED_CONTENT = "print -G";
+
+  private static final long MAX_SIZE = SystemProperties.getIntProperty("p4.content.store.max.size.mb", 256) * 1024L * 1024L;
+
+  private final Path myDir = PathManager.getSystemDir().resolve("perforce-content").resolve("v" + VERSION);
+  private final Object myLock = new Object();
+  // file name to size, in access order
+  private LinkedHashMap<String, Long> myEntries;
+  private long myTotalSize;
+
+  public static PerforceContentStore getInstance() {
+    return ApplicationManager.getApplication().getService(PerforceContentStore.class);
+  }
+
+  /**
+   * @param revision revision specifier as passed to {@code p4 print}, e.g. {@code #3}
+   * @return storage key, or {@code null} if the content of the revision can't be stored
+   */
+  @Nullable
+  public static String getKey(@NotNull Project project,
+                              @NotNull P4Connection connection,
+                              @NotNull String depotPath,
+                              @Nullable @NonNls String revision) {
+    return getKey(project, connection, depotPath, revision, "");
+  }
+
+  /**
+   * @param variant kind of data derived from the revision, e.g. annotate options; empty for the content printed by {@code print -o}
+   */
+  @Nullable
+  public static String getKey(@NotNull Project project,
+                              @NotNull P4Connection connection,
+                              @NotNull String depotPath,
+                              @Nullable @NonNls String revision,
+                              @NotNull @NonNls String variant) {
+    if (MAX_SIZE <= 0 || ApplicationManager.getApplication().isUnitTestMode()) return null;
+    if (!depotPath.startsWith("//") || revision == null || revision.length() < 2 || revision.charAt(0) != '#') return null;
+    if (!StringUtil.isNotNegativeNumber(revision.substring(1))) return null;
+
+    String server;
+    try {
+      server = connection.getConnectionKey().getServer();
+    }
+    catch (UnsupportedOperationException e) {
+      return null;
+    }
+    // with an empty server the default one from the environment is used, and it may be different for different connections
+    if (server.isEmpty()) return null;
+
+    // the cached client spec only, loading it here may run p4
+    String lineEnd = PerforceManager.getInstance(project).getCachedLineEnd(connection);
+    if (lineEnd == null) return null;
+
+    String id = server + '\n' + lineEnd + '\n' + getCharset(project, connection) + '\n' +
+                depotPath + revision + (variant.isEmpty() ? "" : '\n' + variant);
+    return Hashing.sha256().hashString(id, StandardCharsets.UTF_8).toString();
+  }
+
+  /**
+   * @return the charset text is converted to: {@code -C} from the settings, or {@code P4CHARSET} of the connection or the environment
+   */
+  @NotNull
+  private static String getCharset(@NotNull Project project, @NotNull P4Connection connection) {
+    PerforceSettings settings = PerforceSettings.getSettings(project);
+    String charset = !settings.isNoneCharset() ? settings.getCharsetName()
+                     : connection instanceof P4ParametersConnection parametersConnection
+                       ? parametersConnection.getParameters().getCharset()
+                       : P4EnvHelper.getConfigHelper(project).getDefaultParams().getCharset();
+    return StringUtil.notNullize(charset);
+  }
+
+  static long getMaxSize() {
+    return MAX_SIZE;
+  }
+
+  public byte @Nullable [] get(@NotNull String key) {
+    Path file;
+    synchronized (myLock) {
+      if (getEntries().get(key) == null) return null;
+      file = getFile(key);
+    }
+
+    try {
+      byte[] content = Files.readAllBytes(file);
+      // the modification time is the last access time, it restores the LRU order in the next session
+      Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+      return content;
+    }
+    catch (NoSuchFileException e) {
+      // evicted concurrently
+      return null;
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      return null;
+    }
+  }
+
+  public boolean contains(@NotNull String key) {
+    synchronized (myLock) {
+      return getEntries().containsKey(key);
+    }
+  }
+
+  public void put(@NotNull String key, byte @NotNull [] content) {
+    if (content.length > MAX_SIZE / 4) return;
+
+    Path file = getFile(key);
+    try {
+      Files.createDirectories(file.getParent());
+      Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+      Files.write(temp, content);
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      return;
+    }
+
+    synchronized (myLock) {
+      Long oldSize = getEntries().put(key, (long)content.length);
+      myTotalSize += content.length - (oldSize == null ? 0 : oldSize);
+      evict();
+    }
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<String, Long>> iterator = myEntries.entrySet().iterator();
+    while (myTotalSize > MAX_SIZE && iterator.hasNext()) {
+      Map.Entry<String, Long> eldest = iterator.next();
+      iterator.remove();
+      myTotalSize -= eldest.getValue();
+      try {
+        Files.deleteIfExists(getFile(eldest.getKey()));
+      }
+      catch (IOException e) {
+        LOG.info(e);
+      }
+    }
+  }
+
+  @NotNull
+  private Path getFile(@NotNull String key) {
+    return myDir.resolve(key.substring(0, 2)).resolve(key);
+  }
+
+  @NotNull
+  private LinkedHashMap<String, Long> getEntries() {
+    if (myEntries == null) {
+      myEntries = new LinkedHashMap<>(16, 0.75f, true);
+      myTotalSize = 0;
+      if (Files.isDirectory(myDir)) {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.walk(myDir, 2)) {
+          stream.filter(path -> Files.isRegularFile(path)).forEach(files::add);
+        }
+        catch (IOException | UncheckedIOException e) {
+          LOG.info(e);
+        }
+
+        Map<Path, Long> lastModified = new HashMap<>();
+        for (Path file : files) {
+          lastModified.put(file, file.toFile().lastModified());
+        }
+        files.sort(Comparator.comparing(lastModified::get));
+        for (Path file : files) {
+          String name = file.getFileName().toString();
+          if (name.endsWith(".tmp")) {
+            file.toFile().delete();
+            continue;
+          }
+          long size = file.toFile().length();
+          myEntries.put(name, size);
+          myTotalSize += size;
+        }
+      }
+      evict();
+    }
+    return myEntries;
+  }
+}
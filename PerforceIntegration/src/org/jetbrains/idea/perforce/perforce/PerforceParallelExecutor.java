@@ -0,0 +1,162 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.util.SystemProperties;
+import com.intellij.util.ThrowableConsumer;
+import com.intellij.util.ThrowableConvertor;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs independent p4 commands (per connection or per chunk of paths) concurrently. Not more than
+ * {@code p4.max.parallel.commands.per.server} commands are run against one server at a time.
+ * <p>
+ * Results are passed to the consumer in the calling thread and in the order of the tasks, as soon as the next one is ready,
+ * so consumers don't need to be thread-safe. Tasks started from a task of this executor are run inline to avoid waiting for
+ * a slot that is held by the waiting task itself.
+ */
+public final class PerforceParallelExecutor {
+  private static final int MAX_COMMANDS_PER_SERVER = Math.max(1, SystemProperties.getIntProperty("p4.max.parallel.commands.per.server", 4));
+  private static final long CANCELLATION_CHECK_INTERVAL_MS = 50;
+
+  private static final Map<String, ExecutorService> ourServerExecutors = new ConcurrentHashMap<>();
+  private static final ThreadLocal<Boolean> ourInsideTask = new ThreadLocal<>();
+
+  private PerforceParallelExecutor() {
+  }
+
+  /**
+   * @param connection function returning the connection the task runs its commands on, used to apply the per-server limit
+   * @param task       runs the commands of one item, called in a pooled thread under the caller's progress indicator
+   * @param consumer   receives the task results, called in the calling thread
+   * @param discarded  receives results that are not passed to {@code consumer} because another task failed, e.g. to delete their temp files
+   */
+  public static <T, R> void run(@NotNull List<? extends T> items,
+                                @NotNull Function<? super T, ? extends P4Connection> connection,
+                                @NotNull ThrowableConvertor<? super T, ? extends R, VcsException> task,
+                                @NotNull ThrowableConsumer<? super R, VcsException> consumer,
+                                @Nullable Consumer<? super R> discarded) throws VcsException {
+    if (items.size() <= 1 || MAX_COMMANDS_PER_SERVER == 1 || ourInsideTask.get() != null) {
+      for (T item : items) {
+        consumer.consume(task.convert(item));
+      }
+      return;
+    }
+
+    ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    List<CompletableFuture<R>> futures = new ArrayList<>(items.size());
+    for (T item : items) {
+      CompletableFuture<R> future = new CompletableFuture<>();
+      futures.add(future);
+      getExecutor(connection.apply(item)).execute(() -> {
+        if (future.isDone()) return; // cancelled before start
+
+        R result;
+        try {
+          result = runTask(item, task, indicator);
+        }
+        catch (Throwable e) {
+          future.completeExceptionally(e);
+          return;
+        }
+        if (!future.complete(result) && discarded != null) {
+          discarded.accept(result);
+        }
+      });
+    }
+
+    int consumed = 0;
+    try {
+      for (CompletableFuture<R> future : futures) {
+        R result = waitFor(future);
+        consumed++;
+        consumer.consume(result);
+      }
+    }
+    finally {
+      // the tasks that are already running can't be stopped, their results are discarded when they finish
+      for (CompletableFuture<R> future : futures.subList(consumed, futures.size())) {
+        if (!future.cancel(false) && discarded != null) {
+          future.thenAccept(discarded);
+        }
+      }
+    }
+  }
+
+  private static <T, R> R runTask(T item,
+                                  @NotNull ThrowableConvertor<? super T, ? extends R, VcsException> task,
+                                  @Nullable ProgressIndicator indicator) throws VcsException {
+    ourInsideTask.set(Boolean.TRUE);
+    try {
+      if (indicator == null) {
+        return task.convert(item);
+      }
+      //noinspection unchecked
+      R[] result = (R[])new Object[1];
+      VcsException[] exception = new VcsException[1];
+      ProgressManager.getInstance().executeProcessUnderProgress(() -> {
+        try {
+          result[0] = task.convert(item);
+        }
+        catch (VcsException e) {
+          exception[0] = e;
+        }
+      }, indicator);
+      if (exception[0] != null) throw exception[0];
+      return result[0];
+    }
+    finally {
+      ourInsideTask.remove();
+    }
+  }
+
+  private static <R> R waitFor(@NotNull CompletableFuture<R> future) throws VcsException {
+    while (true) {
+      ProgressManager.checkCanceled();
+      try {
+        return future.get(CANCELLATION_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+      }
+      catch (TimeoutException ignored) {
+      }
+      catch (InterruptedException e) {
+        throw new ProcessCanceledException(e);
+      }
+      catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof VcsException) throw (VcsException)cause;
+        if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+        if (cause instanceof Error) throw (Error)cause;
+        throw new VcsException(cause);
+      }
+    }
+  }
+
+  @NotNull
+  private static ExecutorService getExecutor(@NotNull P4Connection connection) {
+    return ourServerExecutors.computeIfAbsent(getServer(connection), server ->
+      AppExecutorUtil.createBoundedApplicationPoolExecutor("Perforce Commands (" + server + ")", MAX_COMMANDS_PER_SERVER));
+  }
+
+  @NotNull
+  private static String getServer(@NotNull P4Connection connection) {
+    try {
+      return connection.getConnectionKey().getServer();
+    }
+    catch (UnsupportedOperationException e) {
+      // local connections don't know their server, limit them by working directory instead
+      return connection.getWorkingDir();
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import com.google.common.collect.Lists;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Revisions that are usually viewed together, e.g. all files of a submitted changelist. When the content of one of them is requested,
+ * the chunk of {@code p4.print.batch.size} revisions containing it is printed by one command into {@link PerforceContentStore}, and
+ * the other chunks are printed in the background.
+ * <p>
+ * The background printing stops once the batch has stored half of the store size, so that it doesn't evict its own contents before
+ * they're viewed. Evicted or unprinted revisions are printed one by one when requested.
+ */
+final class PerforcePrintBatch {
+  private static final Logger LOG = Logger.getInstance(PerforcePrintBatch.class);
+  private static final ExecutorService ourBackgroundExecutor =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("Perforce Print Prefetch", 1);
+
+  private final @NotNull P4Connection myConnection;
+  private final List<String> myRevisions = new ArrayList<>();
+  private final AtomicLong myStoredSize = new AtomicLong();
+  private List<Chunk> myChunks;
+
+  PerforcePrintBatch(@NotNull P4Connection connection) {
+    myConnection = connection;
+  }
+
+  synchronized void add(@NotNull String depotPath, @NotNull String revision) {
+    myRevisions.add(depotPath + revision);
+  }
+
+  /**
+   * Prints the chunk containing the given revision, blocking concurrent callers that need the same chunk so that they don't print
+   * its revisions one by one meanwhile. The first call starts printing the other chunks in the background.
+   */
+  void prefetch(@NotNull Project project, @NotNull String depotPath, @NotNull String revision) {
+    Chunk chunk;
+    synchronized (this) {
+      boolean first = myChunks == null;
+      if (first) {
+        myChunks = new ArrayList<>();
+        for (List<String> revisions : Lists.partition(myRevisions, PerforceRunner.PRINT_BATCH_SIZE)) {
+          myChunks.add(new Chunk(new ArrayList<>(revisions)));
+        }
+      }
+      chunk = findChunk(depotPath + revision);
+      if (first) {
+        List<Chunk> others = new ArrayList<>(myChunks);
+        others.remove(chunk);
+        if (!others.isEmpty()) {
+          ourBackgroundExecutor.execute(() -> prefetchInBackground(project, others));
+        }
+      }
+    }
+    if (chunk != null) {
+      chunk.print(project);
+    }
+  }
+
+  @Nullable
+  private Chunk findChunk(@NotNull String revision) {
+    for (Chunk chunk : myChunks) {
+      if (chunk.myRevisions.contains(revision)) return chunk;
+    }
+    return null;
+  }
+
+  private void prefetchInBackground(@NotNull Project project, @NotNull List<Chunk> chunks) {
+    for (Chunk chunk : chunks) {
+      if (project.isDisposed() || myStoredSize.get() > PerforceContentStore.getMaxSize() / 2) return;
+      try {
+        chunk.print(project);
+      }
+      catch (ProcessCanceledException e) {
+        return;
+      }
+      catch (RuntimeException e) {
+        LOG.info(e);
+        return;
+      }
+    }
+  }
+
+  private final class Chunk {
+    private final List<String> myRevisions;
+    private boolean myPrinted;
+
+    private Chunk(@NotNull List<String> revisions) {
+      myRevisions = revisions;
+    }
+
+    synchronized void print(@NotNull Project project) {
+      if (myPrinted) return;
+      myPrinted = true;
+      myStoredSize.addAndGet(PerforceRunner.getInstance(project).prefetchContents(myConnection, myRevisions));
+    }
+  }
+}
@@ -48,6 +48,7 @@ import com.intellij.util.SystemProperties;
 import com.intellij.util.containers.*;
 import com.intellij.util.text.SyncDateFormat;
 import com.intellij.vcsUtil.VcsUtil;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.objects.Object2LongMap;
 import it.unimi.dsi.fastutil.objects.Object2LongOpenCustomHashMap;
 import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
@@ -73,6 +74,7 @@ import org.jetbrains.idea.perforce.perforce.login.LoginSupport;
 import org.jetbrains.idea.perforce.perforce.login.PerforceLoginManager;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -82,6 +84,7 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.HashMap;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -113,6 +116,7 @@ public final class PerforceRunner implements PerforceRunnerI {
   @NonNls public static final String NOT_ON_CLIENT_MESSAGE = "file(s) not on client";
   @NonNls private static final String NO_FILES_RESOLVED_MESSAGE = "no file(s) resolved";
   @NonNls private static final String INVALID_REVISION_NUMBER = "Invalid revision number";
+  private static final Pattern SIZES_SUMMARY_PATTERN = Pattern.compile("\\d+ files \\d+ bytes");
 
   @NonNls public static final String CHANGE = "Change:";
   @NonNls public static final String DATE = "Date:";
@@ -139,6 +143,7 @@ public final class PerforceRunner implements PerforceRunnerI {
   @NonNls public static final String CLIENT_ADDRESS = "Client address:";
   @NonNls public static final String PEER_ADDRESS = "Client address:";
   @NonNls public static final String CLIENT_OPTIONS = "Options:";
+  @NonNls public static final String CLIENT_LINE_END = "LineEnd:";
   @NonNls public static final String SERVER_ADDRESS = "Server address:";
   @NonNls public static final String SERVER_ROOT = "Server root:";
   @NonNls public static final String SERVER_DATE = "Server date:";
@@ -152,6 +157,10 @@ public final class PerforceRunner implements PerforceRunnerI {
   @NonNls public static final String CLIENT_FILE_PREFIX = "... clientFile ";
 
   private static final int CHUNK_SIZE = SystemProperties.getIntProperty("p4.chunk.size", 2000);
+  static final int PRINT_BATCH_SIZE = SystemProperties.getIntProperty("p4.print.batch.size", 100);
+  private static final int MAX_STORED_CHANGES_PER_LOCATION = 10000;
+  private static final int DESCRIBE_BATCH_SIZE = 50;
+  private static final Set<String> PRINT_CONTENT_CODES = Set.of("text", "binary", "utf8", "utf16", "unicode");
 
   public static final String[] CHANGE_FORM_FIELDS = new String[]{CHANGE,
     DATE,
@@ -281,16 +290,26 @@ public final class PerforceRunner implements PerforceRunnerI {
     for (P4File file : files) {
       p4Args.add(file.getEscapedPath());
     }
-    ExecResult execResult = executeP4Command(new String[]{"fstat"}, p4Args, null, new PerforceContext(connection));
 
     final Map<P4File, FStat> result = new LinkedHashMap<>();
-    String stderr = execResult.getStderr();
-
     final Map<String, P4File> path2File = CollectionFactory.createFilePathMap();
     for (P4File file : files) {
       path2File.put(FileUtil.toSystemIndependentName(file.getLocalPath()), file);
     }
 
+    PerforceContext context = new PerforceContext(connection);
+    PerforceParallelExecutor.run(Lists.partition(new ArrayList<>(p4Args), CHUNK_SIZE), chunk -> connection,
+                                 chunk -> executeP4Command(new String[]{"fstat"}, chunk, null, context),
+                                 execResult -> parseFstatOutput(execResult, connection, path2File, result),
+                                 ExecResult::cleanup);
+    return result;
+  }
+
+  private void parseFstatOutput(ExecResult execResult,
+                                P4Connection connection,
+                                Map<String, P4File> path2File,
+                                Map<P4File, FStat> result) throws VcsException {
+    String stderr = execResult.getStderr();
     for (String line : StringUtil.splitByLines(stderr)) {
       int index = line.indexOf(NO_SUCH_FILE_MESSAGE);
       if (index < 0) index = line.indexOf(NOT_IN_CLIENT_VIEW_MESSAGE);
@@ -327,7 +346,6 @@ public final class PerforceRunner implements PerforceRunnerI {
       }
       throw new VcsException(e);
     }
-    return result;
   }
 
   private static P4File getP4FileByPath(String path, Map<String, P4File> path2File) throws VcsException {
@@ -409,6 +427,27 @@ public final class PerforceRunner implements PerforceRunnerI {
     checkError(execResult, connection);
   }
 
+  public void addAll(final List<P4File> files, final long changeListNumber, @NotNull P4Connection connection) throws VcsException {
+    // -f changes how wildcard characters in the paths are treated, so the files needing it are added by a separate command
+    List<String> paths = new ArrayList<>();
+    List<String> wildcardPaths = new ArrayList<>();
+    for (P4File file : files) {
+      file.invalidateFstat();
+      (PerforceVcs.getFileNameComplaint(file) != null ? wildcardPaths : paths).add(file.getLocalPath());
+    }
+
+    for (List<String> group : List.of(paths, wildcardPaths)) {
+      if (group.isEmpty()) continue;
+      final CommandArguments arguments = CommandArguments.createOn(P4Command.add);
+      if (group == wildcardPaths) {
+        arguments.append("-f");
+      }
+      appendChangeListNumber(changeListNumber, arguments);
+      final ExecResult execResult = executeP4Command(arguments.getArguments(), group, null, new PerforceContext(connection));
+      checkError(execResult, connection);
+    }
+  }
+
   public ExecResult previewAdd(@NotNull P4Connection connection, Collection<VirtualFile> files) {
     final CommandArguments arguments = CommandArguments.createOn(P4Command.add).append("-f").append("-n");
 
@@ -527,6 +566,19 @@ public final class PerforceRunner implements PerforceRunnerI {
     }
   }
 
+  public void deleteAll(final List<P4File> files, final long changeListNumber, @NotNull P4Connection connection) throws VcsException {
+    List<String> paths = new ArrayList<>();
+    for (P4File file : files) {
+      file.invalidateFstat();
+      paths.add(file.getEscapedPath());
+    }
+
+    final CommandArguments arguments = CommandArguments.createOn(P4Command.delete);
+    appendChangeListNumber(changeListNumber, arguments);
+    final ExecResult execResult = executeP4Command(arguments.getArguments(), paths, null, new PerforceContext(connection));
+    checkError(execResult, connection);
+  }
+
   private void delete(final P4File p4File) throws VcsException {
     P4Connection connection = myConnectionManager.getConnectionForFile(p4File);
     delete(p4File, getActiveListNumber(connection));
@@ -796,8 +848,13 @@ public final class PerforceRunner implements PerforceRunnerI {
 
   private List<PerforceChangeList> parsePerforceChangeLists(final String stdout, P4Connection connection,
                                                             @NotNull PerforceChangeCache changeCache) {
+    return createChangeLists(OutputMessageParser.processChangesOutput(stdout), connection, changeCache);
+  }
+
+  private List<PerforceChangeList> createChangeLists(List<ChangeListData> changeLists, P4Connection connection,
+                                                     @NotNull PerforceChangeCache changeCache) {
     final ArrayList<PerforceChangeList> result = new ArrayList<>();
-    for (ChangeListData data : OutputMessageParser.processChangesOutput(stdout)) {
+    for (ChangeListData data : changeLists) {
       result.add(new PerforceChangeList(data, myProject, connection, changeCache));
     }
     return result;
@@ -977,6 +1034,15 @@ public final class PerforceRunner implements PerforceRunnerI {
                                                            @Nullable String user,
                                                            int maxCount, boolean showIntegrated, List<String> fileSpecs)
     throws VcsException {
+    List<ChangeListData> changeLists = getSubmittedChangeListData(connection, client, user, maxCount, showIntegrated, fileSpecs);
+    return createChangeLists(changeLists, connection, new PerforceChangeCache(myProject));
+  }
+
+  private List<ChangeListData> getSubmittedChangeListData(@NotNull P4Connection connection,
+                                                          @Nullable String client,
+                                                          @Nullable String user,
+                                                          int maxCount, boolean showIntegrated, List<String> fileSpecs)
+    throws VcsException {
     final CommandArguments arguments = CommandArguments.createOn(P4Command.changes);
     arguments.append("-s").append("submitted");
     if (showIntegrated) {
@@ -1001,7 +1067,200 @@ public final class PerforceRunner implements PerforceRunnerI {
 
     final ExecResult execResult = executeP4Command(arguments.getArguments(), connection);
     checkError(execResult, connection);
-    return parsePerforceChangeLists(execResult.getStdout(), connection, new PerforceChangeCache(myProject));
+    return OutputMessageParser.processChangesOutput(execResult.getStdout());
+  }
+
+  /**
+   * Same as {@link #getSubmittedChangeLists(String, String, P4File, ChangeBrowserSettings, int, boolean)}, but uses
+   * {@link PerforceCommittedChangesStore}: only the changes newer than the stored ones are requested from the server, and older ones
+   * are requested in pages of {@code p4.changes.page.size} when the consumer gets to them.
+   *
+   * @param consumer receives the changelists newest first, as soon as they're loaded
+   */
+  public void loadSubmittedChangeLists(@Nullable String client, @Nullable String user, @NotNull P4File rootP4File,
+                                       @NotNull ChangeBrowserSettings settings, int maxCount, boolean showIntegrated,
+                                       @NotNull Consumer<? super PerforceChangeList> consumer) throws VcsException {
+    final P4Connection connection = getNotNullConnection(rootP4File);
+    final String serverKey = PerforceCommittedChangesStore.getServerKey(connection);
+    // stored ranges always reach the newest known change, so they can only answer queries without an upper bound;
+    // with -i the changes integrated into the location are listed too, numbered below the stored range, so the ranges don't compose
+    if (serverKey == null || showIntegrated ||
+        settings.getDateAfterFilter() != null || settings.getDateBeforeFilter() != null || settings.getChangeBeforeFilter() != null) {
+      getSubmittedChangeLists(client, user, rootP4File, settings, maxCount, showIntegrated).forEach(consumer);
+      return;
+    }
+
+    final Long changeAfter = settings.getChangeAfterFilter();
+    final long lowest = changeAfter == null ? 0 : changeAfter + (settings.STRICTLY_AFTER ? 1 : 0);
+    final String path = rootP4File.getRecursivePath();
+    final String locationKey = getLocationKey(connection, serverKey, client, user, path);
+    final PerforceCommittedChangesStore store = PerforceCommittedChangesStore.getInstance();
+    final PerforceChangeCache changeCache = new PerforceChangeCache(myProject, true);
+
+    PerforceCommittedChangesStore.Location location = store.getLocation(locationKey);
+    if (location != null && location.coveredTo < lowest - 1) {
+      // the stored range can't be extended up to the requested changes without a gap
+      location = null;
+    }
+    if (location == null) {
+      location = new PerforceCommittedChangesStore.Location(0, 0, new LongArrayList());
+      loadChangesPage(connection, serverKey, client, user, path, location, lowest, true);
+    }
+    else {
+      int pageSize = getChangesPageSize();
+      List<ChangeListData> newer = getSubmittedChangeListData(connection, client, user, pageSize, false,
+                                                              List.of(path + "@" + (location.coveredTo + 1) + ",@" + NOW));
+      store.putChangeLists(serverKey, newer);
+      if (newer.size() >= pageSize) {
+        // there may be more changes between the page and the stored range, start over from the page
+        location = new PerforceCommittedChangesStore.Location(0, 0, new LongArrayList());
+        addChangesPage(location, newer, pageSize, lowest, true);
+      }
+      else if (!newer.isEmpty()) {
+        location.numbers.addAll(0, LongArrayList.wrap(newer.stream().mapToLong(data -> data.NUMBER).toArray()));
+        location.coveredTo = newer.get(0).NUMBER;
+      }
+    }
+
+    boolean keepLocation = true;
+    try {
+      int count = 0;
+      int index = 0;
+      while (true) {
+        for (; index < location.numbers.size(); index++) {
+          long number = location.numbers.getLong(index);
+          if (number < lowest) return;
+
+          ChangeListData data = store.getChangeList(serverKey, number);
+          if (data == null) {
+            // the store has been lost, e.g. recreated after an I/O error; load the rest without it
+            keepLocation = false;
+            String range = lowest > 0 ? "@" + lowest + ",@" + number : "@" + number;
+            int rest = maxCount > 0 ? maxCount - count : 0;
+            getSubmittedChangeLists(connection, client, user, rest, false, List.of(path + range)).forEach(consumer);
+            return;
+          }
+          consumer.accept(new PerforceChangeList(data, myProject, connection, changeCache));
+          if (maxCount > 0 && ++count >= maxCount) return;
+        }
+        if (location.coveredFrom == 0 || location.coveredFrom < lowest) return;
+
+        ProgressManager.checkCanceled();
+        loadChangesPage(connection, serverKey, client, user, path, location, lowest, false);
+      }
+    }
+    finally {
+      if (keepLocation) {
+        if (location.numbers.size() > MAX_STORED_CHANGES_PER_LOCATION) {
+          location.numbers.size(MAX_STORED_CHANGES_PER_LOCATION);
+          location.coveredFrom = location.numbers.getLong(MAX_STORED_CHANGES_PER_LOCATION - 1) - 1;
+        }
+        store.putLocation(locationKey, location);
+      }
+      else {
+        store.removeLocation(locationKey);
+      }
+    }
+  }
+
+  /**
+   * Loads the page of changes just below the covered range of the location (or the newest page if {@code initial}) and extends the range.
+   */
+  private void loadChangesPage(@NotNull P4Connection connection, @NotNull String serverKey,
+                               @Nullable String client, @Nullable String user, @NotNull String path,
+                               @NotNull PerforceCommittedChangesStore.Location location, long lowest, boolean initial)
+    throws VcsException {
+    String upper = initial ? NOW : String.valueOf(location.coveredFrom);
+    String range = lowest > 0 ? "@" + lowest + ",@" + upper : initial ? "" : "@" + upper;
+    int pageSize = getChangesPageSize();
+    List<ChangeListData> page = getSubmittedChangeListData(connection, client, user, pageSize, false, List.of(path + range));
+    PerforceCommittedChangesStore.getInstance().putChangeLists(serverKey, page);
+    addChangesPage(location, page, pageSize, lowest, initial);
+  }
+
+  private static void addChangesPage(@NotNull PerforceCommittedChangesStore.Location location, @NotNull List<ChangeListData> page,
+                                     int pageSize, long lowest, boolean initial) {
+    for (ChangeListData data : page) {
+      location.numbers.add(data.NUMBER);
+    }
+    if (initial) {
+      location.coveredTo = page.isEmpty() ? Math.max(lowest - 1, 0) : page.get(0).NUMBER;
+    }
+    location.coveredFrom = page.size() < pageSize ? Math.max(lowest - 1, 0) : page.get(page.size() - 1).NUMBER - 1;
+  }
+
+  private static int getChangesPageSize() {
+    return Math.max(1, SystemProperties.getIntProperty("p4.changes.page.size", 100));
+  }
+
+  @NotNull
+  private String getLocationKey(@NotNull P4Connection connection, @NotNull String serverKey,
+                                @Nullable String client, @Nullable String user, @NotNull String path) throws VcsException {
+    List<String> parts = new ArrayList<>();
+    parts.add(connection.getConnectionKey().getClient());
+    parts.add(StringUtil.notNullize(client));
+    parts.add(StringUtil.notNullize(user));
+    parts.add(path);
+    // the local path is resolved through the client view, a different view means different changes
+    for (View view : myPerforceManager.getClient(connection).getViews()) {
+      parts.add(view.toString());
+    }
+    return PerforceCommittedChangesStore.getLocationKey(serverKey, parts);
+  }
+
+  /**
+   * Same as {@link #getChanges}, for submitted changelists: the file lists are taken from {@link PerforceCommittedChangesStore}
+   * when possible and stored there after {@code p4 describe}.
+   */
+  public List<PerforceChange> getSubmittedChanges(P4Connection connection, final long changeListNumber) throws VcsException {
+    final String serverKey = PerforceCommittedChangesStore.getServerKey(connection);
+    if (serverKey == null) {
+      return getChanges(connection, changeListNumber);
+    }
+
+    final PerforceCommittedChangesStore store = PerforceCommittedChangesStore.getInstance();
+    ChangeListData data = store.getChangeList(serverKey, changeListNumber);
+    List<PerforceCommittedChangesStore.StoredFileChange> files = store.getFiles(serverKey, changeListNumber);
+    if (data == null || files == null) {
+      prefetchSubmittedChanges(connection, Collections.singletonList(changeListNumber));
+      data = store.getChangeList(serverKey, changeListNumber);
+      files = store.getFiles(serverKey, changeListNumber);
+      if (data == null || files == null) {
+        return getChanges(connection, changeListNumber);
+      }
+    }
+
+    final PerforceClient client = myPerforceManager.getClient(connection);
+    List<PerforceChange> result = new ArrayList<>(files.size());
+    for (PerforceCommittedChangesStore.StoredFileChange file : files) {
+      ProgressManager.checkCanceled();
+      final File localFile = PerforceManager.getFileByDepotName(file.depotPath, client);
+      result.add(new PerforceChange(file.type, localFile, file.depotPath, file.revision, data.NUMBER, data.DESCRIPTION));
+    }
+    return result;
+  }
+
+  /**
+   * Describes the submitted changelists that aren't in {@link PerforceCommittedChangesStore} yet, several changelists per command,
+   * and stores their file lists.
+   */
+  public void prefetchSubmittedChanges(@NotNull P4Connection connection, @NotNull Collection<Long> numbers) throws VcsException {
+    final String serverKey = PerforceCommittedChangesStore.getServerKey(connection);
+    if (serverKey == null) return;
+
+    final PerforceCommittedChangesStore store = PerforceCommittedChangesStore.getInstance();
+    List<Long> missing = ContainerUtil.filter(numbers, number -> store.getFiles(serverKey, number) == null);
+    for (List<Long> batch : Lists.partition(missing, DESCRIBE_BATCH_SIZE)) {
+      Map<Long, Pair<ChangeListData, List<FileChange>>> described = describeAll(connection, batch, false);
+      List<ChangeListData> headers = new ArrayList<>();
+      for (Pair<ChangeListData, List<FileChange>> pair : described.values()) {
+        headers.add(pair.first);
+        store.putFiles(serverKey, pair.first.NUMBER, ContainerUtil.map(pair.second, change ->
+          new PerforceCommittedChangesStore.StoredFileChange(change.getType(), change.getRevisionAfter(), change.getDepotPath())));
+      }
+      // headers loaded by 'p4 changes' are kept, they are already there unless the store has been recreated
+      store.putChangeLists(serverKey, ContainerUtil.filter(headers, data -> store.getChangeList(serverKey, data.NUMBER) == null));
+    }
   }
 
   private static String dateSpec(final Date after, final Date before, final Long afterChange, final Long beforeChange, boolean strictlyAfter) {
@@ -1196,7 +1455,7 @@ public final class PerforceRunner implements PerforceRunnerI {
       CLIENTSPEC_ROOT,
       CLIENTSPEC_ALTROOTS,
       CLIENT_OPTIONS,
-      "LineEnd:",
+      CLIENT_LINE_END,
       VIEW});
   }
 
@@ -1208,6 +1467,12 @@ public final class PerforceRunner implements PerforceRunnerI {
     return getByteContent(baseRevision.getDepotPath(), baseRevision.getRevisionNum(), connection);
   }
   public byte @NotNull [] getByteContent(final String depotPath, @Nullable final String revisionNumber, @NotNull P4Connection connection) throws VcsException {
+    String storeKey = PerforceContentStore.getKey(myProject, connection, depotPath, revisionNumber);
+    if (storeKey != null) {
+      byte[] content = PerforceContentStore.getInstance().get(storeKey);
+      if (content != null) return content;
+    }
+
     File tempFile = null;
     try {
       tempFile = FileUtil.createTempFile("ijP4Print", "");
@@ -1215,7 +1480,11 @@ public final class PerforceRunner implements PerforceRunnerI {
       final ExecResult execResult = executeP4Command(p4args, connection);
       checkError(execResult, connection);
       ContentRevisionCache.checkContentsSize(depotPath, tempFile.length());
-      return FileUtil.loadFileBytes(tempFile);
+      byte[] content = FileUtil.loadFileBytes(tempFile);
+      if (storeKey != null) {
+        PerforceContentStore.getInstance().put(storeKey, content);
+      }
+      return content;
     }
     catch (IOException e) {
       throw new VcsException(e);
@@ -1227,6 +1496,97 @@ public final class PerforceRunner implements PerforceRunnerI {
     }
   }
 
+  /**
+   * Prints the given submitted revisions with one command per batch and puts their contents into {@link PerforceContentStore},
+   * so that {@link #getPrefetchedContent} returns them without running p4 for each of them. Best effort: failed revisions are loaded
+   * one by one later.
+   *
+   * @param revisions depot paths with revision numbers, e.g. {@code //depot/a.txt#3}
+   * @return the number of bytes put into the store
+   */
+  public long prefetchContents(@NotNull P4Connection connection, @NotNull Collection<String> revisions) {
+    PerforceContentStore store = PerforceContentStore.getInstance();
+    List<String> toPrint = new ArrayList<>();
+    for (String revision : new LinkedHashSet<>(revisions)) {
+      int hashIndex = revision.lastIndexOf('#');
+      if (hashIndex < 0) continue;
+      String key = PerforceContentStore.getKey(myProject, connection, revision.substring(0, hashIndex), revision.substring(hashIndex),
+                                               PerforceContentStore.MARSHALLED_CONTENT);
+      if (key != null && !store.contains(key)) {
+        toPrint.add(revision);
+      }
+    }
+    // a single revision is printed as usual when requested
+    if (toPrint.size() < 2) return 0;
+
+    long[] stored = {0};
+    for (List<String> batch : Lists.partition(toPrint, PRINT_BATCH_SIZE)) {
+      final ExecResult execResult = executeP4Command(new String[]{"-G", "print"}, batch, null, new PerforceContext(connection));
+      try {
+        execResult.allowSafeStdoutUsage(stream -> stored[0] += storePrintOutput(new P4MarshalReader(stream), connection, store));
+      }
+      catch (IOException e) {
+        LOG.debug(e);
+      }
+      finally {
+        execResult.cleanup();
+      }
+    }
+    return stored[0];
+  }
+
+  /**
+   * @return the content put into {@link PerforceContentStore} by {@link #prefetchContents}, as printed by {@code -G print}:
+   * text isn't converted to the client line endings
+   */
+  public byte @Nullable [] getPrefetchedContent(@NotNull String depotPath, @NotNull String revisionNumber, @NotNull P4Connection connection) {
+    String key =
+      PerforceContentStore.getKey(myProject, connection, depotPath, revisionNumber, PerforceContentStore.MARSHALLED_CONTENT);
+    return key == null ? null : PerforceContentStore.getInstance().get(key);
+  }
+
+  private long storePrintOutput(P4MarshalReader reader, P4Connection connection, PerforceContentStore store) throws IOException {
+    long stored = 0;
+    String key = null;
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    while (true) {
+      Map<String, Object> dictionary = reader.readDictionary();
+      String code = dictionary == null ? null : P4MarshalReader.getString(dictionary, "code");
+      if (dictionary == null || "stat".equals(code)) {
+        // the previous file is complete
+        if (key != null && isAllowedContentSize(key, content.size())) {
+          store.put(key, content.toByteArray());
+          stored += content.size();
+        }
+        if (dictionary == null) return stored;
+
+        String depotFile = P4MarshalReader.getString(dictionary, "depotFile");
+        String rev = P4MarshalReader.getString(dictionary, "rev");
+        key = depotFile != null && rev != null
+              ? PerforceContentStore.getKey(myProject, connection, depotFile, "#" + rev, PerforceContentStore.MARSHALLED_CONTENT)
+              : null;
+        content.reset();
+      }
+      else if (PRINT_CONTENT_CODES.contains(code) && dictionary.get("data") instanceof byte[] data) {
+        content.write(data);
+      }
+      else {
+        // an error or something unexpected: don't store a possibly incomplete content
+        key = null;
+      }
+    }
+  }
+
+  private static boolean isAllowedContentSize(String path, long size) {
+    try {
+      ContentRevisionCache.checkContentsSize(path, size);
+      return true;
+    }
+    catch (VcsException e) {
+      return false;
+    }
+  }
+
   public byte @NotNull [] getContent(final FilePath file, final String revisionNumber) throws VcsException {
     P4File p4File = P4File.create(file);
     return getByteContent(getDepotPath(p4File), revisionNumber, getNotNullConnection(p4File));
@@ -1433,6 +1793,30 @@ public final class PerforceRunner implements PerforceRunnerI {
     doHave(args, connection, consumer, true);
   }
 
+  /**
+   * @return have watermark of the directory: the last changelist synced to under it together with the number and total size of the
+   * synced files, e.g. {@code "12345 10 files 2048 bytes"}. It changes when the directory is synced, including by syncs made outside
+   * the IDE. {@code null} if unknown.
+   */
+  @Nullable
+  public String getHaveWatermark(@NotNull final P4Connection connection, @NotNull FilePath dir) throws VcsException {
+    String spec = getP4FilePath(P4File.create(dir), true, true) + "#have";
+
+    CommandArguments changesArgs = CommandArguments.createOn(P4Command.changes).append("-m1").append(spec);
+    ExecResult changes = executeP4Command(changesArgs.getArguments(), connection);
+    checkError(changes, connection);
+    CommandArguments sizesArgs = CommandArguments.createOn(P4Command.sizes).append("-s").append(spec);
+    ExecResult sizes = executeP4Command(sizesArgs.getArguments(), connection);
+    checkError(sizes, connection);
+
+    // Change 12345 on 2020/01/01 by user@client 'description'
+    List<String> words = StringUtil.split(changes.getStdout().trim(), " ");
+    if (words.size() < 2 || !"Change".equals(words.get(0))) return null;
+    // //depot/dir/...#have 10 files 2048 bytes
+    Matcher matcher = SIZES_SUMMARY_PATTERN.matcher(sizes.getStdout());
+    return matcher.find() ? words.get(1) + " " + matcher.group() : null;
+  }
+
   static String getP4FilePath(final P4File file, boolean isDirectory, final boolean recursively) {
     String escapedPath = file.getEscapedPath();
     return isDirectory ? escapedPath + "/" + (recursively ? "..." : "*") : escapedPath;
@@ -1448,8 +1832,10 @@ public final class PerforceRunner implements PerforceRunnerI {
 
     PerforceContext context = new PerforceContext(connection, longTimeout, false);
 
-    for (List<String> chunk : Lists.partition(new ArrayList<>(new LinkedHashSet<>(filesSpec)), CHUNK_SIZE)) {
-      final ExecResult execResult = executeP4Command(new String[]{"have"}, chunk, null, context);
+    List<List<String>> chunks = Lists.partition(new ArrayList<>(new LinkedHashSet<>(filesSpec)), CHUNK_SIZE);
+    PerforceParallelExecutor.run(chunks, chunk -> connection,
+                                 chunk -> executeP4Command(new String[]{"have"}, chunk, null, context),
+                                 execResult -> {
       final String stderr = execResult.getStderr();
       final boolean notUnderRoot = stderr.contains(NOT_ON_CLIENT_MESSAGE) || stderr.contains(NOT_UNDER_CLIENT_ROOT_MESSAGE);
       if (! notUnderRoot) {
@@ -1459,8 +1845,12 @@ public final class PerforceRunner implements PerforceRunnerI {
         if (! stderr.contains(INVALID_REVISION_NUMBER)) {
           checkError(execResult, connection);
         }
+        else {
+          consumer.outputIncomplete();
+        }
       } else {
         LOG.debug("Problem while doing 'have': " + stderr);
+        consumer.outputIncomplete();
       }
       final Ref<VcsException> vcsExceptionRef = new Ref<>();
       try {
@@ -1479,7 +1869,7 @@ public final class PerforceRunner implements PerforceRunnerI {
       if (! vcsExceptionRef.isNull()) {
         throw vcsExceptionRef.get();
       }
-    }
+    }, ExecResult::cleanup);
   }
 
   public P4Revision[] filelog(final P4File file, boolean showBranches) throws VcsException {
@@ -1541,24 +1931,91 @@ public final class PerforceRunner implements PerforceRunnerI {
     if (revision != -1) {
       filePath += "#" + revision;
     }
-    List<String> commands = new ArrayList<>();
-    commands.add("annotate");
-    commands.add("-q");
-    boolean useChangelistNumbers = false;
+    return annotate(connection, filePath, getAnnotateOptions(connection));
+  }
+
+  /**
+   * Annotates a submitted revision, taking the result from {@link PerforceContentStore} when possible. If only an older revision of the
+   * file has been annotated before, only the range from it to {@code target} is annotated and combined with the stored annotation.
+   *
+   * @param fileLog history of the file, as returned by {@link #filelog(P4Connection, String, boolean)}
+   */
+  @NotNull
+  public AnnotationInfo annotate(@NotNull P4Connection connection, @NotNull P4Revision target, P4Revision @NotNull [] fileLog)
+    throws VcsException {
+    final List<String> options = getAnnotateOptions(connection);
+    final String depotPath = target.getDepotPath();
+    final String revision = "#" + target.getRevisionNumber();
+    final String variant = String.join(" ", options);
+    final String key = PerforceContentStore.getKey(myProject, connection, depotPath, revision, variant);
+    if (key == null) {
+      return annotate(connection, depotPath + revision, options);
+    }
+
+    final PerforceContentStore store = PerforceContentStore.getInstance();
+    AnnotationInfo stored = readAnnotation(store, key);
+    if (stored != null) return stored;
+
+    AnnotationInfo result = null;
+    if (!options.contains("-i")) {
+      // revisions are listed newest first, the newest annotated one gives the smallest range
+      for (P4Revision older : fileLog) {
+        if (!older.getDepotPath().equals(depotPath) || older.getRevisionNumber() >= target.getRevisionNumber()) continue;
+
+        String olderKey = PerforceContentStore.getKey(myProject, connection, depotPath, "#" + older.getRevisionNumber(), variant);
+        AnnotationInfo base = olderKey != null && store.contains(olderKey) ? readAnnotation(store, olderKey) : null;
+        if (base != null) {
+          AnnotationInfo range = annotate(connection, depotPath + "#" + older.getRevisionNumber() + "," + revision, options);
+          result = AnnotationInfo.rebase(base, range, older.getRevisionNumber());
+          break;
+        }
+      }
+    }
+    if (result == null) {
+      result = annotate(connection, depotPath + revision, options);
+    }
+    store.put(key, result.toBytes());
+    return result;
+  }
+
+  @Nullable
+  private static AnnotationInfo readAnnotation(@NotNull PerforceContentStore store, @NotNull String key) {
+    byte[] bytes = store.get(key);
+    if (bytes == null) return null;
+    try {
+      return AnnotationInfo.fromBytes(bytes);
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      return null;
+    }
+  }
+
+  @NotNull
+  private List<String> getAnnotateOptions(@Nullable P4Connection connection) throws VcsException {
+    List<String> options = new ArrayList<>();
+    options.add("-q");
     if (mySettings.SHOW_BRANCHES_HISTORY && isAnnotateBranchSupported(connection)) {
-      commands.add("-i");
-      useChangelistNumbers = true;
+      options.add("-i");
     }
     if (isAnnotateIgnoringWhitespaceSupported(connection)) {
-      commands.add("-dw");
+      options.add("-dw");
     } else {
-      commands.add("-dl");
+      options.add("-dl");
     }
-    commands.add(filePath);
+    return options;
+  }
+
+  private AnnotationInfo annotate(P4Connection connection, String fileSpec, List<String> options) throws VcsException {
+    List<String> commands = new ArrayList<>();
+    commands.add("annotate");
+    commands.addAll(options);
+    commands.add(fileSpec);
     final ExecResult execResult = executeP4Command(ArrayUtilRt.toStringArray(commands), connection);
     checkError(execResult, connection);
     try {
-      return new AnnotationInfo(execResult.getStdout(), useChangelistNumbers);
+      // with -i the annotation has changelist numbers instead of revisions
+      return new AnnotationInfo(execResult.getStdout(), options.contains("-i"));
     }
     catch (IOException e) {
       throw new VcsException(e);
@@ -1663,14 +2120,21 @@ public final class PerforceRunner implements PerforceRunnerI {
       }
 
       final String[] p4args;
-      if (shouldPassArgumentsViaFile(args)) {
+      StringBuffer input = inputStream;
+      if (!shouldPassArgumentsViaFile(args)) {
+        p4args = ArrayUtil.mergeArrays(p4cmd, ArrayUtilRt.toStringArray(args));
+      }
+      else if (inputStream == null) {
+        // stdin is free, so the arguments are streamed to the process instead of being written to a temp file first
+        input = new StringBuffer(StringUtil.join(args, "\n"));
+        p4args = ArrayUtil.mergeArrays(new String[]{"-x", "-"}, p4cmd);
+      }
+      else {
         tempFile = createArgumentFile(args);
         p4args = ArrayUtil.mergeArrays(new String[]{"-x", tempFile.getPath()}, p4cmd);
-      } else {
-        p4args = ArrayUtil.mergeArrays(p4cmd, ArrayUtilRt.toStringArray(args));
       }
 
-      ctx.runP4Command(mySettings, p4args, retVal, inputStream);
+      ctx.runP4Command(mySettings, p4args, retVal, input);
     }
     catch (PerforceTimeoutException | VcsException | InterruptedException | IOException e) {
       retVal.setException(e);
@@ -1681,6 +2145,11 @@ public final class PerforceRunner implements PerforceRunnerI {
       }
     }
 
+    if (PerforceHaveIndex.isEnabled()) {
+      // even a failed command may have changed a part of the have-table
+      notifyHaveIndex(ctx.connection, p4cmd, args);
+    }
+
     if (mySettings.showCmds) {
       logMessage("\n" + retVal);
     }
@@ -1708,6 +2177,22 @@ public final class PerforceRunner implements PerforceRunnerI {
     return retVal;
   }
 
+  private static void notifyHaveIndex(@NotNull P4Connection connection, String[] p4cmd, Collection<String> args) {
+    List<String> p4args = new ArrayList<>(p4cmd.length + args.size());
+    ContainerUtil.addAll(p4args, p4cmd);
+    if (!PerforceHaveIndex.isHaveChangingCommand(p4args)) return;
+
+    p4args.addAll(args);
+    ConnectionKey key;
+    try {
+      key = connection.getConnectionKey();
+    }
+    catch (UnsupportedOperationException e) {
+      return;
+    }
+    PerforceHaveIndex.getInstance().commandExecuted(key, p4args);
+  }
+
   private static File createArgumentFile(Collection<String> args) throws VcsException {
     try {
       File tempFile = FileUtil.createTempFile("p4batch", ".txt");
@@ -38,11 +38,14 @@ import com.intellij.util.EmptyConsumer;
 import com.intellij.util.MemoryDumpHelper;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 import org.jetbrains.idea.perforce.PerforceBundle;
 import org.jetbrains.idea.perforce.application.PerforceManager;
 import org.jetbrains.idea.perforce.application.PerforceVcs;
+import org.jetbrains.idea.perforce.StreamGobbler;
 import org.jetbrains.idea.perforce.perforce.*;
+import org.jetbrains.idea.perforce.util.tracer.P4CommandMetrics;
 
 import javax.swing.*;
 import java.io.File;
@@ -54,8 +57,10 @@ import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
@@ -67,6 +72,9 @@ public abstract class AbstractP4Connection implements P4Connection {
   private volatile boolean myNotConnected = false;
   private static Map<String, String> ourTestEnvironment = Collections.emptyMap();
   private static Consumer<? super String> ourCommandCallback = EmptyConsumer.getInstance();
+  // see "p4 help usage"
+  private static final Set<String> GLOBAL_OPTIONS_WITH_ARGUMENT =
+    Set.of("-b", "-c", "-C", "-d", "-H", "-L", "-p", "-P", "-Q", "-r", "-u", "-x", "-z", "-Z");
 
   @Override
   public ExecResult runP4CommandLine(final PerforceSettings settings,
@@ -141,7 +149,7 @@ public abstract class AbstractP4Connection implements P4Connection {
     setEnvironment(cwd, cmd.getEnvironment());
 
     final CommandDebugInfoWrapper debugInfoWrapper = new CommandDebugInfoWrapper(cmd);
-    final Tracer tracer = new Tracer(project, p4args.length > 0 ? p4args[0] : "", debugInfoWrapper);
+    final Tracer tracer = new Tracer(project, getCommandName(p4args), getServerForMetrics(project, connArgs, p4args), debugInfoWrapper);
 
     debugCmd(cwd, debugInfoWrapper, cmd.getEnvironment());
 
@@ -149,12 +157,13 @@ public abstract class AbstractP4Connection implements P4Connection {
     Process proc = null;
     MyInterruptibleProcess worker = null;
     PerforceProcessWaiter processWaiter = null;
+    Future<?> inputWriter = null;
     String processList = null;
     try {
       tracer.start();
       proc = cmd.createProcess();
       if (inputData != null) {
-        passInputToProcess(inputData.toString(), proc, perforceSettings);
+        inputWriter = passInputToProcess(inputData.toString(), proc, perforceSettings);
       }
 
       worker = new MyInterruptibleProcess(project, proc, perforceSettings.getServerTimeout());
@@ -174,7 +183,9 @@ public abstract class AbstractP4Connection implements P4Connection {
         processList = ProcessHandle.allProcesses().map(h -> h.pid() + ": " + h.info()).collect(Collectors.joining("\n"));
       }
 
-      tracer.stop();
+      boolean failed = rc != 0 || worker == null || worker.getExitCode() != 0;
+      StreamGobbler output = processWaiter != null ? processWaiter.getInStreamListener() : null;
+      tracer.stop(failed, rc == TIMEOUT_EXIT_CODE, output != null ? output.getResultLength() : -1);
       if (worker != null) {
         worker.closeProcess();
       } else if (proc != null) {
@@ -183,6 +194,7 @@ public abstract class AbstractP4Connection implements P4Connection {
     }
 
     if (rc == 0) {
+      waitForInput(inputWriter, worker.getExitCode());
       retVal.setExitCode(worker.getExitCode());
       retVal.setOutputGobbler(processWaiter.getInStreamListener());
       retVal.setErrorGobbler(processWaiter.getErrStreamListener());
@@ -294,9 +306,11 @@ public abstract class AbstractP4Connection implements P4Connection {
     env.putAll(ourTestEnvironment);
   }
 
-  private static void passInputToProcess(String inputData, Process proc, final PerforcePhysicalConnectionParametersI perforceSettings) throws IOException {
-    final OutputStream outputStream = proc.getOutputStream();
-
+  /**
+   * Writes the input on a pooled thread, so that it's written while the output is being read: p4 may write output before it has read
+   * all of its input (e.g. with "-x -"), and then blocks once the output pipe is full.
+   */
+  private static Future<?> passInputToProcess(String inputData, Process proc, final PerforcePhysicalConnectionParametersI perforceSettings) {
     String charsetName = perforceSettings.getCharsetName();
     byte[] bytes;
     try {
@@ -309,9 +323,28 @@ public abstract class AbstractP4Connection implements P4Connection {
       //noinspection SSBasedInspection
       bytes = inputData.getBytes(StandardCharsets.UTF_8);
     }
-    outputStream.write(bytes);
-    // must close or p4 won't read input
-    outputStream.close();
+    final byte[] finalBytes = bytes;
+    return ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      // must close or p4 won't read input
+      try (OutputStream outputStream = proc.getOutputStream()) {
+        outputStream.write(finalBytes);
+      }
+      return null;
+    });
+  }
+
+  private static void waitForInput(@Nullable Future<?> inputWriter, int exitCode) throws Exception {
+    if (inputWriter == null) return;
+    try {
+      inputWriter.get();
+    }
+    catch (ExecutionException e) {
+      // p4 stops reading its input when it fails, its error output tells why
+      if (exitCode == 0) {
+        throw e.getCause() instanceof Exception cause ? cause : e;
+      }
+      LOG.debug(e);
+    }
   }
 
   private static final class CommandDebugInfoWrapper {
@@ -406,26 +439,66 @@ public abstract class AbstractP4Connection implements P4Connection {
     }
   }
 
+  /**
+   * @return the command name without the preceding global options, e.g. "print" for {@code -x file -G print}
+   */
+  @NotNull
+  static String getCommandName(String @NotNull [] p4args) {
+    int i = 0;
+    while (i < p4args.length && p4args[i].startsWith("-")) {
+      i += GLOBAL_OPTIONS_WITH_ARGUMENT.contains(p4args[i]) ? 2 : 1;
+    }
+    return i < p4args.length ? p4args[i] : "";
+  }
+
+  private String getServerForMetrics(Project project, String[] connArgs, String[] p4args) {
+    try {
+      return getConnectionKey().getServer();
+    }
+    catch (UnsupportedOperationException ignored) {
+    }
+    String port = getOptionValue(connArgs, "-p");
+    if (port == null) port = getOptionValue(p4args, "-p");
+    if (port == null) port = PerforceManager.getInstance(project).getCachedServerAddress(this);
+    return StringUtil.notNullize(port);
+  }
+
+  @Nullable
+  private static String getOptionValue(String[] args, String option) {
+    for (int i = 0; i < args.length - 1 && args[i].startsWith("-"); i++) {
+      if (option.equals(args[i])) return args[i + 1];
+      if (GLOBAL_OPTIONS_WITH_ARGUMENT.contains(args[i])) i++;
+    }
+    return null;
+  }
+
   private static class Tracer {
     private final PerforceManager myPm;
     @NotNull
     private final P4Command myCommand;
+    private final String myCommandName;
+    private final String myServer;
     private final CommandDebugInfoWrapper myWrapper;
     private Object myContext;
+    private P4CommandMetrics.Call myMetricsCall;
 
-    Tracer(final Project project, final String commandName, final CommandDebugInfoWrapper wrapper) {
+    Tracer(final Project project, final String commandName, final String server, final CommandDebugInfoWrapper wrapper) {
       myPm = PerforceManager.getInstance(project);
       myCommand = P4Command.getInstance(commandName);
+      myCommandName = commandName;
+      myServer = server;
       myWrapper = wrapper;
     }
 
     void start() {
+      myMetricsCall = P4CommandMetrics.getInstance().commandStarted(myCommandName, myServer);
       if (myPm.isTraceEnabled()) {
         myContext = myPm.traceEnter(myCommand, myWrapper.getPresentation());
       }
     }
 
-    void stop() {
+    void stop(boolean failed, boolean timedOut, long stdoutBytes) {
+      P4CommandMetrics.getInstance().commandFinished(myMetricsCall, failed, timedOut, stdoutBytes);
       if (myPm.isTraceEnabled()) {
         if (myContext == null) {
           LOG.info("Tracing problem: no enter was registered for " + myWrapper.getPresentation());
@@ -5,6 +5,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.vfs.*;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.idea.perforce.application.P4IgnoreMatcher;
 import org.jetbrains.idea.perforce.application.PerforceVcs;
 
 import java.util.Objects;
@@ -100,8 +101,14 @@ public class PerforceP4ConfigVirtualFileListener implements VirtualFileListener
     String fileName = event.getFileName();
     if (isIgnoredFileName(fileName)) {
       LOG.debug("received virtual file event on p4ignore file");
+      P4IgnoreMatcher.getInstance(myProject).clear();
       PerforceVcs.getInstance(myProject).getOnlineChangeProvider().discardCache();
     }
+    else if (event.getFile().isDirectory() &&
+             !(event instanceof VirtualFilePropertyEvent && !((VirtualFilePropertyEvent)event).isRename())) {
+      // the ignore files above a moved, renamed or deleted directory change
+      P4IgnoreMatcher.getInstance(myProject).clear();
+    }
 
     if (isConfigFileName(fileName)) {
       LOG.debug("received virtual file event on p4config file");
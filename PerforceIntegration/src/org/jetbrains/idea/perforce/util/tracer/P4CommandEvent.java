@@ -0,0 +1,28 @@
+package org.jetbrains.idea.perforce.util.tracer;
+
+import jdk.jfr.*;
+
+/**
+ * A p4 command run by the IDE, recorded by {@link P4CommandMetrics}.
+ */
+@Name("org.jetbrains.idea.perforce.P4Command")
+@Label("p4 Command")
+@Category({"IntelliJ", "Perforce"})
+@StackTrace(false)
+final class P4CommandEvent extends Event {
+  @Label("Command")
+  String command;
+
+  @Label("Server")
+  String server;
+
+  @Label("Stdout Size")
+  @DataAmount
+  long stdoutBytes;
+
+  @Label("Failed")
+  boolean failed;
+
+  @Label("Timed Out")
+  boolean timedOut;
+}
@@ -0,0 +1,158 @@
+package org.jetbrains.idea.perforce.util.tracer;
+
+import com.intellij.util.SystemProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Always-on counters of p4 commands run in this IDE process: a latency histogram and output size per command name, and in-flight
+ * commands, errors and timeouts per server. Unlike {@link TracerManager} it doesn't log anything and costs a few atomic increments
+ * per command, so it is enabled by default; {@code -Dperforce.command.metrics=false} turns it off.
+ * The {@link #getReport() report} is shown by the "Perforce | Show Command Statistics" action.
+ * <p>
+ * Each command is also reported as a {@link P4CommandEvent} JFR event when a flight recording is running.
+ */
+public final class P4CommandMetrics {
+  private static final boolean ENABLED = SystemProperties.getBooleanProperty("perforce.command.metrics", true);
+  private static final P4CommandMetrics ourInstance = new P4CommandMetrics();
+
+  // bucket i counts commands that took less than 2^i ms, the last one counts all the longer ones
+  static final int BUCKET_COUNT = 20;
+
+  private final Map<String, CommandStats> myCommands = new ConcurrentHashMap<>();
+  private final Map<String, ServerStats> myServers = new ConcurrentHashMap<>();
+
+  private P4CommandMetrics() {
+  }
+
+  @NotNull
+  public static P4CommandMetrics getInstance() {
+    return ourInstance;
+  }
+
+  /**
+   * @return context to pass to {@link #commandFinished}, or {@code null} if metrics are disabled
+   */
+  @Nullable
+  public Call commandStarted(@NotNull String command, @NotNull String server) {
+    if (!ENABLED) return null;
+
+    ServerStats serverStats = myServers.computeIfAbsent(server, s -> new ServerStats());
+    int inFlight = serverStats.inFlight.incrementAndGet();
+    serverStats.maxInFlight.accumulateAndGet(inFlight, Math::max);
+
+    P4CommandEvent event = new P4CommandEvent();
+    event.begin();
+    return new Call(command, server, serverStats, event, System.nanoTime());
+  }
+
+  /**
+   * @param stdoutBytes size of the command output, or -1 if unknown
+   */
+  public void commandFinished(@Nullable Call call, boolean failed, boolean timedOut, long stdoutBytes) {
+    if (call == null) return;
+
+    long nanos = System.nanoTime() - call.myStartNanos;
+    call.myServerStats.inFlight.decrementAndGet();
+    call.myServerStats.commands.increment();
+    if (failed) call.myServerStats.errors.increment();
+    if (timedOut) call.myServerStats.timeouts.increment();
+
+    CommandStats stats = myCommands.computeIfAbsent(call.myCommand, c -> new CommandStats());
+    stats.count.increment();
+    stats.totalNanos.add(nanos);
+    stats.maxNanos.accumulateAndGet(nanos, Math::max);
+    stats.latencyHistogram.incrementAndGet(getBucket(TimeUnit.NANOSECONDS.toMillis(nanos)));
+    if (stdoutBytes > 0) stats.stdoutBytes.add(stdoutBytes);
+    if (failed) stats.errors.increment();
+
+    P4CommandEvent event = call.myEvent;
+    event.end();
+    if (event.shouldCommit()) {
+      event.command = call.myCommand;
+      event.server = call.myServer;
+      event.stdoutBytes = stdoutBytes;
+      event.failed = failed;
+      event.timedOut = timedOut;
+      event.commit();
+    }
+  }
+
+  static int getBucket(long millis) {
+    int bucket = 64 - Long.numberOfLeadingZeros(Math.max(millis, 0));
+    return Math.min(bucket, BUCKET_COUNT - 1);
+  }
+
+  /**
+   * @return human-readable snapshot of the counters, for logs and diagnostic reports
+   */
+  @NotNull
+  public String getReport() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("p4 commands (count, errors, avg ms, max ms, stdout KB, latency buckets <1,<2,<4...ms):\n");
+    for (Map.Entry<String, CommandStats> entry : new TreeMap<>(myCommands).entrySet()) {
+      CommandStats stats = entry.getValue();
+      long count = stats.count.sum();
+      sb.append("  ").append(entry.getKey()).append(": ")
+        .append(count).append(", ")
+        .append(stats.errors.sum()).append(", ")
+        .append(count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(stats.totalNanos.sum() / count)).append(", ")
+        .append(TimeUnit.NANOSECONDS.toMillis(stats.maxNanos.get())).append(", ")
+        .append(stats.stdoutBytes.sum() / 1024).append(", ")
+        .append(stats.latencyHistogram).append('\n');
+    }
+    sb.append("p4 servers (in flight, max in flight, commands, errors, timeouts):\n");
+    for (Map.Entry<String, ServerStats> entry : new TreeMap<>(myServers).entrySet()) {
+      ServerStats stats = entry.getValue();
+      sb.append("  ").append(entry.getKey()).append(": ")
+        .append(stats.inFlight.get()).append(", ")
+        .append(stats.maxInFlight.get()).append(", ")
+        .append(stats.commands.sum()).append(", ")
+        .append(stats.errors.sum()).append(", ")
+        .append(stats.timeouts.sum()).append('\n');
+    }
+    return sb.toString();
+  }
+
+  public static final class Call {
+    private final String myCommand;
+    private final String myServer;
+    private final ServerStats myServerStats;
+    private final P4CommandEvent myEvent;
+    private final long myStartNanos;
+
+    private Call(String command, String server, ServerStats serverStats, P4CommandEvent event, long startNanos) {
+      myCommand = command;
+      myServer = server;
+      myServerStats = serverStats;
+      myEvent = event;
+      myStartNanos = startNanos;
+    }
+  }
+
+  private static final class CommandStats {
+    final LongAdder count = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    final LongAdder totalNanos = new LongAdder();
+    final AtomicLong maxNanos = new AtomicLong();
+    final LongAdder stdoutBytes = new LongAdder();
+    final AtomicLongArray latencyHistogram = new AtomicLongArray(BUCKET_COUNT);
+  }
+
+  private static final class ServerStats {
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+    final LongAdder commands = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    final LongAdder timeouts = new LongAdder();
+  }
+}
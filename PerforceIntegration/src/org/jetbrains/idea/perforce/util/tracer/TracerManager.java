@@ -34,6 +34,7 @@ public class TracerManager<Kind extends Enum> implements Tracer<Kind, Object> {
         presentation.getSecond().putSelf(sb, presentation.getFirst());
         sb.append('\n');
       }
+      sb.append(P4CommandMetrics.getInstance().getReport());
       myLogger.info(sb.toString());
       myPreviousOutputTime = currentTime;
     };
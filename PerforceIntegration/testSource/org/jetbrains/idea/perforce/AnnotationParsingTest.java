@@ -42,4 +42,48 @@ public class AnnotationParsingTest extends TestCase{
     assertEquals(2, annotationInfo.getRevision(1));
     assertEquals(300300300300300L, annotationInfo.getRevision(2));
   }
+
+  public void testRebaseTakesRevisionsOfUnchangedLinesFromBase() throws Exception {
+    AnnotationInfo base = new AnnotationInfo("1: a\n2: b\n1: c\n3: d\n", false);
+    AnnotationInfo range = new AnnotationInfo("3: a\n4: new\n3: c\n3: d\n", false);
+    AnnotationInfo rebased = AnnotationInfo.rebase(base, range, 3);
+    assertNotNull(rebased);
+    assertEquals("a\nnew\nc\nd\n", rebased.getContent());
+    assertRevisions(rebased, 1, 4, 1, 3);
+  }
+
+  public void testRebaseOfDuplicateLinesWithSameRevision() throws Exception {
+    AnnotationInfo base = new AnnotationInfo("1: }\n2: x\n1: }\n1: }\n", false);
+    AnnotationInfo range = new AnnotationInfo("3: }\n3: }\n", false);
+    AnnotationInfo rebased = AnnotationInfo.rebase(base, range, 3);
+    assertNotNull(rebased);
+    assertRevisions(rebased, 1, 1);
+  }
+
+  public void testRebaseFailsOnAmbiguousDuplicateLines() throws Exception {
+    // the remaining "}" is either the first or the second line of the base
+    AnnotationInfo base = new AnnotationInfo("1: }\n2: }\n", false);
+    AnnotationInfo range = new AnnotationInfo("3: }\n", false);
+    assertNull(AnnotationInfo.rebase(base, range, 3));
+  }
+
+  public void testRebaseFailsOnWhitespaceOnlyDifference() throws Exception {
+    // "p4 annotate -dw" attributes a line with changed indentation to the start of the range
+    AnnotationInfo base = new AnnotationInfo("1: a\n2:   b\n", false);
+    AnnotationInfo range = new AnnotationInfo("3: a\n3: b\n", false);
+    assertNull(AnnotationInfo.rebase(base, range, 3));
+  }
+
+  public void testRebaseWithChangelistNumbers() throws Exception {
+    AnnotationInfo base = new AnnotationInfo("100: a\n", true);
+    AnnotationInfo range = new AnnotationInfo("100: a\n", true);
+    assertNull(AnnotationInfo.rebase(base, range, 100));
+  }
+
+  private static void assertRevisions(AnnotationInfo info, long... expected) {
+    assertEquals(expected.length, info.getLineCount());
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals("line " + i, expected[i], info.getRevision(i));
+    }
+  }
 }
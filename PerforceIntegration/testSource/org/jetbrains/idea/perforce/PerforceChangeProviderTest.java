@@ -3,6 +3,7 @@ package org.jetbrains.idea.perforce;
 import com.intellij.execution.process.ProcessOutput;
 import com.intellij.openapi.application.WriteAction;
 import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.SystemInfo;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.io.IoTestUtil;
@@ -15,10 +16,13 @@ import com.intellij.testFramework.EdtTestUtil;
 import com.intellij.testFramework.vcs.DuringChangeListManagerUpdateTestScheme;
 import com.intellij.util.CollectConsumer;
 import com.intellij.util.ExceptionUtil;
+import com.intellij.util.SystemProperties;
 import org.jetbrains.idea.perforce.application.PerforceCommittedChangesProvider;
 import org.jetbrains.idea.perforce.application.PerforceRepositoryLocation;
 import org.jetbrains.idea.perforce.application.PerforceVcs;
 import org.jetbrains.idea.perforce.changesBrowser.PerforceChangeBrowserSettings;
+import org.jetbrains.idea.perforce.perforce.P4File;
+import org.jetbrains.idea.perforce.perforce.PerforceCommittedChangesStore;
 import org.jetbrains.idea.perforce.perforce.PerforceRunner;
 import org.jetbrains.idea.perforce.perforce.connections.AbstractP4Connection;
 import org.junit.Assert;
@@ -1014,6 +1018,57 @@ public class PerforceChangeProviderTest extends PerforceTestCase {
     assertFalse(callback.getResult().toString(), callback.getResult().contains("describe -s 1"));
   }
 
+  @Test
+  public void testCommittedChangesStoreLoadsNewerChangesAndPages() throws VcsException {
+    PerforceCommittedChangesStore.enableInTests(myTestRootDisposable);
+    String pageSize = SystemProperties.setProperty("p4.changes.page.size", "2");
+    Disposer.register(myTestRootDisposable, () -> SystemProperties.setProperty("p4.changes.page.size", pageSize));
+
+    VirtualFile file = createFileInCommand("a.txt", "");
+    addFile("a.txt");
+    submitDefaultList("change 1");
+    submitChanges(file, 2, 5);
+
+    List<String> commands = AbstractP4Connection.dumpCommands(myTestRootDisposable);
+    assertEquals(List.of(5L, 4L, 3L), loadSubmittedChangeNumbers(3));
+    // the newest page and the one below it
+    assertEquals(2, countSubmittedChangesCommands(commands));
+
+    commands.clear();
+    assertEquals(List.of(5L, 4L, 3L, 2L, 1L), loadSubmittedChangeNumbers(0));
+    // the changes after the stored ones and the last page
+    assertEquals(2, countSubmittedChangesCommands(commands));
+
+    submitChanges(file, 6, 6);
+    commands.clear();
+    assertEquals(List.of(6L, 5L, 4L, 3L, 2L, 1L), loadSubmittedChangeNumbers(0));
+    assertEquals(1, countSubmittedChangesCommands(commands));
+
+    // more new changes than a page: the stored range is dropped rather than extended with a gap
+    submitChanges(file, 7, 9);
+    assertEquals(List.of(9L, 8L, 7L, 6L, 5L, 4L, 3L, 2L, 1L), loadSubmittedChangeNumbers(0));
+  }
+
+  private void submitChanges(VirtualFile file, int from, int to) {
+    for (int i = from; i <= to; i++) {
+      verify(runP4WithClient("edit", file.getPath()));
+      editFileInCommand(file, "text " + i);
+      submitDefaultList("change " + i);
+    }
+  }
+
+  private List<Long> loadSubmittedChangeNumbers(int maxCount) throws VcsException {
+    List<Long> numbers = new ArrayList<>();
+    PerforceRunner.getInstance(myProject).loadSubmittedChangeLists(null, null, P4File.create(myWorkingCopyDir),
+                                                                   new PerforceChangeBrowserSettings(), maxCount, false,
+                                                                   changeList -> numbers.add(changeList.getNumber()));
+    return numbers;
+  }
+
+  private static long countSubmittedChangesCommands(List<String> commands) {
+    return commands.stream().filter(s -> s.startsWith("changes -s submitted")).count();
+  }
+
   @Test
   public void testChangesAfterUnshelveConflict() throws VcsException {
     VirtualFile file = createFileInCommand("a.txt", "");
@@ -0,0 +1,37 @@
+package org.jetbrains.idea.perforce;
+
+import com.intellij.openapi.vcs.VcsException;
+import org.jetbrains.idea.perforce.perforce.FStat;
+import org.jetbrains.idea.perforce.perforce.P4File;
+import org.jetbrains.idea.perforce.perforce.PerforceRunner;
+import org.jetbrains.idea.perforce.perforce.connections.AbstractP4Connection;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PerforceRunnerTest extends PerforceTestCase {
+
+  @Test
+  public void testArgumentsAndOutputLargerThanPipeBuffer() throws VcsException {
+    // a full fstat chunk: both the arguments written to stdin and the error output are well over a pipe buffer (64K on Linux)
+    List<P4File> files = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      files.add(P4File.create(new File(myWorkingCopyDir.getPath(), "not_added_file_with_a_rather_long_name_" + i + ".txt")));
+    }
+    List<String> commands = AbstractP4Connection.dumpCommands(myTestRootDisposable);
+
+    Map<P4File, FStat> result = PerforceRunner.getInstance(myProject).fstatBulk(files);
+
+    assertTrue(commands.toString(), commands.stream().anyMatch(cmd -> cmd.startsWith("-x - fstat")));
+    assertEquals(files.size(), result.size());
+    for (FStat fStat : result.values()) {
+      assertEquals(FStat.Status.NOT_ADDED, fStat.status);
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package org.jetbrains.idea.perforce.application;
+
+import junit.framework.TestCase;
+
+public class P4IgnoreRulesTest extends TestCase {
+  public void testFileNameInAnySubdirectory() {
+    P4IgnoreRules rules = P4IgnoreRules.parse("# comment\n\na.txt\n*.class\n", true);
+    assertTrue(rules.isSupported());
+    assertTrue(isIgnored(rules, "a.txt"));
+    assertTrue(isIgnored(rules, "src/pkg/a.txt"));
+    assertTrue(isIgnored(rules, "out/Foo$1.class"));
+    assertFalse(isIgnored(rules, "b.txt"));
+    assertFalse(isIgnored(rules, "a.txt.bak"));
+  }
+
+  public void testIgnoredDirectoryAppliesToContents() {
+    P4IgnoreRules rules = P4IgnoreRules.parse("build/\n/out\ngen/...\n", true);
+    assertTrue(isIgnored(rules, "build/classes/A.class"));
+    assertTrue(isIgnored(rules, "module/build/A.class"));
+    assertFalse(isIgnored(rules, "build"));
+    assertTrue(isIgnored(rules, "out/a.txt"));
+    assertFalse(isIgnored(rules, "module/out/a.txt"));
+    assertTrue(isIgnored(rules, "gen/a.txt"));
+  }
+
+  public void testLastRuleWins() {
+    P4IgnoreRules rules = P4IgnoreRules.parse("*.log\n!keep.log\n", true);
+    assertTrue(isIgnored(rules, "logs/debug.log"));
+    assertFalse(isIgnored(rules, "logs/keep.log"));
+
+    rules = P4IgnoreRules.parse("!keep.log\n*.log\n", true);
+    assertTrue(isIgnored(rules, "logs/keep.log"));
+  }
+
+  public void testAnyDepth() {
+    P4IgnoreRules rules = P4IgnoreRules.parse("/src/.../generated\n**/tmp*\n", true);
+    assertTrue(isIgnored(rules, "src/generated/A.java"));
+    assertTrue(isIgnored(rules, "src/a/b/generated/A.java"));
+    assertFalse(isIgnored(rules, "test/generated/A.java"));
+    assertTrue(isIgnored(rules, "x/tmp1/a.txt"));
+  }
+
+  public void testGlobSegments() {
+    P4IgnoreRules rules = P4IgnoreRules.parse("a*b*c\n", true);
+    assertTrue(isIgnored(rules, "abc"));
+    assertTrue(isIgnored(rules, "a-b-c"));
+    assertFalse(isIgnored(rules, "acb"));
+    assertFalse(isIgnored(rules, "ab"));
+  }
+
+  public void testCaseInsensitive() {
+    assertTrue(isIgnored(P4IgnoreRules.parse("*.OBJ\n", false), "Out/Main.obj"));
+    assertFalse(isIgnored(P4IgnoreRules.parse("*.OBJ\n", true), "Out/Main.obj"));
+  }
+
+  public void testUnsupportedRules() {
+    assertFalse(P4IgnoreRules.parse("a?.txt\n", true).isSupported());
+    assertFalse(P4IgnoreRules.parse("[ab].txt\n", true).isSupported());
+    assertFalse(P4IgnoreRules.parse("foo...bar\n", true).isSupported());
+    assertFalse(P4IgnoreRules.parse("dir/file.txt\n", true).isSupported());
+  }
+
+  private static boolean isIgnored(P4IgnoreRules rules, String path) {
+    P4IgnoreRules.Rule rule = rules.match(path, false);
+    return rule != null && !rule.negated;
+  }
+}
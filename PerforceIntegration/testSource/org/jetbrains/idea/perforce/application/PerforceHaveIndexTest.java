@@ -0,0 +1,154 @@
+package org.jetbrains.idea.perforce.application;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.LocalFilePath;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.*;
+
+public class PerforceHaveIndexTest extends TestCase {
+  private static final ConnectionKey KEY = new ConnectionKey("server:1666", "client", "user");
+
+  private File myStorageDir;
+  private String myRoot;
+  private PerforceHaveIndex myIndex;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myStorageDir = FileUtil.createTempDirectory("perforce-have", null);
+    myRoot = FileUtil.toSystemIndependentName(FileUtil.createTempDirectory("client", null).getPath());
+    myIndex = new PerforceHaveIndex(myStorageDir.toPath());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myIndex.dispose();
+      FileUtil.delete(myStorageDir);
+      FileUtil.delete(new File(myRoot));
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testRecordedDirectoryIsAnswered() {
+    record(dir("a"), "1 2 files 10 bytes", Map.of("a/x.txt", 1L, "a/b/c/y.txt", 3L));
+
+    assertEquals(Set.of(), myIndex.getRootsToValidate(KEY, List.of(dir("a/b"))));
+    assertEquals(Map.of(path("a/x.txt"), 1L, path("a/b/c/y.txt"), 3L), process(dir("a")));
+    assertEquals(Map.of(path("a/b/c/y.txt"), 3L), process(dir("a/b")));
+    assertEquals(Map.of(path("a/x.txt"), 1L), process(file("a/x.txt")));
+    assertEquals(Map.of(path("a/b/c/y.txt"), 3L), process(file("a/b/c/y.txt")));
+    assertEquals(Map.of(), process(file("a/b/z.txt")));
+    assertEquals(Map.of(), process(dir("a/d")));
+  }
+
+  public void testWatermarkIsValidatedAgainAfterInvalidation() {
+    record(dir("a"), "1 1 files 10 bytes", Map.of("a/x.txt", 1L));
+    myIndex.invalidateWatermarks();
+
+    assertEquals(Set.of(myRoot + "/a"), myIndex.getRootsToValidate(KEY, List.of(dir("a"))));
+    assertNull(process(dir("a")));
+
+    myIndex.validateRoots(KEY, Map.of(myRoot + "/a", "1 1 files 10 bytes"));
+    assertEquals(Set.of(), myIndex.getRootsToValidate(KEY, List.of(dir("a"))));
+    assertEquals(Map.of(path("a/x.txt"), 1L), process(dir("a")));
+
+    // e.g. synced outside the IDE
+    myIndex.invalidateWatermarks();
+    myIndex.validateRoots(KEY, Map.of(myRoot + "/a", "1 1 files 12 bytes"));
+    assertNull(myIndex.getRootsToValidate(KEY, List.of(dir("a"))));
+    assertNull(process(dir("a")));
+  }
+
+  public void testNotIndexedPathIsNotAnswered() {
+    record(dir("a"), "1 1 files 10 bytes", Map.of("a/x.txt", 1L));
+
+    assertNull(myIndex.getRootsToValidate(KEY, List.of(dir("a"), dir("c"))));
+    assertNull(process(dir("c")));
+    assertNull(process(new LocalFilePath(myRoot, true)));
+  }
+
+  public void testIncompleteScanIsNotCommitted() {
+    PerforceHaveIndex.Recorder recorder = myIndex.startRecording(KEY, Map.of(myRoot + "/a", "1 1 files 10 bytes"), List.of(dir("a")));
+    recorder.consumeRevision(path("a/x.txt"), 1);
+    recorder.markIncomplete();
+    recorder.commit();
+
+    assertNull(myIndex.getRootsToValidate(KEY, List.of(dir("a"))));
+  }
+
+  public void testDirectoryWithoutWatermarkIsNotIndexed() {
+    record(dir("a"), null, Map.of("a/x.txt", 1L));
+
+    assertNull(myIndex.getRootsToValidate(KEY, List.of(dir("a"))));
+  }
+
+  public void testOuterDirectoryReplacesNestedOnes() {
+    record(dir("a/b"), "1 1 files 10 bytes", Map.of("a/b/y.txt", 1L));
+    record(dir("a"), "2 2 files 20 bytes", Map.of("a/x.txt", 2L, "a/b/y.txt", 2L));
+
+    assertEquals(Set.of(), myIndex.getRootsToValidate(KEY, List.of(dir("a/b"))));
+    assertEquals(Map.of(path("a/b/y.txt"), 2L), process(dir("a/b")));
+  }
+
+  public void testHaveChangingCommandDropsOverlappingDirectories() {
+    record(dir("a"), "1 1 files 10 bytes", Map.of("a/x.txt", 1L));
+    record(dir("c"), "1 1 files 10 bytes", Map.of("c/z.txt", 1L));
+
+    assertTrue(PerforceHaveIndex.isHaveChangingCommand(List.of("sync", myRoot + "/a/x.txt#head")));
+    assertFalse(PerforceHaveIndex.isHaveChangingCommand(List.of("sync", "-n", myRoot + "/a/...")));
+    assertFalse(PerforceHaveIndex.isHaveChangingCommand(List.of("have", myRoot + "/a/...")));
+
+    myIndex.commandExecuted(KEY, List.of("sync", FileUtil.toSystemDependentName(myRoot + "/a/x.txt") + "#head"));
+    assertNull(myIndex.getRootsToValidate(KEY, List.of(dir("a"))));
+    assertNotNull(myIndex.getRootsToValidate(KEY, List.of(dir("c"))));
+
+    myIndex.commandExecuted(KEY, List.of("submit", "-c", "123"));
+    assertNull(myIndex.getRootsToValidate(KEY, List.of(dir("c"))));
+  }
+
+  public void testConnectionsAreIndexedSeparately() {
+    record(dir("a"), "1 1 files 10 bytes", Map.of("a/x.txt", 1L));
+
+    assertNull(myIndex.getRootsToValidate(new ConnectionKey("server:1666", "other", "user"), List.of(dir("a"))));
+  }
+
+  public void testRecordsArePersisted() {
+    record(dir("a"), "1 1 files 10 bytes", Map.of("a/x.txt", 1L, "a/b/y.txt", 2L));
+    myIndex.dispose();
+
+    myIndex = new PerforceHaveIndex(myStorageDir.toPath());
+    assertEquals(Set.of(myRoot + "/a"), myIndex.getRootsToValidate(KEY, List.of(dir("a"))));
+    myIndex.validateRoots(KEY, Map.of(myRoot + "/a", "1 1 files 10 bytes"));
+    assertEquals(Map.of(path("a/x.txt"), 1L, path("a/b/y.txt"), 2L), process(dir("a")));
+  }
+
+  private void record(FilePath dir, String watermark, Map<String, Long> records) {
+    Map<String, String> watermarks = watermark == null ? Map.of() : Map.of(dir.getPath(), watermark);
+    PerforceHaveIndex.Recorder recorder = myIndex.startRecording(KEY, watermarks, List.of(dir));
+    records.forEach((path, revision) -> recorder.consumeRevision(path(path), revision));
+    recorder.commit();
+  }
+
+  private Map<String, Long> process(FilePath scope) {
+    Map<String, Long> result = new HashMap<>();
+    return myIndex.processHaveRecords(KEY, List.of(scope), result::put) ? result : null;
+  }
+
+  private FilePath dir(String relativePath) {
+    return new LocalFilePath(myRoot + "/" + relativePath, true);
+  }
+
+  private FilePath file(String relativePath) {
+    return new LocalFilePath(myRoot + "/" + relativePath, false);
+  }
+
+  private String path(String relativePath) {
+    return FileUtil.toSystemDependentName(myRoot + "/" + relativePath);
+  }
+}
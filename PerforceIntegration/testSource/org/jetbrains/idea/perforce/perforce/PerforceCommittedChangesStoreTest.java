@@ -0,0 +1,106 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import com.intellij.openapi.util.io.FileUtil;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import junit.framework.TestCase;
+import org.jetbrains.idea.perforce.ChangeListData;
+
+import java.io.File;
+import java.util.List;
+
+public class PerforceCommittedChangesStoreTest extends TestCase {
+  private static final String SERVER = "server:1666";
+  private static final String OTHER_SERVER = "other:1666";
+
+  private File myStorageDir;
+  private PerforceCommittedChangesStore myStore;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myStorageDir = FileUtil.createTempDirectory("perforce-changes", null);
+    myStore = new PerforceCommittedChangesStore(myStorageDir.toPath());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myStore.dispose();
+      FileUtil.delete(myStorageDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testRecordsArePersisted() {
+    String locationKey = PerforceCommittedChangesStore.getLocationKey(SERVER, List.of("client", "//depot/..."));
+    myStore.putChangeLists(SERVER, List.of(changeList(12, "second"), changeList(7, "first")));
+    myStore.putFiles(SERVER, 12, List.of(new PerforceCommittedChangesStore.StoredFileChange(1, 3, "//depot/dir/a.txt"),
+                                         new PerforceCommittedChangesStore.StoredFileChange(2, 1, "//depot/dir/b.txt")));
+    myStore.putLocation(locationKey, new PerforceCommittedChangesStore.Location(6, 12, LongArrayList.wrap(new long[]{12, 7})));
+    reopen();
+
+    PerforceCommittedChangesStore.Location location = myStore.getLocation(locationKey);
+    assertNotNull(location);
+    assertEquals(6, location.coveredFrom);
+    assertEquals(12, location.coveredTo);
+    assertEquals(LongArrayList.wrap(new long[]{12, 7}), location.numbers);
+
+    ChangeListData data = myStore.getChangeList(SERVER, 12);
+    assertNotNull(data);
+    assertEquals("second", data.DESCRIPTION);
+    assertEquals("user", data.USER);
+
+    List<PerforceCommittedChangesStore.StoredFileChange> files = myStore.getFiles(SERVER, 12);
+    assertNotNull(files);
+    assertEquals(2, files.size());
+    assertEquals("//depot/dir/b.txt", files.get(1).depotPath);
+    assertEquals(2, files.get(1).type);
+    assertEquals(1, files.get(1).revision);
+
+    assertNull(myStore.getFiles(SERVER, 7));
+    assertNull(myStore.getChangeList(OTHER_SERVER, 12));
+  }
+
+  public void testStaleServersAndLocationsAreEvicted() throws InterruptedException {
+    String locationKey = PerforceCommittedChangesStore.getLocationKey(SERVER, List.of("client", "//depot/..."));
+    myStore.putChangeLists(SERVER, List.of(changeList(12, "change")));
+    myStore.putLocation(locationKey, new PerforceCommittedChangesStore.Location(0, 12, LongArrayList.wrap(new long[]{12})));
+    Thread.sleep(10);
+    long staleBefore = System.currentTimeMillis();
+    Thread.sleep(10);
+    myStore.putChangeLists(OTHER_SERVER, List.of(changeList(5, "other")));
+
+    myStore.evict(staleBefore, PerforceCommittedChangesStore.MAX_CHANGELISTS);
+    assertNull(myStore.getLocation(locationKey));
+    assertNull(myStore.getChangeList(SERVER, 12));
+    assertNotNull(myStore.getChangeList(OTHER_SERVER, 5));
+  }
+
+  public void testUnreferencedChangeListsAreEvictedOverLimit() {
+    String locationKey = PerforceCommittedChangesStore.getLocationKey(SERVER, List.of("client", "//depot/..."));
+    myStore.putChangeLists(SERVER, List.of(changeList(3, "referenced"), changeList(2, "newer"), changeList(1, "older")));
+    myStore.putLocation(locationKey, new PerforceCommittedChangesStore.Location(2, 3, LongArrayList.wrap(new long[]{3})));
+
+    myStore.evict(0, 2);
+    assertNotNull(myStore.getChangeList(SERVER, 3));
+    assertNotNull(myStore.getChangeList(SERVER, 2));
+    assertNull(myStore.getChangeList(SERVER, 1));
+  }
+
+  private void reopen() {
+    myStore.dispose();
+    myStore = new PerforceCommittedChangesStore(myStorageDir.toPath());
+  }
+
+  private static ChangeListData changeList(long number, String description) {
+    ChangeListData data = new ChangeListData();
+    data.NUMBER = number;
+    data.DATE = "2022/01/01 12:00:00";
+    data.USER = "user";
+    data.CLIENT = "client";
+    data.DESCRIPTION = description;
+    return data;
+  }
+}
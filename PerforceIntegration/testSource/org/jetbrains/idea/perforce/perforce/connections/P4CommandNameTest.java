@@ -0,0 +1,14 @@
+package org.jetbrains.idea.perforce.perforce.connections;
+
+import junit.framework.TestCase;
+
+public class P4CommandNameTest extends TestCase {
+  public void testGlobalOptionsAreSkipped() {
+    assertEquals("fstat", AbstractP4Connection.getCommandName(new String[]{"fstat", "-Olhp", "//depot/..."}));
+    assertEquals("print", AbstractP4Connection.getCommandName(new String[]{"-G", "print", "//depot/a.txt"}));
+    assertEquals("fstat", AbstractP4Connection.getCommandName(new String[]{"-x", "/tmp/args", "fstat"}));
+    assertEquals("opened", AbstractP4Connection.getCommandName(new String[]{"-c", "client", "-p", "server:1666", "-ztag", "opened"}));
+    assertEquals("", AbstractP4Connection.getCommandName(new String[]{"-s"}));
+    assertEquals("", AbstractP4Connection.getCommandName(new String[0]));
+  }
+}
@@ -2,37 +2,64 @@ package com.intellij.lang.javascript.flex.importer;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.zip.InflaterInputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
 
 /**
+ * Read-only view of a range of a byte array. Sub-buffers returned by {@link #readBytes} share the
+ * array of their parent instead of copying it.
+ *
  * @author Maxim.Mossienko
 */
 class ByteBuffer {
+  private static final long MAX_DEFLATE_RATIO = 1032;
+
   private byte[] bytes;
+  private int offset;
+  private int size;
   private int position;
   private boolean littleEndian;
 
   void read(@NotNull InputStream inputStream) throws IOException {
     try (inputStream) {
-      bytes = readStream(inputStream);
+      setBytes(inputStream.readAllBytes());
     }
   }
 
+  private void setBytes(byte[] bytes) {
+    this.bytes = bytes;
+    offset = 0;
+    size = bytes.length;
+  }
+
   void setLittleEndian() {
     littleEndian = true;
   }
 
+  /**
+   * Returns the index in {@link #bytes} of the current position, checking that the given number of bytes can be read from it.
+   * Sub-buffers share the array of their parent, so the array bounds don't protect against reading past their end.
+   */
+  private int index(int length) {
+    if (length < 0 || length > size - position) {
+      throw new ArrayIndexOutOfBoundsException(position + length);
+    }
+    return offset + position;
+  }
+
   int readInt() {
+    int i = index(4);
     int result;
     if (littleEndian) {
-      result = (((bytes[position + 3] & 0xFF) << 8 | (bytes[position + 2] & 0xFF)) << 16) + ((bytes[position + 1] & 0xFF) << 8) | (bytes[position] & 0xFF);
+      result = (((bytes[i + 3] & 0xFF) << 8 | (bytes[i + 2] & 0xFF)) << 16) + ((bytes[i + 1] & 0xFF) << 8) | (bytes[i] & 0xFF);
     }
     else {
-      result = (((bytes[position] & 0xFF) << 8 | (bytes[position + 1] & 0xFF)) << 16) + ((bytes[position + 2] & 0xFF) << 8) | (bytes[position + 3] & 0xFF);
+      result = (((bytes[i] & 0xFF) << 8 | (bytes[i + 1] & 0xFF)) << 16) + ((bytes[i + 2] & 0xFF) << 8) | (bytes[i + 3] & 0xFF);
     }
     position += 4;
     return result;
@@ -47,77 +74,84 @@ class ByteBuffer {
   }
 
   public int bytesSize() {
-    return bytes.length;
-  }
-
-  public void uncompress() throws IOException {
-    final InflaterInputStream zipInputStream = new InflaterInputStream(new ByteArrayInputStream(bytes));
-
-    bytes = readStream(zipInputStream);
-
-    zipInputStream.close();
-  }
-
-  private static byte[] readStream(final InputStream zipInputStream) throws IOException {
-    final byte[] buf = new byte[8192];
-    byte[] result = new byte[8192];
-    int total = 0;
-
-    while (true) {
-      int read = zipInputStream.read(buf);
-      if (read == -1) break;
-      if (total + read >= result.length) {
-        byte[] newresult = new byte[result.length * 2];
-        System.arraycopy(result, 0, newresult, 0, total);
-        result = newresult;
+    return size;
+  }
+
+  /**
+   * Replaces the contents with their inflated form.
+   *
+   * @param expectedSize size of the inflated data as recorded in the file header, used to inflate
+   *                     straight into an array of the final size; the array grows if it is wrong
+   */
+  public void uncompress(int expectedSize) throws IOException {
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(bytes, offset, size);
+      // Deflate can't compress by more than ~1:1032, so a larger size comes from a corrupted header.
+      boolean plausibleSize = expectedSize > 0 && expectedSize <= MAX_DEFLATE_RATIO * size;
+      byte[] result = new byte[plausibleSize ? expectedSize : 8192];
+      int total = 0;
+      while (!inflater.finished()) {
+        if (total == result.length) {
+          result = Arrays.copyOf(result, result.length * 2);
+        }
+        int inflated = inflater.inflate(result, total, result.length - total);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new ZipException("Unexpected end of compressed data");
+        }
+        total += inflated;
       }
-
-      System.arraycopy(buf, 0, result, total, read);
-      total += read;
+      setBytes(total == result.length ? result : Arrays.copyOf(result, total));
+    }
+    catch (DataFormatException e) {
+      throw new ZipException(e.getMessage());
+    }
+    finally {
+      inflater.end();
     }
-
-    final byte[] realResult = new byte[total];
-    System.arraycopy(result, 0, realResult, 0, total);
-    return realResult;
   }
 
   public int readUnsignedByte() {
-    return bytes[position++] & 0xFF;
+    int i = index(1);
+    position++;
+    return bytes[i] & 0xFF;
   }
 
   public int readByte() {
-    return bytes[position++];
+    int i = index(1);
+    position++;
+    return bytes[i];
   }
 
   public int readUnsignedShort() {
+    int i = index(2);
     int result;
     if (littleEndian) {
-      result = (bytes[position + 1] & 0xFF) << 8 | (bytes[position] & 0xFF);
+      result = (bytes[i + 1] & 0xFF) << 8 | (bytes[i] & 0xFF);
     }
     else {
-      result = (bytes[position] & 0xFF) << 8 | (bytes[position + 1] & 0xFF);
+      result = (bytes[i] & 0xFF) << 8 | (bytes[i + 1] & 0xFF);
     }
     position += 2;
     return result;
   }
 
   public void readBytes(ByteBuffer data2, int length) {
-    data2.bytes = new byte[length];
-    System.arraycopy(bytes, position, data2.bytes, 0, length);
+    data2.bytes = bytes;
+    data2.offset = index(length);
+    data2.size = length;
+    data2.position = 0;
     position += length;
   }
 
   public boolean eof() {
-    return position >= bytes.length;
+    return position >= size;
   }
 
   public String readUTFBytes(int i) {
-    final byte[] buf = new byte[i];
-    while (i > 0) {
-      buf[buf.length - i] = (byte)readByte();
-      --i;
-    }
-    return new String(buf, StandardCharsets.UTF_8);
+    final String result = new String(bytes, index(i), i, StandardCharsets.UTF_8);
+    position += i;
+    return result;
   }
 
   public double readDouble() {
@@ -139,7 +173,10 @@ class ByteBuffer {
   }
 
   public byte getByte(int i) {
-    return bytes[i];
+    if (i < 0 || i >= size) {
+      throw new ArrayIndexOutOfBoundsException(i);
+    }
+    return bytes[offset + i];
   }
 
   public int getPosition() {
@@ -84,12 +84,12 @@ public final class FlexImporter {
     }
     else if ((version & SWF_MAGIC) == SWF_MAGIC) {
       final int delta = 8;
-      data.setPosition(delta);
+      int swfLength = data.readUnsignedInt(); // length of the uncompressed file, header included
       ByteBuffer udata = new ByteBuffer();
       udata.setLittleEndian();
       data.readBytes(udata, data.bytesSize() - delta);
       int csize = udata.bytesSize();
-      udata.uncompress();
+      udata.uncompress(swfLength - delta);
       processor.dumpStat("decompressed swf " + csize + " -> " + udata.bytesSize() + "\n");
       udata.setPosition(0);
       new Swf(udata, processor);
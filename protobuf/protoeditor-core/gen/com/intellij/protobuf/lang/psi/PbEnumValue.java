@@ -4,8 +4,10 @@ package com.intellij.protobuf.lang.psi;
 import java.util.List;
 import org.jetbrains.annotations.*;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.StubBasedPsiElement;
+import com.intellij.protobuf.lang.stub.PbEnumValueStub;
 
-public interface PbEnumValue extends PbNamedElement, PbOptionOwner {
+public interface PbEnumValue extends PbNamedElement, PbOptionOwner, PbEnumValueBase, StubBasedPsiElement<PbEnumValueStub> {
 
   @Nullable
   PbNumberValue getNumberValue();
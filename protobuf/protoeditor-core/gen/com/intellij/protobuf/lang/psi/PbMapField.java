@@ -4,8 +4,10 @@ package com.intellij.protobuf.lang.psi;
 import java.util.List;
 import org.jetbrains.annotations.*;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.StubBasedPsiElement;
+import com.intellij.protobuf.lang.stub.PbFieldStub;
 
-public interface PbMapField extends PbField, PbSymbolContributor {
+public interface PbMapField extends PbField, PbSymbolContributor, StubBasedPsiElement<PbFieldStub> {
 
   @Nullable
   PbOptionList getOptionList();
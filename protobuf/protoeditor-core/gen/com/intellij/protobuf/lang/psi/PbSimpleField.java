@@ -4,15 +4,14 @@ package com.intellij.protobuf.lang.psi;
 import java.util.List;
 import org.jetbrains.annotations.*;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.StubBasedPsiElement;
+import com.intellij.protobuf.lang.stub.PbFieldStub;
 
-public interface PbSimpleField extends PbField {
+public interface PbSimpleField extends PbField, StubBasedPsiElement<PbFieldStub> {
 
   @Nullable
   PbOptionList getOptionList();
 
-  @NotNull
-  PbTypeName getTypeName();
-
   @Nullable
   PsiElement getNameIdentifier();
 
@@ -15,7 +15,7 @@ public interface PbTypes {
   IElementType ENUM_DEFINITION = PbStubElementTypes.get("ENUM_DEFINITION");
   IElementType ENUM_RESERVED_RANGE = new PbElementType("ENUM_RESERVED_RANGE");
   IElementType ENUM_RESERVED_STATEMENT = new PbElementType("ENUM_RESERVED_STATEMENT");
-  IElementType ENUM_VALUE = new PbElementType("ENUM_VALUE");
+  IElementType ENUM_VALUE = PbStubElementTypes.get("ENUM_VALUE");
   IElementType EXTEND_BODY = PbCustomTypes.get("EXTEND_BODY");
   IElementType EXTEND_DEFINITION = PbStubElementTypes.get("EXTEND_DEFINITION");
   IElementType EXTENSIONS_STATEMENT = new PbElementType("EXTENSIONS_STATEMENT");
@@ -27,7 +27,7 @@ public interface PbTypes {
   IElementType IDENTIFIER_VALUE = new PbElementType("IDENTIFIER_VALUE");
   IElementType IMPORT_NAME = new PbElementType("IMPORT_NAME");
   IElementType IMPORT_STATEMENT = new PbElementType("IMPORT_STATEMENT");
-  IElementType MAP_FIELD = new PbElementType("MAP_FIELD");
+  IElementType MAP_FIELD = PbStubElementTypes.get("MAP_FIELD");
   IElementType MESSAGE_BODY = PbCustomTypes.get("MESSAGE_BODY");
   IElementType MESSAGE_DEFINITION = PbStubElementTypes.get("MESSAGE_DEFINITION");
   IElementType MESSAGE_TYPE_NAME = new PbElementType("MESSAGE_TYPE_NAME");
@@ -48,7 +48,7 @@ public interface PbTypes {
   IElementType SERVICE_METHOD = PbStubElementTypes.get("SERVICE_METHOD");
   IElementType SERVICE_METHOD_TYPE = new PbElementType("SERVICE_METHOD_TYPE");
   IElementType SERVICE_STREAM = new PbElementType("SERVICE_STREAM");
-  IElementType SIMPLE_FIELD = new PbElementType("SIMPLE_FIELD");
+  IElementType SIMPLE_FIELD = PbStubElementTypes.get("SIMPLE_FIELD");
   IElementType STRING_PART = new PbElementType("STRING_PART");
   IElementType STRING_VALUE = new PbElementType("STRING_VALUE");
   IElementType SYMBOL_PATH = new PbElementType("SYMBOL_PATH");
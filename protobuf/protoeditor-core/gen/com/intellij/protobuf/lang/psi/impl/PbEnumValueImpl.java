@@ -10,6 +10,8 @@ import com.intellij.psi.util.PsiTreeUtil;
 import static com.intellij.protobuf.lang.psi.PbTypes.*;
 import com.intellij.protobuf.lang.psi.*;
 import com.intellij.protobuf.lang.psi.util.PbPsiImplUtil;
+import com.intellij.protobuf.lang.stub.PbEnumValueStub;
+import com.intellij.psi.stubs.IStubElementType;
 import static com.intellij.protobuf.lang.psi.ProtoTokenTypes.*;
 
 public class PbEnumValueImpl extends PbEnumValueMixin implements PbEnumValue {
@@ -18,6 +20,10 @@ public class PbEnumValueImpl extends PbEnumValueMixin implements PbEnumValue {
     super(node);
   }
 
+  public PbEnumValueImpl(PbEnumValueStub stub, IStubElementType type) {
+    super(stub, type);
+  }
+
   public void accept(@NotNull PbVisitor visitor) {
     visitor.visitEnumValue(this);
   }
@@ -10,6 +10,8 @@ import com.intellij.psi.util.PsiTreeUtil;
 import static com.intellij.protobuf.lang.psi.PbTypes.*;
 import com.intellij.protobuf.lang.psi.*;
 import com.intellij.protobuf.lang.psi.util.PbPsiImplUtil;
+import com.intellij.protobuf.lang.stub.PbFieldStub;
+import com.intellij.psi.stubs.IStubElementType;
 import static com.intellij.protobuf.lang.psi.ProtoTokenTypes.*;
 
 public class PbMapFieldImpl extends PbMapFieldMixin implements PbMapField {
@@ -18,6 +20,10 @@ public class PbMapFieldImpl extends PbMapFieldMixin implements PbMapField {
     super(node);
   }
 
+  public PbMapFieldImpl(PbFieldStub stub, IStubElementType type) {
+    super(stub, type);
+  }
+
   public void accept(@NotNull PbVisitor visitor) {
     visitor.visitMapField(this);
   }
@@ -10,6 +10,8 @@ import com.intellij.psi.util.PsiTreeUtil;
 import static com.intellij.protobuf.lang.psi.PbTypes.*;
 import com.intellij.protobuf.lang.psi.*;
 import com.intellij.protobuf.lang.psi.util.PbPsiImplUtil;
+import com.intellij.protobuf.lang.stub.PbFieldStub;
+import com.intellij.psi.stubs.IStubElementType;
 import static com.intellij.protobuf.lang.psi.ProtoTokenTypes.*;
 
 public class PbSimpleFieldImpl extends PbFieldBase implements PbSimpleField {
@@ -18,6 +20,10 @@ public class PbSimpleFieldImpl extends PbFieldBase implements PbSimpleField {
     super(node);
   }
 
+  public PbSimpleFieldImpl(PbFieldStub stub, IStubElementType type) {
+    super(stub, type);
+  }
+
   public void accept(@NotNull PbVisitor visitor) {
     visitor.visitSimpleField(this);
   }
@@ -34,12 +40,6 @@ public class PbSimpleFieldImpl extends PbFieldBase implements PbSimpleField {
     return PsiTreeUtil.getChildOfType(this, PbOptionList.class);
   }
 
-  @Override
-  @NotNull
-  public PbTypeName getTypeName() {
-    return notNullChild(PsiTreeUtil.getChildOfType(this, PbTypeName.class));
-  }
-
   @Override
   @Nullable
   public PsiElement getNameIdentifier() {
@@ -48,8 +48,7 @@ public final class AnyType {
     PbField typeUrlField = null;
     PbField valueField = null;
     for (PbField field : message.getSymbols(PbField.class)) {
-      PbNumberValue fieldNumberValue = field.getFieldNumber();
-      Long fieldNumber = fieldNumberValue != null ? fieldNumberValue.getLongValue() : null;
+      Long fieldNumber = field.getNumber();
       PbTypeName fieldType = field.getTypeName();
       if (fieldNumber != null
           && fieldNumber == 1
@@ -32,6 +32,9 @@ import com.intellij.protobuf.lang.psi.PbField.CanonicalFieldLabel;
 import com.intellij.protobuf.lang.psi.util.PbPsiImplUtil;
 import com.intellij.protobuf.lang.psi.util.PbPsiUtil;
 import com.intellij.protobuf.lang.resolve.PbFileResolver;
+import com.intellij.protobuf.lang.resolve.PbResolveResult;
+import com.intellij.protobuf.lang.resolve.PbSymbolResolver;
+import com.intellij.protobuf.lang.resolve.ResolveFilters;
 import com.intellij.protobuf.lang.util.BuiltInType;
 import com.intellij.protobuf.lang.util.ValueTester;
 import com.intellij.psi.PsiElement;
@@ -40,8 +43,8 @@ import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.util.QualifiedName;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /** General proto element error annotations. */
@@ -665,11 +668,12 @@ public class PbAnnotator implements Annotator {
     // definition, in this order of preference:
     // * a symbol in the same file at a smaller text offset
     // * a symbol in a different file
-    Collection<PbSymbol> symbols = file.getFullQualifiedSymbolMap().get(qualifiedName);
-    if (symbols == null) {
-      return false;
-    }
-    for (PbSymbol otherSymbol : symbols) {
+    // Symbols in imported files are found through their stubs where possible, without loading
+    // the AST of every imported file.
+    List<PbResolveResult> symbols =
+        PbSymbolResolver.forFile(file).resolveName(qualifiedName, ResolveFilters.anySymbol());
+    for (PbResolveResult result : symbols) {
+      PbSymbol otherSymbol = result.getElement();
       if (symbol.equals(otherSymbol)) {
         continue;
       }
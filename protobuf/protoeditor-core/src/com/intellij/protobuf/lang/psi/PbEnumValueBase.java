@@ -0,0 +1,28 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.lang.psi;
+
+import org.jetbrains.annotations.Nullable;
+
+interface PbEnumValueBase extends PbElement {
+
+  /**
+   * Returns the value's number, or <code>null</code> if it's missing or not a valid int32. Unlike
+   * {@link PbEnumValue#getNumberValue()}, this is available from the stub.
+   */
+  @Nullable
+  Long getNumber();
+}
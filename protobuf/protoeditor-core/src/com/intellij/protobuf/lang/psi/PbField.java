@@ -79,6 +79,13 @@ public interface PbField extends PbNamedElement, PbOptionOwner {
   @Nullable
   PbNumberValue getFieldNumber();
 
+  /**
+   * Returns the field's number, or <code>null</code> if it's missing or not a valid int32. Unlike
+   * {@link #getFieldNumber()}, this is available from the stub.
+   */
+  @Nullable
+  Long getNumber();
+
   /**
    * Returns the type that this field extends, or <code>null</code> if this field is not part of an
    * extend block or the extended type cannot be found.
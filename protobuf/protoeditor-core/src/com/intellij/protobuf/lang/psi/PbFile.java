@@ -111,6 +111,20 @@ public interface PbFile
   @NotNull
   Map<QualifiedName, Collection<PbSymbol>> getFullQualifiedSymbolMap();
 
+  /**
+   * Returns this file followed by the files whose local symbols make up {@link
+   * #getExportedQualifiedSymbolMap()}, each file once.
+   */
+  @NotNull
+  List<PbFile> getExportedFiles();
+
+  /**
+   * Returns this file followed by the files whose local symbols make up {@link
+   * #getFullQualifiedSymbolMap()}, each file once.
+   */
+  @NotNull
+  List<PbFile> getVisibleFiles();
+
   /**
    * Returns the {@link PbSymbolOwner} that owns the elements defined in this file. This is either
    * the most-qualified {@link PbPackageName}, or the file itself if no package is defined.
@@ -16,13 +16,16 @@
 package com.intellij.protobuf.lang.psi.impl;
 
 import com.intellij.lang.ASTNode;
+import com.intellij.psi.stubs.IStubElementType;
 import com.intellij.psi.util.QualifiedName;
 import com.intellij.protobuf.ide.util.PbIcons;
 import com.intellij.protobuf.lang.descriptor.Descriptor;
 import com.intellij.protobuf.lang.descriptor.DescriptorOptionType;
 import com.intellij.protobuf.lang.psi.PbEnumValue;
+import com.intellij.protobuf.lang.psi.PbNumberValue;
 import com.intellij.protobuf.lang.psi.PbOptionExpression;
 import com.intellij.protobuf.lang.psi.PbOptionList;
+import com.intellij.protobuf.lang.stub.PbEnumValueStub;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -30,12 +33,28 @@ import javax.swing.*;
 import java.util.Collections;
 import java.util.List;
 
-abstract class PbEnumValueMixin extends PbNamedElementBase implements PbEnumValue {
+abstract class PbEnumValueMixin extends PbStubbedNamedElementBase<PbEnumValueStub>
+    implements PbEnumValue {
 
   PbEnumValueMixin(ASTNode node) {
     super(node);
   }
 
+  PbEnumValueMixin(PbEnumValueStub stub, IStubElementType nodeType) {
+    super(stub, nodeType);
+  }
+
+  @Nullable
+  @Override
+  public Long getNumber() {
+    PbEnumValueStub stub = getStub();
+    if (stub != null) {
+      return stub.getNumber();
+    }
+    PbNumberValue number = getNumberValue();
+    return number != null && number.isValidInt32() ? number.getLongValue() : null;
+  }
+
   @NotNull
   @Override
   public QualifiedName getDescriptorOptionsTypeName(Descriptor descriptor) {
@@ -17,11 +17,19 @@ package com.intellij.protobuf.lang.psi.impl;
 
 import com.intellij.lang.ASTNode;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.stubs.IStubElementType;
+import com.intellij.psi.stubs.StubElement;
+import com.intellij.psi.util.CachedValueProvider.Result;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.util.QualifiedName;
+import com.intellij.protobuf.ide.PbCompositeModificationTracker;
 import com.intellij.protobuf.ide.util.PbIcons;
 import com.intellij.protobuf.lang.descriptor.Descriptor;
 import com.intellij.protobuf.lang.descriptor.DescriptorOptionType;
 import com.intellij.protobuf.lang.psi.*;
+import com.intellij.protobuf.lang.stub.PbExtendDefinitionStub;
+import com.intellij.protobuf.lang.stub.PbFieldStub;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -29,20 +37,41 @@ import javax.swing.*;
 import java.util.Collections;
 import java.util.List;
 
-abstract class PbFieldBase extends PbNamedElementBase implements PbField {
+abstract class PbFieldBase extends PbStubbedNamedElementBase<PbFieldStub> implements PbField {
 
   PbFieldBase(ASTNode node) {
     super(node);
   }
 
+  PbFieldBase(PbFieldStub stub, IStubElementType nodeType) {
+    super(stub, nodeType);
+  }
+
+  @Nullable
+  @Override
+  public PbTypeName getTypeName() {
+    PbFieldStub stub = getStub();
+    if (stub != null) {
+      // Resolves like the declared type name, without loading the AST.
+      return CachedValuesManager.getCachedValue(
+          this,
+          () ->
+              Result.create(
+                  createTypeName(stub.getTypeName(), this),
+                  PbCompositeModificationTracker.byElement(this)));
+    }
+    return PsiTreeUtil.getChildOfType(this, PbTypeName.class);
+  }
+
   @Nullable
   @Override
-  public String getName() {
-    PsiElement id = getNameIdentifier();
-    if (id != null) {
-      return id.getText();
+  public Long getNumber() {
+    PbFieldStub stub = getStub();
+    if (stub != null) {
+      return stub.getNumber();
     }
-    return null;
+    PbNumberValue number = getFieldNumber();
+    return number != null && number.isValidInt32() ? number.getLongValue() : null;
   }
 
   @NotNull
@@ -58,6 +87,18 @@ abstract class PbFieldBase extends PbNamedElementBase implements PbField {
   @Nullable
   @Override
   public PbTypeName getExtendee() {
+    PbFieldStub stub = getStub();
+    if (stub != null) {
+      if (!(stub.getParentStub() instanceof PbExtendDefinitionStub extendStub)) {
+        return null;
+      }
+      return CachedValuesManager.getCachedValue(
+          this,
+          () ->
+              Result.create(
+                  createTypeName(extendStub.getExtendedType(), extendStub.getPsi()),
+                  PbCompositeModificationTracker.byElement(this)));
+    }
     PsiElement extendBody = getParent();
     if (extendBody == null) {
       return null;
@@ -72,6 +113,13 @@ abstract class PbFieldBase extends PbNamedElementBase implements PbField {
   @Nullable
   @Override
   public PbOneofDefinition getOneof() {
+    PbFieldStub stub = getStub();
+    if (stub != null) {
+      StubElement<?> parentStub = stub.getParentStub();
+      return parentStub != null && parentStub.getPsi() instanceof PbOneofDefinition oneof
+          ? oneof
+          : null;
+    }
     PsiElement oneofBody = getParent();
     if (oneofBody == null) {
       return null;
@@ -104,6 +152,10 @@ abstract class PbFieldBase extends PbNamedElementBase implements PbField {
 
   @Override
   public CanonicalFieldLabel getCanonicalLabel() {
+    PbFieldStub stub = getStub();
+    if (stub != null) {
+      return stub.getLabel();
+    }
     PbFieldLabel declaredLabel = getDeclaredLabel();
     if (declaredLabel != null && "repeated".equals(declaredLabel.getText())) {
       return CanonicalFieldLabel.REPEATED;
@@ -115,4 +167,21 @@ abstract class PbFieldBase extends PbNamedElementBase implements PbField {
 
   @Nullable
   abstract PbOptionList getOptionList();
+
+  /**
+   * Creates a type name with the given text, which resolves as if it were declared in the given
+   * parent and navigates to it.
+   */
+  @Nullable
+  private PbTypeName createTypeName(@Nullable String name, @NotNull PsiElement parent) {
+    if (name == null || name.isEmpty()) {
+      return null;
+    }
+    return PbElementFactory.getInstance(getPbFile())
+        .typeNameBuilder()
+        .setName(name)
+        .setParent(parent)
+        .setNavigationElement(parent)
+        .build();
+  }
 }
@@ -15,6 +15,7 @@
  */
 package com.intellij.protobuf.lang.psi.impl;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
@@ -31,6 +32,9 @@ import com.intellij.protobuf.lang.descriptor.DescriptorOptionType;
 import com.intellij.protobuf.lang.psi.*;
 import com.intellij.protobuf.lang.psi.util.PbPsiImplUtil;
 import com.intellij.protobuf.lang.psi.util.PbPsiUtil;
+import com.intellij.protobuf.lang.resolve.PbFileResolver;
+import com.intellij.protobuf.lang.stub.PbFileStub;
+import com.intellij.protobuf.lang.stub.StubMethods;
 import com.intellij.psi.*;
 import com.intellij.psi.scope.PsiScopeProcessor;
 import com.intellij.psi.util.CachedValueProvider.Result;
@@ -103,6 +107,11 @@ public class PbFileImpl extends PsiFileBase implements PbFile {
   @Override
   @NotNull
   public QualifiedName getPackageQualifiedName() {
+    PbFileStub fileStub = StubMethods.getFileStub(this);
+    if (fileStub != null) {
+      QualifiedName packageQualifiedName = fileStub.getChildScope();
+      return packageQualifiedName != null ? packageQualifiedName : PbPsiUtil.EMPTY_QUALIFIED_NAME;
+    }
     PbPackageStatement packageStatement = getPackageStatement();
     if (packageStatement != null) {
       PbPackageName packageName = packageStatement.getPackageName();
@@ -243,6 +252,28 @@ public class PbFileImpl extends PsiFileBase implements PbFile {
         .asMap();
   }
 
+  @NotNull
+  @Override
+  public List<PbFile> getExportedFiles() {
+    return CachedValuesManager.getCachedValue(
+        this,
+        () ->
+            Result.create(
+                getImportedFileList(/* includePrivate= */ false),
+                PbCompositeModificationTracker.byElement(this)));
+  }
+
+  @NotNull
+  @Override
+  public List<PbFile> getVisibleFiles() {
+    return CachedValuesManager.getCachedValue(
+        this,
+        () ->
+            Result.create(
+                getImportedFileList(/* includePrivate= */ true),
+                PbCompositeModificationTracker.byElement(this)));
+  }
+
   private ImmutableMultimap<QualifiedName, PbSymbol> computeLocalQualifiedSymbolMap() {
     ImmutableMultimap.Builder<QualifiedName, PbSymbol> builder = ImmutableMultimap.builder();
     addSymbolsRecursively(this, builder);
@@ -267,9 +298,8 @@ public class PbFileImpl extends PsiFileBase implements PbFile {
     // imports.
     ImmutableMultimap.Builder<QualifiedName, PbSymbol> builder = ImmutableListMultimap.builder();
 
-    getLocalQualifiedSymbolMap().forEach(builder::putAll);
-    for (PbFile importedFile : getImportedFileList(/* includePrivate= */ false)) {
-      importedFile.getLocalQualifiedSymbolMap().forEach(builder::putAll);
+    for (PbFile file : getExportedFiles()) {
+      file.getLocalQualifiedSymbolMap().forEach(builder::putAll);
     }
     return builder.build();
   }
@@ -277,9 +307,8 @@ public class PbFileImpl extends PsiFileBase implements PbFile {
   private ImmutableSetMultimap<QualifiedName, PbSymbol> computeFullQualifiedSymbolMap() {
     // Return all local symbols from this file and exported symbols from all imported files.
     ImmutableSetMultimap.Builder<QualifiedName, PbSymbol> builder = ImmutableSetMultimap.builder();
-    getLocalQualifiedSymbolMap().forEach(builder::putAll);
-    for (PbFile importedFile : getImportedFileList(/* includePrivate= */ true)) {
-      importedFile.getLocalQualifiedSymbolMap().forEach(builder::putAll);
+    for (PbFile file : getVisibleFiles()) {
+      file.getLocalQualifiedSymbolMap().forEach(builder::putAll);
     }
     return builder.build();
   }
@@ -314,12 +343,19 @@ public class PbFileImpl extends PsiFileBase implements PbFile {
 
   private List<PbFile> getImportedFileList(boolean includePrivate) {
     Set<PbFile> importedFiles = new LinkedHashSet<>();
+    importedFiles.add(this);
     findImportsRecursively(this, importedFiles, includePrivate);
-    return new ArrayList<>(importedFiles);
+    return ImmutableList.copyOf(importedFiles);
   }
 
   private static void findImportsRecursively(
       PbFile file, Collection<PbFile> imports, boolean includePrivate) {
+    PbFileStub fileStub = StubMethods.getFileStub(file);
+    if (fileStub != null) {
+      // Follow the imports recorded in the stub rather than loading the AST of the imported file.
+      findStubImportsRecursively(file, fileStub, imports, includePrivate);
+      return;
+    }
     for (PbImportStatement pbImport : file.getImportStatements()) {
       if (!includePrivate && !pbImport.isPublic()) {
         continue;
@@ -354,6 +390,29 @@ public class PbFileImpl extends PsiFileBase implements PbFile {
     }
   }
 
+  private static void findStubImportsRecursively(
+      PbFile file, PbFileStub fileStub, Collection<PbFile> imports, boolean includePrivate) {
+    boolean indexBasedResolve =
+        PbProjectSettings.getInstance(file.getProject()).isIndexBasedResolveEnabled();
+    for (PbFileStub.Import pbImport : fileStub.getImports()) {
+      if (!includePrivate && !pbImport.isPublic()) {
+        continue;
+      }
+      // Same as resolving the import reference: the first file with index-based resolve, and
+      // otherwise only an unambiguous result.
+      List<PbFile> files = PbFileResolver.findFilesForContext(pbImport.getPath(), file);
+      if (files.isEmpty() || (!indexBasedResolve && files.size() != 1)) {
+        continue;
+      }
+      PbFile importedFile = files.get(0);
+      if (imports.contains(importedFile)) {
+        continue;
+      }
+      imports.add(importedFile);
+      findImportsRecursively(importedFile, imports, /* includePrivate= */ false);
+    }
+  }
+
   @Override
   public boolean processDeclarations(
       @NotNull PsiScopeProcessor processor,
@@ -19,6 +19,10 @@ import com.intellij.lang.ASTNode;
 import com.intellij.protobuf.lang.psi.*;
 import com.intellij.protobuf.lang.psi.impl.PbElementFactory.FieldBuilder;
 import com.intellij.protobuf.lang.psi.impl.PbElementFactory.MessageBuilder;
+import com.intellij.protobuf.lang.psi.util.PbPsiUtil;
+import com.intellij.protobuf.lang.stub.PbFieldStub;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.stubs.IStubElementType;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -31,10 +35,38 @@ abstract class PbMapFieldMixin extends PbFieldBase implements PbMapField {
     super(node);
   }
 
+  PbMapFieldMixin(PbFieldStub stub, IStubElementType nodeType) {
+    super(stub, nodeType);
+  }
+
   @NotNull
   @Override
   public List<PbSymbol> getAdditionalSiblings() {
-    PbMessageType mapEntry = createMapEntry(mapEntryName(getName()), getKeyType(), getValueType());
+    PbMessageType mapEntry;
+    PbFieldStub stub = getStub();
+    if (stub != null) {
+      // Built from the type names recorded in the stub, without loading the AST. The entry's fields
+      // navigate to the map field itself.
+      mapEntry =
+          createMapEntry(
+              PbPsiUtil.getMapEntryName(getName()),
+              stub.getKeyType(),
+              this,
+              stub.getValueType(),
+              this,
+              getParentByStub());
+    } else {
+      PbTypeName keyType = getKeyType();
+      PbTypeName valueType = getValueType();
+      mapEntry =
+          createMapEntry(
+              PbPsiUtil.getMapEntryName(getName()),
+              keyType != null ? keyType.getReferenceString() : null,
+              keyType,
+              valueType != null ? valueType.getReferenceString() : null,
+              valueType,
+              getParent());
+    }
     if (mapEntry != null) {
       return Collections.singletonList(mapEntry);
     }
@@ -51,7 +83,7 @@ abstract class PbMapFieldMixin extends PbFieldBase implements PbMapField {
     }
     return PbElementFactory.getInstance(getPbFile())
         .typeNameBuilder()
-        .setName(mapEntryName(name))
+        .setName(PbPsiUtil.getMapEntryName(name))
         .setParent(this)
         .build();
   }
@@ -62,33 +94,13 @@ abstract class PbMapFieldMixin extends PbFieldBase implements PbMapField {
     return CanonicalFieldLabel.REPEATED;
   }
 
-  /** Generate a map entry name for the given field name. Adapted from protoc's parser.cc. */
-  private String mapEntryName(String fieldName) {
-    if (fieldName == null) {
-      return null;
-    }
-    StringBuilder result = new StringBuilder();
-    boolean capNext = true;
-    for (int i = 0; i < fieldName.length(); ++i) {
-      char curChar = fieldName.charAt(i);
-      if (curChar == '_') {
-        capNext = true;
-      } else if (capNext) {
-        if ('a' <= curChar && curChar <= 'z') {
-          result.append((char) (curChar - 'a' + 'A'));
-        } else {
-          result.append(curChar);
-        }
-        capNext = false;
-      } else {
-        result.append(curChar);
-      }
-    }
-    result.append("Entry");
-    return result.toString();
-  }
-
-  private PbMessageType createMapEntry(String entryName, PbTypeName keyType, PbTypeName valueType) {
+  private PbMessageType createMapEntry(
+      String entryName,
+      String keyType,
+      PsiElement keyNavigationElement,
+      String valueType,
+      PsiElement valueNavigationElement,
+      PsiElement parent) {
     if (entryName == null) {
       return null;
     }
@@ -98,7 +110,7 @@ abstract class PbMapFieldMixin extends PbFieldBase implements PbMapField {
         factory
             .messageBuilder()
             .setName(entryName)
-            .setParent(getParent())
+            .setParent(parent)
             .setNavigationElement(this)
             .addStatement(
                 factory.optionBuilder().setName("map_entry").setValue(true).buildStatement());
@@ -106,10 +118,10 @@ abstract class PbMapFieldMixin extends PbFieldBase implements PbMapField {
       FieldBuilder keyBuilder =
           factory
               .fieldBuilder()
-              .setType(keyType.getReferenceString())
+              .setType(keyType)
               .setName("key")
               .setNumber(1)
-              .setNavigationElement(getKeyType());
+              .setNavigationElement(keyNavigationElement);
       if (needsOptionalLabel) {
         keyBuilder.setLabel("optional");
       }
@@ -119,10 +131,10 @@ abstract class PbMapFieldMixin extends PbFieldBase implements PbMapField {
       FieldBuilder valueBuilder =
           factory
               .fieldBuilder()
-              .setType(valueType.getReferenceString())
+              .setType(valueType)
               .setName("value")
               .setNumber(2)
-              .setNavigationElement(getValueType());
+              .setNavigationElement(valueNavigationElement);
       if (needsOptionalLabel) {
         valueBuilder.setLabel("optional");
       }
@@ -16,24 +16,19 @@
 package com.intellij.protobuf.lang.psi.impl;
 
 import com.intellij.lang.ASTNode;
-import com.intellij.navigation.ItemPresentation;
-import com.intellij.psi.PsiElement;
-import com.intellij.psi.impl.source.tree.LeafElement;
 import com.intellij.psi.stubs.IStubElementType;
-import com.intellij.psi.util.QualifiedName;
-import com.intellij.util.IncorrectOperationException;
-import com.intellij.protobuf.lang.psi.PbNamedElement;
-import com.intellij.protobuf.lang.psi.PbSymbolOwner;
+import com.intellij.protobuf.lang.psi.PbDefinition;
+import com.intellij.protobuf.lang.psi.PbStatement;
+import com.intellij.protobuf.lang.psi.PbStatementOwner;
 import com.intellij.protobuf.lang.psi.util.PbPsiImplUtil;
 import com.intellij.protobuf.lang.stub.PbNamedElementStub;
-import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import javax.swing.*;
+import java.util.List;
 
 abstract class PbStubbedNamedDefinitionBase<T extends PbNamedElementStub<?>>
-    extends PbStubbedDefinitionBase<T> implements PbNamedElement {
+    extends PbStubbedNamedElementBase<T> implements PbDefinition {
 
   PbStubbedNamedDefinitionBase(ASTNode node) {
     super(node);
@@ -45,86 +40,13 @@ abstract class PbStubbedNamedDefinitionBase<T extends PbNamedElementStub<?>>
 
   @Nullable
   @Override
-  public QualifiedName getQualifiedName() {
-    return PbPsiImplUtil.getQualifiedName(this);
-  }
-
-  @Nullable
-  @Override
-  public PbSymbolOwner getSymbolOwner() {
-    return PbPsiImplUtil.getSymbolOwner(this);
-  }
-
-  @Nullable
-  @Override
-  public String getName() {
-    PbNamedElementStub<?> stub = getStub();
-    if (stub != null) {
-      return stub.getName();
-    }
-    PsiElement id = getNameIdentifier();
-    if (id != null) {
-      return id.getText();
-    }
-    return null;
-  }
-
-  @Override
-  public PsiElement setName(@NonNls @NotNull String name) throws IncorrectOperationException {
-    PsiElement identifier = getNameIdentifier();
-    if (identifier == null) {
-      throw new IncorrectOperationException();
-    }
-    ASTNode node = identifier.getNode();
-    if (node instanceof LeafElement) {
-      ((LeafElement) node).replaceWithText(name);
-      return this;
-    }
-    throw new IncorrectOperationException();
-  }
-
-  @Override
-  public int getTextOffset() {
-    PsiElement name = getNameIdentifier();
-    return name != null ? name.getTextOffset() : super.getTextOffset();
+  public PbStatementOwner getStatementOwner() {
+    return PbDefinition.super.getStatementOwner();
   }
 
   @NotNull
   @Override
-  public String getPresentableText() {
-    String name = getName();
-    return name != null ? name : getText();
-  }
-
-  @Override
-  @Nullable
-  public ItemPresentation getPresentation() {
-    PbNamedElement element = this;
-    return new ItemPresentation() {
-
-      @Override
-      public String getPresentableText() {
-        return element.getPresentableText();
-      }
-
-      @Nullable
-      @Override
-      public String getLocationString() {
-        PbSymbolOwner owner = getSymbolOwner();
-        if (owner != null) {
-          QualifiedName qualifiedName = owner.getChildScope();
-          if (qualifiedName != null) {
-            return qualifiedName.toString();
-          }
-        }
-        return null;
-      }
-
-      @Nullable
-      @Override
-      public Icon getIcon(boolean unused) {
-        return element.getIcon(0);
-      }
-    };
+  public List<PbStatement> getStatements() {
+    return PbPsiImplUtil.getStatements(getBody());
   }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.lang.psi.impl;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.navigation.ItemPresentation;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.impl.source.tree.LeafElement;
+import com.intellij.psi.stubs.IStubElementType;
+import com.intellij.psi.util.QualifiedName;
+import com.intellij.util.IncorrectOperationException;
+import com.intellij.protobuf.lang.psi.PbNamedElement;
+import com.intellij.protobuf.lang.psi.PbSymbolOwner;
+import com.intellij.protobuf.lang.psi.util.PbPsiImplUtil;
+import com.intellij.protobuf.lang.stub.PbNamedElementStub;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+
+abstract class PbStubbedNamedElementBase<T extends PbNamedElementStub<?>>
+    extends PbStubbedElementBase<T> implements PbNamedElement {
+
+  PbStubbedNamedElementBase(ASTNode node) {
+    super(node);
+  }
+
+  PbStubbedNamedElementBase(T stub, IStubElementType nodeType) {
+    super(stub, nodeType);
+  }
+
+  @Nullable
+  @Override
+  public QualifiedName getQualifiedName() {
+    PbNamedElementStub<?> stub = getStub();
+    if (stub != null) {
+      // Computed from the stub's parents, which avoids loading the AST to find the symbol owner.
+      QualifiedName qualifiedName = stub.getQualifiedName();
+      if (qualifiedName != null) {
+        return qualifiedName;
+      }
+    }
+    return PbPsiImplUtil.getQualifiedName(this);
+  }
+
+  @Nullable
+  @Override
+  public PbSymbolOwner getSymbolOwner() {
+    return PbPsiImplUtil.getSymbolOwner(this);
+  }
+
+  @Nullable
+  @Override
+  public String getName() {
+    PbNamedElementStub<?> stub = getStub();
+    if (stub != null) {
+      return stub.getName();
+    }
+    PsiElement id = getNameIdentifier();
+    if (id != null) {
+      return id.getText();
+    }
+    return null;
+  }
+
+  @Override
+  public PsiElement setName(@NonNls @NotNull String name) throws IncorrectOperationException {
+    PsiElement identifier = getNameIdentifier();
+    if (identifier == null) {
+      throw new IncorrectOperationException();
+    }
+    ASTNode node = identifier.getNode();
+    if (node instanceof LeafElement) {
+      ((LeafElement) node).replaceWithText(name);
+      return this;
+    }
+    throw new IncorrectOperationException();
+  }
+
+  @Override
+  public int getTextOffset() {
+    PsiElement name = getNameIdentifier();
+    return name != null ? name.getTextOffset() : super.getTextOffset();
+  }
+
+  @NotNull
+  @Override
+  public String getPresentableText() {
+    String name = getName();
+    return name != null ? name : getText();
+  }
+
+  @Override
+  @Nullable
+  public ItemPresentation getPresentation() {
+    PbNamedElement element = this;
+    return new ItemPresentation() {
+
+      @Override
+      public String getPresentableText() {
+        return element.getPresentableText();
+      }
+
+      @Nullable
+      @Override
+      public String getLocationString() {
+        PbSymbolOwner owner = getSymbolOwner();
+        if (owner != null) {
+          QualifiedName qualifiedName = owner.getChildScope();
+          if (qualifiedName != null) {
+            return qualifiedName.toString();
+          }
+        }
+        return null;
+      }
+
+      @Nullable
+      @Override
+      public Icon getIcon(boolean unused) {
+        return element.getIcon(0);
+      }
+    };
+  }
+}
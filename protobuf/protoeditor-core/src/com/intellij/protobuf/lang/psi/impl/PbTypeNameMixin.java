@@ -18,7 +18,6 @@ package com.intellij.protobuf.lang.psi.impl;
 import com.intellij.lang.ASTNode;
 import com.intellij.openapi.util.Condition;
 import com.intellij.psi.PsiReference;
-import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.util.QualifiedName;
 import com.intellij.protobuf.lang.psi.*;
 import com.intellij.protobuf.lang.psi.util.PbPsiUtil;
@@ -56,13 +55,7 @@ abstract class PbTypeNameMixin extends PbQualifiedReferenceBase implements PbTyp
           return null;
         }
 
-        QualifiedName scope;
-        if (!isFullyQualified()) {
-          PbSymbolOwner owner = PbPsiUtil.getSymbolOwner(path);
-          scope = owner != null ? owner.getChildScope() : null;
-        } else {
-          scope = null;
-        }
+        QualifiedName scope = !isFullyQualified() ? PbPsiUtil.getSymbolOwnerScope(path) : null;
         return new ProtoSymbolPathReference(
             path,
             PbSymbolResolver.forFile(getPbFile()),
@@ -91,10 +84,11 @@ abstract class PbTypeNameMixin extends PbQualifiedReferenceBase implements PbTyp
     // For MapFields, keys can only be builtin types. The value type can be message or enum.
     // Types for "extend T" can only be MessageTypes
     // Service method param and return types can only be MessageTypes
-    PbField fieldParent = PsiTreeUtil.getParentOfType(this, PbField.class);
+    PbField fieldParent = PbPsiUtil.getParentOfType(this, PbField.class);
     if (fieldParent != null) {
-      if (fieldParent instanceof PbMapField) {
-        if (this.equals(((PbMapField) fieldParent).getKeyType())) {
+      // The types of fields read from stubs are synthesized, never a map field's key type.
+      if (fieldParent instanceof PbMapField mapField && mapField.getStub() == null) {
+        if (this.equals(mapField.getKeyType())) {
           return null;
         }
       }
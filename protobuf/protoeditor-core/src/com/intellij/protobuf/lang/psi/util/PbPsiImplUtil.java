@@ -20,7 +20,10 @@ import com.google.common.collect.ImmutableSetMultimap;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.protobuf.ide.PbCompositeModificationTracker;
 import com.intellij.protobuf.lang.psi.*;
+import com.intellij.protobuf.lang.stub.PbStatementOwnerStub;
+import com.intellij.protobuf.lang.stub.PbStatementStub;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.StubBasedPsiElement;
 import com.intellij.psi.util.CachedValueProvider.Result;
 import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiTreeUtil;
@@ -28,6 +31,7 @@ import com.intellij.psi.util.QualifiedName;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -134,7 +138,10 @@ public final class PbPsiImplUtil {
 
   private static <T extends PbSymbol> ImmutableMultimap<String, T> computeSymbolMap(
       PbStatementOwner owner, Class<T> typeClass) {
-    List<PbStatement> statements = owner.getStatements();
+    List<PbStatement> statements = getStubStatements(owner);
+    if (statements == null) {
+      statements = owner.getStatements();
+    }
     ImmutableSetMultimap.Builder<String, T> builder = ImmutableSetMultimap.builder();
     for (PbStatement statement : statements) {
       if (typeClass.isInstance(statement)) {
@@ -163,5 +170,26 @@ public final class PbPsiImplUtil {
     return builder.build();
   }
 
+  /**
+   * Returns the statements of the given owner that have stubs, or <code>null</code> if the owner's
+   * AST is loaded. Every symbol declared in a statement owner has a stub, except for the stream
+   * definitions of services.
+   */
+  @Nullable
+  private static List<PbStatement> getStubStatements(PbStatementOwner owner) {
+    if (owner instanceof PbServiceDefinition
+        || !(owner instanceof StubBasedPsiElement<?> stubBased)
+        || !(stubBased.getStub() instanceof PbStatementOwnerStub<?> stub)) {
+      return null;
+    }
+    List<PbStatement> statements = new ArrayList<>();
+    for (PbStatementStub<?> statementStub : stub.getStatements()) {
+      if (statementStub.getPsi() instanceof PbStatement statement) {
+        statements.add(statement);
+      }
+    }
+    return statements;
+  }
+
   private PbPsiImplUtil() {}
 }
@@ -17,6 +17,7 @@ package com.intellij.protobuf.lang.psi.util;
 
 import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.*;
+import com.intellij.psi.stubs.StubElement;
 import com.intellij.psi.tree.IElementType;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.util.QualifiedName;
@@ -149,6 +150,33 @@ public final class PbPsiUtil {
     return optionQualifiedName.equals(descriptorTypeName.append(name));
   }
 
+  /** Generate a map entry name for the given field name. Adapted from protoc's parser.cc. */
+  @Nullable
+  public static String getMapEntryName(@Nullable String fieldName) {
+    if (fieldName == null) {
+      return null;
+    }
+    StringBuilder result = new StringBuilder();
+    boolean capNext = true;
+    for (int i = 0; i < fieldName.length(); ++i) {
+      char curChar = fieldName.charAt(i);
+      if (curChar == '_') {
+        capNext = true;
+      } else if (capNext) {
+        if ('a' <= curChar && curChar <= 'z') {
+          result.append((char) (curChar - 'a' + 'A'));
+        } else {
+          result.append(curChar);
+        }
+        capNext = false;
+      } else {
+        result.append(curChar);
+      }
+    }
+    result.append("Entry");
+    return result.toString();
+  }
+
   /** Returns <code>true</code> if this is an auto-generated MapEntry message. */
   public static boolean isGeneratedMapEntry(PbElement element) {
     if (element instanceof PbMessageType && !element.isPhysical()) {
@@ -169,7 +197,7 @@ public final class PbPsiUtil {
    */
   @Nullable
   public static PbSymbolOwner getSymbolOwner(PsiElement element) {
-    PbSymbolOwner owner = PsiTreeUtil.getParentOfType(element, PbSymbolOwner.class);
+    PbSymbolOwner owner = getParentOfType(element, PbSymbolOwner.class);
     // If the parent is the file, we possibly need to artificially return
     // the most-qualified package name element as the symbol parent by delegating to
     // PbFile.getPrimarySymbolOwner().
@@ -179,6 +207,57 @@ public final class PbPsiUtil {
     return owner;
   }
 
+  /**
+   * Returns the child scope of the element's {@link #getSymbolOwner(PsiElement) symbol owner}.
+   *
+   * <p>Unlike <code>getSymbolOwner(element).getChildScope()</code>, this doesn't need the package
+   * name element of the file, so it doesn't load the AST of a file whose elements come from stubs.
+   */
+  @Nullable
+  public static QualifiedName getSymbolOwnerScope(PsiElement element) {
+    PbSymbolOwner owner = getParentOfType(element, PbSymbolOwner.class);
+    if (owner instanceof PbFile) {
+      return ((PbFile) owner).getPackageQualifiedName();
+    }
+    return owner != null ? owner.getChildScope() : null;
+  }
+
+  /**
+   * Returns the closest strict ancestor of the given type, like {@link
+   * PsiTreeUtil#getParentOfType(PsiElement, Class)}.
+   *
+   * <p>The parents of elements created from stubs are taken from the stub tree, so walking up from
+   * them doesn't load the file's AST. Elements without stubs, such as message bodies, are skipped
+   * in that case.
+   */
+  @Nullable
+  public static <T extends PsiElement> T getParentOfType(
+      @Nullable PsiElement element, @NotNull Class<T> type) {
+    if (element == null || element instanceof PsiFile) {
+      return null;
+    }
+    PsiElement parent = getStubOrTreeParent(element);
+    while (parent != null && !type.isInstance(parent)) {
+      if (parent instanceof PsiFile) {
+        return null;
+      }
+      parent = getStubOrTreeParent(parent);
+    }
+    return type.cast(parent);
+  }
+
+  @Nullable
+  private static PsiElement getStubOrTreeParent(PsiElement element) {
+    if (element instanceof StubBasedPsiElement<?> stubBased) {
+      StubElement<?> stub = stubBased.getStub();
+      StubElement<?> parentStub = stub != null ? stub.getParentStub() : null;
+      if (parentStub != null) {
+        return parentStub.getPsi();
+      }
+    }
+    return element.getParent();
+  }
+
   @Nullable
   public static <T> T resolveRefToType(PsiReference ref, Class<T> type) {
     return streamRefToType(ref, type).findFirst().orElse(null);
@@ -21,7 +21,6 @@ import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiReferenceBase;
 import com.intellij.protobuf.lang.psi.PbEnumDefinition;
 import com.intellij.protobuf.lang.psi.PbEnumValue;
-import com.intellij.protobuf.lang.psi.PbNumberValue;
 import com.intellij.protobuf.lang.psi.ProtoNumberValue;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -53,16 +52,9 @@ public class PbEnumNumberReference extends PsiReferenceBase<ProtoNumberValue> {
     if (longValue == null) {
       return null;
     }
-    return enumDefinition
-        .getStatements()
-        .stream()
-        .filter(s -> s instanceof PbEnumValue)
-        .map(s -> (PbEnumValue) s)
-        .filter(
-            v -> {
-              PbNumberValue numberValue = v.getNumberValue();
-              return numberValue != null && longValue.equals(numberValue.getLongValue());
-            })
+    // The values' numbers are available from the stub of an enum in another file.
+    return enumDefinition.getEnumValues().stream()
+        .filter(v -> longValue.equals(v.getNumber()))
         .findFirst()
         .orElse(null);
   }
@@ -49,7 +49,14 @@ public final class PbFileResolver {
     if (!isValidImportPath(path)) {
       return Collections.emptyList();
     }
-    return findFiles(module.getProject(), (provider) -> provider.findFile(path, module));
+    Project project = module.getProject();
+    List<VirtualFile> files =
+        PbImportPathCache.getInstance(project)
+            .getFiles(
+                module,
+                path,
+                () -> findVirtualFiles(project, provider -> provider.findFile(path, module)));
+    return toPbFiles(project, files);
   }
 
   @NotNull
@@ -57,7 +64,13 @@ public final class PbFileResolver {
     if (!isValidImportPath(path)) {
       return Collections.emptyList();
     }
-    return findFiles(project, (provider) -> provider.findFile(path, project));
+    List<VirtualFile> files =
+        PbImportPathCache.getInstance(project)
+            .getFiles(
+                null,
+                path,
+                () -> findVirtualFiles(project, provider -> provider.findFile(path, project)));
+    return toPbFiles(project, files);
   }
 
   @NotNull
@@ -77,7 +90,12 @@ public final class PbFileResolver {
     if (!isValidImportPath(path)) {
       return Collections.emptyList();
     }
-    return getChildEntries(module.getProject(), provider -> provider.getChildEntries(path, module));
+    Project project = module.getProject();
+    return PbImportPathCache.getInstance(project)
+        .getChildEntries(
+            module,
+            path,
+            () -> getChildEntries(project, provider -> provider.getChildEntries(path, module)));
   }
 
   @NotNull
@@ -86,7 +104,11 @@ public final class PbFileResolver {
     if (!isValidImportPath(path)) {
       return Collections.emptyList();
     }
-    return getChildEntries(project, provider -> provider.getChildEntries(path, project));
+    return PbImportPathCache.getInstance(project)
+        .getChildEntries(
+            null,
+            path,
+            () -> getChildEntries(project, provider -> provider.getChildEntries(path, project)));
   }
 
   public static boolean isValidImportPath(@NotNull String path) {
@@ -116,21 +138,33 @@ public final class PbFileResolver {
   }
 
   @NotNull
-  private static List<PbFile> findFiles(
+  private static List<VirtualFile> findVirtualFiles(
       Project project, Function<FileResolveProvider, VirtualFile> fn) {
-    Set<PbFile> results = new LinkedHashSet<>();
+    Set<VirtualFile> results = new LinkedHashSet<>();
 
     for (FileResolveProvider provider : getProviders(project)) {
       VirtualFile file = fn.apply(provider);
       if (file == null || !file.exists()) {
         continue;
       }
+      results.add(file);
+    }
+    return List.copyOf(results);
+  }
+
+  @NotNull
+  private static List<PbFile> toPbFiles(Project project, List<VirtualFile> files) {
+    List<PbFile> results = new ArrayList<>(files.size());
+    for (VirtualFile file : files) {
+      if (!file.isValid()) {
+        continue;
+      }
       PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
       if (psiFile instanceof PbFile) {
         results.add((PbFile) psiFile);
       }
     }
-    return new ArrayList<>(results);
+    return results;
   }
 
   @NotNull
@@ -141,6 +175,6 @@ public final class PbFileResolver {
     for (FileResolveProvider provider : getProviders(project)) {
       results.addAll(fn.apply(provider));
     }
-    return results;
+    return Collections.unmodifiableSet(results);
   }
 }
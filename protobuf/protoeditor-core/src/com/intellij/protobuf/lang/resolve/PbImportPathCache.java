@@ -0,0 +1,361 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.lang.resolve;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.*;
+import com.intellij.protobuf.ide.settings.PbProjectSettings;
+import com.intellij.protobuf.lang.resolve.FileResolveProvider.ChildEntry;
+import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches the results of {@link PbFileResolver} per project: the files an import path resolves to,
+ * and the child entries listed for import completion.
+ *
+ * <p>Entries are dropped when roots, {@link FileResolveProvider} extensions or protobuf settings
+ * change. VFS events only drop the entries they can affect: files that are deleted, moved or
+ * renamed drop the paths resolved to them, files that appear drop the paths ending with their name,
+ * and directories that appear or disappear drop the paths going through them. Each batch of events
+ * is applied in a single pass over the cache. Nothing is cached while indexes are being updated.
+ */
+@Service(Service.Level.PROJECT)
+public final class PbImportPathCache implements Disposable {
+  private static final Logger logger = Logger.getInstance(PbImportPathCache.class);
+
+  private final Project project;
+  private final Map<CacheKey, List<VirtualFile>> files = new ConcurrentHashMap<>();
+  private final Map<CacheKey, Collection<ChildEntry>> childEntries = new ConcurrentHashMap<>();
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  // Also used as a stamp, so that a value computed across an invalidation isn't stored.
+  private final AtomicLong invalidations = new AtomicLong();
+  private volatile long settingsModificationCount;
+
+  public PbImportPathCache(Project project) {
+    this.project = project;
+    MessageBusConnection connection = project.getMessageBus().connect(this);
+    connection.subscribe(
+        ModuleRootListener.TOPIC,
+        new ModuleRootListener() {
+          @Override
+          public void rootsChanged(@NotNull ModuleRootEvent event) {
+            clear("roots changed");
+          }
+        });
+    connection.subscribe(
+        VirtualFileManager.VFS_CHANGES,
+        new BulkFileListener() {
+          @Override
+          public void before(@NotNull List<? extends @NotNull VFileEvent> events) {
+            invalidate(events);
+          }
+        });
+    FileResolveProvider.EP_NAME.addChangeListener(
+        project, () -> clear("file resolve providers changed"), this);
+  }
+
+  public static PbImportPathCache getInstance(Project project) {
+    return project.getService(PbImportPathCache.class);
+  }
+
+  /**
+   * Returns the cached files for the given import path, computing them if necessary.
+   *
+   * @param module the module the path is resolved in, or <code>null</code> for the whole project
+   */
+  @NotNull
+  List<VirtualFile> getFiles(
+      @Nullable Module module, @NotNull String path, @NotNull Supplier<List<VirtualFile>> compute) {
+    return getOrCompute(files, new CacheKey(module, path), compute);
+  }
+
+  /**
+   * Returns the cached child entries for the given import path prefix, computing them if
+   * necessary.
+   *
+   * @param module the module the path is resolved in, or <code>null</code> for the whole project
+   */
+  @NotNull
+  Collection<ChildEntry> getChildEntries(
+      @Nullable Module module,
+      @NotNull String path,
+      @NotNull Supplier<Collection<ChildEntry>> compute) {
+    return getOrCompute(childEntries, new CacheKey(module, path), compute);
+  }
+
+  @NotNull
+  public Statistics getStatistics() {
+    return new Statistics(hits.get(), misses.get(), invalidations.get());
+  }
+
+  private <V> V getOrCompute(Map<CacheKey, V> cache, CacheKey key, Supplier<V> compute) {
+    long settingsCount = PbProjectSettings.getModificationTracker(project).getModificationCount();
+    if (settingsCount != settingsModificationCount) {
+      clear("settings changed");
+      settingsModificationCount = settingsCount;
+    }
+
+    V cached = cache.get(key);
+    if (cached != null) {
+      hits.incrementAndGet();
+      return cached;
+    }
+    misses.incrementAndGet();
+
+    long stamp = invalidations.get();
+    V value = compute.get();
+    if (!DumbService.isDumb(project)) {
+      cache.put(key, value);
+      if (invalidations.get() != stamp) {
+        // An invalidation may have missed the value just stored.
+        cache.remove(key);
+      }
+    }
+    return value;
+  }
+
+  private void invalidate(List<? extends VFileEvent> events) {
+    if (files.isEmpty() && childEntries.isEmpty()) {
+      return;
+    }
+    Invalidation invalidation = new Invalidation();
+    for (VFileEvent event : events) {
+      if (!invalidation.add(event)) {
+        clear("directory copied or moved");
+        return;
+      }
+    }
+    if (invalidation.isEmpty()) {
+      return;
+    }
+    boolean removed = files.entrySet().removeIf(invalidation::affectsFiles);
+    removed |= childEntries.keySet().removeIf(invalidation::affectsChildEntries);
+    if (removed) {
+      invalidations.incrementAndGet();
+    }
+  }
+
+  private void clear(String reason) {
+    if (files.isEmpty() && childEntries.isEmpty()) {
+      return;
+    }
+    files.clear();
+    childEntries.clear();
+    invalidations.incrementAndGet();
+    logger.debug("Import path cache cleared: " + reason + "; " + getStatistics());
+  }
+
+  @Override
+  public void dispose() {}
+
+  /** Hit and invalidation counts of a {@link PbImportPathCache}. */
+  public static final class Statistics {
+    private final long hits;
+    private final long misses;
+    private final long invalidations;
+
+    Statistics(long hits, long misses, long invalidations) {
+      this.hits = hits;
+      this.misses = misses;
+      this.invalidations = invalidations;
+    }
+
+    public long getHits() {
+      return hits;
+    }
+
+    public long getMisses() {
+      return misses;
+    }
+
+    public long getInvalidations() {
+      return invalidations;
+    }
+
+    public double getHitRate() {
+      long total = hits + misses;
+      return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "hits=%d, misses=%d, hit rate=%.2f, invalidations=%d",
+          hits, misses, getHitRate(), invalidations);
+    }
+  }
+
+  /**
+   * The cache entries affected by a list of VFS events, collected so that each map is scanned
+   * once per list rather than once per event.
+   */
+  private static final class Invalidation {
+    // Files that are deleted, moved or renamed; paths resolved to them or below them are dropped.
+    private final Set<VirtualFile> disappeared = new HashSet<>();
+    // Names of files that appear; paths ending with them are dropped, including empty results.
+    private final Set<String> appearedFileNames = new HashSet<>();
+    // Names of directories that appear or disappear; paths going through them are dropped.
+    private final Set<String> directoryNames = new HashSet<>();
+    // Names of directories whose children change; listings that may be of them are dropped.
+    private final Set<String> listedDirectoryNames = new HashSet<>();
+
+    /** Adds the given event, returning <code>false</code> if the whole cache must be dropped. */
+    boolean add(VFileEvent event) {
+      if (event instanceof VFileCreateEvent createEvent) {
+        fileAppeared(
+            createEvent.getChildName(), createEvent.isDirectory(), createEvent.getParent());
+      } else if (event instanceof VFileCopyEvent copyEvent) {
+        if (copyEvent.getFile().isDirectory()) {
+          return false;
+        }
+        fileAppeared(copyEvent.getNewChildName(), false, copyEvent.getNewParent());
+      } else if (event instanceof VFileMoveEvent moveEvent) {
+        VirtualFile file = moveEvent.getFile();
+        if (file.isDirectory()) {
+          // Import paths are resolved relative to roots and by file name, so any path below the
+          // moved directory can resolve differently.
+          return false;
+        }
+        fileDisappeared(file);
+        fileAppeared(file.getName(), false, moveEvent.getNewParent());
+      } else if (event instanceof VFileDeleteEvent deleteEvent) {
+        fileDisappeared(deleteEvent.getFile());
+      } else if (event instanceof VFilePropertyChangeEvent propertyEvent
+          && propertyEvent.isRename()) {
+        VirtualFile file = propertyEvent.getFile();
+        fileDisappeared(file);
+        fileAppeared((String) propertyEvent.getNewValue(), file.isDirectory(), file.getParent());
+      }
+      return true;
+    }
+
+    boolean isEmpty() {
+      return disappeared.isEmpty()
+          && appearedFileNames.isEmpty()
+          && directoryNames.isEmpty()
+          && listedDirectoryNames.isEmpty();
+    }
+
+    boolean affectsFiles(Map.Entry<CacheKey, List<VirtualFile>> entry) {
+      CacheKey key = entry.getKey();
+      return appearedFileNames.contains(key.getLastComponent())
+          || key.hasComponentIn(directoryNames)
+          || entry.getValue().stream().anyMatch(this::isUnderDisappeared);
+    }
+
+    boolean affectsChildEntries(CacheKey key) {
+      // Listings are keyed by import path, so drop every listing that may be of a changed
+      // directory, including the listing of the roots.
+      if (!listedDirectoryNames.isEmpty()) {
+        String last = key.getLastComponent();
+        if (last.isEmpty() || listedDirectoryNames.contains(last)) {
+          return true;
+        }
+      }
+      return key.hasComponentIn(directoryNames);
+    }
+
+    private void fileDisappeared(VirtualFile file) {
+      disappeared.add(file);
+      VirtualFile parent = file.getParent();
+      if (parent != null) {
+        listedDirectoryNames.add(parent.getName());
+      }
+      if (file.isDirectory()) {
+        directoryNames.add(file.getName());
+      }
+    }
+
+    private void fileAppeared(String name, boolean isDirectory, @Nullable VirtualFile parent) {
+      // A new directory can make any path through it resolve, even one cached as unresolved.
+      (isDirectory ? directoryNames : appearedFileNames).add(name);
+      if (parent != null) {
+        listedDirectoryNames.add(parent.getName());
+      }
+    }
+
+    private boolean isUnderDisappeared(VirtualFile file) {
+      if (disappeared.isEmpty()) {
+        return false;
+      }
+      for (VirtualFile f = file; f != null; f = f.getParent()) {
+        if (disappeared.contains(f)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static final class CacheKey {
+    private final Module module;
+    private final String path;
+
+    CacheKey(@Nullable Module module, @NotNull String path) {
+      this.module = module;
+      this.path = path;
+    }
+
+    /** Returns the last component of the path, ignoring a trailing slash. */
+    String getLastComponent() {
+      int end = path.endsWith("/") ? path.length() - 1 : path.length();
+      return path.substring(path.lastIndexOf('/', end - 1) + 1, end);
+    }
+
+    boolean hasComponentIn(Set<String> names) {
+      if (names.isEmpty()) {
+        return false;
+      }
+      for (String component : path.split("/")) {
+        if (names.contains(component)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof CacheKey other)) {
+        return false;
+      }
+      return Objects.equals(module, other.module) && path.equals(other.path);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(module, path);
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.lang.resolve;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.intellij.protobuf.ide.PbCompositeModificationTracker;
+import com.intellij.protobuf.lang.psi.PbFile;
+import com.intellij.protobuf.lang.psi.PbSymbol;
+import com.intellij.protobuf.lang.psi.util.PbPsiUtil;
+import com.intellij.protobuf.lang.stub.*;
+import com.intellij.protobuf.lang.stub.type.PbStubElementTypes;
+import com.intellij.psi.util.CachedValueProvider.Result;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.QualifiedName;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+
+/**
+ * The qualified symbols of a file, computed from its stub tree so that looking up an imported
+ * file's symbols doesn't load its AST.
+ *
+ * <p>Only stub-based elements can be returned this way. Names that may refer to symbols without
+ * stubs, such as packages, group fields and generated map entries, are reported as unknown, and
+ * callers look them up in the file's {@link PbFile#getLocalQualifiedSymbolMap() PSI symbol table}
+ * instead.
+ */
+final class PbStubSymbolTable {
+
+  private final ImmutableListMultimap<QualifiedName, PbSymbol> symbols;
+  private final ImmutableSet<QualifiedName> packages;
+  private final ImmutableSet<QualifiedName> unknownNames;
+  private final ImmutableSet<QualifiedName> unknownScopes;
+
+  private PbStubSymbolTable(PbFileStub fileStub) {
+    Builder builder = new Builder();
+    QualifiedName packageName = fileStub.getChildScope();
+    if (packageName == null) {
+      packageName = PbPsiUtil.EMPTY_QUALIFIED_NAME;
+    }
+    for (int i = 1; i <= packageName.getComponentCount(); i++) {
+      builder.packages.add(packageName.subQualifiedName(0, i));
+    }
+    builder.addStatements(fileStub, packageName);
+    symbols = builder.symbols.build();
+    packages = builder.packages.build();
+    unknownNames = builder.unknownNames.build();
+    unknownScopes = builder.unknownScopes.build();
+  }
+
+  /**
+   * Returns the symbol table of the given file, or <code>null</code> if the file's AST is loaded
+   * and its PSI symbol table should be used.
+   */
+  @Nullable
+  static PbStubSymbolTable forFile(@NotNull PbFile file) {
+    PbFileStub fileStub = StubMethods.getFileStub(file);
+    if (fileStub == null) {
+      return null;
+    }
+    // PSI created from stubs stays valid when the AST is loaded later, so the table can be kept
+    // for as long as the file is unchanged.
+    return CachedValuesManager.getCachedValue(
+        file,
+        () ->
+            Result.create(
+                new PbStubSymbolTable(fileStub), PbCompositeModificationTracker.byElement(file)));
+  }
+
+  /**
+   * Returns the symbols with the given qualified name, or <code>null</code> if the name may refer
+   * to symbols that aren't available from stubs.
+   */
+  @Nullable
+  Collection<PbSymbol> getSymbols(@NotNull QualifiedName name) {
+    if (packages.contains(name) || unknownNames.contains(name)) {
+      return null;
+    }
+    for (int i = 1; i <= name.getComponentCount() && !unknownScopes.isEmpty(); i++) {
+      if (unknownScopes.contains(name.subQualifiedName(0, i))) {
+        return null;
+      }
+    }
+    return symbols.get(name);
+  }
+
+  /** Returns true if the given name is the file's package or one of its parent packages. */
+  boolean isPackage(@NotNull QualifiedName name) {
+    return packages.contains(name);
+  }
+
+  private static final class Builder {
+    final ImmutableListMultimap.Builder<QualifiedName, PbSymbol> symbols =
+        ImmutableListMultimap.builder();
+    final ImmutableSet.Builder<QualifiedName> packages = ImmutableSet.builder();
+    final ImmutableSet.Builder<QualifiedName> unknownNames = ImmutableSet.builder();
+    final ImmutableSet.Builder<QualifiedName> unknownScopes = ImmutableSet.builder();
+
+    /** Adds the statements of the given owner, whose symbols reside in the given scope. */
+    void addStatements(PbStatementOwnerStub<?> owner, QualifiedName scope) {
+      for (PbStatementStub<?> statement : owner.getStatements()) {
+        if (statement instanceof PbNamedElementStub<?> namedStub) {
+          String name = namedStub.getName();
+          if (name == null) {
+            continue;
+          }
+          QualifiedName qualifiedName = scope.append(name);
+          if (namedStub.getPsi() instanceof PbSymbol symbol) {
+            symbols.put(qualifiedName, symbol);
+          }
+          if (statement instanceof PbServiceDefinitionStub) {
+            // Services may contain stream definitions, which don't have stubs.
+            unknownScopes.add(qualifiedName);
+          } else if (statement instanceof PbMessageDefinitionStub) {
+            addStatements((PbStatementOwnerStub<?>) statement, qualifiedName);
+          } else if (statement instanceof PbGroupDefinitionStub groupStub) {
+            // The field generated for a group is built from the group's PSI.
+            unknownNames.add(scope.append(name.toLowerCase()));
+            addStatements(groupStub, qualifiedName);
+          } else if (statement instanceof PbOneofDefinitionStub oneofStub) {
+            addStatements(oneofStub, scope);
+          } else if (statement instanceof PbEnumDefinitionStub enumStub) {
+            // Enum values reside in the enum's parent scope.
+            addStatements(enumStub, scope);
+          } else if (statement.getStubType() == PbStubElementTypes.MAP_FIELD) {
+            // The generated map entry message and its fields.
+            unknownScopes.add(scope.append(PbPsiUtil.getMapEntryName(name)));
+          }
+        } else if (statement instanceof PbExtendDefinitionStub extendStub) {
+          // Extensions reside in the scope the extend definition is declared in.
+          addStatements(extendStub, scope);
+        }
+      }
+    }
+  }
+}
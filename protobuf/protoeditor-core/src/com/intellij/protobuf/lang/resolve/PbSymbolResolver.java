@@ -15,55 +15,78 @@
  */
 package com.intellij.protobuf.lang.resolve;
 
-import com.google.common.collect.*;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultimap;
 import com.intellij.openapi.util.Condition;
+import com.intellij.protobuf.ide.PbCompositeModificationTracker;
 import com.intellij.protobuf.lang.psi.PbFile;
 import com.intellij.protobuf.lang.psi.PbSymbol;
 import com.intellij.protobuf.lang.psi.PbSymbolOwner;
+import com.intellij.psi.util.CachedValueProvider.Result;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.QualifiedName;
-import com.intellij.util.SmartList;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
-/** Utilities for finding PbSymbol elements using protobuf's scoping and resolution rules. */
+/**
+ * Utilities for finding PbSymbol elements using protobuf's scoping and resolution rules.
+ *
+ * <p>A resolver is a layered view over the cached {@link PbFile#getLocalQualifiedSymbolMap() local
+ * symbol tables} of the files it covers. The tables are shared by reference, so creating a
+ * resolver doesn't copy any symbols, and the resolvers for single files are themselves cached.
+ *
+ * <p>Files whose AST isn't loaded, such as most imported files, are first looked up in a table
+ * computed from their stubs, which can answer for messages, enums, services and the like. Only
+ * names that may refer to fields, enum values or packages load the file's AST.
+ */
 public class PbSymbolResolver {
 
-  private final Multimap<QualifiedName, PbSymbol> symbols;
+  private static final PbSymbolResolver EMPTY = new PbSymbolResolver(ImmutableList.of());
+
+  private final List<PbFile> layers;
 
-  private PbSymbolResolver(Multimap<QualifiedName, PbSymbol> symbols) {
-    this.symbols = symbols;
+  private PbSymbolResolver(List<PbFile> layers) {
+    this.layers = layers;
   }
 
   /** Returns a PbSymbolResolver that can resolve symbols in the given file and its imports. */
   public static PbSymbolResolver forFile(PbFile file) {
-    return new PbSymbolResolver(convertJdkMapToGuava(file.getFullQualifiedSymbolMap()));
+    return CachedValuesManager.getCachedValue(
+        file,
+        () ->
+            Result.create(
+                forFiles(file.getVisibleFiles()), PbCompositeModificationTracker.byElement(file)));
   }
 
   /** Returns a PbSymbolResolver that can resolve symbols exported by the given file. */
   public static PbSymbolResolver forFileExports(PbFile file) {
-    return new PbSymbolResolver(convertJdkMapToGuava(file.getExportedQualifiedSymbolMap()));
+    return CachedValuesManager.getCachedValue(
+        file,
+        () ->
+            Result.create(
+                forFiles(file.getExportedFiles()), PbCompositeModificationTracker.byElement(file)));
   }
 
   /** Returns a PbSymbolResolver that can resolve symbols exported by the given files. */
   public static PbSymbolResolver forFileExports(List<PbFile> files) {
-    ImmutableSetMultimap.Builder<QualifiedName, PbSymbol> builder = ImmutableSetMultimap.builder();
+    if (files.size() == 1) {
+      return forFileExports(files.get(0));
+    }
+    Set<PbFile> exportedFiles = new LinkedHashSet<>();
     for (PbFile file : files) {
-      Multimap<QualifiedName, PbSymbol> multimap = convertJdkMapToGuava(file.getExportedQualifiedSymbolMap());
-      builder.putAll(multimap);
+      exportedFiles.addAll(file.getExportedFiles());
     }
-    return new PbSymbolResolver(builder.build());
+    return forFiles(exportedFiles);
   }
 
-  private static Multimap<QualifiedName, PbSymbol> convertJdkMapToGuava(Map<QualifiedName, Collection<PbSymbol>> jdkMap) {
-    Multimap<QualifiedName, PbSymbol> multimap = Multimaps.newListMultimap(new HashMap<>(), SmartList::new);
-    jdkMap.forEach((key, value) -> multimap.putAll(key, value));
-    return multimap;
+  private static PbSymbolResolver forFiles(Collection<PbFile> files) {
+    // Each file is listed once, so the layers never contain the same symbol twice.
+    return new PbSymbolResolver(ImmutableList.copyOf(files));
   }
 
   /** Returns an empty PbSymbolResolver. */
   public static PbSymbolResolver empty() {
-    return new PbSymbolResolver(ImmutableMultimap.of());
+    return EMPTY;
   }
 
   public List<PbResolveResult> resolveRelativeName(
@@ -117,12 +140,22 @@ public class PbSymbolResolver {
   }
 
   public List<PbResolveResult> resolveName(QualifiedName name, Condition<PbSymbol> condition) {
-    return symbols
-      .get(name)
-      .stream()
-      .filter(condition::value)
-      .map(PbResolveResult::create)
-      .collect(Collectors.toList());
+    List<PbResolveResult> results = null;
+    for (PbFile layer : layers) {
+      Collection<PbSymbol> symbols = getSymbols(layer, name);
+      if (symbols == null) {
+        continue;
+      }
+      for (PbSymbol symbol : symbols) {
+        if (condition.value(symbol)) {
+          if (results == null) {
+            results = new ArrayList<>();
+          }
+          results.add(PbResolveResult.create(symbol));
+        }
+      }
+    }
+    return results != null ? results : Collections.emptyList();
   }
 
   public ImmutableMultimap<String, PbSymbol> findChildren(
@@ -151,30 +184,49 @@ public class PbSymbolResolver {
   }
 
   private ImmutableMultimap<String, PbSymbol> findTopLevelSymbols(Condition<PbSymbol> condition) {
-    // First, filter the symbols map to the collection of top-level symbols matching the given
-    // predicate.
-    Multimap<QualifiedName, PbSymbol> filtered =
-      Multimaps.filterEntries(
-        symbols,
-        e -> e != null && e.getKey().getComponentCount() == 1 && condition.value(e.getValue()));
-
-    // Next, convert the map into a Multimap<String, PbSymbol>
+    // Collect the top-level symbols matching the given predicate from each layer, keyed by their
+    // only name component.
     ImmutableMultimap.Builder<String, PbSymbol> builder = ImmutableMultimap.builder();
-    for (Map.Entry<QualifiedName, Collection<PbSymbol>> entry : filtered.asMap().entrySet()) {
-      QualifiedName name = entry.getKey();
-      if (name == null) {
-        continue;
-      }
-      String first = name.getFirstComponent();
-      if (first == null) {
-        continue;
+    for (PbFile layer : layers) {
+      for (Map.Entry<QualifiedName, Collection<PbSymbol>> entry :
+          layer.getLocalQualifiedSymbolMap().entrySet()) {
+        QualifiedName name = entry.getKey();
+        if (name == null || name.getComponentCount() != 1) {
+          continue;
+        }
+        String first = name.getFirstComponent();
+        if (first == null) {
+          continue;
+        }
+        for (PbSymbol symbol : entry.getValue()) {
+          if (condition.value(symbol)) {
+            builder.put(first, symbol);
+          }
+        }
       }
-      builder.putAll(first, entry.getValue());
     }
     return builder.build();
   }
 
   private boolean symbolOwnerExists(QualifiedName symbol) {
+    // Packages are symbol owners, but their PSI requires the AST. The stubs know the package name.
+    for (PbFile layer : layers) {
+      PbStubSymbolTable table = PbStubSymbolTable.forFile(layer);
+      if (table != null && table.isPackage(symbol)) {
+        return true;
+      }
+    }
     return !resolveName(symbol, ResolveFilters.symbolOwner()).isEmpty();
   }
+
+  private static Collection<PbSymbol> getSymbols(PbFile file, QualifiedName name) {
+    PbStubSymbolTable table = PbStubSymbolTable.forFile(file);
+    if (table != null) {
+      Collection<PbSymbol> symbols = table.getSymbols(name);
+      if (symbols != null) {
+        return symbols;
+      }
+    }
+    return file.getLocalQualifiedSymbolMap().get(name);
+  }
 }
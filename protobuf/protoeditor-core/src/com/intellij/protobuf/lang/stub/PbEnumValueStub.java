@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.lang.stub;
+
+import com.intellij.protobuf.lang.psi.PbEnumValue;
+import com.intellij.protobuf.lang.stub.type.PbEnumValueType;
+import com.intellij.psi.stubs.StubBase;
+import com.intellij.psi.stubs.StubElement;
+import com.intellij.psi.util.QualifiedName;
+import org.jetbrains.annotations.Nullable;
+
+public class PbEnumValueStub extends StubBase<PbEnumValue>
+    implements PbNamedElementStub<PbEnumValue> {
+
+  private final String name;
+  private final Long number;
+
+  public PbEnumValueStub(
+      StubElement parent,
+      PbEnumValueType elementType,
+      String name,
+      @Nullable Long number) {
+    super(parent, elementType);
+    this.name = name;
+    this.number = number;
+  }
+
+  @Nullable
+  @Override
+  public String getName() {
+    return this.name;
+  }
+
+  @Nullable
+  @Override
+  public QualifiedName getQualifiedName() {
+    // Enum values are siblings of their enum rather than its children, so they reside in the scope
+    // the enum is declared in.
+    String name = getName();
+    if (name == null || !(getOwner() instanceof PbStatementStub<?> enumStub)) {
+      return null;
+    }
+    PbStatementOwnerStub<?> enumOwner = enumStub.getOwner();
+    QualifiedName scope = enumOwner != null ? enumOwner.getChildScope() : null;
+    return scope != null ? scope.append(name) : null;
+  }
+
+  /** Returns the value's number, or <code>null</code> if it isn't a valid int32. */
+  @Nullable
+  public Long getNumber() {
+    return this.number;
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.lang.stub;
+
+import com.intellij.protobuf.lang.psi.PbField;
+import com.intellij.protobuf.lang.psi.PbField.CanonicalFieldLabel;
+import com.intellij.psi.stubs.IStubElementType;
+import com.intellij.psi.stubs.StubBase;
+import com.intellij.psi.stubs.StubElement;
+import com.intellij.psi.util.QualifiedName;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Stub for simple and map fields. Records what resolving and checking options against the field
+ * needs: its number, label and type names.
+ */
+public class PbFieldStub extends StubBase<PbField> implements PbNamedElementStub<PbField> {
+
+  private final String name;
+  private final Long number;
+  private final CanonicalFieldLabel label;
+  private final String typeName;
+  private final String keyType;
+  private final String valueType;
+
+  public PbFieldStub(
+      StubElement parent,
+      IStubElementType elementType,
+      String name,
+      @Nullable Long number,
+      @NotNull CanonicalFieldLabel label,
+      @Nullable String typeName,
+      @Nullable String keyType,
+      @Nullable String valueType) {
+    super(parent, elementType);
+    this.name = name;
+    this.number = number;
+    this.label = label;
+    this.typeName = typeName;
+    this.keyType = keyType;
+    this.valueType = valueType;
+  }
+
+  @Nullable
+  @Override
+  public String getName() {
+    return this.name;
+  }
+
+  @Nullable
+  @Override
+  public QualifiedName getQualifiedName() {
+    return StubMethods.getQualifiedName(this);
+  }
+
+  /** Returns the field number, or <code>null</code> if it isn't a valid int32. */
+  @Nullable
+  public Long getNumber() {
+    return this.number;
+  }
+
+  @NotNull
+  public CanonicalFieldLabel getLabel() {
+    return this.label;
+  }
+
+  /**
+   * Returns the type name as written in the field definition, or <code>null</code> for map fields.
+   */
+  @Nullable
+  public String getTypeName() {
+    return this.typeName;
+  }
+
+  /** Returns the key type name of a map field. */
+  @Nullable
+  public String getKeyType() {
+    return this.keyType;
+  }
+
+  /** Returns the value type name of a map field. */
+  @Nullable
+  public String getValueType() {
+    return this.valueType;
+  }
+}
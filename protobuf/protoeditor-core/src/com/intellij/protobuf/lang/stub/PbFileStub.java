@@ -19,13 +19,25 @@ import com.intellij.psi.stubs.PsiFileStubImpl;
 import com.intellij.psi.util.QualifiedName;
 import com.intellij.protobuf.lang.psi.PbFile;
 import com.intellij.protobuf.lang.stub.type.PbStubElementTypes;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
+
 /** Protobuf file stub. */
 public class PbFileStub extends PsiFileStubImpl<PbFile> implements PbStatementOwnerStub<PbFile> {
 
-  public PbFileStub(PbFile file) {
+  private final List<Import> imports;
+
+  public PbFileStub(PbFile file, List<Import> imports) {
     super(file);
+    this.imports = imports;
+  }
+
+  /** Returns the imports declared in the file, in declaration order. */
+  @NotNull
+  public List<Import> getImports() {
+    return this.imports;
   }
 
   @Nullable
@@ -39,4 +51,25 @@ public class PbFileStub extends PsiFileStubImpl<PbFile> implements PbStatementOw
   private PbPackageStatementStub getPackageStatement() {
     return findChildStubByType(PbStubElementTypes.PACKAGE_STATEMENT);
   }
+
+  /** An import statement recorded in the file stub. */
+  public static final class Import {
+    private final String path;
+    private final boolean isPublic;
+
+    public Import(@NotNull String path, boolean isPublic) {
+      this.path = path;
+      this.isPublic = isPublic;
+    }
+
+    /** Returns the imported path, as written in the import statement. */
+    @NotNull
+    public String getPath() {
+      return path;
+    }
+
+    public boolean isPublic() {
+      return isPublic;
+    }
+  }
 }
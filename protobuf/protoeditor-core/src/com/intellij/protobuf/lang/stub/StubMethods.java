@@ -15,8 +15,11 @@
  */
 package com.intellij.protobuf.lang.stub;
 
+import com.intellij.protobuf.lang.psi.PbFile;
+import com.intellij.psi.impl.source.PsiFileImpl;
 import com.intellij.psi.stubs.Stub;
 import com.intellij.psi.stubs.StubElement;
+import com.intellij.psi.stubs.StubTree;
 import com.intellij.psi.util.QualifiedName;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -64,5 +67,22 @@ public final class StubMethods {
         .collect(Collectors.toList());
   }
 
+  /**
+   * Returns the stub tree of the given file if its AST isn't loaded, or <code>null</code> if the
+   * file should be accessed through its PSI.
+   */
+  @Nullable
+  public static PbFileStub getFileStub(@NotNull PbFile file) {
+    if (!(file instanceof PsiFileImpl)) {
+      return null;
+    }
+    StubTree stubTree = ((PsiFileImpl) file).getStubTree();
+    if (stubTree == null) {
+      return null;
+    }
+    StubElement<?> root = stubTree.getRoot();
+    return root instanceof PbFileStub ? (PbFileStub) root : null;
+  }
+
   private StubMethods() {}
 }
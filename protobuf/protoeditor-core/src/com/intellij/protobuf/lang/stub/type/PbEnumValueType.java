@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.lang.stub.type;
+
+import com.intellij.lang.Language;
+import com.intellij.protobuf.lang.psi.PbEnumValue;
+import com.intellij.protobuf.lang.psi.impl.PbEnumValueImpl;
+import com.intellij.protobuf.lang.stub.PbEnumValueStub;
+import com.intellij.psi.stubs.*;
+import com.intellij.util.io.StringRef;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * Element type for enum values. Like fields, enum values aren't indexed: they are found through the
+ * stubs of their enum definitions.
+ */
+public class PbEnumValueType extends IStubElementType<PbEnumValueStub, PbEnumValue> {
+
+  PbEnumValueType(String debugName, Language language) {
+    super(debugName, language);
+  }
+
+  @Override
+  public PbEnumValue createPsi(@NotNull PbEnumValueStub stub) {
+    return new PbEnumValueImpl(stub, this);
+  }
+
+  @NotNull
+  @Override
+  public PbEnumValueStub createStub(@NotNull PbEnumValue psi, StubElement parentStub) {
+    return new PbEnumValueStub(
+        parentStub, this, psi.getName(), PbFieldType.getNumber(psi.getNumberValue()));
+  }
+
+  @NotNull
+  @Override
+  public String getExternalId() {
+    return "protobuf.ENUM_VALUE";
+  }
+
+  @Override
+  public void serialize(@NotNull PbEnumValueStub stub, @NotNull StubOutputStream dataStream)
+      throws IOException {
+    dataStream.writeName(stub.getName());
+    Long number = stub.getNumber();
+    dataStream.writeBoolean(number != null);
+    if (number != null) {
+      dataStream.writeLong(number);
+    }
+  }
+
+  @NotNull
+  @Override
+  public PbEnumValueStub deserialize(@NotNull StubInputStream dataStream, StubElement parentStub)
+      throws IOException {
+    String name = StringRef.toString(dataStream.readName());
+    Long number = dataStream.readBoolean() ? dataStream.readLong() : null;
+    return new PbEnumValueStub(parentStub, this, name, number);
+  }
+
+  @Override
+  public void indexStub(@NotNull PbEnumValueStub stub, @NotNull IndexSink sink) {}
+}
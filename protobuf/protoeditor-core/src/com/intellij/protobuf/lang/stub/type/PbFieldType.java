@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.lang.stub.type;
+
+import com.intellij.lang.Language;
+import com.intellij.protobuf.lang.psi.PbField;
+import com.intellij.protobuf.lang.psi.PbField.CanonicalFieldLabel;
+import com.intellij.protobuf.lang.psi.PbNumberValue;
+import com.intellij.protobuf.lang.psi.PbTypeName;
+import com.intellij.protobuf.lang.stub.PbFieldStub;
+import com.intellij.psi.stubs.*;
+import com.intellij.util.io.StringRef;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+/**
+ * Base element type for simple and map fields, which share {@link PbFieldStub}.
+ *
+ * <p>Fields aren't indexed: they are found through the stubs of the definitions declaring them.
+ */
+public abstract class PbFieldType extends IStubElementType<PbFieldStub, PbField> {
+
+  PbFieldType(String debugName, Language language) {
+    super(debugName, language);
+  }
+
+  @Override
+  public void serialize(@NotNull PbFieldStub stub, @NotNull StubOutputStream dataStream)
+      throws IOException {
+    dataStream.writeName(stub.getName());
+    Long number = stub.getNumber();
+    dataStream.writeBoolean(number != null);
+    if (number != null) {
+      dataStream.writeLong(number);
+    }
+    dataStream.writeVarInt(stub.getLabel().ordinal());
+    dataStream.writeName(stub.getTypeName());
+    dataStream.writeName(stub.getKeyType());
+    dataStream.writeName(stub.getValueType());
+  }
+
+  @NotNull
+  @Override
+  public PbFieldStub deserialize(@NotNull StubInputStream dataStream, StubElement parentStub)
+      throws IOException {
+    String name = StringRef.toString(dataStream.readName());
+    Long number = dataStream.readBoolean() ? dataStream.readLong() : null;
+    CanonicalFieldLabel label = CanonicalFieldLabel.values()[dataStream.readVarInt()];
+    String typeName = StringRef.toString(dataStream.readName());
+    String keyType = StringRef.toString(dataStream.readName());
+    String valueType = StringRef.toString(dataStream.readName());
+    return new PbFieldStub(parentStub, this, name, number, label, typeName, keyType, valueType);
+  }
+
+  @Override
+  public void indexStub(@NotNull PbFieldStub stub, @NotNull IndexSink sink) {}
+
+  @Nullable
+  static Long getNumber(@Nullable PbNumberValue number) {
+    return number != null && number.isValidInt32() ? number.getLongValue() : null;
+  }
+
+  @Nullable
+  static String getReferenceString(@Nullable PbTypeName typeName) {
+    return typeName != null ? typeName.getReferenceString() : null;
+  }
+}
@@ -15,16 +15,23 @@
  */
 package com.intellij.protobuf.lang.stub.type;
 
+import com.google.common.collect.ImmutableList;
 import com.intellij.lang.Language;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.StubBuilder;
 import com.intellij.psi.stubs.*;
 import com.intellij.psi.tree.IStubFileElementType;
 import com.intellij.protobuf.lang.psi.PbFile;
+import com.intellij.protobuf.lang.psi.PbImportName;
+import com.intellij.protobuf.lang.psi.PbImportStatement;
 import com.intellij.protobuf.lang.stub.PbFileStub;
+import com.intellij.util.io.StringRef;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.util.List;
+
 public class PbFileElementType extends IStubFileElementType<PbFileStub> {
   public PbFileElementType(final Language language) {
     super(language);
@@ -36,7 +43,7 @@ public class PbFileElementType extends IStubFileElementType<PbFileStub> {
 
   @Override
   public int getStubVersion() {
-    return 0;
+    return 3;
   }
 
   @NotNull
@@ -52,14 +59,28 @@ public class PbFileElementType extends IStubFileElementType<PbFileStub> {
   }
 
   @Override
-  public void serialize(@NotNull final PbFileStub stub, @NotNull final StubOutputStream dataStream) {}
+  public void serialize(@NotNull final PbFileStub stub, @NotNull final StubOutputStream dataStream)
+      throws IOException {
+    List<PbFileStub.Import> imports = stub.getImports();
+    dataStream.writeVarInt(imports.size());
+    for (PbFileStub.Import pbImport : imports) {
+      dataStream.writeName(pbImport.getPath());
+      dataStream.writeBoolean(pbImport.isPublic());
+    }
+  }
 
   @NotNull
   @Override
   public PbFileStub deserialize(
       @NotNull final StubInputStream dataStream,
-      final StubElement parentStub) {
-    return new PbFileStub(null);
+      final StubElement parentStub) throws IOException {
+    int size = dataStream.readVarInt();
+    ImmutableList.Builder<PbFileStub.Import> imports = ImmutableList.builderWithExpectedSize(size);
+    for (int i = 0; i < size; i++) {
+      String path = StringRef.toString(dataStream.readName());
+      imports.add(new PbFileStub.Import(path, dataStream.readBoolean()));
+    }
+    return new PbFileStub(null, imports.build());
   }
 
   @Override
@@ -69,7 +90,19 @@ public class PbFileElementType extends IStubFileElementType<PbFileStub> {
     @NotNull
     @Override
     protected @SuppressWarnings("rawtypes") StubElement createStubForFile(@NotNull PsiFile file) {
-      return new PbFileStub((PbFile) file);
+      return new PbFileStub((PbFile) file, collectImports((PbFile) file));
+    }
+
+    private static List<PbFileStub.Import> collectImports(PbFile file) {
+      ImmutableList.Builder<PbFileStub.Import> imports = ImmutableList.builder();
+      for (PbImportStatement pbImport : file.getImportStatements()) {
+        PbImportName importName = pbImport.getImportName();
+        String path = importName != null ? importName.getStringValue().getAsString() : null;
+        if (path != null) {
+          imports.add(new PbFileStub.Import(path, pbImport.isPublic()));
+        }
+      }
+      return imports.build();
     }
   }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.lang.stub.type;
+
+import com.intellij.lang.Language;
+import com.intellij.protobuf.lang.psi.PbField;
+import com.intellij.protobuf.lang.psi.PbMapField;
+import com.intellij.protobuf.lang.psi.impl.PbMapFieldImpl;
+import com.intellij.protobuf.lang.stub.PbFieldStub;
+import com.intellij.psi.stubs.StubElement;
+import org.jetbrains.annotations.NotNull;
+
+public class PbMapFieldType extends PbFieldType {
+
+  PbMapFieldType(String debugName, Language language) {
+    super(debugName, language);
+  }
+
+  @Override
+  public PbMapField createPsi(@NotNull PbFieldStub stub) {
+    return new PbMapFieldImpl(stub, this);
+  }
+
+  @NotNull
+  @Override
+  public PbFieldStub createStub(@NotNull PbField psi, StubElement parentStub) {
+    PbMapField mapField = (PbMapField) psi;
+    return new PbFieldStub(
+        parentStub,
+        this,
+        mapField.getName(),
+        getNumber(mapField.getFieldNumber()),
+        mapField.getCanonicalLabel(),
+        null,
+        getReferenceString(mapField.getKeyType()),
+        getReferenceString(mapField.getValueType()));
+  }
+
+  @NotNull
+  @Override
+  public String getExternalId() {
+    return "protobuf.MAP_FIELD";
+  }
+}
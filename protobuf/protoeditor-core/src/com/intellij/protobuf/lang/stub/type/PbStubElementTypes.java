@@ -27,8 +27,12 @@ public interface PbStubElementTypes {
     new PbGroupDefinitionType("GROUP_DEFINITION", PbLanguage.INSTANCE);
   PbEnumDefinitionType ENUM_DEFINITION =
     new PbEnumDefinitionType("ENUM_DEFINITION", PbLanguage.INSTANCE);
+  PbEnumValueType ENUM_VALUE =
+    new PbEnumValueType("ENUM_VALUE", PbLanguage.INSTANCE);
   PbExtendDefinitionType EXTEND_DEFINITION =
     new PbExtendDefinitionType("EXTEND_DEFINITION", PbLanguage.INSTANCE);
+  PbMapFieldType MAP_FIELD =
+    new PbMapFieldType("MAP_FIELD", PbLanguage.INSTANCE);
   PbMessageDefinitionType MESSAGE_DEFINITION =
     new PbMessageDefinitionType("MESSAGE_DEFINITION", PbLanguage.INSTANCE);
   PbOneofDefinitionType ONEOF_DEFINITION =
@@ -39,6 +43,8 @@ public interface PbStubElementTypes {
     new PbServiceDefinitionType("SERVICE_DEFINITION", PbLanguage.INSTANCE);
   PbServiceMethodDefinitionType SERVICE_METHOD =
     new PbServiceMethodDefinitionType("SERVICE_METHOD", PbLanguage.INSTANCE);
+  PbSimpleFieldType SIMPLE_FIELD =
+    new PbSimpleFieldType("SIMPLE_FIELD", PbLanguage.INSTANCE);
 
   static IElementType get(String name) {
     if ("GROUP_DEFINITION".equals(name)) {
@@ -47,9 +53,15 @@ public interface PbStubElementTypes {
     else if ("ENUM_DEFINITION".equals(name)) {
       return ENUM_DEFINITION;
     }
+    else if ("ENUM_VALUE".equals(name)) {
+      return ENUM_VALUE;
+    }
     else if ("EXTEND_DEFINITION".equals(name)) {
       return EXTEND_DEFINITION;
     }
+    else if ("MAP_FIELD".equals(name)) {
+      return MAP_FIELD;
+    }
     else if ("MESSAGE_DEFINITION".equals(name)) {
       return MESSAGE_DEFINITION;
     }
@@ -65,6 +77,9 @@ public interface PbStubElementTypes {
     else if ("SERVICE_METHOD".equals(name)) {
       return SERVICE_METHOD;
     }
+    else if ("SIMPLE_FIELD".equals(name)) {
+      return SIMPLE_FIELD;
+    }
     throw new IllegalArgumentException("Unknown type: " + name);
   }
 }
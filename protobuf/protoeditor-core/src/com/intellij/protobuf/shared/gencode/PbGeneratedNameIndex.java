@@ -0,0 +1,155 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.shared.gencode;
+
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.SetMultimap;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.protobuf.lang.PbFileType;
+import com.intellij.protobuf.lang.psi.PbFile;
+import com.intellij.protobuf.lang.psi.PbSymbol;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.QualifiedName;
+import com.intellij.util.ObjectUtils;
+import com.intellij.util.indexing.*;
+import com.intellij.util.indexing.FileBasedIndex.InputFilter;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import com.intellij.util.io.externalizer.StringCollectionExternalizer;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Base for indexes from the names protoc generates for some language to the proto elements they
+ * are generated from.
+ *
+ * <p>The generated names of each .proto file are computed once, when the file is indexed. Values
+ * are the qualified names of the proto symbols, so navigating from generated code is a key lookup
+ * followed by a lookup in the file's symbol table.
+ */
+public abstract class PbGeneratedNameIndex extends FileBasedIndexExtension<String, List<String>> {
+
+  /**
+   * Adds the generated names of the given file to the sink, mapped to the qualified names of the
+   * symbols they are generated from.
+   */
+  protected abstract void computeGeneratedNames(
+      @NotNull PbFile file, @NotNull SetMultimap<String, QualifiedName> sink);
+
+  /** Returns the symbols in the given file that generate the given name. */
+  @NotNull
+  public static List<PbSymbol> findSymbols(
+      @NotNull ID<String, List<String>> indexId, @NotNull String name, @NotNull PbFile file) {
+    VirtualFile virtualFile = file.getVirtualFile();
+    if (virtualFile == null) {
+      return Collections.emptyList();
+    }
+    GlobalSearchScope scope = GlobalSearchScope.fileScope(file.getProject(), virtualFile);
+    List<PbSymbol> results = new ArrayList<>();
+    FileBasedIndex index = FileBasedIndex.getInstance();
+    for (List<String> qualifiedNames : index.getValues(indexId, name, scope)) {
+      addSymbols(file, qualifiedNames, results);
+    }
+    return results;
+  }
+
+  /** Returns the symbols in the given scope that generate the given name. */
+  @NotNull
+  public static List<PbSymbol> findSymbols(
+      @NotNull ID<String, List<String>> indexId,
+      @NotNull String name,
+      @NotNull Project project,
+      @NotNull GlobalSearchScope scope) {
+    List<PbSymbol> results = new ArrayList<>();
+    PsiManager psiManager = PsiManager.getInstance(project);
+    FileBasedIndex.getInstance()
+        .processValues(
+            indexId,
+            name,
+            null,
+            (virtualFile, qualifiedNames) -> {
+              PbFile file = ObjectUtils.tryCast(psiManager.findFile(virtualFile), PbFile.class);
+              if (file != null) {
+                addSymbols(file, qualifiedNames, results);
+              }
+              return true;
+            },
+            scope);
+    return results;
+  }
+
+  private static void addSymbols(PbFile file, List<String> qualifiedNames, List<PbSymbol> results) {
+    Map<QualifiedName, Collection<PbSymbol>> symbols = file.getLocalQualifiedSymbolMap();
+    for (String qualifiedName : qualifiedNames) {
+      Collection<PbSymbol> matches = symbols.get(QualifiedName.fromDottedString(qualifiedName));
+      if (matches != null) {
+        results.addAll(matches);
+      }
+    }
+  }
+
+  @NotNull
+  @Override
+  public InputFilter getInputFilter() {
+    return new DefaultFileTypeSpecificInputFilter(PbFileType.INSTANCE) {
+      @Override
+      public boolean acceptInput(@NotNull final VirtualFile file) {
+        return file.isInLocalFileSystem();
+      }
+    };
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  @NotNull
+  @Override
+  public DataIndexer<String, List<String>, FileContent> getIndexer() {
+    return inputData -> {
+      PbFile pbFile = ObjectUtils.tryCast(inputData.getPsiFile(), PbFile.class);
+      if (pbFile == null) {
+        return Collections.emptyMap();
+      }
+      SetMultimap<String, QualifiedName> names = LinkedHashMultimap.create();
+      computeGeneratedNames(pbFile, names);
+      Map<String, List<String>> result = new HashMap<>();
+      names
+          .asMap()
+          .forEach(
+              (name, qualifiedNames) ->
+                  result.put(name, qualifiedNames.stream().map(QualifiedName::toString).toList()));
+      return result;
+    };
+  }
+
+  @NotNull
+  @Override
+  public KeyDescriptor<String> getKeyDescriptor() {
+    return EnumeratorStringDescriptor.INSTANCE;
+  }
+
+  @NotNull
+  @Override
+  public DataExternalizer<List<String>> getValueExternalizer() {
+    return StringCollectionExternalizer.STRING_LIST_EXTERNALIZER;
+  }
+}
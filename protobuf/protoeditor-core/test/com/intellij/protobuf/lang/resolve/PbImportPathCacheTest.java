@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.lang.resolve;
+
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.protobuf.TestUtils;
+import com.intellij.protobuf.fixtures.PbCodeInsightFixtureTestCase;
+import com.intellij.protobuf.lang.psi.PbFile;
+import com.intellij.protobuf.lang.resolve.FileResolveProvider.ChildEntry;
+
+import java.util.List;
+
+/** Tests for {@link PbImportPathCache}. */
+public class PbImportPathCacheTest extends PbCodeInsightFixtureTestCase {
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    TestUtils.addTestFileResolveProvider(getProject(), getTestRootDisposable());
+  }
+
+  public void testRepeatedLookupIsCached() {
+    PbFile file = (PbFile) myFixture.addFileToProject("cache/a.proto", "");
+    PbImportPathCache.Statistics before = getCache().getStatistics();
+
+    assertEquals(List.of(file), PbFileResolver.findFilesInProject("cache/a.proto", getProject()));
+    assertEquals(List.of(file), PbFileResolver.findFilesInProject("cache/a.proto", getProject()));
+
+    PbImportPathCache.Statistics after = getCache().getStatistics();
+    assertEquals(before.getMisses() + 1, after.getMisses());
+    assertEquals(before.getHits() + 1, after.getHits());
+  }
+
+  public void testDeletedFileIsNotReturned() throws Exception {
+    PbFile file = (PbFile) myFixture.addFileToProject("cache/deleted.proto", "");
+    assertEquals(
+        List.of(file), PbFileResolver.findFilesInProject("cache/deleted.proto", getProject()));
+
+    VirtualFile virtualFile = file.getVirtualFile();
+    WriteAction.run(() -> virtualFile.delete(this));
+
+    assertEmpty(PbFileResolver.findFilesInProject("cache/deleted.proto", getProject()));
+  }
+
+  public void testCreatedFileIsFound() {
+    assertEmpty(PbFileResolver.findFilesInProject("cache/created.proto", getProject()));
+
+    PbFile file = (PbFile) myFixture.addFileToProject("cache/created.proto", "");
+
+    assertEquals(
+        List.of(file), PbFileResolver.findFilesInProject("cache/created.proto", getProject()));
+  }
+
+  public void testRenamedFileIsFoundByNewName() throws Exception {
+    PbFile file = (PbFile) myFixture.addFileToProject("cache/old.proto", "");
+    assertEquals(List.of(file), PbFileResolver.findFilesInProject("cache/old.proto", getProject()));
+    assertEmpty(PbFileResolver.findFilesInProject("cache/new.proto", getProject()));
+
+    VirtualFile virtualFile = file.getVirtualFile();
+    WriteAction.run(() -> virtualFile.rename(this, "new.proto"));
+
+    assertEmpty(PbFileResolver.findFilesInProject("cache/old.proto", getProject()));
+    assertSize(1, PbFileResolver.findFilesInProject("cache/new.proto", getProject()));
+  }
+
+  public void testUnresolvedPathIsFoundAfterDirectoryRename() throws Exception {
+    PbFile file = (PbFile) myFixture.addFileToProject("cache/olddir/moved.proto", "");
+    assertEmpty(PbFileResolver.findFilesInProject("cache/newdir/moved.proto", getProject()));
+
+    VirtualFile dir = file.getVirtualFile().getParent();
+    WriteAction.run(() -> dir.rename(this, "newdir"));
+
+    assertSize(1, PbFileResolver.findFilesInProject("cache/newdir/moved.proto", getProject()));
+    assertEmpty(PbFileResolver.findFilesInProject("cache/olddir/moved.proto", getProject()));
+  }
+
+  public void testChildEntriesUpdatedOnCreate() {
+    myFixture.addFileToProject("listing/a.proto", "");
+    assertSameElements(
+        PbFileResolver.getChildNamesInProject("listing", getProject()), ChildEntry.file("a.proto"));
+
+    myFixture.addFileToProject("listing/b.proto", "");
+
+    assertSameElements(
+        PbFileResolver.getChildNamesInProject("listing", getProject()),
+        ChildEntry.file("a.proto"),
+        ChildEntry.file("b.proto"));
+  }
+
+  private PbImportPathCache getCache() {
+    return PbImportPathCache.getInstance(getProject());
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.lang.resolve;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.protobuf.TestUtils;
+import com.intellij.protobuf.fixtures.PbCodeInsightFixtureTestCase;
+import com.intellij.protobuf.lang.PbFileType;
+import com.intellij.protobuf.lang.psi.*;
+import com.intellij.protobuf.lang.util.BuiltInType;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiReference;
+import com.intellij.psi.impl.PsiManagerEx;
+import com.intellij.psi.util.QualifiedName;
+
+import java.util.List;
+
+/** Tests for {@link PbStubSymbolTable}. */
+public class PbStubSymbolTableTest extends PbCodeInsightFixtureTestCase {
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    TestUtils.addTestFileResolveProvider(getProject(), getTestRootDisposable());
+  }
+
+  public void testImportedTypesResolveWithoutLoadingAst() {
+    VirtualFile common =
+        myFixture.addFileToProject(
+                "stubs/common.proto",
+                String.join(
+                    "\n",
+                    "syntax = \"proto2\";",
+                    "package foo.bar;",
+                    "message Outer {",
+                    "  optional int32 value = 1;",
+                    "  message Inner {}",
+                    "}"))
+            .getVirtualFile();
+    VirtualFile exported =
+        myFixture.addFileToProject(
+                "stubs/exported.proto",
+                String.join(
+                    "\n",
+                    "syntax = \"proto2\";",
+                    "package foo.bar;",
+                    "import public \"stubs/common.proto\";",
+                    "enum Kind { KIND_UNKNOWN = 0; }"))
+            .getVirtualFile();
+    PbFile file =
+        (PbFile)
+            myFixture.configureByText(
+                PbFileType.INSTANCE,
+                String.join(
+                    "\n",
+                    "syntax = \"proto2\";",
+                    "package foo.bar;",
+                    "import \"stubs/exported.proto\";",
+                    "message Main {}"));
+    PsiManagerEx.getInstanceEx(getProject())
+        .setAssertOnFileLoadingFilter(
+            f -> f.equals(common) || f.equals(exported), getTestRootDisposable());
+
+    PbSymbolResolver resolver = PbSymbolResolver.forFile(file);
+    List<PbResolveResult> results =
+        resolver.resolveRelativeName(
+            QualifiedName.fromDottedString("Outer.Inner"),
+            QualifiedName.fromDottedString("foo.bar.Main"),
+            ResolveFilters.anySymbol());
+    assertSize(1, results);
+    assertInstanceOf(results.get(0).getElement(), PbMessageDefinition.class);
+    assertEquals(
+        QualifiedName.fromDottedString("foo.bar.Outer.Inner"),
+        results.get(0).getElement().getQualifiedName());
+
+    assertSize(
+        1,
+        resolver.resolveName(
+            QualifiedName.fromDottedString("foo.bar.Kind"), ResolveFilters.anySymbol()));
+    assertEmpty(
+        resolver.resolveName(
+            QualifiedName.fromDottedString("foo.bar.Missing"), ResolveFilters.anySymbol()));
+    // Fields and enum values have stubs too.
+    assertSize(
+        1,
+        resolver.resolveName(
+            QualifiedName.fromDottedString("foo.bar.Outer.value"), ResolveFilters.anySymbol()));
+    assertSize(
+        1,
+        resolver.resolveName(
+            QualifiedName.fromDottedString("foo.bar.KIND_UNKNOWN"), ResolveFilters.anySymbol()));
+  }
+
+  public void testOptionsResolveWithoutLoadingAst() throws Exception {
+    VirtualFile descriptor =
+        myFixture
+            .addFileToProject(
+                TestUtils.OPENSOURCE_DESCRIPTOR_PATH, TestUtils.getOpensourceDescriptorText())
+            .getVirtualFile();
+    TestUtils.addTestFileResolveProvider(
+        getProject(), TestUtils.OPENSOURCE_DESCRIPTOR_PATH, getTestRootDisposable());
+    VirtualFile options =
+        myFixture
+            .addFileToProject(
+                "stubs/options.proto",
+                String.join(
+                    "\n",
+                    "syntax = \"proto2\";",
+                    "package foo;",
+                    "import \"google/protobuf/descriptor.proto\";",
+                    "enum Level {",
+                    "  LOW = 0;",
+                    "  HIGH = 1;",
+                    "}",
+                    "extend google.protobuf.FieldOptions {",
+                    "  optional Level level = 50000;",
+                    "}"))
+            .getVirtualFile();
+    PbFile file =
+        (PbFile)
+            myFixture.configureByText(
+                PbFileType.INSTANCE,
+                String.join(
+                    "\n",
+                    "syntax = \"proto2\";",
+                    "package foo;",
+                    "import \"stubs/options.proto\";",
+                    "message M {",
+                    "  optional int32 x = 1 [(level) = HIGH, deprecated = true];",
+                    "}"));
+    PsiManagerEx.getInstanceEx(getProject())
+        .setAssertOnFileLoadingFilter(
+            f -> f.equals(descriptor) || f.equals(options), getTestRootDisposable());
+
+    PbField level = assertInstanceOf(resolveAt(file, "level)"), PbField.class);
+    assertEquals(QualifiedName.fromDottedString("foo.level"), level.getQualifiedName());
+    assertEquals(Long.valueOf(50000), level.getNumber());
+    assertFalse(level.isRepeated());
+    assertTrue(level.isExtension());
+    PbTypeName levelType = level.getTypeName();
+    assertNotNull(levelType);
+    PbEnumDefinition levelEnum =
+        assertInstanceOf(levelType.getEffectiveReference().resolve(), PbEnumDefinition.class);
+    PbEnumValue high = assertInstanceOf(resolveAt(file, "HIGH"), PbEnumValue.class);
+    assertSame(high, levelEnum.getEnumValueMap().get("HIGH").iterator().next());
+    assertEquals(QualifiedName.fromDottedString("foo.HIGH"), high.getQualifiedName());
+    assertEquals(Long.valueOf(1), high.getNumber());
+
+    PbField deprecated = assertInstanceOf(resolveAt(file, "deprecated"), PbField.class);
+    assertEquals(
+        QualifiedName.fromDottedString("google.protobuf.FieldOptions.deprecated"),
+        deprecated.getQualifiedName());
+    PbTypeName deprecatedType = deprecated.getTypeName();
+    assertNotNull(deprecatedType);
+    assertEquals(BuiltInType.BOOL, deprecatedType.getBuiltInType());
+  }
+
+  public void testMapEntriesFallBackToPsi() {
+    myFixture.addFileToProject(
+        "stubs/fields.proto",
+        String.join(
+            "\n",
+            "syntax = \"proto2\";",
+            "package foo;",
+            "message Outer {",
+            "  map<string, int32> counts = 1;",
+            "}"));
+    PbFile file =
+        (PbFile)
+            myFixture.configureByText(
+                PbFileType.INSTANCE,
+                String.join(
+                    "\n",
+                    "syntax = \"proto2\";",
+                    "import \"stubs/fields.proto\";",
+                    "message M {}"));
+
+    PbSymbolResolver resolver = PbSymbolResolver.forFile(file);
+    assertSize(
+        1,
+        resolver.resolveName(
+            QualifiedName.fromDottedString("foo.Outer.counts"), ResolveFilters.anySymbol()));
+    assertSize(
+        1,
+        resolver.resolveName(
+            QualifiedName.fromDottedString("foo.Outer.CountsEntry"), ResolveFilters.anySymbol()));
+  }
+
+  private static PsiElement resolveAt(PbFile file, String text) {
+    PsiReference reference = file.findReferenceAt(file.getText().indexOf(text));
+    assertNotNull(reference);
+    return reference.resolve();
+  }
+}
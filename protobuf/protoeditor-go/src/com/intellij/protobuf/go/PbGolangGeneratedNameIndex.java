@@ -0,0 +1,187 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.go;
+
+import com.google.common.collect.SetMultimap;
+import com.intellij.protobuf.lang.psi.*;
+import com.intellij.protobuf.lang.psi.util.PbPsiUtil;
+import com.intellij.protobuf.shared.gencode.PbGeneratedNameIndex;
+import com.intellij.psi.util.QualifiedName;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.indexing.ID;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Index to map from generated Go names -> proto elements.
+ *
+ * <p>Keys are the package-level names generated for a .proto file (types, enum constants and
+ * functions), and <code>TypeName.Member</code> for struct fields and methods.
+ *
+ * <p>Reference: https://developers.google.com/protocol-buffers/docs/reference/go-generated
+ */
+public class PbGolangGeneratedNameIndex extends PbGeneratedNameIndex {
+
+  public static final ID<String, List<String>> INDEX_ID =
+      ID.create("protoeditor.go.generated.name.index");
+
+  @Override
+  protected void computeGeneratedNames(
+      @NotNull PbFile file, @NotNull SetMultimap<String, QualifiedName> sink) {
+    int packageComponents = file.getPackageQualifiedName().getComponentCount();
+    for (PbSymbol symbol : ContainerUtil.flatten(file.getLocalQualifiedSymbolMap().values())) {
+      QualifiedName qualifiedName = symbol.getQualifiedName();
+      if (qualifiedName == null || qualifiedName.getComponentCount() <= packageComponents) {
+        continue;
+      }
+      QualifiedName localName = qualifiedName.removeHead(packageComponents);
+      String typeName = goCamelCase(localName.toString());
+      if (PbPsiUtil.isMessageElement(symbol)) {
+        sink.put(typeName, qualifiedName);
+        addMessageMemberNames((PbMessageType) symbol, typeName, sink);
+      } else if (PbPsiUtil.isEnumElement(symbol)) {
+        sink.put(typeName, qualifiedName);
+        addEnumValueNames((PbEnumDefinition) symbol, localName, sink);
+      } else if (symbol instanceof PbServiceDefinition service) {
+        addServiceNames(service, typeName, qualifiedName, sink);
+      }
+    }
+  }
+
+  private static void addMessageMemberNames(
+      PbMessageType message, String typeName, SetMultimap<String, QualifiedName> sink) {
+    for (PbField field : message.getSymbols(PbField.class)) {
+      QualifiedName fieldName = field.getQualifiedName();
+      String name = field.getName();
+      if (fieldName == null || name == null) {
+        continue;
+      }
+      String goName = goCamelCase(name);
+      sink.put(typeName + "." + goName, fieldName);
+      sink.put(typeName + ".Get" + goName, fieldName);
+      if (field.getParent() instanceof PbOneofBody) {
+        // Each oneof field gets a wrapper type implementing the oneof's interface.
+        sink.put(typeName + "_" + goName, fieldName);
+      }
+    }
+    for (PbOneofDefinition oneof : message.getSymbols(PbOneofDefinition.class)) {
+      QualifiedName oneofName = oneof.getQualifiedName();
+      String name = oneof.getName();
+      if (oneofName == null || name == null) {
+        continue;
+      }
+      String goName = goCamelCase(name);
+      sink.put(typeName + "." + goName, oneofName);
+      sink.put(typeName + ".Get" + goName, oneofName);
+      sink.put("is" + typeName + "_" + goName, oneofName);
+    }
+  }
+
+  private static void addEnumValueNames(
+      PbEnumDefinition enumDefinition,
+      QualifiedName localEnumName,
+      SetMultimap<String, QualifiedName> sink) {
+    // Values of a top-level enum are prefixed with the enum name. Values of a nested enum are
+    // prefixed with the name of the enclosing message, like the proto scope of the values.
+    QualifiedName prefixName =
+        localEnumName.getComponentCount() > 1
+            ? localEnumName.removeLastComponent()
+            : localEnumName;
+    String prefix = goCamelCase(prefixName.toString()) + "_";
+    for (PbEnumValue value : enumDefinition.getEnumValues()) {
+      QualifiedName valueName = value.getQualifiedName();
+      String name = value.getName();
+      if (valueName != null && name != null) {
+        sink.put(prefix + name, valueName);
+      }
+    }
+  }
+
+  private static void addServiceNames(
+      PbServiceDefinition service,
+      String typeName,
+      QualifiedName serviceName,
+      SetMultimap<String, QualifiedName> sink) {
+    String clientType = typeName + "Client";
+    String serverType = typeName + "Server";
+    String clientImplType = Character.toLowerCase(typeName.charAt(0)) + clientType.substring(1);
+    String unimplementedServerType = "Unimplemented" + serverType;
+    sink.put(clientType, serviceName);
+    sink.put(serverType, serviceName);
+    sink.put(clientType + "Interface", serviceName);
+    sink.put(unimplementedServerType, serviceName);
+    sink.put("New" + clientType, serviceName);
+    for (PbServiceMethod method : service.getSymbols(PbServiceMethod.class)) {
+      QualifiedName methodName = method.getQualifiedName();
+      String name = method.getName();
+      if (methodName == null || name == null) {
+        continue;
+      }
+      String goName = goCamelCase(name);
+      for (String type : List.of(clientType, serverType, clientImplType, unimplementedServerType)) {
+        sink.put(type + "." + goName, methodName);
+      }
+    }
+  }
+
+  /**
+   * Converts a proto name to the Go identifier protoc-gen-go generates for it. Dots separating
+   * nested names become underscores.
+   *
+   * <p>Ported from <code>GoCamelCase</code> in google.golang.org/protobuf/internal/strs.
+   */
+  static String goCamelCase(String name) {
+    StringBuilder result = new StringBuilder(name.length());
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c == '.' && i + 1 < name.length() && isAsciiLower(name.charAt(i + 1))) {
+        // Skip over '.' in ".{{lowercase}}".
+      } else if (c == '.') {
+        result.append('_');
+      } else if (c == '_' && (i == 0 || name.charAt(i - 1) == '.')) {
+        // Convert an initial '_' to ensure the identifier starts with a capital letter.
+        result.append('X');
+      } else if (c == '_' && i + 1 < name.length() && isAsciiLower(name.charAt(i + 1))) {
+        // Skip over '_' in "_{{lowercase}}".
+      } else if ('0' <= c && c <= '9') {
+        result.append(c);
+      } else {
+        result.append(isAsciiLower(c) ? (char) (c - ('a' - 'A')) : c);
+        // Accept the lowercase sequence that follows.
+        while (i + 1 < name.length() && isAsciiLower(name.charAt(i + 1))) {
+          result.append(name.charAt(++i));
+        }
+      }
+    }
+    return result.toString();
+  }
+
+  private static boolean isAsciiLower(char c) {
+    return 'a' <= c && c <= 'z';
+  }
+
+  @NotNull
+  @Override
+  public ID<String, List<String>> getName() {
+    return INDEX_ID;
+  }
+
+  @Override
+  public int getVersion() {
+    return 0;
+  }
+}
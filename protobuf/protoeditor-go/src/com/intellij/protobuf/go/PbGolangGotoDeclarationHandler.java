@@ -25,6 +25,7 @@ import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.protobuf.lang.psi.PbFile;
 import com.intellij.protobuf.lang.psi.PbSymbol;
+import com.intellij.protobuf.shared.gencode.PbGeneratedNameIndex;
 import com.intellij.protobuf.shared.gencode.ProtoFromSourceComments;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
@@ -32,6 +33,7 @@ import com.intellij.psi.PsiReference;
 import com.intellij.psi.impl.source.tree.LeafPsiElement;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.util.QualifiedName;
+import com.intellij.util.ObjectUtils;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
@@ -64,6 +66,17 @@ public class PbGolangGotoDeclarationHandler implements GotoDeclarationHandler {
     if (pbFile == null) {
       return ImmutableList.of();
     }
+    String generatedName = getGeneratedName(element);
+    if (generatedName != null) {
+      List<PbSymbol> symbols =
+          PbGeneratedNameIndex.findSymbols(
+              PbGolangGeneratedNameIndex.INDEX_ID, generatedName, pbFile);
+      if (!symbols.isEmpty()) {
+        return symbols;
+      }
+    }
+    // Not indexed: the .proto file may have changed since the code was generated, or may not be in
+    // the local file system. Convert the Go name back to a proto name instead.
     QualifiedName convertedName = null;
     if (element instanceof GoTypeSpec) {
       convertedName = convertTypeSpec((GoTypeSpec) element);
@@ -85,6 +98,42 @@ public class PbGolangGotoDeclarationHandler implements GotoDeclarationHandler {
     return pbFile.getLocalQualifiedSymbolMap().get(protoPackage.append(convertedName));
   }
 
+  /**
+   * Returns the name of the element as keyed by {@link PbGolangGeneratedNameIndex}: package-level
+   * names as they are, and members qualified by the name of their type.
+   */
+  @Nullable
+  private static String getGeneratedName(PsiElement element) {
+    if (!(element instanceof GoNamedElement namedElement)) {
+      return null;
+    }
+    String name = namedElement.getName();
+    if (name == null) {
+      return null;
+    }
+    GoTypeSpec owner;
+    if (element instanceof GoMethodDeclaration method) {
+      GoType receiverType = method.getReceiverType();
+      if (receiverType instanceof GoPointerType) {
+        receiverType = ((GoPointerType) receiverType).getType();
+      }
+      owner =
+          receiverType != null
+              ? ObjectUtils.tryCast(receiverType.contextlessResolve(), GoTypeSpec.class)
+              : null;
+    } else if (element instanceof GoMethodSpec || element instanceof GoFieldDefinition) {
+      owner = PsiTreeUtil.getParentOfType(element, GoTypeSpec.class);
+    } else if (element instanceof GoTypeSpec
+        || element instanceof GoConstDefinition
+        || element instanceof GoFunctionDeclaration) {
+      return name;
+    } else {
+      return null;
+    }
+    String ownerName = owner != null ? owner.getName() : null;
+    return ownerName != null ? ownerName + "." + name : null;
+  }
+
   /**
    * Converts to oneof field, message or service name.
    *
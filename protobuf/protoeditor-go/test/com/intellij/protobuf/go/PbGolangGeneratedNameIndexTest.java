@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.go;
+
+import com.intellij.protobuf.TestUtils;
+import com.intellij.protobuf.fixtures.PbCodeInsightFixtureTestCase;
+import com.intellij.protobuf.lang.psi.PbFile;
+import com.intellij.protobuf.lang.psi.PbSymbol;
+import com.intellij.protobuf.shared.gencode.PbGeneratedNameIndex;
+import com.intellij.util.containers.ContainerUtil;
+
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/** Tests for {@link PbGolangGeneratedNameIndex}. */
+public class PbGolangGeneratedNameIndexTest extends PbCodeInsightFixtureTestCase {
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    TestUtils.addTestFileResolveProvider(getProject(), getTestRootDisposable());
+  }
+
+  public void testGeneratedNames() {
+    PbFile file =
+        (PbFile)
+            myFixture.addFileToProject(
+                "foo/names.proto",
+                String.join(
+                    "\n",
+                    "syntax = \"proto2\";",
+                    "package foo;",
+                    "message Outer {",
+                    "  optional string some_field = 1;",
+                    "  oneof choice {",
+                    "    int32 num = 2;",
+                    "  }",
+                    "  enum Kind { KIND_UNKNOWN = 0; }",
+                    "}",
+                    "enum Top { TOP_A = 0; }",
+                    "service Search {",
+                    "  rpc Find(Outer) returns (Outer);",
+                    "}"));
+
+    assertSymbols(file, "Outer", "foo.Outer");
+    assertSymbols(file, "Outer.SomeField", "foo.Outer.some_field");
+    assertSymbols(file, "Outer.GetSomeField", "foo.Outer.some_field");
+    assertSymbols(file, "Outer.GetNum", "foo.Outer.num");
+    assertSymbols(file, "Outer_Num", "foo.Outer.num");
+    assertSymbols(file, "Outer.Choice", "foo.Outer.choice");
+    assertSymbols(file, "isOuter_Choice", "foo.Outer.choice");
+    assertSymbols(file, "Outer_Kind", "foo.Outer.Kind");
+    assertSymbols(file, "Outer_KIND_UNKNOWN", "foo.Outer.KIND_UNKNOWN");
+    assertSymbols(file, "Top", "foo.Top");
+    assertSymbols(file, "Top_TOP_A", "foo.TOP_A");
+    assertSymbols(file, "SearchClient", "foo.Search");
+    assertSymbols(file, "NewSearchClient", "foo.Search");
+    assertSymbols(file, "SearchClient.Find", "foo.Search.Find");
+    assertSymbols(file, "UnimplementedSearchServer.Find", "foo.Search.Find");
+    assertSymbols(file, "Outer.Missing");
+  }
+
+  public void testGoCamelCase() {
+    assertThat(PbGolangGeneratedNameIndex.goCamelCase("foo_bar")).isEqualTo("FooBar");
+    assertThat(PbGolangGeneratedNameIndex.goCamelCase("Outer.Inner")).isEqualTo("Outer_Inner");
+    assertThat(PbGolangGeneratedNameIndex.goCamelCase("_foo")).isEqualTo("XFoo");
+    assertThat(PbGolangGeneratedNameIndex.goCamelCase("foo_1bar")).isEqualTo("Foo_1Bar");
+  }
+
+  private static void assertSymbols(PbFile file, String generatedName, String... qualifiedNames) {
+    List<PbSymbol> symbols =
+        PbGeneratedNameIndex.findSymbols(
+            PbGolangGeneratedNameIndex.INDEX_ID, generatedName, file);
+    assertSameElements(
+        ContainerUtil.map(symbols, symbol -> symbol.getQualifiedName().toString()), qualifiedNames);
+  }
+}
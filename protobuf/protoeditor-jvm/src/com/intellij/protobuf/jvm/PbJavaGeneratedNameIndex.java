@@ -0,0 +1,199 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.jvm;
+
+import com.google.common.collect.SetMultimap;
+import com.intellij.openapi.project.Project;
+import com.intellij.protobuf.jvm.names.JavaNameGenerator;
+import com.intellij.protobuf.jvm.names.NameGeneratorSelector;
+import com.intellij.protobuf.jvm.names.NameMatcher;
+import com.intellij.protobuf.jvm.names.NameUtils;
+import com.intellij.protobuf.lang.psi.*;
+import com.intellij.protobuf.lang.psi.util.PbPsiUtil;
+import com.intellij.protobuf.shared.gencode.PbGeneratedNameIndex;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.QualifiedName;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.indexing.ID;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Index to map from generated Java names -> proto elements.
+ *
+ * <p>Keys are fully-qualified class names for messages, enums and oneof enums, and
+ * <code>ClassName#member</code> for the members generated from oneofs and enum values. Builder
+ * members are keyed by the message class, as <code>ClassName#Builder.member</code>.
+ *
+ * <p>Keys only depend on the content of the indexed file: names come from the generators for the
+ * file's own options (see {@link NameGeneratorSelector#selectDefaultForFile}). The members
+ * generated for a field depend on the field's type, which may be defined in another file, so
+ * fields are matched when looked up instead.
+ */
+public class PbJavaGeneratedNameIndex extends PbGeneratedNameIndex {
+
+  public static final ID<String, List<String>> INDEX_ID =
+      ID.create("protoeditor.java.generated.name.index");
+
+  /**
+   * Returns the proto elements that generate the given context's element. Members are preferred;
+   * if none match, the elements generating the context class are returned.
+   */
+  @NotNull
+  static List<PbSymbol> findElements(
+      @NotNull Project project,
+      @NotNull PbJavaGotoDeclarationContext context,
+      @NotNull GlobalSearchScope scope) {
+    PsiClass contextClass = NameUtils.normalizeBuilderClass(context.javaClass);
+    String className = contextClass.getQualifiedName();
+    String elementName = context.resolvedElement.getName();
+    if (className == null || elementName == null) {
+      return List.of();
+    }
+    if (contextClass != context.javaClass) {
+      elementName = "Builder." + elementName;
+    }
+    List<PbSymbol> members =
+        findSymbols(INDEX_ID, memberKey(className, elementName), project, scope);
+    if (!members.isEmpty()) {
+      return members;
+    }
+    List<PbSymbol> types = findSymbols(INDEX_ID, className, project, scope);
+    List<PbSymbol> fields = findMatchingFields(types, context);
+    return fields.isEmpty() ? types : fields;
+  }
+
+  private static List<PbSymbol> findMatchingFields(
+      List<PbSymbol> types, PbJavaGotoDeclarationContext context) {
+    List<PbSymbol> results = new ArrayList<>();
+    for (PbSymbol type : types) {
+      if (!PbPsiUtil.isMessageElement(type)) {
+        continue;
+      }
+      PbMessageType message = (PbMessageType) type;
+      for (JavaNameGenerator generator : NameGeneratorSelector.selectForFile(type.getPbFile())) {
+        NameMatcher matcher = generator.toNameMatcher(context);
+        if (!matcher.matchesMessage(message)) {
+          continue;
+        }
+        for (PbField field : message.getSymbols(PbField.class)) {
+          if (matcher.matchesField(field)) {
+            results.add(field);
+          }
+        }
+      }
+    }
+    return results;
+  }
+
+  @Override
+  protected void computeGeneratedNames(
+      @NotNull PbFile file, @NotNull SetMultimap<String, QualifiedName> sink) {
+    List<JavaNameGenerator> generators = NameGeneratorSelector.selectDefaultForFile(file);
+    for (PbSymbol symbol : ContainerUtil.flatten(file.getLocalQualifiedSymbolMap().values())) {
+      for (JavaNameGenerator generator : generators) {
+        if (PbPsiUtil.isMessageElement(symbol)) {
+          addMessageNames((PbMessageType) symbol, generator, sink);
+        } else if (PbPsiUtil.isEnumElement(symbol)) {
+          addEnumNames((PbEnumDefinition) symbol, generator, sink);
+        } else if (PbPsiUtil.isOneofElement(symbol)) {
+          addOneofEnumNames((PbOneofDefinition) symbol, generator, sink);
+        }
+      }
+    }
+  }
+
+  private static void addMessageNames(
+      PbMessageType message,
+      JavaNameGenerator generator,
+      SetMultimap<String, QualifiedName> sink) {
+    for (String className : generator.messageClassNames(message)) {
+      put(sink, className, message);
+      for (PbOneofDefinition oneof : message.getSymbols(PbOneofDefinition.class)) {
+        for (String member : generator.oneofMemberNames(oneof)) {
+          put(sink, memberKey(className, member), oneof);
+        }
+      }
+    }
+  }
+
+  private static void addEnumNames(
+      PbEnumDefinition enumDefinition,
+      JavaNameGenerator generator,
+      SetMultimap<String, QualifiedName> sink) {
+    String className = generator.enumClassName(enumDefinition);
+    if (className == null) {
+      return;
+    }
+    put(sink, className, enumDefinition);
+    for (PbEnumValue enumValue : enumDefinition.getEnumValues()) {
+      String valueName = generator.enumValueName(enumValue);
+      if (valueName != null) {
+        put(sink, memberKey(className, valueName), enumValue);
+      }
+    }
+  }
+
+  private static void addOneofEnumNames(
+      PbOneofDefinition oneof,
+      JavaNameGenerator generator,
+      SetMultimap<String, QualifiedName> sink) {
+    String className = generator.oneofEnumClassName(oneof);
+    if (className == null) {
+      return;
+    }
+    put(sink, className, oneof);
+    String notSetName = generator.oneofNotSetEnumValueName(oneof);
+    if (notSetName != null) {
+      put(sink, memberKey(className, notSetName), oneof);
+    }
+    for (PbStatement statement : oneof.getStatements()) {
+      if (statement instanceof PbField oneofField) {
+        String valueName = generator.oneofEnumValueName(oneofField);
+        if (valueName != null) {
+          put(sink, memberKey(className, valueName), oneofField);
+        }
+      }
+    }
+  }
+
+  private static void put(
+      SetMultimap<String, QualifiedName> sink, String name, @Nullable PbSymbol symbol) {
+    QualifiedName qualifiedName = symbol != null ? symbol.getQualifiedName() : null;
+    if (qualifiedName != null) {
+      sink.put(name, qualifiedName);
+    }
+  }
+
+  private static String memberKey(String className, String member) {
+    return className + "#" + member;
+  }
+
+  @NotNull
+  @Override
+  public ID<String, List<String>> getName() {
+    return INDEX_ID;
+  }
+
+  @Override
+  public int getVersion() {
+    return 1;
+  }
+}
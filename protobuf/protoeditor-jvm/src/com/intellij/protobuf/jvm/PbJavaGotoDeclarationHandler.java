@@ -69,6 +69,13 @@ public class PbJavaGotoDeclarationHandler implements GotoDeclarationHandler {
       return null;
     }
     Project project = resolved.getProject();
+    List<PbSymbol> indexedElements =
+      PbJavaGeneratedNameIndex.findElements(project, context, GlobalSearchScope.allScope(project));
+    if (!indexedElements.isEmpty()) {
+      return indexedElements.toArray(PsiElement.EMPTY_ARRAY);
+    }
+    // Nothing indexed for this name: the .proto file may not be indexed, or its name generators
+    // may not cover the element. Match names against the candidate files instead.
     Collection<PbFile> matchedFiles =
       PbJavaOuterClassIndex.getFilesWithOuterClass(
         project, context.outerClass.getQualifiedName(), GlobalSearchScope.allScope(project));
@@ -70,6 +70,14 @@ public final class NameGeneratorSelector {
         file, options.javaPackage, options.javaOuterClassname, options.javaMultipleFiles));
   }
 
+  /**
+   * Return the generators for the file's own options, not asking {@link NameGeneratorContributor}s.
+   * These only depend on the file's content, so they can be used while indexing.
+   */
+  public static ImmutableList<JavaNameGenerator> selectDefaultForFile(PbFile file) {
+    return contributeDefaultGenerators(file);
+  }
+
   /** Return the list of generators that are most appropriate to the given file. */
   public static ImmutableList<JavaNameGenerator> selectForFile(PbFile file) {
     for (NameGeneratorContributor contributor : NameGeneratorContributor.EP_NAME.getExtensionList()) {
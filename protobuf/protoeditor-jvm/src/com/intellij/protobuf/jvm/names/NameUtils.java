@@ -15,9 +15,30 @@
  */
 package com.intellij.protobuf.jvm.names;
 
+import com.intellij.psi.PsiClass;
+
 /** Utilities for mapping from proto names to various other forms of names useful for Java. */
 public final class NameUtils {
 
+  /** If classContext is a Builder, convert from Builder to the actual class. */
+  public static PsiClass normalizeBuilderClass(PsiClass classContext) {
+    if (classContext.isEnum()) {
+      return classContext;
+    }
+    String name = classContext.getName();
+    if (name == null) {
+      return classContext;
+    }
+    // It would be bad if a message was simply named "Builder".
+    // We could refine the heuristic by checking that the class extends
+    // from GeneratedMessageVN.Builder.
+    if (name.equals("Builder")) {
+      PsiClass containingClass = classContext.getContainingClass();
+      return containingClass != null ? containingClass : classContext;
+    }
+    return classContext;
+  }
+
   public static String underscoreToCamelCase(String input) {
     return underscoresToCamelCase(input, false);
   }
@@ -31,7 +31,7 @@ class Proto2NameMatcher implements NameMatcher {
   private final JavaNameGenerator generator;
 
   Proto2NameMatcher(PbJavaGotoDeclarationContext context, JavaNameGenerator generator) {
-    PsiClass normalizedContextClass = normalizeClassContext(context.javaClass);
+    PsiClass normalizedContextClass = NameUtils.normalizeBuilderClass(context.javaClass);
     String elementName = context.resolvedElement.getName();
     if (normalizedContextClass != context.javaClass) {
       elementName = "Builder." + elementName;
@@ -80,23 +80,4 @@ class Proto2NameMatcher implements NameMatcher {
   public boolean matchesOneofEnumValue(PbField oneofField) {
     return Objects.equals(elementName, generator.oneofEnumValueName(oneofField));
   }
-
-  /** If classContext is a Builder, convert from Builder to the actual class. */
-  private static PsiClass normalizeClassContext(PsiClass classContext) {
-    if (classContext.isEnum()) {
-      return classContext;
-    }
-    String name = classContext.getName();
-    if (name == null) {
-      return classContext;
-    }
-    // It would be bad if a message was simply named "Builder".
-    // We could refine the heuristic by checking that the class extends
-    // from GeneratedMessageVN.Builder.
-    if (name.equals("Builder")) {
-      PsiClass containingClass = classContext.getContainingClass();
-      return containingClass != null ? containingClass : classContext;
-    }
-    return classContext;
-  }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf;
+
+import com.intellij.protobuf.fixtures.PbCodeInsightFixtureTestCase;
+import com.intellij.protobuf.jvm.PbJavaGeneratedNameIndex;
+import com.intellij.protobuf.lang.psi.PbFile;
+import com.intellij.protobuf.lang.psi.PbSymbol;
+import com.intellij.protobuf.shared.gencode.PbGeneratedNameIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.indexing.FileBasedIndex;
+
+import java.util.List;
+
+/** Tests for {@link PbJavaGeneratedNameIndex}. */
+public class PbJavaGeneratedNameIndexTest extends PbCodeInsightFixtureTestCase {
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    TestUtils.addTestFileResolveProvider(getProject(), getTestRootDisposable());
+  }
+
+  public void testClassAndMemberNames() {
+    PbFile file =
+        addProto(
+            "foo/bar/names.proto",
+            "syntax = \"proto2\";",
+            "package foo.bar;",
+            "option java_package = \"com.foo\";",
+            "option java_outer_classname = \"Names\";",
+            "message Outer {",
+            "  optional Kind kind = 1;",
+            "  oneof choice {",
+            "    string text = 2;",
+            "  }",
+            "  enum Kind { KIND_UNKNOWN = 0; }",
+            "}");
+
+    assertSymbols(file, "com.foo.Names.Outer", "foo.bar.Outer");
+    assertSymbols(file, "com.foo.Names.OuterOrBuilder", "foo.bar.Outer");
+    assertSymbols(file, "com.foo.Names.Outer.Kind", "foo.bar.Outer.Kind");
+    assertSymbols(file, "com.foo.Names.Outer.Kind#KIND_UNKNOWN", "foo.bar.Outer.KIND_UNKNOWN");
+    assertSymbols(file, "com.foo.Names.Outer.ChoiceCase", "foo.bar.Outer.choice");
+    assertSymbols(file, "com.foo.Names.Outer.ChoiceCase#CHOICE_NOT_SET", "foo.bar.Outer.choice");
+    assertSymbols(file, "com.foo.Names.Outer.ChoiceCase#TEXT", "foo.bar.Outer.text");
+    assertSymbols(file, "com.foo.Names.Outer#getChoiceCase", "foo.bar.Outer.choice");
+    assertSymbols(file, "com.foo.Names.Outer#Builder.clearChoice", "foo.bar.Outer.choice");
+    assertSymbols(file, "com.foo.Names.Missing");
+  }
+
+  public void testProjectWideLookup() {
+    addProto("foo/a.proto", "syntax = \"proto2\";", "package foo;", "message A {}");
+    PbFile b =
+        addProto(
+            "foo/b.proto",
+            "syntax = \"proto2\";",
+            "package foo;",
+            "option java_multiple_files = true;",
+            "message B {}");
+
+    GlobalSearchScope scope = GlobalSearchScope.allScope(getProject());
+    assertSameElements(
+        qualifiedNames(
+            PbGeneratedNameIndex.findSymbols(
+                PbJavaGeneratedNameIndex.INDEX_ID, "foo.AOuterClass.A", getProject(), scope)),
+        "foo.A");
+    assertSameElements(
+        qualifiedNames(
+            PbGeneratedNameIndex.findSymbols(
+                PbJavaGeneratedNameIndex.INDEX_ID, "foo.B", getProject(), scope)),
+        "foo.B");
+    // Lookups in a file only return the file's own symbols.
+    assertSymbols(b, "foo.AOuterClass.A");
+  }
+
+  public void testKeysDependOnlyOnFileContent() {
+    // The accessors generated for a field depend on whether its type is a message, and the type
+    // may be defined in another file. Those are matched at lookup time instead of being indexed.
+    addProto("foo/dep.proto", "syntax = \"proto2\";", "package foo;", "message Dep {}");
+    PbFile file =
+        addProto(
+            "foo/holder.proto",
+            "syntax = \"proto2\";",
+            "package foo;",
+            "import \"foo/dep.proto\";",
+            "message Holder {",
+            "  optional Dep dep = 1;",
+            "}");
+
+    assertSameElements(
+        FileBasedIndex.getInstance()
+            .getFileData(PbJavaGeneratedNameIndex.INDEX_ID, file.getVirtualFile(), getProject())
+            .keySet(),
+        "foo.HolderOuterClass.Holder",
+        "foo.HolderOuterClass.HolderOrBuilder");
+  }
+
+  private PbFile addProto(String path, String... lines) {
+    return (PbFile) myFixture.addFileToProject(path, String.join("\n", lines));
+  }
+
+  private static List<String> qualifiedNames(List<PbSymbol> symbols) {
+    return ContainerUtil.map(symbols, symbol -> symbol.getQualifiedName().toString());
+  }
+
+  private static void assertSymbols(PbFile file, String generatedName, String... qualifiedNames) {
+    List<PbSymbol> symbols =
+        PbGeneratedNameIndex.findSymbols(PbJavaGeneratedNameIndex.INDEX_ID, generatedName, file);
+    assertSameElements(qualifiedNames(symbols), qualifiedNames);
+  }
+}
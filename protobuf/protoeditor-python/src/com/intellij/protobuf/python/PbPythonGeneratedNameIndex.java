@@ -0,0 +1,60 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.python;
+
+import com.google.common.collect.SetMultimap;
+import com.intellij.protobuf.lang.psi.PbFile;
+import com.intellij.protobuf.shared.gencode.PbGeneratedNameIndex;
+import com.intellij.psi.util.QualifiedName;
+import com.intellij.util.indexing.ID;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Index to map from names generated by the Python API v1 code generator -> proto elements.
+ *
+ * <p>API v1 flattens nested names like <code>Foo.Bar.Baz</code> to <code>Foo_Bar_Baz</code>, so
+ * keys are the file-local names of symbols joined with '_'. API v2 names are the file-local names
+ * themselves and are looked up in the file's symbol table directly.
+ */
+public class PbPythonGeneratedNameIndex extends PbGeneratedNameIndex {
+
+  public static final ID<String, List<String>> INDEX_ID =
+      ID.create("protoeditor.python.generated.name.index");
+
+  @Override
+  protected void computeGeneratedNames(
+      @NotNull PbFile file, @NotNull SetMultimap<String, QualifiedName> sink) {
+    int packageComponents = file.getPackageQualifiedName().getComponentCount();
+    for (QualifiedName qualifiedName : file.getLocalQualifiedSymbolMap().keySet()) {
+      if (qualifiedName.getComponentCount() > packageComponents + 1) {
+        sink.put(qualifiedName.removeHead(packageComponents).join("_"), qualifiedName);
+      }
+    }
+  }
+
+  @NotNull
+  @Override
+  public ID<String, List<String>> getName() {
+    return INDEX_ID;
+  }
+
+  @Override
+  public int getVersion() {
+    return 0;
+  }
+}
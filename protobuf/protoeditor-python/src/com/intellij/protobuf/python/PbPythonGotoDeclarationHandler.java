@@ -22,6 +22,7 @@ import com.intellij.openapi.editor.Editor;
 import com.intellij.protobuf.lang.psi.PbElement;
 import com.intellij.protobuf.lang.psi.PbFile;
 import com.intellij.protobuf.lang.psi.PbSymbol;
+import com.intellij.protobuf.shared.gencode.PbGeneratedNameIndex;
 import com.intellij.protobuf.shared.gencode.ProtoFromSourceComments;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.util.QualifiedName;
@@ -78,6 +79,10 @@ public final class PbPythonGotoDeclarationHandler implements GotoDeclarationHand
     ImmutableCollection<? extends PbElement> results =
         locateSymbolInProtoFile(protoSource, referenceContext.getFileLocalSymbol());
     if (results.isEmpty() && apiVersion == 1) {
+      results = locateGeneratedName(protoSource, referenceContext.getFileLocalSymbol());
+    }
+    if (results.isEmpty() && apiVersion == 1) {
+      // Not indexed, e.g. the .proto file isn't in the local file system.
       return locateWithNormalizedNames(protoSource, referenceContext.getFileLocalSymbol());
     }
     return results;
@@ -99,6 +104,18 @@ public final class PbPythonGotoDeclarationHandler implements GotoDeclarationHand
     return ImmutableList.copyOf(pbSymbols == null ? List.of() : pbSymbols);
   }
 
+  private static ImmutableCollection<? extends PbElement> locateGeneratedName(
+      PbFile pbFile, QualifiedName fileLocalName) {
+    String fileLocalSymbol = fileLocalName.toString();
+    // Should have been an exact match if '_' didn't come into play.
+    if (!fileLocalSymbol.contains("_")) {
+      return ImmutableList.of();
+    }
+    return ImmutableList.copyOf(
+        PbGeneratedNameIndex.findSymbols(
+            PbPythonGeneratedNameIndex.INDEX_ID, fileLocalSymbol.replace('.', '_'), pbFile));
+  }
+
   // For API v1, the code generator converts nested messages like Foo.Bar.Baz to Foo_Bar_Baz.
   // Try to match with the '.' separators normalized to '_'.
   private static ImmutableCollection<? extends PbElement> locateWithNormalizedNames(
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.protobuf.python;
+
+import com.intellij.protobuf.TestUtils;
+import com.intellij.protobuf.fixtures.PbCodeInsightFixtureTestCase;
+import com.intellij.protobuf.lang.psi.PbFile;
+import com.intellij.protobuf.lang.psi.PbSymbol;
+import com.intellij.protobuf.shared.gencode.PbGeneratedNameIndex;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.indexing.FileBasedIndex;
+
+import java.util.List;
+
+/** Tests for {@link PbPythonGeneratedNameIndex}. */
+public class PbPythonGeneratedNameIndexTest extends PbCodeInsightFixtureTestCase {
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    TestUtils.addTestFileResolveProvider(getProject(), getTestRootDisposable());
+  }
+
+  public void testNestedNamesJoinedWithUnderscores() {
+    PbFile file =
+        (PbFile)
+            myFixture.addFileToProject(
+                "foo/bar/names.proto",
+                String.join(
+                    "\n",
+                    "syntax = \"proto2\";",
+                    "package foo.bar;",
+                    "message Outer {",
+                    "  message Inner {",
+                    "    enum Kind { KIND_UNKNOWN = 0; }",
+                    "  }",
+                    "}"));
+
+    // Top-level names are the same in both APIs, so they're looked up in the symbol table.
+    assertSameElements(
+        FileBasedIndex.getInstance()
+            .getFileData(PbPythonGeneratedNameIndex.INDEX_ID, file.getVirtualFile(), getProject())
+            .keySet(),
+        "Outer_Inner",
+        "Outer_Inner_Kind",
+        "Outer_Inner_KIND_UNKNOWN");
+    assertSymbols(file, "Outer_Inner", "foo.bar.Outer.Inner");
+    assertSymbols(file, "Outer_Inner_Kind", "foo.bar.Outer.Inner.Kind");
+    assertSymbols(file, "Outer_Inner_KIND_UNKNOWN", "foo.bar.Outer.Inner.KIND_UNKNOWN");
+    assertSymbols(file, "Outer_Missing");
+  }
+
+  private static void assertSymbols(PbFile file, String generatedName, String... qualifiedNames) {
+    List<PbSymbol> symbols =
+        PbGeneratedNameIndex.findSymbols(PbPythonGeneratedNameIndex.INDEX_ID, generatedName, file);
+    assertSameElements(
+        ContainerUtil.map(symbols, symbol -> symbol.getQualifiedName().toString()), qualifiedNames);
+  }
+}